@@ -0,0 +1,98 @@
+package jp.gr.naoco.alacarte;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import jp.gr.naoco.alacarte.ZipFileWriter.CSVConfig;
+import jp.gr.naoco.db.entity.BenchmarkEntity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * CSVReaderとZipFileWriterの1行あたりの読み書きコスト
+ * <p>
+ * 読込みはメモリ上のCSV文字列を、書込みは一時ファイルに出力するZIPのエントリを対象とする。
+ * </p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CSVBenchmark {
+
+	private static final int ROWS = 10000;
+
+	private String csv_;
+
+	private BenchmarkEntity entity_;
+
+	private File zipFile_;
+
+	private ZipFileWriter writer_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Setup
+
+	@Setup
+	public void setup() throws IOException {
+		StringBuilder csv = new StringBuilder("\"string_value\",\"long_value\",\"double_value\",\"timestamp_value\"\n");
+		for (int i = 0; i < ROWS; i++) {
+			csv.append("\"value ").append(i).append("\",\"").append(i).append("\",\"").append(i).append(".5\",")
+					.append("\"2014/05/22 10:00:00\"\n");
+		}
+		csv_ = csv.toString();
+
+		entity_ = new BenchmarkEntity();
+		entity_.setString_value("string value");
+		entity_.setLong_value(1234567890L);
+		entity_.setDouble_value(12345.678);
+		entity_.setTimestamp_value(new Timestamp(System.currentTimeMillis()));
+
+		zipFile_ = File.createTempFile("CSVBenchmark", ".zip");
+		writer_ = new ZipFileWriter(zipFile_, Charset.forName("UTF-8"));
+		writer_.setZipEntry4Entity(BenchmarkEntity.class, "benchmark.csv");
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		writer_.close();
+		zipFile_.delete();
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Benchmarks
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void readEntity(Blackhole blackhole) throws Exception {
+		CSVReader<BenchmarkEntity> reader = new CSVReader<BenchmarkEntity>(new StringReader(csv_), new CSVConfig(),
+				BenchmarkEntity.class);
+		BenchmarkEntity entity;
+		while (null != (entity = reader.readEntity())) {
+			blackhole.consume(entity);
+		}
+	}
+
+	@Benchmark
+	public void writeEntity2CSV() throws IOException {
+		writer_.writeEntity2CSV(entity_);
+	}
+}
@@ -0,0 +1,101 @@
+package jp.gr.naoco.chain;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+import jp.gr.naoco.core.log.BenchmarkLogAdaptor;
+
+/**
+ * Chainの接続方法ごとの、Container1個あたりの受け渡しのオーバーヘッド
+ * <p>
+ * Producer、ConsumerProducer、Consumerの3要素を、指定した接続方法で接続する。
+ * parallel接続は、スレッドの生成コストを除くためにスレッドプールのエクゼキュータを使用する。
+ * </p>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChainBenchmark {
+
+	@Param({"direct", "sequential", "parallel" })
+	public String connection;
+
+	private ChainExecutor executor_;
+
+	private static final int COUNT = 10000;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Setup
+
+	@Setup
+	public void setup() throws Exception {
+		// Chainのスレッド開始と終了のログ出力を計測に含めない（ロガー生成前に設定すること）
+		NaocoCoreInitializer.initialize(null, new BenchmarkLogAdaptor());
+		executor_ = ChainExecutor.pool(4);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Benchmarks
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public long execute() {
+		CountConsumer consumer = new CountConsumer();
+		Chain chain = new Chain(new CountProducer(), 1000, ParallelQueueFactory.BLOCKING, executor_);
+		if ("direct".equals(connection)) {
+			chain.direct(new PassConsumerProducer()).direct(consumer);
+		} else if ("sequential".equals(connection)) {
+			chain.sequential(new PassConsumerProducer()).sequential(consumer);
+		} else {
+			chain.parallel(new PassConsumerProducer()).parallel(consumer);
+		}
+		chain.execute();
+		return consumer.count_;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class CountProducer implements Producer {
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(new Container<Integer>(Integer.valueOf(i)));
+			}
+		}
+	}
+
+	public static class PassConsumerProducer extends ConsumerProducer {
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			queue.offer(container);
+		}
+	}
+
+	public static class CountConsumer extends Consumer {
+		private volatile long count_ = 0L;
+
+		@Override
+		public void execute_(Container<?> container) {
+			count_++;
+		}
+	}
+}
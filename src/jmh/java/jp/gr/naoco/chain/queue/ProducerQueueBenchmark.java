@@ -0,0 +1,138 @@
+package jp.gr.naoco.chain.queue;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.gr.naoco.chain.Container;
+
+/**
+ * parallel接続のキュー実装の、スレッド間の受け渡しのスループットとレイテンシ
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProducerQueueBenchmark {
+
+	@Param({"blocking", "ringBuffer", "batching" })
+	public String queueType;
+
+	@Param({"1000" })
+	public int queueSize;
+
+	private ParallelQueueFactory factory_;
+
+	private ExecutorService consumer_;
+
+	/** レイテンシ計測用の往路キュー */
+	private InterruptibleProducerQueue ping_;
+
+	/** レイテンシ計測用の復路キュー */
+	private InterruptibleProducerQueue pong_;
+
+	private Iterator<Container<?>> pongIterator_;
+
+	private Future<?> echo_;
+
+	private static final int COUNT = 100000;
+
+	private static final long WAIT_TIME_MINUTES = 1L;
+
+	private static final Container<Integer> ELEMENT = new Container<Integer>(Integer.valueOf(1));
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Setup
+
+	@Setup
+	public void setup() {
+		if ("ringBuffer".equals(queueType)) {
+			factory_ = ParallelQueueFactory.RING_BUFFER;
+		} else if ("batching".equals(queueType)) {
+			factory_ = ParallelQueueFactory.batching(ParallelQueueFactory.BLOCKING, 64, 10L);
+		} else {
+			factory_ = ParallelQueueFactory.BLOCKING;
+		}
+		consumer_ = Executors.newFixedThreadPool(2);
+
+		// 受け取った要素をそのまま返すスレッド
+		ping_ = factory_.create(queueSize, WAIT_TIME_MINUTES);
+		pong_ = ParallelQueueFactory.RING_BUFFER.create(queueSize, WAIT_TIME_MINUTES);
+		pongIterator_ = pong_.consumerIterator();
+		final Iterator<Container<?>> pingIterator = ping_.consumerIterator();
+		echo_ = consumer_.submit(new Runnable() {
+			@Override
+			public void run() {
+				while (pingIterator.hasNext()) {
+					pong_.offer(pingIterator.next());
+				}
+				pong_.finish();
+			}
+		});
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		ping_.finish();
+		echo_.get();
+		consumer_.shutdown();
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Benchmarks
+
+	/**
+	 * 1スレッドでofferしたCOUNT個の要素を、別の1スレッドで取り出す。
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@OperationsPerInvocation(COUNT)
+	public long throughput() throws Exception {
+		final InterruptibleProducerQueue queue = factory_.create(queueSize, WAIT_TIME_MINUTES);
+		final Iterator<Container<?>> iterator = queue.consumerIterator();
+		Future<Long> result = consumer_.submit(new java.util.concurrent.Callable<Long>() {
+			@Override
+			public Long call() {
+				long count = 0L;
+				while (iterator.hasNext()) {
+					iterator.next();
+					count++;
+				}
+				return count;
+			}
+		});
+		for (int i = 0; i < COUNT; i++) {
+			queue.offer(ELEMENT);
+		}
+		queue.finish();
+		return result.get();
+	}
+
+	/**
+	 * 1要素の往復時間（別スレッドで折り返し）。バッチングはlinger経過まで受け渡さないため、参考値となる。
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Container<?> roundTrip() {
+		ping_.offer(ELEMENT);
+		return pongIterator_.next();
+	}
+}
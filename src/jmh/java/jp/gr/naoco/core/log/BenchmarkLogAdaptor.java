@@ -0,0 +1,83 @@
+package jp.gr.naoco.core.log;
+
+/**
+ * ベンチマーク用のログアダプタ
+ * <p>
+ * INFO以上のみを出力対象とするログ実装を模して、出力対象のレベルでもメッセージを破棄する。
+ * </p>
+ */
+public class BenchmarkLogAdaptor implements LogAdaptor {
+
+	/** メッセージを破棄せずに参照し、最適化で呼出しが除去されないようにする */
+	private volatile int length_ = 0;
+
+	@Override
+	public void fatal(String message) {
+		length_ = message.length();
+	}
+
+	@Override
+	public void fatal(String message, Throwable t) {
+		length_ = message.length();
+	}
+
+	@Override
+	public void error(String message) {
+		length_ = message.length();
+	}
+
+	@Override
+	public void error(String message, Throwable t) {
+		length_ = message.length();
+	}
+
+	@Override
+	public void warn(String message) {
+		length_ = message.length();
+	}
+
+	@Override
+	public void warn(String message, Throwable t) {
+		length_ = message.length();
+	}
+
+	@Override
+	public void info(String message) {
+		length_ = message.length();
+	}
+
+	@Override
+	public void info(String message, Throwable t) {
+		length_ = message.length();
+	}
+
+	@Override
+	public void debug(String message) {
+		// DEBUGは出力対象外
+	}
+
+	@Override
+	public void debug(String message, Throwable t) {
+		// DEBUGは出力対象外
+	}
+
+	@Override
+	public void trace(String message) {
+		// TRACEは出力対象外
+	}
+
+	@Override
+	public void sql(String message) {
+		// DEBUGは出力対象外
+	}
+
+	@Override
+	public void initialize(String name) {
+		// nothing to do
+	}
+
+	@Override
+	public boolean requiredDebugLevel() {
+		return false;
+	}
+}
@@ -0,0 +1,70 @@
+package jp.gr.naoco.core.log;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LaolLoggerの1メッセージあたりのコスト
+ * <p>
+ * 出力対象外のレベル（DEBUG）でのメッセージ生成の無駄と、requiredDebugLevelによる判定の効果を比較する。
+ * </p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LaolLoggerBenchmark {
+
+	private LaolLogger log_;
+
+	private int counter_ = 0;
+
+	private String sql_ = "SELECT a.COLUMN1, a.COLUMN2 FROM TABLE_NAME a WHERE a.COLUMN1=?";
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Setup
+
+	@Setup
+	public void setup() {
+		// ロガーはアダプタの設定後に生成する
+		LaolLogger.setLogAdaptor(new BenchmarkLogAdaptor());
+		log_ = new LaolLogger(LaolLoggerBenchmark.class.getName());
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Benchmarks
+
+	@Benchmark
+	public void info() {
+		log_.info("thread start " + counter_++);
+	}
+
+	@Benchmark
+	public void debugDisabled() {
+		log_.debug("parameter:" + counter_++ + " sql:" + sql_);
+	}
+
+	@Benchmark
+	public void debugDisabledGuarded() {
+		if (log_.requiredDebugLevel()) {
+			log_.debug("parameter:" + counter_++ + " sql:" + sql_);
+		}
+	}
+
+	@Benchmark
+	public void sqlDisabled() {
+		log_.sql(sql_);
+	}
+}
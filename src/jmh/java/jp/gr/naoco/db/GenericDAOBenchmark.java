@@ -0,0 +1,86 @@
+package jp.gr.naoco.db;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jp.gr.naoco.core.NaocoCoreFacade;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+import jp.gr.naoco.core.log.BenchmarkLogAdaptor;
+import jp.gr.naoco.db.entity.BenchmarkEntity;
+import jp.gr.naoco.db.sql.TemplateAnalyzer;
+import jp.gr.naoco.db.sql.TemplateReader;
+import jp.gr.naoco.db.sql.elem.SqlElem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SQLテンプレートの解析・SQL生成と、GenericDAO#executeSelectの1回あたりのコスト
+ * <p>
+ * 接続先はテスト用のダミー接続（conf/laol01.properties）で、検索結果は常に0件となる。
+ * </p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GenericDAOBenchmark {
+
+	private static final String TEMPLATE = "sql/test01.sql";
+
+	@Param({"true", "false" })
+	public boolean isValueList3;
+
+	private Map<String, Object> variableMap_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Setup
+
+	@Setup
+	public void setup() throws Exception {
+		NaocoCoreInitializer.initialize("conf.laol01", new BenchmarkLogAdaptor());
+		NaocoCoreFacade.startTransaction("java:comp/env/jdbc/test");
+
+		variableMap_ = new HashMap<String, Object>();
+		variableMap_.put("value1", "value1");
+		variableMap_.put("value2", 2L);
+		variableMap_.put("isValueList3", isValueList3);
+		variableMap_.put("valueList3", Arrays.asList("a", "b", "c"));
+		variableMap_.put("value3", "value3");
+		variableMap_.put("value4", Arrays.asList(1L, 2L, 3L));
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		NaocoCoreFacade.commitTransaction();
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Benchmarks
+
+	@Benchmark
+	public SqlElem analyzeTemplate() {
+		return TemplateAnalyzer.analyze(TEMPLATE, TemplateReader.readTemplate(TEMPLATE));
+	}
+
+	@Benchmark
+	public List<BenchmarkEntity> executeSelect() throws SQLException {
+		return GenericDAO.executeSelect(TEMPLATE, variableMap_, BenchmarkEntity.class);
+	}
+}
@@ -0,0 +1,62 @@
+package jp.gr.naoco.db.entity;
+
+import java.sql.Timestamp;
+
+import jp.gr.naoco.db.entity.annotation.Column;
+import jp.gr.naoco.db.entity.annotation.Id;
+import jp.gr.naoco.db.entity.annotation.Table;
+
+/**
+ * ベンチマーク用のエンティティ
+ * <p>
+ * ORMapperのマッピング対象となるよう、数値型はラッパークラスとする。<br/>
+ * CSVReaderでも読み込めるよう、プロパティ名は列名を小文字にしたものとする。
+ * </p>
+ */
+@Table(name = "BENCHMARK_TABLE")
+public class BenchmarkEntity extends AbstractEntity {
+	@Id(name = "STRING_VALUE")
+	private String string_value;
+	@Column(name = "LONG_VALUE")
+	private Long long_value;
+	@Column(name = "DOUBLE_VALUE")
+	private Double double_value;
+	@Column(name = "TIMESTAMP_VALUE")
+	private Timestamp timestamp_value;
+
+	public String getString_value() {
+		return string_value;
+	}
+
+	public void setString_value(String string_value) {
+		this.string_value = string_value;
+		setFieldNameSet_.add("STRING_VALUE");
+	}
+
+	public Long getLong_value() {
+		return long_value;
+	}
+
+	public void setLong_value(Long long_value) {
+		this.long_value = long_value;
+		setFieldNameSet_.add("LONG_VALUE");
+	}
+
+	public Double getDouble_value() {
+		return double_value;
+	}
+
+	public void setDouble_value(Double double_value) {
+		this.double_value = double_value;
+		setFieldNameSet_.add("DOUBLE_VALUE");
+	}
+
+	public Timestamp getTimestamp_value() {
+		return timestamp_value;
+	}
+
+	public void setTimestamp_value(Timestamp timestamp_value) {
+		this.timestamp_value = timestamp_value;
+		setFieldNameSet_.add("TIMESTAMP_VALUE");
+	}
+}
@@ -0,0 +1,104 @@
+package jp.gr.naoco.db.entity;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+import jp.gr.naoco.sample.dummy.DummyResultSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ORMapperの1行あたりのマッピングコスト
+ * <p>
+ * 固定値を返すResultSetを使用し、列ごとのsetter検索とリフレクション呼出しのコストのみを計測する。
+ * </p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ORMapperBenchmark {
+
+	private static final String[] LABELS = {"STRING_VALUE", "LONG_VALUE", "DOUBLE_VALUE", "TIMESTAMP_VALUE" };
+
+	private static final int[] TYPES = {Types.VARCHAR, Types.BIGINT, Types.DOUBLE, Types.TIMESTAMP };
+
+	private FixedResultSet rs_;
+
+	private ResultSetMetaData rsmd_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Setup
+
+	@Setup
+	public void setup() {
+		rs_ = new FixedResultSet();
+		rsmd_ = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+				new Class<?>[] {ResultSetMetaData.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						String name = method.getName();
+						if ("getColumnCount".equals(name)) {
+							return LABELS.length;
+						} else if ("getColumnLabel".equals(name)) {
+							return LABELS[(Integer) args[0] - 1];
+						} else if ("getColumnType".equals(name)) {
+							return TYPES[(Integer) args[0] - 1];
+						}
+						throw new UnsupportedOperationException(name);
+					}
+				});
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Benchmarks
+
+	@Benchmark
+	public BenchmarkEntity mapping1Line() throws SQLException {
+		return ORMapper.mapping1Line(rs_, BenchmarkEntity.class, rsmd_);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	private static class FixedResultSet extends DummyResultSet {
+		private final BigDecimal longValue_ = new BigDecimal(1234567890L);
+
+		private final BigDecimal doubleValue_ = new BigDecimal("12345.678");
+
+		private final Timestamp timestampValue_ = new Timestamp(System.currentTimeMillis());
+
+		@Override
+		public String getString(int columnIndex) throws SQLException {
+			return "string value";
+		}
+
+		@Override
+		public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+			return (2 == columnIndex ? longValue_ : doubleValue_);
+		}
+
+		@Override
+		public Timestamp getTimestamp(int columnIndex) throws SQLException {
+			return timestampValue_;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package jp.gr.naoco.alacarte;
+
+import java.util.ArrayDeque;
+
+import jp.gr.naoco.alacarte.ZipEncoder.StreamBuffer;
+
+/**
+ * {@link StreamBuffer}のバイト配列を再利用するプール
+ * <p>
+ * バイト配列の長さは2のべき乗に切り上げ、長さごとにプールする。
+ * {@link #acquire(int)}で取得したStreamBufferは、最後の参照元が{@link StreamBuffer#release()}を呼び出した時点でプールに返却される。<br/>
+ * プールが空の場合は新しいバイト配列を生成し、プールの保持量がmaxPooledBytesを超える場合は返却されたバイト配列を破棄する。
+ * </p>
+ * <p>
+ * 取得と返却は別スレッドから行うことができる。<br/>
+ * {@link ZipEncoder}、{@link ZipDecoder}は、インスタンス間で{@link #getDefault()}のプールを共有する。
+ * </p>
+ *
+ * @author naoco0917
+ */
+public class StreamBufferPool {
+
+	/** プールするバイト配列の最小長 */
+	public static final int MIN_CHUNK_SIZE = 4 * 1024;
+
+	/** プールするバイト配列の最大長 */
+	public static final int MAX_CHUNK_SIZE = 256 * 1024;
+
+	/** 入力サイズ不明の場合のバイト配列の長さ */
+	public static final int DEFAULT_CHUNK_SIZE = 8 * 1024;
+
+	private static final int DEFAULT_MAX_POOLED_BYTES = 8 * 1024 * 1024;
+
+	private static final StreamBufferPool DEFAULT = new StreamBufferPool();
+
+	/** 長さごとのプール（添字はlog2(長さ)） */
+	private final ArrayDeque<byte[]>[] pools_;
+
+	private final long maxPooledBytes_;
+
+	private long pooledBytes_ = 0L;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * このコンストラクタは new StreamBufferPool(8 * 1024 * 1024) を呼び出すのと同等。
+	 */
+	public StreamBufferPool() {
+		this(DEFAULT_MAX_POOLED_BYTES);
+	}
+
+	/**
+	 * バイト配列のプールを生成
+	 *
+	 * @param maxPooledBytes
+	 *            プールに保持するバイト配列の合計の最大バイト数
+	 */
+	@SuppressWarnings("unchecked")
+	public StreamBufferPool(long maxPooledBytes) {
+		maxPooledBytes_ = maxPooledBytes;
+		pools_ = (ArrayDeque<byte[]>[]) new ArrayDeque<?>[Integer.SIZE];
+		for (int i = 0; i < pools_.length; i++) {
+			pools_[i] = new ArrayDeque<byte[]>();
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	/**
+	 * プロセスで共有するデフォルトのプールを返す。
+	 *
+	 * @return プール
+	 */
+	public static StreamBufferPool getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * 参照数1のStreamBufferを取得する。
+	 *
+	 * @param size
+	 *            必要なバイト数（2のべき乗に切り上げる）
+	 * @return StreamBuffer（長さは0）
+	 */
+	public StreamBuffer acquire(int size) {
+		if ((1 << 30) < size) {
+			throw new IllegalArgumentException("size is too large. size:" + size);
+		}
+		int index = indexOf(size);
+		byte[] bytes;
+		synchronized (this) {
+			bytes = pools_[index].poll();
+			if (null != bytes) {
+				pooledBytes_ -= bytes.length;
+			}
+		}
+		if (null == bytes) {
+			bytes = new byte[1 << index];
+		}
+		return new StreamBuffer(bytes, 0, this);
+	}
+
+	/**
+	 * 入力の総バイト数から、読み込み単位のバイト数を決定する。
+	 * <p>
+	 * 1入力あたりのContainerの数がおおむね64個以下となるよう、{@link #MIN_CHUNK_SIZE}から{@link #MAX_CHUNK_SIZE}
+	 * の範囲の2のべき乗を返す。
+	 * </p>
+	 *
+	 * @param totalSize
+	 *            入力の総バイト数（不明の場合は負数）
+	 * @return 読み込み単位のバイト数
+	 */
+	public static int chunkSizeFor(long totalSize) {
+		if (totalSize < 0) {
+			return DEFAULT_CHUNK_SIZE;
+		}
+		long size = totalSize / 64;
+		if (size <= MIN_CHUNK_SIZE) {
+			return MIN_CHUNK_SIZE;
+		} else if (MAX_CHUNK_SIZE <= size) {
+			return MAX_CHUNK_SIZE;
+		}
+		return Integer.highestOneBit((int) size - 1) << 1;
+	}
+
+	/**
+	 * プールに保持しているバイト数を返す。
+	 *
+	 * @return バイト数
+	 */
+	public synchronized long getPooledBytes() {
+		return pooledBytes_;
+	}
+
+	void recycle(byte[] bytes) {
+		// 2のべき乗でないバイト配列はacquireで取得したものではないため、プールしない
+		if (0 != (bytes.length & (bytes.length - 1))) {
+			return;
+		}
+		synchronized (this) {
+			if (maxPooledBytes_ < (pooledBytes_ + bytes.length)) {
+				return;
+			}
+			pools_[Integer.numberOfTrailingZeros(bytes.length)].push(bytes);
+			pooledBytes_ += bytes.length;
+		}
+	}
+
+	private static int indexOf(int size) {
+		if (size <= 1) {
+			return 0;
+		}
+		return Integer.SIZE - Integer.numberOfLeadingZeros(size - 1);
+	}
+}
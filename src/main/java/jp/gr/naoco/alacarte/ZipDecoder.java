@@ -5,26 +5,33 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Enumeration;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import jp.gr.naoco.alacarte.ZipEncoder.FileProducer;
 import jp.gr.naoco.alacarte.ZipEncoder.StreamBuffer;
 import jp.gr.naoco.chain.Chain;
 import jp.gr.naoco.chain.Consumer;
+import jp.gr.naoco.chain.ConsumerFactory;
 import jp.gr.naoco.chain.ConsumerFilter;
+import jp.gr.naoco.chain.ConsumerInterface;
 import jp.gr.naoco.chain.ConsumerProducer;
 import jp.gr.naoco.chain.Container;
+import jp.gr.naoco.chain.Producer;
 import jp.gr.naoco.chain.queue.ProducerQueue;
 
 import org.apache.log4j.Logger;
 
 public class ZipDecoder {
 
-	private int bufferSize_ = 1024;
+	private int bufferSize_ = 0;
 
 	private boolean parallel_ = false;
 
+	private StreamBufferPool pool_ = StreamBufferPool.getDefault();
+
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Constructor
 
@@ -32,6 +39,14 @@ public class ZipDecoder {
 		// nothing to do
 	}
 
+	/**
+	 * Zipデコーダを生成
+	 * 
+	 * @param bufferSize
+	 *            解凍時の読み込み単位のバイト数（0以下の場合はエントリのサイズに応じて決定する）
+	 * @param parallel
+	 *            ファイル出力を現在のスレッドに対して、別スレッド実行とする場合はtrue、順次実行とする場合はfalse
+	 */
 	public ZipDecoder(int bufferSize, boolean parallel) {
 		bufferSize_ = bufferSize;
 		parallel_ = parallel;
@@ -40,6 +55,16 @@ public class ZipDecoder {
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Methods
 
+	/**
+	 * バイト配列のプールを指定する。指定しない場合は{@link StreamBufferPool#getDefault()}のプールを使用する。
+	 *
+	 * @param pool
+	 *            バイト配列のプール
+	 */
+	public void setPool(StreamBufferPool pool) {
+		pool_ = pool;
+	}
+
 	/**
 	 * Zipアーカイブをデコードする
 	 * 
@@ -51,21 +76,12 @@ public class ZipDecoder {
 	 */
 	public void decode(File zipFile, File outputDir) {
 		// 出力先の状態確認
-		if (!outputDir.exists()) {
-			boolean result = outputDir.mkdirs();
-			if (!result) {
-				throw new IllegalStateException(outputDir.getAbsoluteFile()
-						+ " can not create directory.");
-			}
-		} else if (!outputDir.isDirectory() && !outputDir.canWrite()) {
-			throw new IllegalStateException(outputDir.getAbsoluteFile()
-					+ " can not output.");
-		}
+		checkOutputDir(outputDir);
 
 		// 処理の実行
 		Chain chain = new Chain(new FileProducer(zipFile, false))
 		// ファイルをZipInputStreamとして読み込み
-				.direct(new ZipInputStreamRelayer(bufferSize_, outputDir
+				.direct(new ZipInputStreamRelayer(bufferSize_, pool_, outputDir
 						.getAbsolutePath()));
 		// 単独スレッドで順次処理
 		if (parallel_) {
@@ -78,17 +94,236 @@ public class ZipDecoder {
 		chain.execute();
 	}
 
+	/**
+	 * Zipアーカイブのセントラルディレクトリを参照し、エントリ単位に複数スレッドで並列にデコードする
+	 * 
+	 * @param zipFile
+	 *            解凍対象のzipファイル
+	 * @param outputDir
+	 *            解凍先のディレクトリ
+	 * @param nThreads
+	 *            解凍処理のスレッド数
+	 */
+	public void decode(File zipFile, File outputDir, int nThreads) {
+		decode(zipFile, outputDir, nThreads, null);
+	}
+
+	/**
+	 * Zipアーカイブのセントラルディレクトリを参照し、エントリ単位に複数スレッドで並列にデコードする
+	 * <p>
+	 * {@link ZipFile}でセントラルディレクトリを読み込み、filterで対象としたエントリのみを、エントリごとにワーカースレッドで解凍する。
+	 * 対象外のエントリのデータは読み込まない。
+	 * </p>
+	 * <p>
+	 * 本メソッドではparallelの指定は使用しない。
+	 * </p>
+	 * 
+	 * @param zipFile
+	 *            解凍対象のzipファイル
+	 * @param outputDir
+	 *            解凍先のディレクトリ
+	 * @param nThreads
+	 *            解凍処理のスレッド数
+	 * @param filter
+	 *            解凍対象のエントリを判定するフィルタ（nullの場合はすべてのエントリ）
+	 */
+	public void decode(File zipFile, File outputDir, int nThreads, final EntryFilter filter) {
+		// 出力先の状態確認
+		checkOutputDir(outputDir);
+
+		final ZipFile zip;
+		try {
+			zip = new ZipFile(zipFile);
+		} catch (IOException e) {
+			throw new RuntimeException(zipFile.getAbsolutePath(), e);
+		}
+		try {
+			final File dir = outputDir.getAbsoluteFile();
+			final int bufferSize = bufferSize_;
+			// 処理の実行
+			new Chain(new ZipFileEntryProducer(zip, filter))
+			// エントリ単位の並列解凍
+					.parallel(new ConsumerFactory() {
+						@Override
+						public ConsumerInterface newInstance() {
+							return new ZipFileEntryConsumer(zip, dir, bufferSize, pool_);
+						}
+					}, nThreads).execute();
+		} finally {
+			try {
+				zip.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private static void checkOutputDir(File outputDir) {
+		if (!outputDir.exists()) {
+			boolean result = outputDir.mkdirs();
+			if (!result) {
+				throw new IllegalStateException(outputDir.getAbsoluteFile()
+						+ " can not create directory.");
+			}
+		} else if (!outputDir.isDirectory() && !outputDir.canWrite()) {
+			throw new IllegalStateException(outputDir.getAbsoluteFile()
+					+ " can not output.");
+		}
+	}
+
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Inner classes
 
+	/**
+	 * 解凍対象のエントリを判定するフィルタ
+	 */
+	public static interface EntryFilter {
+		/**
+		 * @param entry
+		 *            エントリ
+		 * @return 解凍対象の場合はtrue
+		 */
+		public boolean accept(ZipEntry entry);
+	}
+
+	// ///////////////////////
+
+	/** セントラルディレクトリのエントリのうち、解凍対象のエントリを順次次の処理へ渡す。 */
+	private static class ZipFileEntryProducer implements Producer {
+
+		private ZipFile zip_;
+
+		private EntryFilter filter_;
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Constructor
+
+		public ZipFileEntryProducer(ZipFile zip, EntryFilter filter) {
+			zip_ = zip;
+			filter_ = filter;
+		}
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Methods
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			Enumeration<? extends ZipEntry> entries = zip_.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if ((null == filter_) || filter_.accept(entry)) {
+					queue.offer(new Container<ZipEntry>(entry));
+				}
+			}
+		}
+	}
+
+	// ///////////////////////
+
+	/** エントリを解凍してファイルに出力する。ワーカースレッドごとに生成する。 */
+	private static class ZipFileEntryConsumer extends Consumer {
+
+		private ZipFile zip_;
+
+		private String outputPath_;
+
+		private int bufferSize_;
+
+		private StreamBufferPool pool_;
+
+		private static final ConsumerFilter FILTER = new ConsumerFilter() {
+			@Override
+			public boolean accept(Container<?> container) {
+				return (container.get() instanceof ZipEntry);
+			}
+		};
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Constructor
+
+		public ZipFileEntryConsumer(ZipFile zip, File outputDir, int bufferSize, StreamBufferPool pool) {
+			zip_ = zip;
+			bufferSize_ = bufferSize;
+			pool_ = pool;
+			try {
+				outputPath_ = outputDir.getCanonicalPath() + File.separator;
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Methods
+
+		@Override
+		public void execute_(Container<?> container) {
+			ZipEntry entry = (ZipEntry) container.get();
+			File outputFile = new File(outputPath_ + entry.getName());
+			try {
+				// 出力先ディレクトリの外へのパスは許可しない
+				if (!outputFile.getCanonicalPath().startsWith(outputPath_)) {
+					throw new IllegalStateException(entry.getName() + " is outside of output directory.");
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			if (entry.isDirectory()) {
+				outputFile.mkdirs();
+				return;
+			}
+			File outputDir = outputFile.getParentFile();
+			if (null != outputDir) {
+				outputDir.mkdirs();
+			}
+			LOG.debug(entry.getName());
+
+			int chunkSize = (0 < bufferSize_ ? bufferSize_ : StreamBufferPool.chunkSizeFor(entry.getSize()));
+			StreamBuffer buffer = pool_.acquire(chunkSize);
+			InputStream in = null;
+			FileOutputStream out = null;
+			try {
+				in = zip_.getInputStream(entry);
+				out = new FileOutputStream(outputFile);
+				byte[] bytes = buffer.getBytes();
+				int len = 0;
+				while (0 <= (len = in.read(bytes))) {
+					out.write(bytes, 0, len);
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(entry.getName(), e);
+			} finally {
+				buffer.release();
+				try {
+					if (null != out) {
+						out.close();
+					}
+					if (null != in) {
+						in.close();
+					}
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+
+		@Override
+		public ConsumerFilter getDefaultFilter() {
+			return FILTER;
+		}
+	}
+
+	// ///////////////////////
+
 	private static class ZipInputStreamRelayer extends ConsumerProducer {
 		private int bufferSize_;
 
+		private StreamBufferPool pool_;
+
 		private String outputPath_;
 
 		private static final ConsumerFilter FILTER = new ConsumerFilter() {
 			@Override
-			public boolean accept(Container container) {
+			public boolean accept(Container<?> container) {
 				return ((container.get() instanceof InputStream) || container
 						.get() instanceof String);
 			}
@@ -97,8 +332,9 @@ public class ZipDecoder {
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Constructor
 
-		public ZipInputStreamRelayer(int bufferSize, String outputPath) {
+		public ZipInputStreamRelayer(int bufferSize, StreamBufferPool pool, String outputPath) {
 			bufferSize_ = bufferSize;
+			pool_ = pool;
 			outputPath_ = outputPath;
 			if (!outputPath.endsWith(System.getProperty("file.separator"))) {
 				outputPath_ = outputPath_
@@ -110,7 +346,7 @@ public class ZipDecoder {
 		// Methods
 
 		@Override
-		public void execute_(Container container, ProducerQueue queue) {
+		public void execute_(Container<?> container, ProducerQueue queue) {
 			// String（ファイル名）がContainerで来た場合はスキップする。
 			if (container.get() instanceof String) {
 				return;
@@ -124,16 +360,16 @@ public class ZipDecoder {
 			separator = ("\\".equals(separator) ? "\\\\" : separator);
 			try {
 				zip = new ZipInputStream(in);
-				byte[] bytes = new byte[bufferSize_];
-				int len = 0;
 				while (null != (entry = zip.getNextEntry())) {
-					queue.offer(new Container(outputPath_
+					queue.offer(new Container<String>(outputPath_
 							+ entry.getName().replaceAll("\\/", separator)));
 					LOG.debug(entry.getName());
-					while (0 <= (len = zip.read(bytes))) {
-						StreamBuffer obj = new StreamBuffer(bytes, len);
-						queue.offer(new Container(obj));
-						bytes = new byte[bufferSize_];
+					// 読み込み単位はエントリの展開後のサイズから決定する（サイズ不明の場合はデフォルト）
+					int chunkSize = (0 < bufferSize_ ? bufferSize_ : StreamBufferPool
+							.chunkSizeFor(entry.getSize()));
+					StreamBuffer buffer = null;
+					while (null != (buffer = StreamBuffer.read(zip, pool_, chunkSize))) {
+						queue.offer(new Container<StreamBuffer>(buffer));
 					}
 				}
 			} catch (IOException e) {
@@ -168,7 +404,7 @@ public class ZipDecoder {
 
 		private static final ConsumerFilter FILTER = new ConsumerFilter() {
 			@Override
-			public boolean accept(Container container) {
+			public boolean accept(Container<?> container) {
 				return ((container.get() instanceof String) || (container.get() instanceof StreamBuffer));
 			}
 		};
@@ -191,7 +427,7 @@ public class ZipDecoder {
 		// Methods
 
 		@Override
-		public void execute_(Container container) {
+		public void execute_(Container<?> container) {
 			Object input = container.get();
 
 			// 入力がStringの場合は新たなFileOutputStreamをセットして終了
@@ -214,6 +450,8 @@ public class ZipDecoder {
 				out_.write(bytes.getBytes(), 0, bytes.getLength());
 			} catch (IOException e) {
 				throw new RuntimeException(e);
+			} finally {
+				bytes.release();
 			}
 		}
 
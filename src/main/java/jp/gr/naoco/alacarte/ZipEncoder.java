@@ -1,6 +1,5 @@
 package jp.gr.naoco.alacarte;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -8,6 +7,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -18,6 +23,8 @@ import jp.gr.naoco.chain.Chain;
 import jp.gr.naoco.chain.Consumer;
 import jp.gr.naoco.chain.ConsumerFilter;
 import jp.gr.naoco.chain.ConsumerProducer;
+import jp.gr.naoco.chain.ConsumerProducerFactory;
+import jp.gr.naoco.chain.ConsumerProducerInterface;
 import jp.gr.naoco.chain.Container;
 import jp.gr.naoco.chain.Producer;
 import jp.gr.naoco.chain.queue.ProducerQueue;
@@ -31,17 +38,27 @@ public class ZipEncoder {
 
 	private int compressionLevel_ = Deflater.DEFAULT_COMPRESSION;
 
-	private int bufferSize_ = 1024;
+	private int bufferSize_ = 0;
 
 	private boolean parallel_ = false;
 
+	private int deflateThreads_ = 1;
+
+	private StreamBufferPool pool_ = StreamBufferPool.getDefault();
+
 	private static final String TEMP_SUFFIX = ".tmp";
 
+	/** 並列圧縮でのブロックのデフォルトのバイト数 */
+	private static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+	/** 並列圧縮で、スレッドごとにキューに滞留させるブロック数 */
+	private static final int BLOCKS_PER_THREAD = 2;
+
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Constructor
 
 	/**
-	 * このコンストラクタは new ZipEncoder(Deflater.DEFAULT_COMPRESSION, 1024, false)
+	 * このコンストラクタは new ZipEncoder(Deflater.DEFAULT_COMPRESSION, 0, false)
 	 * を呼び出すのと同等。
 	 */
 	public ZipEncoder() {
@@ -54,7 +71,7 @@ public class ZipEncoder {
 	 * @param compressionLevel
 	 *            ZipOutputStream#setLevelで指定する圧縮レベル
 	 * @param bufferSize
-	 *            InputStream読み出し時のバッファサイズ
+	 *            InputStream読み出し時のバッファサイズ（0以下の場合は入力サイズに応じて決定する）
 	 * @param parallel
 	 *            Zip出力を現在のスレッドに対して、別スレッド実行とする場合はtrue、順次実行とする場合はfalse
 	 */
@@ -64,9 +81,46 @@ public class ZipEncoder {
 		parallel_ = parallel;
 	}
 
+	/**
+	 * 圧縮処理を複数スレッドで並列実行するZipエンコーダを生成
+	 * <p>
+	 * 入力をbufferSizeごとのブロックに分割し、deflateThreads個のスレッドで各ブロックを独立に圧縮する。
+	 * 各ブロックは直前のブロックの末尾32KBを辞書として圧縮するため、圧縮率は1スレッドで圧縮した場合とほぼ同等となる。
+	 * 複数のエントリのブロックも同じスレッドプールで並列に圧縮する。<br/>
+	 * 圧縮済みのブロックは入力順に連結し、データディスクリプタ付きの標準のZip形式で出力する。
+	 * </p>
+	 * <p>
+	 * 本モードはZIP64に対応しないため、エントリのサイズとアーカイブのサイズはそれぞれ4GB未満、エントリ数は65535以下とすること。
+	 * </p>
+	 * 
+	 * @param compressionLevel
+	 *            Deflaterの圧縮レベル
+	 * @param bufferSize
+	 *            圧縮ブロックのバイト数（0以下の場合は128KB）
+	 * @param parallel
+	 *            Zip出力を現在のスレッドに対して、別スレッド実行とする場合はtrue、順次実行とする場合はfalse
+	 *            （deflateThreadsが2以上の場合は、常に別スレッドで出力する）
+	 * @param deflateThreads
+	 *            圧縮処理のスレッド数（1以下の場合は従来通りZipOutputStreamで圧縮する）
+	 */
+	public ZipEncoder(int compressionLevel, int bufferSize, boolean parallel, int deflateThreads) {
+		this(compressionLevel, bufferSize, parallel);
+		deflateThreads_ = deflateThreads;
+	}
+
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Methods
 
+	/**
+	 * バイト配列のプールを指定する。指定しない場合は{@link StreamBufferPool#getDefault()}のプールを使用する。
+	 *
+	 * @param pool
+	 *            バイト配列のプール
+	 */
+	public void setPool(StreamBufferPool pool) {
+		pool_ = pool;
+	}
+
 	/**
 	 * InputStreamの内容をZip圧縮してファイルに出力する
 	 * 
@@ -107,22 +161,8 @@ public class ZipEncoder {
 	 * @throws IOException
 	 */
 	public void encode(InputStream in, OutputStream out, String entryName) throws IOException {
-		// 実行チェーンの生成
-		Chain chain = new Chain(new InputStreamProducer(in, entryName))
-		// InputStreamの読み込み
-				.direct(new InputStreamRelayer(bufferSize_))
-				// ZipEntryの設定
-				.direct(new ZipEntryRelayer());
-		// 並行処理によるZip出力
-		if (parallel_) {
-			chain = chain.parallel(new ZipOutputStreamConsumer(out, compressionLevel_));
-		}
-		// 順次処理によるZip出力
-		else {
-			chain = chain.direct(new ZipOutputStreamConsumer(out, compressionLevel_));
-		}
 		// 処理の実行
-		chain.execute();
+		createChain(new InputStreamProducer(in, entryName), out).execute();
 	}
 
 	private void output_(Producer producer, File outputFile) throws IOException {
@@ -134,10 +174,43 @@ public class ZipEncoder {
 		File tmpFile = new File(outputFile.getAbsoluteFile() + TEMP_SUFFIX);
 		FileOutputStream out = new FileOutputStream(tmpFile);
 
+		// 処理の実行
+		createChain(producer, out).execute();
+		LOG.debug("create:" + tmpFile.getAbsolutePath());
+
+		// 一時ファイルを本ファイルへ移動
+		outputFile.delete();
+		boolean result = tmpFile.renameTo(outputFile);
+		if (!result) {
+			throw new IllegalArgumentException(outputFile.getAbsolutePath() + " can not over write.");
+		}
+		LOG.debug("rename:" + tmpFile.getAbsolutePath() + " to " + outputFile.getAbsolutePath());
+	}
+
+	private Chain createChain(Producer producer, OutputStream out) {
+		// 並列圧縮
+		if (1 < deflateThreads_) {
+			final int compressionLevel = compressionLevel_;
+			// InputStreamのブロック分割（キューに滞留するブロック数をスレッド数に比例させ、メモリ使用量を抑える）
+			return new Chain(producer, BLOCKS_PER_THREAD * deflateThreads_).direct(
+					new DeflateBlockRelayer((0 < bufferSize_ ? bufferSize_ : DEFAULT_BLOCK_SIZE), pool_))
+					// ZipEntryの設定
+					.direct(new ZipEntryRelayer())
+					// ブロックの並列圧縮（入力順に出力）
+					.parallel(new ConsumerProducerFactory() {
+						@Override
+						public ConsumerProducerInterface newInstance() {
+							return new BlockDeflater(compressionLevel, pool_);
+						}
+					}, deflateThreads_, true)
+					// 圧縮済みブロックの連結によるZip出力（ワーカープールの出力スレッドで実行）
+					.direct(new DeflatedBlockConsumer(out));
+		}
+
 		// 実行チェーンの生成
 		Chain chain = new Chain(producer)
 		// InputStreamの読み込み
-				.direct(new InputStreamRelayer(bufferSize_))
+				.direct(new InputStreamRelayer(bufferSize_, pool_))
 				// ZipEntryの設定
 				.direct(new ZipEntryRelayer());
 		// 並行処理によるZip出力
@@ -148,17 +221,7 @@ public class ZipEncoder {
 		else {
 			chain = chain.direct(new ZipOutputStreamConsumer(out, compressionLevel_));
 		}
-		// 処理の実行
-		chain.execute();
-		LOG.debug("create:" + tmpFile.getAbsolutePath());
-
-		// 一時ファイルを本ファイルへ移動
-		outputFile.delete();
-		boolean result = tmpFile.renameTo(outputFile);
-		if (!result) {
-			throw new IllegalArgumentException(outputFile.getAbsolutePath() + " can not over write.");
-		}
-		LOG.debug("rename:" + tmpFile.getAbsolutePath() + " to " + outputFile.getAbsolutePath());
+		return chain;
 	}
 
 	// /////////////////////////////////////////////////////////////////////////////////////////////
@@ -183,8 +246,8 @@ public class ZipEncoder {
 
 		@Override
 		public void execute(ProducerQueue queue) {
-			queue.offer(new Container(entryName_));
-			queue.offer(new Container(in_));
+			queue.offer(new Container<String>(entryName_));
+			queue.offer(new Container<InputStream>(in_));
 		}
 	}
 
@@ -221,9 +284,9 @@ public class ZipEncoder {
 
 			// パスとFileInputStreamをキューへ格納
 			if (file_.isFile()) {
-				queue.offer(new Container(file_.getName()));
+				queue.offer(new Container<String>(file_.getName()));
 				try {
-					queue.offer(new Container(new FileInputStream(file_)));
+					queue.offer(new Container<FileInputStream>(new FileInputStream(file_)));
 				} catch (FileNotFoundException e) {
 					throw new RuntimeException(e);
 				}
@@ -247,9 +310,9 @@ public class ZipEncoder {
 
 				String path = child.getAbsolutePath();
 				path = path.substring(rootpath.length() + 1).replaceAll("\\\\", "/");
-				queue.offer(new Container(path));
+				queue.offer(new Container<String>(path));
 				try {
-					queue.offer(new Container(new FileInputStream(child)));
+					queue.offer(new Container<FileInputStream>(new FileInputStream(child)));
 				} catch (FileNotFoundException e) {
 					throw new RuntimeException(child.getAbsolutePath(), e);
 				}
@@ -259,14 +322,21 @@ public class ZipEncoder {
 
 	// ///////////////////////
 
-	/** InputStream を部分バイト配列毎に次の処理へ移譲する。 */
+	/**
+	 * InputStream を部分バイト配列毎に次の処理へ移譲する。
+	 * <p>
+	 * 部分バイト配列はプールから取得し、ZipOutputStreamConsumerでの出力後にプールへ返却される。
+	 * </p>
+	 */
 	private static class InputStreamRelayer extends ConsumerProducer {
 
 		private int bufferSize_;
 
+		private StreamBufferPool pool_;
+
 		private static final ConsumerFilter FILTER = new ConsumerFilter() {
 			@Override
-			public boolean accept(Container container) {
+			public boolean accept(Container<?> container) {
 				return (container.get() instanceof InputStream);
 			}
 		};
@@ -274,34 +344,33 @@ public class ZipEncoder {
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Constructor
 
-		public InputStreamRelayer(int bufferSize) {
+		public InputStreamRelayer(int bufferSize, StreamBufferPool pool) {
 			bufferSize_ = bufferSize;
+			pool_ = pool;
 		}
 
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Methods
 
 		@Override
-		public void execute_(Container container, ProducerQueue queue) {
+		public void execute_(Container<?> container, ProducerQueue queue) {
 			// InputStreamからバイト配列を順次読み込んで次の処理に渡す
+			// 読み込み単位のバイト数以上で読み込むため、BufferedInputStreamは使用しない
 			InputStream in = (InputStream) container.get();
-			BufferedInputStream buf = null;
 			try {
-				buf = new BufferedInputStream(in);
-				byte[] bytes = new byte[bufferSize_];
-				int len = 0;
-				while (0 <= (len = buf.read(bytes))) {
-					StreamBuffer obj = new StreamBuffer(bytes, len);
-					queue.offer(new Container(obj));
-					bytes = new byte[bufferSize_];
+				int chunkSize = bufferSize_;
+				if (chunkSize <= 0) {
+					// FileInputStreamのavailableは残りのバイト数を返すため、入力サイズの目安とする
+					chunkSize = StreamBufferPool.chunkSizeFor(in.available());
+				}
+				StreamBuffer buffer = null;
+				while (null != (buffer = StreamBuffer.read(in, pool_, chunkSize))) {
+					queue.offer(new Container<StreamBuffer>(buffer));
 				}
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			} finally {
 				try {
-					if (null != buf) {
-						buf.close();
-					}
 					if (null != in) {
 						in.close();
 					}
@@ -324,7 +393,7 @@ public class ZipEncoder {
 
 		private static final ConsumerFilter FILTER = new ConsumerFilter() {
 			@Override
-			public boolean accept(Container container) {
+			public boolean accept(Container<?> container) {
 				return (container.get() instanceof String);
 			}
 		};
@@ -340,9 +409,9 @@ public class ZipEncoder {
 		// Methods
 
 		@Override
-		public void execute_(Container container, ProducerQueue queue) {
+		public void execute_(Container<?> container, ProducerQueue queue) {
 			Object input = container.get();
-			queue.offer(new Container(new ZipEntry((String) input)));
+			queue.offer(new Container<ZipEntry>(new ZipEntry((String) input)));
 		}
 
 		@Override
@@ -362,7 +431,7 @@ public class ZipEncoder {
 
 		private static final ConsumerFilter FILTER = new ConsumerFilter() {
 			@Override
-			public boolean accept(Container container) {
+			public boolean accept(Container<?> container) {
 				return ((container.get() instanceof ZipEntry) || (container.get() instanceof StreamBuffer));
 			}
 		};
@@ -382,7 +451,7 @@ public class ZipEncoder {
 		// Methods
 
 		@Override
-		public void execute_(Container container) {
+		public void execute_(Container<?> container) {
 			Object input = container.get();
 
 			// 入力がZipEntryの場合はZipEntryをセットして終了
@@ -402,6 +471,8 @@ public class ZipEncoder {
 				zip_.write(bytes.getBytes(), 0, bytes.getLength());
 			} catch (IOException e) {
 				throw new RuntimeException(e);
+			} finally {
+				bytes.release();
 			}
 		}
 
@@ -425,16 +496,486 @@ public class ZipEncoder {
 
 	// ///////////////////////
 
+	/**
+	 * InputStream を圧縮ブロック毎に次の処理へ移譲する。
+	 * <p>
+	 * 各ブロックは直前のブロックを辞書として参照するため、直前のブロックの参照数を加算して渡す。
+	 * エントリの最後のブロックには、エントリ全体のCRCとサイズを設定する。
+	 * </p>
+	 */
+	private static class DeflateBlockRelayer extends ConsumerProducer {
+
+		private int blockSize_;
+
+		private StreamBufferPool pool_;
+
+		private static final ConsumerFilter FILTER = new ConsumerFilter() {
+			@Override
+			public boolean accept(Container<?> container) {
+				return (container.get() instanceof InputStream);
+			}
+		};
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Constructor
+
+		public DeflateBlockRelayer(int blockSize, StreamBufferPool pool) {
+			blockSize_ = blockSize;
+			pool_ = pool;
+		}
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Methods
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			InputStream in = (InputStream) container.get();
+			CRC32 crc = new CRC32();
+			long size = 0L;
+			StreamBuffer dictionary = null;
+			try {
+				// 最後のブロックを判定するため、1ブロック先読みする
+				StreamBuffer current = StreamBuffer.read(in, pool_, blockSize_);
+				while (null != current) {
+					StreamBuffer next = null;
+					try {
+						crc.update(current.getBytes(), 0, current.getLength());
+						size += current.getLength();
+						next = StreamBuffer.read(in, pool_, blockSize_);
+					} catch (IOException e) {
+						current.release();
+						throw e;
+					}
+					DeflateBlock block = new DeflateBlock(current, dictionary, (null == next));
+					if (null != next) {
+						// 次のブロックの辞書として参照する
+						dictionary = current.retain();
+					} else {
+						block.setEntryInfo(crc.getValue(), size);
+					}
+					queue.offer(new Container<DeflateBlock>(block));
+					current = next;
+				}
+				if (0L == size) {
+					// 空のエントリ
+					DeflateBlock block = new DeflateBlock(null, null, true);
+					block.setEntryInfo(crc.getValue(), size);
+					queue.offer(new Container<DeflateBlock>(block));
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			} finally {
+				try {
+					if (null != in) {
+						in.close();
+					}
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+
+		@Override
+		public ConsumerFilter getDefaultFilter() {
+			return FILTER;
+		}
+	}
+
+	// ///////////////////////
+
+	/** 圧縮前のブロック */
+	private static class DeflateBlock {
+		private final StreamBuffer buffer_;
+		private final StreamBuffer dictionary_;
+		private final boolean last_;
+		private long crc_;
+		private long size_;
+
+		private DeflateBlock(StreamBuffer buffer, StreamBuffer dictionary, boolean last) {
+			buffer_ = buffer;
+			dictionary_ = dictionary;
+			last_ = last;
+		}
+
+		private void setEntryInfo(long crc, long size) {
+			crc_ = crc;
+			size_ = size;
+		}
+	}
+
+	// ///////////////////////
+
+	/** 圧縮済みのブロック */
+	private static class DeflatedBlock {
+		private final StreamBuffer buffer_;
+		private final boolean last_;
+		private final long crc_;
+		private final long size_;
+
+		private DeflatedBlock(StreamBuffer buffer, DeflateBlock block) {
+			buffer_ = buffer;
+			last_ = block.last_;
+			crc_ = block.crc_;
+			size_ = block.size_;
+		}
+	}
+
+	// ///////////////////////
+
+	/**
+	 * ブロックを独立に圧縮する。ワーカープールのスレッドごとに生成する。
+	 * <p>
+	 * エントリの途中のブロックはSYNC_FLUSHでバイト境界に揃えて終了し、最後のブロックのみFINISHで終了するため、
+	 * 圧縮済みのブロックを順に連結すると1つのDEFLATEストリームとなる。
+	 * </p>
+	 */
+	private static class BlockDeflater extends ConsumerProducer {
+
+		private final Deflater deflater_;
+
+		private StreamBufferPool pool_;
+
+		/** DEFLATEの辞書の最大バイト数 */
+		private static final int DICTIONARY_SIZE = 32 * 1024;
+
+		private static final ConsumerFilter FILTER = new ConsumerFilter() {
+			@Override
+			public boolean accept(Container<?> container) {
+				return (container.get() instanceof DeflateBlock);
+			}
+		};
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Constructor
+
+		public BlockDeflater(int compressionLevel, StreamBufferPool pool) {
+			deflater_ = new Deflater(compressionLevel, true);
+			pool_ = pool;
+		}
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Methods
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			DeflateBlock block = (DeflateBlock) container.get();
+			StreamBuffer output = null;
+			try {
+				deflater_.reset();
+				if (null != block.dictionary_) {
+					StreamBuffer dictionary = block.dictionary_;
+					int length = Math.min(DICTIONARY_SIZE, dictionary.getLength());
+					deflater_.setDictionary(dictionary.getBytes(), dictionary.getLength() - length, length);
+				}
+				int inputLength = 0;
+				if (null != block.buffer_) {
+					inputLength = block.buffer_.getLength();
+					deflater_.setInput(block.buffer_.getBytes(), 0, inputLength);
+				}
+				output = pool_.acquire(inputLength + (inputLength >> 3) + 64);
+				int length = 0;
+				if (block.last_) {
+					deflater_.finish();
+					while (!deflater_.finished()) {
+						output = ensureCapacity(output, length);
+						length += deflater_.deflate(output.getBytes(), length, output.getBytes().length - length);
+					}
+				} else {
+					// 出力バッファが満杯で終了した場合は、フラッシュが完了していないため繰り返す
+					int capacity = 0;
+					int len = 0;
+					do {
+						output = ensureCapacity(output, length);
+						capacity = output.getBytes().length - length;
+						len = deflater_.deflate(output.getBytes(), length, capacity, Deflater.SYNC_FLUSH);
+						length += len;
+					} while (len == capacity);
+				}
+				output.setLength(length);
+			} finally {
+				if (null != block.buffer_) {
+					block.buffer_.release();
+				}
+				if (null != block.dictionary_) {
+					block.dictionary_.release();
+				}
+			}
+			queue.offer(new Container<DeflatedBlock>(new DeflatedBlock(output, block)));
+		}
+
+		@Override
+		public void finalize() {
+			deflater_.end();
+		}
+
+		@Override
+		public ConsumerFilter getDefaultFilter() {
+			return FILTER;
+		}
+
+		private StreamBuffer ensureCapacity(StreamBuffer buffer, int length) {
+			if (length < buffer.getBytes().length) {
+				return buffer;
+			}
+			StreamBuffer extended = pool_.acquire(buffer.getBytes().length * 2);
+			System.arraycopy(buffer.getBytes(), 0, extended.getBytes(), 0, length);
+			buffer.release();
+			return extended;
+		}
+	}
+
+	// ///////////////////////
+
+	/**
+	 * 圧縮済みのブロックを連結し、Zip形式でOutputStreamに出力する。
+	 * <p>
+	 * ローカルファイルヘッダの時点ではCRCとサイズが確定しないため、データディスクリプタを使用する。
+	 * </p>
+	 */
+	private static class DeflatedBlockConsumer extends Consumer {
+
+		private OutputStream out_ = null;
+
+		private long offset_ = 0L;
+
+		private CentralEntry current_ = null;
+
+		private List<CentralEntry> entries_ = new ArrayList<CentralEntry>();
+
+		private byte[] header_ = new byte[64];
+
+		private boolean failed_ = false;
+
+		private static final Charset UTF8 = Charset.forName("UTF-8");
+
+		/** データディスクリプタを使用し、エントリ名をUTF-8とするフラグ */
+		private static final int FLAG = 0x0808;
+
+		private static final int VERSION = 20;
+
+		private static final long MAX_SIZE = 0xFFFFFFFFL;
+
+		private static final ConsumerFilter FILTER = new ConsumerFilter() {
+			@Override
+			public boolean accept(Container<?> container) {
+				return ((container.get() instanceof ZipEntry) || (container.get() instanceof DeflatedBlock));
+			}
+		};
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Constructor
+
+		public DeflatedBlockConsumer(OutputStream out) {
+			out_ = out;
+		}
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Methods
+
+		@Override
+		public void execute_(Container<?> container) {
+			Object input = container.get();
+			try {
+				if (input instanceof ZipEntry) {
+					startEntry((ZipEntry) input);
+					return;
+				}
+
+				DeflatedBlock block = (DeflatedBlock) input;
+				try {
+					out_.write(block.buffer_.getBytes(), 0, block.buffer_.getLength());
+					current_.compressedSize_ += block.buffer_.getLength();
+					offset_ += block.buffer_.getLength();
+				} finally {
+					block.buffer_.release();
+				}
+				if (block.last_) {
+					endEntry(block.crc_, block.size_);
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void error(Throwable t) {
+			failed_ = true;
+		}
+
+		@Override
+		public void finalize() {
+			try {
+				// direct接続ではfinishがContainerごとに呼び出されるため、セントラルディレクトリは終了処理で出力する
+				if (!failed_ && (null == current_)) {
+					writeCentralDirectory();
+					LOG.debug("output finished.");
+				}
+				out_.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public ConsumerFilter getDefaultFilter() {
+			return FILTER;
+		}
+
+		private void startEntry(ZipEntry entry) throws IOException {
+			checkSize(offset_);
+			CentralEntry central = new CentralEntry();
+			central.name_ = entry.getName().getBytes(UTF8);
+			central.dosTime_ = toDosTime((-1 == entry.getTime()) ? System.currentTimeMillis() : entry.getTime());
+			central.offset_ = offset_;
+
+			int pos = 0;
+			pos = putInt(header_, pos, 0x04034b50L);
+			pos = putShort(header_, pos, VERSION);
+			pos = putShort(header_, pos, FLAG);
+			pos = putShort(header_, pos, ZipEntry.DEFLATED);
+			pos = putInt(header_, pos, central.dosTime_);
+			pos = putInt(header_, pos, 0L); // CRC（データディスクリプタに出力）
+			pos = putInt(header_, pos, 0L); // 圧縮後サイズ（同上）
+			pos = putInt(header_, pos, 0L); // 圧縮前サイズ（同上）
+			pos = putShort(header_, pos, central.name_.length);
+			pos = putShort(header_, pos, 0);
+			write(header_, pos);
+			write(central.name_, central.name_.length);
+			current_ = central;
+			LOG.debug(entry.getName());
+		}
+
+		private void endEntry(long crc, long size) throws IOException {
+			checkSize(size);
+			checkSize(current_.compressedSize_);
+			current_.crc_ = crc;
+			current_.size_ = size;
+
+			int pos = 0;
+			pos = putInt(header_, pos, 0x08074b50L);
+			pos = putInt(header_, pos, crc);
+			pos = putInt(header_, pos, current_.compressedSize_);
+			pos = putInt(header_, pos, size);
+			write(header_, pos);
+			entries_.add(current_);
+			current_ = null;
+		}
+
+		private void writeCentralDirectory() throws IOException {
+			if (0xFFFF < entries_.size()) {
+				throw new IllegalStateException("too many entries. size:" + entries_.size());
+			}
+			long start = offset_;
+			for (CentralEntry entry : entries_) {
+				int pos = 0;
+				pos = putInt(header_, pos, 0x02014b50L);
+				pos = putShort(header_, pos, VERSION);
+				pos = putShort(header_, pos, VERSION);
+				pos = putShort(header_, pos, FLAG);
+				pos = putShort(header_, pos, ZipEntry.DEFLATED);
+				pos = putInt(header_, pos, entry.dosTime_);
+				pos = putInt(header_, pos, entry.crc_);
+				pos = putInt(header_, pos, entry.compressedSize_);
+				pos = putInt(header_, pos, entry.size_);
+				pos = putShort(header_, pos, entry.name_.length);
+				pos = putShort(header_, pos, 0); // 拡張フィールド長
+				pos = putShort(header_, pos, 0); // コメント長
+				pos = putShort(header_, pos, 0); // ディスク番号
+				pos = putShort(header_, pos, 0); // 内部属性
+				pos = putInt(header_, pos, 0L); // 外部属性
+				pos = putInt(header_, pos, entry.offset_);
+				write(header_, pos);
+				write(entry.name_, entry.name_.length);
+			}
+			checkSize(offset_);
+			int pos = 0;
+			pos = putInt(header_, pos, 0x06054b50L);
+			pos = putShort(header_, pos, 0);
+			pos = putShort(header_, pos, 0);
+			pos = putShort(header_, pos, entries_.size());
+			pos = putShort(header_, pos, entries_.size());
+			pos = putInt(header_, pos, offset_ - start);
+			pos = putInt(header_, pos, start);
+			pos = putShort(header_, pos, 0);
+			write(header_, pos);
+			out_.flush();
+		}
+
+		private void write(byte[] bytes, int length) throws IOException {
+			out_.write(bytes, 0, length);
+			offset_ += length;
+		}
+
+		private static void checkSize(long size) {
+			if (MAX_SIZE <= size) {
+				throw new IllegalStateException("zip64 is not supported by parallel deflate. size:" + size);
+			}
+		}
+
+		private static long toDosTime(long time) {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(time);
+			int year = calendar.get(Calendar.YEAR);
+			if (year < 1980) {
+				return (1 << 21) | (1 << 16);
+			}
+			return ((long) (year - 1980) << 25) | ((long) (calendar.get(Calendar.MONTH) + 1) << 21)
+					| ((long) calendar.get(Calendar.DAY_OF_MONTH) << 16)
+					| ((long) calendar.get(Calendar.HOUR_OF_DAY) << 11)
+					| ((long) calendar.get(Calendar.MINUTE) << 5) | ((long) calendar.get(Calendar.SECOND) >> 1);
+		}
+
+		private static int putShort(byte[] bytes, int pos, int value) {
+			bytes[pos] = (byte) value;
+			bytes[pos + 1] = (byte) (value >> 8);
+			return pos + 2;
+		}
+
+		private static int putInt(byte[] bytes, int pos, long value) {
+			bytes[pos] = (byte) value;
+			bytes[pos + 1] = (byte) (value >> 8);
+			bytes[pos + 2] = (byte) (value >> 16);
+			bytes[pos + 3] = (byte) (value >> 24);
+			return pos + 4;
+		}
+
+		/** セントラルディレクトリに出力するエントリの情報 */
+		private static class CentralEntry {
+			private byte[] name_;
+			private long dosTime_;
+			private long offset_;
+			private long crc_;
+			private long compressedSize_;
+			private long size_;
+		}
+	}
+
+	// ///////////////////////
+
+	/**
+	 * ストリームの部分バイト配列
+	 * <p>
+	 * {@link StreamBufferPool}から取得した場合は参照数を持ち、参照数が0になった時点でバイト配列をプールに返却する。
+	 * 出力を終えた最後の参照元は{@link #release()}を呼び出すこと。返却後はバイト配列を参照してはならない。
+	 * </p>
+	 */
 	public static class StreamBuffer {
 		private byte[] bytes_;
 		private int length_;
+		private StreamBufferPool pool_;
+		private final AtomicInteger refCount_ = new AtomicInteger(1);
 
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Constructor
 
 		public StreamBuffer(byte[] bytes, int length) {
+			this(bytes, length, null);
+		}
+
+		StreamBuffer(byte[] bytes, int length, StreamBufferPool pool) {
 			bytes_ = bytes;
 			length_ = length;
+			pool_ = pool;
 		}
 
 		// /////////////////////////////////////////////////////////////////////////////////////////
@@ -447,6 +988,69 @@ public class ZipEncoder {
 		public int getLength() {
 			return length_;
 		}
+
+		void setLength(int length) {
+			length_ = length;
+		}
+
+		/**
+		 * 参照元を追加する。追加した参照元もそれぞれ{@link #release()}を呼び出すこと。
+		 *
+		 * @return 本オブジェクト
+		 */
+		public StreamBuffer retain() {
+			if (refCount_.getAndIncrement() <= 0) {
+				refCount_.getAndDecrement();
+				throw new IllegalStateException("buffer is already released.");
+			}
+			return this;
+		}
+
+		/**
+		 * 参照を解放する。参照数が0になった場合は、バイト配列をプールに返却する。
+		 */
+		public void release() {
+			int count = refCount_.decrementAndGet();
+			if ((0 == count) && (null != pool_)) {
+				byte[] bytes = bytes_;
+				bytes_ = null;
+				pool_.recycle(bytes);
+			} else if (count < 0) {
+				throw new IllegalStateException("buffer is already released.");
+			}
+		}
+
+		/**
+		 * InputStreamから、プールのバイト配列が満杯になるか終端に達するまで読み込む。
+		 *
+		 * @param in
+		 *            入力ストリーム
+		 * @param pool
+		 *            バイト配列のプール
+		 * @param size
+		 *            読み込み単位のバイト数
+		 * @return 読み込んだ部分バイト配列（終端に達して読み込むデータがない場合はnull）
+		 * @throws IOException
+		 */
+		static StreamBuffer read(InputStream in, StreamBufferPool pool, int size) throws IOException {
+			StreamBuffer buffer = pool.acquire(size);
+			int length = 0;
+			try {
+				int len = 0;
+				while ((length < size) && (0 <= (len = in.read(buffer.bytes_, length, size - length)))) {
+					length += len;
+				}
+			} catch (IOException e) {
+				buffer.release();
+				throw e;
+			}
+			if (0 == length) {
+				buffer.release();
+				return null;
+			}
+			buffer.length_ = length;
+			return buffer;
+		}
 	}
 
 	// /////////////////////////////////////////////////////////////////////////////////////////////
@@ -9,14 +9,14 @@ import jp.gr.naoco.chain.queue.ProducerQueue;
 public abstract class BufferedConsumerProducer extends ConsumerProducer {
 	protected int bufferSize_ = 1000;
 
-	private List<Container> buffer_ = new ArrayList<Container>();
+	private List<Container<?>> buffer_ = new ArrayList<Container<?>>();
 
 	@Override
-	public void execute(Iterator<Container> containers, ProducerQueue queue, ConsumerFilter filter) {
+	public void execute(Iterator<Container<?>> containers, ProducerQueue queue, ConsumerFilter filter) {
 		init();
 		try {
 			while (containers.hasNext()) {
-				Container container = containers.next();
+				Container<?> container = containers.next();
 				if (!filter.accept(container)) {
 					queue.offer(container);
 					continue;
@@ -37,8 +37,9 @@ public abstract class BufferedConsumerProducer extends ConsumerProducer {
 	}
 
 	private void doOffer(ProducerQueue queue, ConsumerFilter filter) {
-		for (Container container : buffer_) {
-			execute_(container, queue);
+		SequenceQueue sequenceQueue = new SequenceQueue(queue);
+		for (Container<?> container : buffer_) {
+			execute(container, sequenceQueue);
 		}
 		buffer_.clear();
 	}
@@ -4,11 +4,20 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import jp.gr.naoco.chain.metrics.ChainMetrics;
+import jp.gr.naoco.chain.metrics.MeasuredProducerQueue;
+import jp.gr.naoco.chain.metrics.StageMetrics;
+import jp.gr.naoco.chain.queue.BackpressureProducerQueue;
 import jp.gr.naoco.chain.queue.DirectProducerQueue;
-import jp.gr.naoco.chain.queue.ParallelProducerQueue;
+import jp.gr.naoco.chain.queue.InterruptibleProducerQueue;
+import jp.gr.naoco.chain.queue.MergeProducerQueue;
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
+import jp.gr.naoco.chain.queue.PartitionedProducerQueue;
 import jp.gr.naoco.chain.queue.ProducerQueue;
 import jp.gr.naoco.chain.queue.SequentialProducerQueue;
+import jp.gr.naoco.chain.queue.SharedProducerQueue;
 import jp.gr.naoco.core.log.LaolLogger;
+import jp.gr.naoco.core.transaction.TransactionBarrierFactory;
 
 public class Chain {
 
@@ -24,23 +33,43 @@ public class Chain {
 
 	private int queueSize_ = MAX_QUEUE_SIZE;
 
+	private ParallelQueueFactory queueFactory_ = ParallelQueueFactory.BLOCKING;
+
+	private ChainExecutor executor_ = ChainExecutor.getDefault();
+
+	private ChainMetrics metrics_ = null;
+
+	/** 次に接続する要素に渡るContainerのオブジェクトの型（不明の場合はnull） */
+	private Class<?> outputType_ = null;
+
 	private static final int MAX_QUEUE_SIZE = 1000;
 
 	private static final long WAIT_TIME_MINTUES = 120L;
 
+	private static final long BATCH_LINGER_MILLIS = 10L;
+
 	private static final Consumer TERMINATE_CONSUMER = new Consumer() {
 		@Override
-		public void execute_(Container container) {
+		public void execute_(Container<?> container) {
 			// nothing to do
 		}
 	};
 
+	/** 先頭のProducerがDemandProducerの場合のキューのファクトリ（要素ごとにConsumerを起床する） */
+	private static final ParallelQueueFactory DEMAND_QUEUE_FACTORY = new ParallelQueueFactory() {
+		@Override
+		public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes) {
+			return new SharedProducerQueue(maxQueueSize, waitTimeMinutes, false);
+		}
+	};
+
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Constructor
 
 	public Chain(Producer producer) {
 		producer_ = producer;
 		brokerList_ = new ArrayList<Broker>();
+		outputType_ = outputTypeOf(producer);
 	}
 
 	public Chain(Producer producer, int queueSize) {
@@ -48,17 +77,89 @@ public class Chain {
 		queueSize_ = queueSize;
 	}
 
-	private Chain(ConsumerProducerInterface consumerProducer, ArrayList<Broker> brokerList, int queueSize) {
+	/**
+	 * コンストラクタ
+	 * <p>
+	 * parallel接続で使用するキューの実装を指定する。ProducerとConsumerがそれぞれ1スレッドのみのため、
+	 * {@link ParallelQueueFactory#RING_BUFFER}を指定すると、キューの受け渡しでロックの取得とオブジェクトの生成を行わない。
+	 * </p>
+	 *
+	 * @param producer 先頭のProducer
+	 * @param queueSize parallel接続のキューの最大要素数
+	 * @param queueFactory parallel接続のキューのファクトリ
+	 */
+	public Chain(Producer producer, int queueSize, ParallelQueueFactory queueFactory) {
+		this(producer, queueSize);
+		queueFactory_ = queueFactory;
+	}
+
+	/**
+	 * コンストラクタ
+	 * <p>
+	 * parallel接続で、最大batchSize個のContainerをまとめてスレッド間で受け渡す。
+	 * ConsumerとConsumerProducerには、従来通りContainerを1個ずつ渡す。
+	 * </p>
+	 *
+	 * @param producer 先頭のProducer
+	 * @param queueSize parallel接続のキューの最大要素数
+	 * @param batchSize まとめて受け渡すContainerの最大数
+	 */
+	public Chain(Producer producer, int queueSize, int batchSize) {
+		this(producer, queueSize, batchSize, BATCH_LINGER_MILLIS);
+	}
+
+	/**
+	 * コンストラクタ
+	 * <p>
+	 * parallel接続で、最大batchSize個のContainerをまとめてスレッド間で受け渡す。
+	 * 最初のContainerのofferからlingerMillisを経過した場合は、batchSize個に満たなくても受け渡す。<br/>
+	 * 受け渡したContainerをConsumerが遅延なく受け取るよう、内部のキューには{@link ParallelQueueFactory#RING_BUFFER}を使用する。
+	 * 内部のキューを指定する場合は、{@link ParallelQueueFactory#batching(ParallelQueueFactory, int, long)}を使用する。
+	 * </p>
+	 *
+	 * @param producer 先頭のProducer
+	 * @param queueSize parallel接続のキューの最大要素数
+	 * @param batchSize まとめて受け渡すContainerの最大数
+	 * @param lingerMillis まとめて受け渡すまでの最大待機時間（ミリ秒）
+	 * @see jp.gr.naoco.chain.queue.BatchingProducerQueue
+	 */
+	public Chain(Producer producer, int queueSize, int batchSize, long lingerMillis) {
+		this(producer, queueSize, ParallelQueueFactory.batching(ParallelQueueFactory.RING_BUFFER, batchSize,
+				lingerMillis));
+	}
+
+	/**
+	 * コンストラクタ
+	 * <p>
+	 * parallel接続とワーカープール接続で、別スレッドの処理を実行するエクゼキュータを指定する。
+	 * 指定しない場合は{@link ChainExecutor#getDefault()}を使用する。
+	 * </p>
+	 *
+	 * @param producer 先頭のProducer
+	 * @param queueSize parallel接続のキューの最大要素数
+	 * @param queueFactory parallel接続のキューのファクトリ
+	 * @param executor 別スレッドの処理を実行するエクゼキュータ
+	 */
+	public Chain(Producer producer, int queueSize, ParallelQueueFactory queueFactory, ChainExecutor executor) {
+		this(producer, queueSize, queueFactory);
+		executor_ = executor;
+	}
+
+	private Chain(ConsumerProducerInterface consumerProducer, ArrayList<Broker> brokerList, int queueSize,
+			ParallelQueueFactory queueFactory, ChainExecutor executor, ChainMetrics metrics) {
 		consumerProducer_ = consumerProducer;
 		brokerList_ = brokerList;
 		queueSize_ = queueSize;
+		queueFactory_ = queueFactory;
+		executor_ = executor;
+		metrics_ = metrics;
 	}
 
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Methods
 
 	public Chain direct(Consumer consumer) {
-		return direct(consumer, consumer.getDefaultFilter());
+		return direct(consumer, defaultFilter(consumer));
 	}
 
 	public Chain direct(Consumer consumer, ConsumerFilter filter) {
@@ -67,12 +168,12 @@ public class Chain {
 		} else {
 			brokerList_.add(new DirectBroker(consumerProducer_, consumer, filter));
 		}
-		interruptBrokerList_ = (ArrayList<Broker>) brokerList_.clone();
+		interruptBrokerList_ = new ArrayList<Broker>(brokerList_);
 		return this;
 	}
 
 	public Chain direct(ConsumerProducer consumerProducer) {
-		return direct(consumerProducer, consumerProducer.getDefaultFilter());
+		return direct(consumerProducer, defaultFilter(consumerProducer));
 	}
 
 	public Chain direct(ConsumerProducer consumerProducer, ConsumerFilter filter) {
@@ -81,16 +182,13 @@ public class Chain {
 		} else {
 			brokerList_.add(new DirectBroker(consumerProducer_, consumerProducer, filter));
 		}
-		nextChain_ = new Chain(consumerProducer, brokerList_, queueSize_);
+		nextChain_ = new Chain(consumerProducer, brokerList_, queueSize_, queueFactory_, executor_, metrics_);
+		nextChain_.outputType_ = outputTypeOf(consumerProducer, filter);
 		return nextChain_;
 	}
 
 	public Chain sequential(ConsumerInterface consumer) {
-		if (consumer instanceof Consumer) {
-			return sequential(consumer, ((Consumer) consumer).getDefaultFilter());
-		} else {
-			return sequential(consumer, ConsumerFilter.PASS_THROUGH_FILTER);
-		}
+		return sequential(consumer, defaultFilter(consumer));
 	}
 
 	public Chain sequential(ConsumerInterface consumer, ConsumerFilter filter) {
@@ -99,16 +197,12 @@ public class Chain {
 		} else {
 			brokerList_.add(new SequentialBroker(consumerProducer_, consumer, filter));
 		}
-		interruptBrokerList_ = (ArrayList<Broker>) brokerList_.clone();
+		interruptBrokerList_ = new ArrayList<Broker>(brokerList_);
 		return this;
 	}
 
 	public Chain sequential(ConsumerProducerInterface consumerProducer) {
-		if (consumerProducer instanceof ConsumerProducer) {
-			return sequential(consumerProducer, ((ConsumerProducer) consumerProducer).getDefaultFilter());
-		} else {
-			return sequential(consumerProducer, ConsumerFilter.PASS_THROUGH_FILTER);
-		}
+		return sequential(consumerProducer, defaultFilter(consumerProducer));
 	}
 
 	public Chain sequential(ConsumerProducerInterface consumerProducer, ConsumerFilter filter) {
@@ -117,43 +211,216 @@ public class Chain {
 		} else {
 			brokerList_.add(new SequentialBroker(consumerProducer_, consumerProducer, filter));
 		}
-		nextChain_ = new Chain(consumerProducer, brokerList_, queueSize_);
+		nextChain_ = new Chain(consumerProducer, brokerList_, queueSize_, queueFactory_, executor_, metrics_);
+		nextChain_.outputType_ = outputTypeOf(consumerProducer, filter);
 		return nextChain_;
 	}
 
 	public Chain parallel(ConsumerInterface consumer) {
-		if (consumer instanceof Consumer) {
-			return parallel(consumer, ((Consumer) consumer).getDefaultFilter());
-		} else {
-			return parallel(consumer, ConsumerFilter.PASS_THROUGH_FILTER);
-		}
+		return parallel(consumer, defaultFilter(consumer));
 	}
 
 	public Chain parallel(ConsumerInterface consumer, ConsumerFilter filter) {
+		return parallel(consumer, filter, queueFactory_);
+	}
+
+	/**
+	 * parallel接続
+	 * <p>
+	 * この接続のキューのみ、指定したファクトリで生成する。
+	 * {@link ParallelQueueFactory#backpressure(jp.gr.naoco.chain.queue.BackpressurePolicy)}で接続ごとにバックプレッシャーを設定できる。
+	 * </p>
+	 *
+	 * @param consumer Consumer
+	 * @param filter フィルタ
+	 * @param queueFactory この接続のキューのファクトリ
+	 * @return このChain
+	 */
+	public Chain parallel(ConsumerInterface consumer, ConsumerFilter filter, ParallelQueueFactory queueFactory) {
 		if (null != producer_) {
-			brokerList_.add(new ParallelBroker(producer_, consumer, filter, queueSize_));
+			brokerList_.add(new ParallelBroker(producer_, consumer, filter, queueSize_, queueFactory, executor_));
 		} else {
-			brokerList_.add(new ParallelBroker(consumerProducer_, consumer, filter, queueSize_));
+			brokerList_.add(new ParallelBroker(consumerProducer_, consumer, filter, queueSize_, queueFactory,
+					executor_));
 		}
-		interruptBrokerList_ = (ArrayList<Broker>) brokerList_.clone();
+		interruptBrokerList_ = new ArrayList<Broker>(brokerList_);
 		return this;
 	}
 
 	public Chain parallel(ConsumerProducerInterface consumerProducer) {
-		if (consumerProducer instanceof ConsumerProducer) {
-			return parallel(consumerProducer, ((ConsumerProducer) consumerProducer).getDefaultFilter());
-		} else {
-			return parallel(consumerProducer, ConsumerFilter.PASS_THROUGH_FILTER);
-		}
+		return parallel(consumerProducer, defaultFilter(consumerProducer));
 	}
 
 	public Chain parallel(ConsumerProducerInterface consumerProducer, ConsumerFilter filter) {
+		return parallel(consumerProducer, filter, queueFactory_);
+	}
+
+	/**
+	 * parallel接続
+	 * <p>
+	 * この接続のキューのみ、指定したファクトリで生成する。
+	 * </p>
+	 *
+	 * @param consumerProducer ConsumerProducer
+	 * @param filter フィルタ
+	 * @param queueFactory この接続のキューのファクトリ
+	 * @return 次の要素を接続するChain
+	 * @see #parallel(ConsumerInterface, ConsumerFilter, ParallelQueueFactory)
+	 */
+	public Chain parallel(ConsumerProducerInterface consumerProducer, ConsumerFilter filter,
+			ParallelQueueFactory queueFactory) {
 		if (null != producer_) {
-			brokerList_.add(new ParallelBroker(producer_, consumerProducer, filter, queueSize_));
+			brokerList_.add(new ParallelBroker(producer_, consumerProducer, filter, queueSize_, queueFactory,
+					executor_));
 		} else {
-			brokerList_.add(new ParallelBroker(consumerProducer_, consumerProducer, filter, queueSize_));
+			brokerList_.add(new ParallelBroker(consumerProducer_, consumerProducer, filter, queueSize_, queueFactory,
+					executor_));
 		}
-		nextChain_ = new Chain(consumerProducer, brokerList_, queueSize_);
+		nextChain_ = new Chain(consumerProducer, brokerList_, queueSize_, queueFactory_, executor_, metrics_);
+		nextChain_.outputType_ = outputTypeOf(consumerProducer, filter);
+		return nextChain_;
+	}
+
+	/**
+	 * ワーカープール接続
+	 * <p>
+	 * nThreads個のスレッドが1つのキューからContainerを取り合い、スレッドごとにファクトリで生成したConsumerを実行する。<br/>
+	 * Consumerはスレッドごとに生成するため、インスタンスの状態をスレッド間で共有しない。
+	 * </p>
+	 *
+	 * @param factory Consumerのファクトリ
+	 * @param nThreads ワーカースレッド数
+	 * @return このChain
+	 */
+	public Chain parallel(ConsumerFactory factory, int nThreads) {
+		return parallel(factory, null, nThreads);
+	}
+
+	/**
+	 * ワーカープール接続
+	 *
+	 * @param factory Consumerのファクトリ
+	 * @param filter フィルタ（nullの場合は生成したConsumerのデフォルトフィルタ）
+	 * @param nThreads ワーカースレッド数
+	 * @return このChain
+	 * @see #parallel(ConsumerFactory, int)
+	 */
+	public Chain parallel(ConsumerFactory factory, ConsumerFilter filter, int nThreads) {
+		List<Object> consumers = new ArrayList<Object>(nThreads);
+		for (int i = 0; i < nThreads; i++) {
+			consumers.add(factory.newInstance());
+		}
+		if ((null == filter) && !consumers.isEmpty()) {
+			filter = defaultFilter(consumers.get(0));
+		}
+		addWorkerPoolBroker(consumers, filter, false, null);
+		interruptBrokerList_ = new ArrayList<Broker>(brokerList_);
+		return this;
+	}
+
+	/**
+	 * ワーカープール接続
+	 * <p>
+	 * nThreads個のスレッドが1つのキューからContainerを取り合い、スレッドごとにファクトリで生成したConsumerProducerを実行する。<br/>
+	 * 各スレッドがofferしたContainerは1つのキューにまとめて、次の要素に渡す。次の要素に渡す順序は保証しない。
+	 * </p>
+	 *
+	 * @param factory ConsumerProducerのファクトリ
+	 * @param nThreads ワーカースレッド数
+	 * @return 次の要素を接続するChain
+	 */
+	public Chain parallel(ConsumerProducerFactory factory, int nThreads) {
+		return parallel(factory, null, nThreads, false);
+	}
+
+	/**
+	 * ワーカープール接続
+	 *
+	 * @param factory ConsumerProducerのファクトリ
+	 * @param nThreads ワーカースレッド数
+	 * @param ordered trueの場合、前の要素がofferした順序で、次の要素にContainerを渡す
+	 * @return 次の要素を接続するChain
+	 * @see #parallel(ConsumerProducerFactory, ConsumerFilter, int, boolean)
+	 */
+	public Chain parallel(ConsumerProducerFactory factory, int nThreads, boolean ordered) {
+		return parallel(factory, null, nThreads, ordered);
+	}
+
+	/**
+	 * ワーカープール接続
+	 * <p>
+	 * orderedがtrueの場合、前の要素がofferしたContainerの順序で、各Containerの処理中にofferされたContainerを次の要素に渡す。
+	 * このため、Containerの処理中にofferを完了しないConsumerProducer（{@link BufferedConsumerProducer}など）は指定できない。
+	 * </p>
+	 *
+	 * @param factory ConsumerProducerのファクトリ
+	 * @param filter フィルタ（nullの場合は生成したConsumerProducerのデフォルトフィルタ）
+	 * @param nThreads ワーカースレッド数
+	 * @param ordered trueの場合、前の要素がofferした順序で、次の要素にContainerを渡す
+	 * @return 次の要素を接続するChain
+	 */
+	public Chain parallel(ConsumerProducerFactory factory, ConsumerFilter filter, int nThreads, boolean ordered) {
+		List<Object> consumerProducers = new ArrayList<Object>(nThreads);
+		for (int i = 0; i < nThreads; i++) {
+			consumerProducers.add(factory.newInstance());
+		}
+		if ((null == filter) && !consumerProducers.isEmpty()) {
+			filter = defaultFilter(consumerProducers.get(0));
+		}
+		addWorkerPoolBroker(consumerProducers, filter, ordered, null);
+		nextChain_ = new Chain(new MergeConsumerProducer(), brokerList_, queueSize_, queueFactory_, executor_, metrics_);
+		nextChain_.outputType_ = outputTypeOf(consumerProducers.get(0), filter);
+		return nextChain_;
+	}
+
+	/**
+	 * パーティション接続
+	 * <p>
+	 * keyExtractorで取得したキーのハッシュ値で、ContainerをnPartitions個のスレッドに振り分け、スレッドごとにファクトリで生成したConsumerを実行する。<br/>
+	 * 同じキーのContainerは同じスレッドで前の要素がofferした順に処理し、異なるキーのContainerは並行して処理する。
+	 * </p>
+	 * <p>
+	 * スレッドごとにキューを持ち、各キューの最大要素数はChainのキューの最大要素数となる。
+	 * </p>
+	 *
+	 * @param keyExtractor キーの取得方法
+	 * @param nPartitions パーティション数（スレッド数）
+	 * @param factory Consumerのファクトリ
+	 * @return このChain
+	 */
+	public Chain partitioned(KeyExtractor keyExtractor, int nPartitions, ConsumerFactory factory) {
+		List<Object> consumers = new ArrayList<Object>(nPartitions);
+		for (int i = 0; i < nPartitions; i++) {
+			consumers.add(factory.newInstance());
+		}
+		ConsumerFilter filter = (consumers.isEmpty() ? null : defaultFilter(consumers.get(0)));
+		addWorkerPoolBroker(consumers, filter, false, keyExtractor);
+		interruptBrokerList_ = new ArrayList<Broker>(brokerList_);
+		return this;
+	}
+
+	/**
+	 * パーティション接続
+	 * <p>
+	 * keyExtractorで取得したキーのハッシュ値で、ContainerをnPartitions個のスレッドに振り分け、スレッドごとにファクトリで生成したConsumerProducerを実行する。<br/>
+	 * 各スレッドがofferしたContainerは1つのキューにまとめて、次の要素に渡す。
+	 * 同じキーのContainerの処理中にofferされたContainerは、その順序で次の要素に渡す。異なるキー間の順序は保証しない。
+	 * </p>
+	 *
+	 * @param keyExtractor キーの取得方法
+	 * @param nPartitions パーティション数（スレッド数）
+	 * @param factory ConsumerProducerのファクトリ
+	 * @return 次の要素を接続するChain
+	 */
+	public Chain partitioned(KeyExtractor keyExtractor, int nPartitions, ConsumerProducerFactory factory) {
+		List<Object> consumerProducers = new ArrayList<Object>(nPartitions);
+		for (int i = 0; i < nPartitions; i++) {
+			consumerProducers.add(factory.newInstance());
+		}
+		ConsumerFilter filter = (consumerProducers.isEmpty() ? null : defaultFilter(consumerProducers.get(0)));
+		addWorkerPoolBroker(consumerProducers, filter, false, keyExtractor);
+		nextChain_ = new Chain(new MergeConsumerProducer(), brokerList_, queueSize_, queueFactory_, executor_, metrics_);
+		nextChain_.outputType_ = outputTypeOf(consumerProducers.get(0), filter);
 		return nextChain_;
 	}
 
@@ -161,6 +428,22 @@ public class Chain {
 		return direct(TERMINATE_CONSUMER);
 	}
 
+	/**
+	 * Chainの各接続の計測を有効にする。
+	 * <p>
+	 * 本メソッドの呼出し後に接続した要素と、本Chainの実行時に、接続ごとのContainerの件数、キューの滞留数、
+	 * ProducerとConsumerの待機時間、Consumerの1件あたりの処理時間を計測する。
+	 * 計測を有効にしない場合、キューは従来通りの実装をそのまま使用する。
+	 * </p>
+	 *
+	 * @param metrics 計測値の格納先（nullの場合は計測しない）
+	 * @return 本Chain
+	 */
+	public Chain metrics(ChainMetrics metrics) {
+		metrics_ = metrics;
+		return this;
+	}
+
 	public void execute() {
 		LOG.debug("start");
 		this.executeWithoutJoin();
@@ -168,6 +451,50 @@ public class Chain {
 		LOG.debug("end");
 	}
 
+	/**
+	 * チェックポイントに記録した位置から再開して実行する。
+	 * <p>
+	 * ProducerはResumableProducerであること。チェックポイントの再開位置をProducerに渡して実行し、
+	 * 異常終了した場合、あるいはProducerがofferしたすべての要素の処理完了の通知を受けずに終了した場合は、再開位置をファイルに記録する。
+	 * すべての要素の処理完了の通知を受けて終了した場合は、チェックポイントのファイルを削除する。
+	 * </p>
+	 *
+	 * @param resumeFrom チェックポイント
+	 */
+	public void execute(Checkpoint resumeFrom) {
+		// 後続のChainから呼び出した場合も、先頭のProducerを再開する
+		Producer root = (brokerList_.isEmpty() ? producer_ : brokerList_.get(0).getProducer());
+		if (!(root instanceof ResumableProducer)) {
+			throw new IllegalStateException("Producer is not ResumableProducer.");
+		}
+		ResumableProducer producer = (ResumableProducer) root;
+		long position = resumeFrom.getPosition();
+		LOG.info("resume from " + position);
+		producer.resume(position);
+		// フィルタで処理対象外とした要素、何もofferしなかった要素の連番を、各要素からチェックポイントに通知する
+		setCheckpoint(resumeFrom);
+		try {
+			execute();
+		} catch (Throwable t) {
+			setCheckpoint(null);
+			// 記録に失敗しても、元の例外を送出する
+			try {
+				resumeFrom.save();
+			} catch (Throwable e) {
+				LOG.error(e.getMessage(), e);
+				t.addSuppressed(e);
+			}
+			throw t;
+		}
+		setCheckpoint(null);
+		long endPosition = producer.getEndPosition();
+		if ((0 <= endPosition) && (endPosition <= resumeFrom.getPosition())) {
+			resumeFrom.clear();
+		} else {
+			resumeFrom.save();
+		}
+	}
+
 	public void executeWithoutJoin() {
 		if (brokerList_.isEmpty()) {
 			throw new IllegalStateException("Chain has no Consumer or ConsumerProducer.");
@@ -177,6 +504,15 @@ public class Chain {
 		// （ブローカに次のブローカを渡す必要があるため）
 		LOG.debug("init");
 		int size = brokerList_.size();
+		if (null != metrics_) {
+			for (int i = 0; i < size; i++) {
+				Broker broker = brokerList_.get(i);
+				if (broker instanceof MeasuredBroker) {
+					MeasuredBroker measured = (MeasuredBroker) broker;
+					measured.setMetrics(metrics_.stage(i, i + ":" + measured.getStageName()));
+				}
+			}
+		}
 		Broker next = null;
 		for (int i = (size - 1); 0 <= i; i--) {
 			Broker broker = brokerList_.get(i);
@@ -189,9 +525,9 @@ public class Chain {
 		StringBuilder builder = new StringBuilder();
 		builder.append(Thread.currentThread().getName());
 		for (Broker broker : brokerList_) {
-			if (broker instanceof ParallelBroker) {
+			if (broker instanceof ThreadedBroker) {
 				builder.append(" => ");
-				builder.append(((ParallelBroker) broker).consumerThread_.getName());
+				builder.append(((ThreadedBroker) broker).getConsumerThreadName());
 			}
 		}
 		LOG.info("Thread Chain:[" + this.getClass().getSimpleName() + "] " + builder.toString());
@@ -213,15 +549,147 @@ public class Chain {
 		return producer_;
 	}
 
+	protected ChainExecutor getExecutor() {
+		return executor_;
+	}
+
+	private void setCheckpoint(Checkpoint checkpoint) {
+		for (Broker broker : brokerList_) {
+			if (broker instanceof CheckpointBroker) {
+				((CheckpointBroker) broker).setCheckpoint(checkpoint);
+			}
+		}
+	}
+
+	/**
+	 * 別スレッドの要素で発生した例外を、呼出し元にそのまま送出する。
+	 *
+	 * @param t 別スレッドで発生した例外（nullの場合は何もしない）
+	 */
+	private static void rethrow(Throwable t) {
+		if (null == t) {
+			return;
+		}
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		throw new RuntimeException(t);
+	}
+
+	private static void attachCheckpoint(Object consumer, Checkpoint checkpoint) {
+		// 終端のConsumerは複数のChainで共有するため、設定しない
+		if (TERMINATE_CONSUMER == consumer) {
+			return;
+		}
+		// Factoryで生成した要素は、トランザクション境界のプロキシから実装クラスのインスタンスを取り出して設定する
+		Object instance = TransactionBarrierFactory.getLogicInstance(consumer);
+		if (instance instanceof Consumer) {
+			((Consumer) instance).setCheckpoint(checkpoint);
+		} else if (instance instanceof ConsumerProducer) {
+			((ConsumerProducer) instance).setCheckpoint(checkpoint);
+		} else if (null != checkpoint) {
+			LOG.warn("checkpoint is not attached to " + instance.getClass().getName()
+					+ ". skipped containers must be acknowledged by the element itself.");
+		}
+	}
+
+	private static void attachQueueCheckpoint(ProducerQueue queue, Checkpoint checkpoint) {
+		// DROP_OLDESTで破棄した要素は後続に渡らないため、キューから通知する
+		if (queue instanceof BackpressureProducerQueue) {
+			((BackpressureProducerQueue) queue).setCheckpoint(checkpoint);
+		} else if (queue instanceof PartitionedProducerQueue) {
+			((PartitionedProducerQueue) queue).setCheckpoint(checkpoint);
+		}
+	}
+
+	private void addWorkerPoolBroker(List<Object> consumers, ConsumerFilter filter, boolean ordered,
+			KeyExtractor keyExtractor) {
+		if (consumers.isEmpty()) {
+			throw new IllegalArgumentException("nThreads must be greater than 0.");
+		}
+		if (null == filter) {
+			filter = ConsumerFilter.PASS_THROUGH_FILTER;
+		}
+		Object producer = (null != producer_ ? producer_ : consumerProducer_);
+		brokerList_.add(new WorkerPoolBroker(producer, consumers, filter, queueSize_, ordered, executor_,
+				keyExtractor, queueFactory_));
+	}
+
+	/**
+	 * 要素のデフォルトフィルタを返す。
+	 * <p>
+	 * 要素が{@link TypedStage}で、前の要素が渡す型が受け取る型に代入可能な場合は、Containerごとの型の検査を省略するため、
+	 * {@link ConsumerFilter#PASS_THROUGH_FILTER}を返す。
+	 * </p>
+	 */
+	private ConsumerFilter defaultFilter(Object consumer) {
+		if ((consumer instanceof TypedStage) && (null != outputType_)) {
+			Class<?> inputType = ((TypedStage) consumer).getInputType();
+			if ((null != inputType) && inputType.isAssignableFrom(outputType_)) {
+				return ConsumerFilter.PASS_THROUGH_FILTER;
+			}
+		}
+		if (consumer instanceof Consumer) {
+			return ((Consumer) consumer).getDefaultFilter();
+		} else if (consumer instanceof ConsumerProducer) {
+			return ((ConsumerProducer) consumer).getDefaultFilter();
+		}
+		return ConsumerFilter.PASS_THROUGH_FILTER;
+	}
+
+	/**
+	 * 接続のキューのファクトリを返す。
+	 * <p>
+	 * プロデューサがDemandProducerの場合、Consumerが取り出した数だけ要素を生成するため、滞留数によらず要素ごとにConsumerを起床するキューを使用する。
+	 * </p>
+	 */
+	private static ParallelQueueFactory queueFactory(Object producer, ParallelQueueFactory queueFactory) {
+		return (producer instanceof DemandProducer) ? DEMAND_QUEUE_FACTORY : queueFactory;
+	}
+
+	/**
+	 * プロデューサがDemandProducerの場合、Consumerが取り出した要素をプロデューサに通知するIteratorを返す。
+	 */
+	private static Iterator<Container<?>> demand(Object producer, Iterator<Container<?>> iterator, int queueSize) {
+		if (producer instanceof DemandProducer) {
+			return ((DemandProducer) producer).consumerIterator(iterator, queueSize);
+		}
+		return iterator;
+	}
+
+	private static Class<?> outputTypeOf(Object producer) {
+		return (producer instanceof TypedStage) ? ((TypedStage) producer).getOutputType() : null;
+	}
+
+	private static Class<?> outputTypeOf(Object consumerProducer, ConsumerFilter filter) {
+		// フィルタで除外したContainerはそのまま次の要素に渡るため、すべて処理する場合のみ型が確定する
+		if (ConsumerFilter.PASS_THROUGH_FILTER != filter) {
+			return null;
+		}
+		return outputTypeOf(consumerProducer);
+	}
+
+	private static String stageName(String type, Object consumer) {
+		if (null == consumer) {
+			return type;
+		}
+		// 無名クラスは単純名が空のため、クラス名を使用する
+		String name = consumer.getClass().getSimpleName();
+		return type + " " + (name.isEmpty() ? consumer.getClass().getName() : name);
+	}
+
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Inner classes
 
 	public static interface Broker {
 		public void init(final Broker nextBroker, List<Broker> brokerList);
 
-		public void execute(Iterator<Container> iterator, ConsumerFilter filter);
+		public void execute(Iterator<Container<?>> iterator, ConsumerFilter filter);
 
-		public void join(Iterator<Container> iterator);
+		public void join(Iterator<Container<?>> iterator);
 
 		public ProducerQueue getQueue();
 
@@ -234,13 +702,66 @@ public class Chain {
 		public Producer getProducer();
 	}
 
-	private static class DirectBroker implements Broker {
+	/**
+	 * Consumerを別スレッドで実行するブローカ
+	 */
+	private static interface ThreadedBroker {
+		/**
+		 * Consumerのスレッドを中断し、キューに中断を予約する。
+		 *
+		 * @param t 中断の原因
+		 */
+		public void interruptConsumer(Throwable t);
+
+		/**
+		 * スレッドチェーンのINFO出力用に、Consumerのスレッド名を返す。
+		 *
+		 * @return スレッド名
+		 */
+		public String getConsumerThreadName();
+	}
+
+	/**
+	 * 計測に対応したブローカ
+	 */
+	private static interface MeasuredBroker {
+		/**
+		 * 計測値の格納先を設定する。initの前に呼び出すこと。
+		 *
+		 * @param metrics 計測値の格納先
+		 */
+		public void setMetrics(StageMetrics metrics);
+
+		/**
+		 * 計測値の接続の名前を返す。
+		 *
+		 * @return 接続の名前
+		 */
+		public String getStageName();
+	}
+
+	/**
+	 * チェックポイントに対応したブローカ
+	 */
+	private static interface CheckpointBroker {
+		/**
+		 * Consumer、ConsumerProducerに、処理の完了を通知するチェックポイントを設定する。実行の前に呼び出すこと。
+		 *
+		 * @param checkpoint チェックポイント（解除する場合はnull）
+		 */
+		public void setCheckpoint(Checkpoint checkpoint);
+	}
+
+	private static class DirectBroker implements Broker, MeasuredBroker, CheckpointBroker {
 		private Object producer_;
 		private Object consumer_;
-		private DirectProducerQueue queue_;
+		private ProducerQueue queue_;
 		private Broker nextBroker_;
 		private List<Broker> brokerList_;
 		private ConsumerFilter filter_;
+		private StageMetrics metrics_;
+		/** コンシューマの終了処理をjoinまで遅らせる場合はtrue */
+		private boolean deferFinalize_ = false;
 
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Constructor
@@ -280,11 +801,34 @@ public class Chain {
 			} else {
 				queue_ = new DirectProducerQueue((Consumer) consumer_, filter_);
 			}
+			if (null != metrics_) {
+				// direct接続はofferの中でコンシューマを実行するため、offerの所要時間を処理時間として計測する
+				queue_ = new MeasuredProducerQueue(queue_, metrics_, true);
+			}
 			nextBroker_ = nextBroker;
 		}
 
 		@Override
-		public void execute(Iterator<Container> iterator, ConsumerFilter prevFilter) {
+		public void setMetrics(StageMetrics metrics) {
+			metrics_ = metrics;
+		}
+
+		@Override
+		public void setCheckpoint(Checkpoint checkpoint) {
+			attachCheckpoint(consumer_, checkpoint);
+		}
+
+		@Override
+		public String getStageName() {
+			return stageName("direct", consumer_);
+		}
+
+		@Override
+		public void execute(Iterator<Container<?>> iterator, ConsumerFilter prevFilter) {
+			if (producer_ instanceof JoinedProducer) {
+				// JoinedProducerはexecuteから戻った後もofferを続けるため、コンシューマの終了処理はjoinで行う
+				deferFinalize_ = true;
+			}
 			try {
 				try {
 					// プロデューサの実行
@@ -305,20 +849,21 @@ public class Chain {
 
 				// コンシューマがConsumerProducerの場合は次のブローカの呼出し
 				if (consumer_ instanceof ConsumerProducerInterface) {
+					if (deferFinalize_ && (nextBroker_ instanceof DirectBroker)) {
+						((DirectBroker) nextBroker_).deferFinalize_ = true;
+					}
 					nextBroker_.execute(null, filter_);
 				}
 			} finally {
 				// コンシューマの終了処理（プロデューサの処理と同期のため、ここで呼出す必要あり）
-				if (consumer_ instanceof ConsumerProducer) {
-					((ConsumerProducer) consumer_).finalize();
-				} else if (consumer_ instanceof Consumer) {
-					((Consumer) consumer_).finalize();
+				if (!deferFinalize_) {
+					finalizeConsumer();
 				}
 			}
 		}
 
 		@Override
-		public void join(Iterator<Container> iterator) {
+		public void join(Iterator<Container<?>> iterator) {
 			if (producer_ instanceof Producer) {
 				if (producer_ instanceof JoinedProducer) {
 					((JoinedProducer) producer_).join();
@@ -330,6 +875,9 @@ public class Chain {
 			} else {
 				finishProducer();
 			}
+			if (deferFinalize_) {
+				finalizeConsumer();
+			}
 			if (consumer_ instanceof ConsumerProducerInterface) {
 				nextBroker_.join(null);
 			}
@@ -360,9 +908,8 @@ public class Chain {
 					JoinedProducer joined = (JoinedProducer) producer;
 					joined.reserveInterrupt(t);
 				}
-				if ((broker instanceof ParallelBroker)) {
-					((ParallelBroker) broker).consumerThread_.interrupt();
-					((ParallelBroker) broker).queue_.reserveInterrupt(t);
+				if ((broker instanceof ThreadedBroker)) {
+					((ThreadedBroker) broker).interruptConsumer(t);
 				}
 			}
 			LOG.warn("end");
@@ -380,15 +927,24 @@ public class Chain {
 			}
 			return null;
 		}
+
+		private void finalizeConsumer() {
+			if (consumer_ instanceof ConsumerProducer) {
+				((ConsumerProducer) consumer_).finalize();
+			} else if (consumer_ instanceof Consumer) {
+				((Consumer) consumer_).finalize();
+			}
+		}
 	}
 
-	private static class SequentialBroker implements Broker {
+	private static class SequentialBroker implements Broker, MeasuredBroker, CheckpointBroker {
 		private Object producer_;
 		private Object consumer_;
-		private SequentialProducerQueue queue_;
+		private ProducerQueue queue_;
 		private Broker nextBroker_;
 		private List<Broker> brokerList_;
 		private ConsumerFilter filter_;
+		private StageMetrics metrics_;
 
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Constructor
@@ -425,11 +981,29 @@ public class Chain {
 		public void init(final Broker nextBroker, List<Broker> brokerList) {
 			brokerList_ = brokerList;
 			queue_ = new SequentialProducerQueue();
+			if (null != metrics_) {
+				queue_ = new MeasuredProducerQueue(queue_, metrics_, false);
+			}
 			nextBroker_ = nextBroker;
 		}
 
 		@Override
-		public void execute(Iterator<Container> iterator, ConsumerFilter prevFilter) {
+		public void setMetrics(StageMetrics metrics) {
+			metrics_ = metrics;
+		}
+
+		@Override
+		public void setCheckpoint(Checkpoint checkpoint) {
+			attachCheckpoint(consumer_, checkpoint);
+		}
+
+		@Override
+		public String getStageName() {
+			return stageName("sequential", consumer_);
+		}
+
+		@Override
+		public void execute(Iterator<Container<?>> iterator, ConsumerFilter prevFilter) {
 			// プロデューサの実行
 			try {
 				if (producer_ instanceof Producer) {
@@ -446,7 +1020,7 @@ public class Chain {
 			}
 
 			// 次のブローカの呼出し（このブローカが最後の場合はコンシューマの呼出し）
-			Iterator<Container> containers = queue_.consumerIterator();
+			Iterator<Container<?>> containers = queue_.consumerIterator();
 			if (consumer_ instanceof ConsumerInterface) {
 				try {
 					((ConsumerInterface) consumer_).execute(containers, filter_);
@@ -460,7 +1034,7 @@ public class Chain {
 		}
 
 		@Override
-		public void join(Iterator<Container> iterator) {
+		public void join(Iterator<Container<?>> iterator) {
 			if (producer_ instanceof Producer) {
 				if (producer_ instanceof JoinedProducer) {
 					((JoinedProducer) producer_).join();
@@ -493,9 +1067,8 @@ public class Chain {
 		public void interrupt(Throwable t) {
 			LOG.warn("start");
 			for (Broker broker : brokerList_) {
-				if ((broker instanceof ParallelBroker)) {
-					((ParallelBroker) broker).consumerThread_.interrupt();
-					((ParallelBroker) broker).queue_.reserveInterrupt();
+				if ((broker instanceof ThreadedBroker)) {
+					((ThreadedBroker) broker).interruptConsumer(t);
 				}
 			}
 			LOG.warn("end");
@@ -515,9 +1088,9 @@ public class Chain {
 		}
 	}
 
-	private static class ParallelBroker implements Broker {
-		protected ParallelProducerQueue queue_;
-		protected Thread consumerThread_;
+	private static class ParallelBroker implements Broker, ThreadedBroker, MeasuredBroker, CheckpointBroker {
+		protected InterruptibleProducerQueue queue_;
+		protected ChainExecutor.Task consumerThread_;
 		private Object producer_;
 		private Object consumer_;
 		private Broker nextBroker_;
@@ -525,6 +1098,11 @@ public class Chain {
 		private Thread rootThread_;
 		private ConsumerFilter filter_;
 		private int queueSize_;
+		private ParallelQueueFactory queueFactory_;
+		private ChainExecutor executor_;
+		private StageMetrics metrics_;
+		private Checkpoint checkpoint_;
+		private volatile Throwable consumerError_;
 
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Constructor
@@ -533,35 +1111,44 @@ public class Chain {
 			// nothing to do
 		}
 
-		private ParallelBroker(Producer producer, ConsumerInterface consumer, ConsumerFilter filter, int queueSize) {
+		private ParallelBroker(Producer producer, ConsumerInterface consumer, ConsumerFilter filter, int queueSize,
+				ParallelQueueFactory queueFactory, ChainExecutor executor) {
 			producer_ = producer;
 			consumer_ = consumer;
 			filter_ = filter;
 			queueSize_ = queueSize;
+			queueFactory_ = queueFactory;
+			executor_ = executor;
 		}
 
 		private ParallelBroker(Producer producer, ConsumerProducerInterface consumer, ConsumerFilter filter,
-				int queueSize) {
+				int queueSize, ParallelQueueFactory queueFactory, ChainExecutor executor) {
 			producer_ = producer;
 			consumer_ = consumer;
 			filter_ = filter;
 			queueSize_ = queueSize;
+			queueFactory_ = queueFactory;
+			executor_ = executor;
 		}
 
 		private ParallelBroker(ConsumerProducerInterface producer, ConsumerInterface consumer, ConsumerFilter filter,
-				int queueSize) {
+				int queueSize, ParallelQueueFactory queueFactory, ChainExecutor executor) {
 			producer_ = producer;
 			consumer_ = consumer;
 			filter_ = filter;
 			queueSize_ = queueSize;
+			queueFactory_ = queueFactory;
+			executor_ = executor;
 		}
 
 		private ParallelBroker(ConsumerProducerInterface producer, ConsumerProducerInterface consumer,
-				ConsumerFilter filter, int queueSize) {
+				ConsumerFilter filter, int queueSize, ParallelQueueFactory queueFactory, ChainExecutor executor) {
 			producer_ = producer;
 			consumer_ = consumer;
 			filter_ = filter;
 			queueSize_ = queueSize;
+			queueFactory_ = queueFactory;
+			executor_ = executor;
 		}
 
 		// /////////////////////////////////////////////////////////////////////////////////////////
@@ -570,12 +1157,16 @@ public class Chain {
 		@Override
 		public void init(final Broker nextBroker, List<Broker> brokerList) {
 			brokerList_ = brokerList;
-			queue_ = new ParallelProducerQueue(queueSize_, WAIT_TIME_MINTUES);
+			queue_ = queueFactory(producer_, queueFactory_).create(queueSize_, WAIT_TIME_MINTUES, executor_);
+			attachQueueCheckpoint(queue_, checkpoint_);
+			if (null != metrics_) {
+				queue_ = new MeasuredProducerQueue(queue_, metrics_, false);
+			}
 			nextBroker_ = nextBroker;
-			final Iterator<Container> iterator = queue_.consumerIterator();
+			final Iterator<Container<?>> iterator = demand(producer_, queue_.consumerIterator(), queueSize_);
 
-			// コンシューマ実行スレッドの準備
-			consumerThread_ = new Thread(new Runnable() {
+			// コンシューマ実行スレッドの起動
+			consumerThread_ = executor_.execute(new Runnable() {
 				@Override
 				public void run() {
 					LOG.info("thread start " + consumer_.getClass().getName());
@@ -584,27 +1175,30 @@ public class Chain {
 							try {
 								((ConsumerInterface) consumer_).execute(iterator, filter_);
 							} catch (Throwable t) {
-								interrupt(t);
+								if (recordConsumerError(t)) {
+									interrupt(t);
+								}
 								throw t;
 							}
 						} else {
 							nextBroker_.execute(iterator, filter_);
 						}
-						nextBroker_.join(iterator);
+						if (null != nextBroker_) {
+							nextBroker_.join(iterator);
+						}
 					} catch (Throwable t) {
+						// ConsumerProducerと後続のブローカの例外も、スレッドのエクゼキュータに依らずjoinで送出できるよう記録する
+						recordConsumerError(t);
 						LOG.fatal(t.getMessage(), t);
 						throw t;
 					}
 					LOG.info("thread exit");
 				}
 			});
-
-			// コンシューマスレッドの起動
-			consumerThread_.start();
 		}
 
 		@Override
-		public void execute(Iterator<Container> iterator, ConsumerFilter prevFilter) {
+		public void execute(Iterator<Container<?>> iterator, ConsumerFilter prevFilter) {
 			// プロデューサの実行
 			try {
 				if (producer_ instanceof Producer) {
@@ -615,16 +1209,21 @@ public class Chain {
 					((ConsumerProducerInterface) producer_).execute(iterator, queue_, prevFilter);
 				}
 			} catch (Throwable t) {
+				// コンシューマ側の異常で中断した場合は、コンシューマ側の例外を優先する
+				Throwable consumerError = consumerError_;
 				LOG.error(t.getMessage(), t);
+				// コンシューマスレッドへの割り込みで発生する例外より先に、元の例外を記録する
+				recordConsumerError(t);
 				consumerThread_.interrupt();
 				queue_.reserveInterrupt();
 				interrupt(t);
+				rethrow(consumerError);
 				throw t;
 			}
 		}
 
 		@Override
-		public void join(Iterator<Container> iterator) {
+		public void join(Iterator<Container<?>> iterator) {
 			if (producer_ instanceof Producer) {
 				if (producer_ instanceof JoinedProducer) {
 					((JoinedProducer) producer_).join();
@@ -640,8 +1239,11 @@ public class Chain {
 			try {
 				consumerThread_.join();
 			} catch (InterruptedException e) {
+				rethrow(consumerError_);
 				throw new RuntimeException(e);
 			}
+			// offerで待機しないキューでは、割り込みより先にプロデューサが終了することがあるため、ここでも異常終了を確認する
+			rethrow(consumerError_);
 		}
 
 		@Override
@@ -658,9 +1260,8 @@ public class Chain {
 		public void interrupt(Throwable t) {
 			LOG.warn("start");
 			for (Broker broker : brokerList_) {
-				if ((broker instanceof ParallelBroker) && !broker.equals(this)) {
-					((ParallelBroker) broker).consumerThread_.interrupt();
-					((ParallelBroker) broker).queue_.reserveInterrupt(t);
+				if ((broker instanceof ThreadedBroker) && !broker.equals(this)) {
+					((ThreadedBroker) broker).interruptConsumer(t);
 				}
 			}
 			rootThread_.interrupt();
@@ -672,6 +1273,282 @@ public class Chain {
 			rootThread_ = rootThread;
 		}
 
+		@Override
+		public void interruptConsumer(Throwable t) {
+			// 割り込みより前に記録し、割り込まれた呼出し元が元の例外を送出できるようにする
+			recordConsumerError(t);
+			consumerThread_.interrupt();
+			queue_.reserveInterrupt(t);
+		}
+
+		/**
+		 * コンシューマ側あるいは他のブローカで発生した最初の例外を記録する。
+		 *
+		 * @return 最初の例外の場合はtrue
+		 */
+		private synchronized boolean recordConsumerError(Throwable t) {
+			if ((null == t) || (null != consumerError_)) {
+				return false;
+			}
+			consumerError_ = t;
+			return true;
+		}
+
+		@Override
+		public String getConsumerThreadName() {
+			return consumerThread_.getName();
+		}
+
+		@Override
+		public void setMetrics(StageMetrics metrics) {
+			metrics_ = metrics;
+		}
+
+		@Override
+		public void setCheckpoint(Checkpoint checkpoint) {
+			checkpoint_ = checkpoint;
+			attachCheckpoint(consumer_, checkpoint);
+		}
+
+		@Override
+		public String getStageName() {
+			return stageName("parallel", consumer_);
+		}
+
+		@Override
+		public Producer getProducer() {
+			if (producer_ instanceof Producer) {
+				return (Producer) producer_;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * ワーカープール接続とパーティション接続のブローカ
+	 * <p>
+	 * キーの取得方法を指定した場合は、ワーカー間で共有するキューの代わりに、ワーカーごとのレーンにキーで振り分けるキューを使用する。
+	 * </p>
+	 */
+	private static class WorkerPoolBroker implements Broker, ThreadedBroker, MeasuredBroker, CheckpointBroker {
+		private InterruptibleProducerQueue queue_;
+		private ProducerQueue producerQueue_;
+		private MergeProducerQueue mergeQueue_;
+		private ChainExecutor.Task[] workerThreads_;
+		private ChainExecutor.Task mergeThread_;
+		private Object producer_;
+		private List<Object> consumers_;
+		private Broker nextBroker_;
+		private List<Broker> brokerList_;
+		private Thread rootThread_;
+		private ConsumerFilter filter_;
+		private int queueSize_;
+		private boolean ordered_;
+		private ChainExecutor executor_;
+		private KeyExtractor keyExtractor_;
+		private ParallelQueueFactory queueFactory_;
+		private StageMetrics metrics_;
+		private Checkpoint checkpoint_;
+		private volatile Throwable workerError_;
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Constructor
+
+		private WorkerPoolBroker(Object producer, List<Object> consumers, ConsumerFilter filter, int queueSize,
+				boolean ordered, ChainExecutor executor, KeyExtractor keyExtractor, ParallelQueueFactory queueFactory) {
+			producer_ = producer;
+			consumers_ = consumers;
+			filter_ = filter;
+			queueSize_ = queueSize;
+			ordered_ = ordered;
+			executor_ = executor;
+			keyExtractor_ = keyExtractor;
+			queueFactory_ = queueFactory;
+		}
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Methods
+
+		@Override
+		public void init(final Broker nextBroker, List<Broker> brokerList) {
+			brokerList_ = brokerList;
+			nextBroker_ = nextBroker;
+			boolean isConsumerProducer = (consumers_.get(0) instanceof ConsumerProducerInterface);
+			if (null == keyExtractor_) {
+				queue_ = new SharedProducerQueue(queueSize_, WAIT_TIME_MINTUES, ordered_ && isConsumerProducer);
+			} else {
+				queue_ = new PartitionedProducerQueue(keyExtractor_, consumers_.size(),
+						queueFactory(producer_, queueFactory_), queueSize_, WAIT_TIME_MINTUES, executor_);
+			}
+			attachQueueCheckpoint(queue_, checkpoint_);
+			producerQueue_ = (null == metrics_ ? queue_ : new MeasuredProducerQueue(queue_, metrics_, false));
+			mergeQueue_ = (isConsumerProducer ? new MergeProducerQueue(queueSize_, WAIT_TIME_MINTUES, ordered_) : null);
+
+			// ワーカースレッドの準備
+			Runnable[] workers = new Runnable[consumers_.size()];
+			for (int i = 0; i < workers.length; i++) {
+				final Object consumer = consumers_.get(i);
+				final Iterator<Container<?>> iterator = queue_.consumerIterator();
+				final MergeProducerQueue.Worker worker = (isConsumerProducer ? newWorker(iterator) : null);
+				final Iterator<Container<?>> input = demand(producer_,
+						measure((null == worker) ? iterator : worker.iterator()), queueSize_);
+				workers[i] = new Runnable() {
+					@Override
+					public void run() {
+						LOG.info("thread start " + consumer.getClass().getName());
+						try {
+							if (null == worker) {
+								((ConsumerInterface) consumer).execute(input, filter_);
+							} else {
+								try {
+									((ConsumerProducerInterface) consumer).execute(input, worker.queue(), filter_);
+								} finally {
+									worker.finish();
+								}
+							}
+						} catch (Throwable t) {
+							// 他のワーカーは割り込みで異常終了するため、最初の異常のみ記録し、中断する
+							if (recordWorkerError(t)) {
+								interrupt(t);
+							}
+							LOG.fatal(t.getMessage(), t);
+							throw t;
+						}
+						LOG.info("thread exit");
+					}
+				};
+			}
+
+			// ConsumerProducerの場合は、各ワーカーの出力をまとめて次のブローカに渡すスレッドの準備
+			Runnable merger = null;
+			if (isConsumerProducer) {
+				final Iterator<Container<?>> mergeIterator = mergeQueue_.consumerIterator();
+				merger = new Runnable() {
+					@Override
+					public void run() {
+						LOG.info("thread start " + MergeConsumerProducer.class.getName());
+						try {
+							nextBroker_.execute(mergeIterator, ConsumerFilter.PASS_THROUGH_FILTER);
+							nextBroker_.join(mergeIterator);
+						} catch (Throwable t) {
+							LOG.fatal(t.getMessage(), t);
+							throw t;
+						}
+						LOG.info("thread exit");
+					}
+				};
+			}
+
+			// ワーカースレッドの起動（起動中のワーカーの異常で中断できるよう、配列を先に確保する）
+			workerThreads_ = new ChainExecutor.Task[workers.length];
+			for (int i = 0; i < workers.length; i++) {
+				workerThreads_[i] = executor_.execute(workers[i]);
+			}
+			if (null != merger) {
+				mergeThread_ = executor_.execute(merger);
+			}
+		}
+
+		@Override
+		public void execute(Iterator<Container<?>> iterator, ConsumerFilter prevFilter) {
+			// プロデューサの実行
+			try {
+				if (producer_ instanceof Producer) {
+					((Producer) producer_).execute(producerQueue_);
+				} else if (null == iterator) {
+					// プロデューサがConsumerProducerで、引数nullの場合は、既にプロデューサは実行済みであるため、特に何もしない。
+				} else {
+					((ConsumerProducerInterface) producer_).execute(iterator, producerQueue_, prevFilter);
+				}
+			} catch (Throwable t) {
+				// ワーカーの異常で中断した場合は、ワーカーの例外を優先する
+				Throwable workerError = workerError_;
+				LOG.error(t.getMessage(), t);
+				interruptConsumer(t);
+				interrupt(t);
+				rethrow(workerError);
+				throw t;
+			}
+		}
+
+		@Override
+		public void join(Iterator<Container<?>> iterator) {
+			if (producer_ instanceof Producer) {
+				if (producer_ instanceof JoinedProducer) {
+					((JoinedProducer) producer_).join();
+				}
+				finishProducer();
+			} else if (null == iterator) {
+				// プロデューサがConsumerProducerで、引数nullの場合は、既にプロデューサは実行済みであるため、特に何もしない。
+			} else {
+				finishProducer();
+			}
+
+			// ワーカースレッドの終了待機
+			try {
+				for (ChainExecutor.Task thread : workerThreads_) {
+					thread.join();
+				}
+				if (null != mergeThread_) {
+					mergeThread_.join();
+				}
+			} catch (InterruptedException e) {
+				rethrow(workerError_);
+				throw new RuntimeException(e);
+			}
+			rethrow(workerError_);
+		}
+
+		@Override
+		public ProducerQueue getQueue() {
+			return producerQueue_;
+		}
+
+		/**
+		 * ワーカーで発生した最初の例外を記録する。
+		 *
+		 * @return 最初の例外の場合はtrue
+		 */
+		private synchronized boolean recordWorkerError(Throwable t) {
+			if (null != workerError_) {
+				return false;
+			}
+			workerError_ = t;
+			return true;
+		}
+
+		@Override
+		public void finishProducer() {
+			queue_.finish();
+		}
+
+		@Override
+		public void interrupt(Throwable t) {
+			LOG.warn("start");
+			for (Broker broker : brokerList_) {
+				if ((broker instanceof ThreadedBroker) && !broker.equals(this)) {
+					((ThreadedBroker) broker).interruptConsumer(t);
+				}
+			}
+			// 同じプールの他のワーカースレッドも中断する
+			for (ChainExecutor.Task thread : workerThreads_) {
+				if ((null != thread) && !thread.isCurrentThread()) {
+					thread.interrupt();
+				}
+			}
+			queue_.reserveInterrupt(t);
+			if (null != mergeQueue_) {
+				mergeQueue_.reserveInterrupt(t);
+			}
+			rootThread_.interrupt();
+			LOG.warn("end");
+		}
+
+		@Override
+		public void setRootThread(Thread rootThread) {
+			rootThread_ = rootThread;
+		}
+
 		@Override
 		public Producer getProducer() {
 			if (producer_ instanceof Producer) {
@@ -679,6 +1556,85 @@ public class Chain {
 			}
 			return null;
 		}
+
+		@Override
+		public void interruptConsumer(Throwable t) {
+			// 割り込みより前に記録し、割り込まれた呼出し元が元の例外を送出できるようにする
+			if (null != t) {
+				recordWorkerError(t);
+			}
+			for (ChainExecutor.Task thread : workerThreads_) {
+				if (null != thread) {
+					thread.interrupt();
+				}
+			}
+			if (null != mergeThread_) {
+				mergeThread_.interrupt();
+			}
+			queue_.reserveInterrupt(t);
+			if (null != mergeQueue_) {
+				mergeQueue_.reserveInterrupt(t);
+			}
+		}
+
+		@Override
+		public String getConsumerThreadName() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("{");
+			for (int i = 0; i < workerThreads_.length; i++) {
+				if (0 < i) {
+					builder.append(", ");
+				}
+				builder.append(workerThreads_[i].getName());
+			}
+			builder.append("}");
+			if (null != mergeThread_) {
+				builder.append(" => ");
+				builder.append(mergeThread_.getName());
+			}
+			return builder.toString();
+		}
+
+		@Override
+		public void setMetrics(StageMetrics metrics) {
+			metrics_ = metrics;
+		}
+
+		@Override
+		public void setCheckpoint(Checkpoint checkpoint) {
+			checkpoint_ = checkpoint;
+			for (Object consumer : consumers_) {
+				attachCheckpoint(consumer, checkpoint);
+			}
+		}
+
+		@Override
+		public String getStageName() {
+			String type = (null == keyExtractor_ ? "workerPool(" : "partitioned(");
+			return stageName(type + consumers_.size() + ")", consumers_.get(0));
+		}
+
+		private MergeProducerQueue.Worker newWorker(Iterator<Container<?>> iterator) {
+			if (iterator instanceof SharedProducerQueue.ConsumerIterator) {
+				return mergeQueue_.newWorker((SharedProducerQueue.ConsumerIterator) iterator);
+			}
+			return mergeQueue_.newWorker(iterator);
+		}
+
+		private Iterator<Container<?>> measure(Iterator<Container<?>> iterator) {
+			// 各ワーカーの入力を同じ計測値に集計する
+			return (null == metrics_ ? iterator : MeasuredProducerQueue.measure(iterator, metrics_));
+		}
+	}
+
+	/**
+	 * ワーカープールの各ワーカーの出力を、そのまま次の要素に渡すConsumerProducer
+	 */
+	private static class MergeConsumerProducer extends ConsumerProducer {
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			queue.offer(container);
+		}
 	}
 
 	protected static class ExternalParallelBroker extends ParallelBroker {
@@ -688,8 +1644,8 @@ public class Chain {
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Constructor
 
-		public ExternalParallelBroker(Thread consumerThread, ParallelProducerQueue queue) {
-			consumerThread_ = consumerThread;
+		public ExternalParallelBroker(Thread consumerThread, InterruptibleProducerQueue queue) {
+			consumerThread_ = ChainExecutor.task(consumerThread);
 			queue_ = queue;
 		}
 
@@ -702,7 +1658,7 @@ public class Chain {
 		}
 
 		@Override
-		public void execute(Iterator<Container> iterator, ConsumerFilter prevFilter) {
+		public void execute(Iterator<Container<?>> iterator, ConsumerFilter prevFilter) {
 			nextBroker_.execute(iterator, prevFilter);
 		}
 	}
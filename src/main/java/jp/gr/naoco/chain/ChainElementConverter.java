@@ -9,7 +9,7 @@ public class ChainElementConverter {
 
 	private static final ProducerQueue DUMMY_QUEUE = new ProducerQueue() {
 		@Override
-		public void offer(Container obj) {
+		public void offer(Container<?> obj) {
 			// nothing to do
 		}
 
@@ -19,9 +19,9 @@ public class ChainElementConverter {
 		}
 
 		@Override
-		public Iterator<Container> consumerIterator() {
+		public Iterator<Container<?>> consumerIterator() {
 			// nothing to do
-			return new ArrayList<Container>(0).iterator();
+			return new ArrayList<Container<?>>(0).iterator();
 		}
 	};
 
@@ -62,7 +62,7 @@ public class ChainElementConverter {
 			};
 
 			@Override
-			public void execute_(Container container, ProducerQueue queue) {
+			public void execute_(Container<?> container, ProducerQueue queue) {
 				executer_.execute(queue);
 				queue.offer(container);
 				executer_ = Executer.NO_EXECUTER;
@@ -84,7 +84,7 @@ public class ChainElementConverter {
 			final ConsumerProducerInterface consumerProducer) {
 		return new ConsumerInterface() {
 			@Override
-			public void execute(Iterator<Container> containers,
+			public void execute(Iterator<Container<?>> containers,
 					ConsumerFilter filter) {
 				consumerProducer.execute(containers, DUMMY_QUEUE, filter);
 			}
@@ -105,7 +105,7 @@ public class ChainElementConverter {
 			final ConsumerProducer consumerProducer) {
 		return new Consumer() {
 			@Override
-			public void execute_(Container container) {
+			public void execute_(Container<?> container) {
 				consumerProducer.execute_(container, DUMMY_QUEUE);
 			}
 		};
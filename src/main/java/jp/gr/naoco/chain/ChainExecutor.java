@@ -0,0 +1,330 @@
+package jp.gr.naoco.chain;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jp.gr.naoco.core.log.LaolLogger;
+
+/**
+ * Chainのparallel接続、ワーカープール接続、フォークで、別スレッドの処理を実行するエクゼキュータ
+ * <p>
+ * デフォルトは{@link #THREAD}で、処理ごとに新しいスレッドを生成する。<br/>
+ * 短時間のChainを多数実行する場合は、{@link #pool(int)}でスレッドを再利用するか、
+ * 実行環境が仮想スレッドに対応している場合は{@link #virtualThread()}を使用する。
+ * </p>
+ * <p>
+ * Chainの各要素は互いの処理を待ち合わせるため、同時に実行中の要素の数だけスレッドが必要となる。
+ * {@link #pool(int)}は、プールのスレッドがすべて使用中の場合は、待ち合わせによるデッドロックを避けるため、
+ * プールを使用せずに新しいスレッドを生成して処理を実行する。このため、同時に実行するスレッドの数はプールの最大スレッド数を超える場合がある。
+ * </p>
+ */
+public abstract class ChainExecutor {
+
+	/** 処理ごとに新しいスレッドを生成するエクゼキュータ */
+	public static final ChainExecutor THREAD = new ChainExecutor() {
+		@Override
+		public Task execute(Runnable runnable) {
+			Thread thread = new Thread(runnable);
+			thread.start();
+			return new ThreadTask(thread);
+		}
+	};
+
+	private static volatile ChainExecutor default_ = THREAD;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	/**
+	 * 処理を別スレッドで開始する。
+	 *
+	 * @param runnable 処理
+	 * @return 開始した処理
+	 */
+	public abstract Task execute(Runnable runnable);
+
+	/**
+	 * Chainのデフォルトのエクゼキュータを返す。
+	 *
+	 * @return エクゼキュータ
+	 */
+	public static ChainExecutor getDefault() {
+		return default_;
+	}
+
+	/**
+	 * Chainのデフォルトのエクゼキュータを設定する。設定後に生成したChainから適用される。
+	 *
+	 * @param executor エクゼキュータ
+	 */
+	public static void setDefault(ChainExecutor executor) {
+		default_ = (null == executor ? THREAD : executor);
+	}
+
+	/**
+	 * 最大maxThreads個のスレッドをプールして再利用するエクゼキュータを生成する。
+	 * <p>
+	 * maxThreadsは同時に実行するスレッド数の上限ではない。プールのスレッドがすべて使用中の場合は、
+	 * 処理の終了を待たずに、プール外の新しいスレッドを生成して処理を実行する（処理の終了後に破棄する）。<br/>
+	 * 使用されないプールのスレッドは一定時間後に終了する。
+	 * </p>
+	 *
+	 * @param maxThreads プールして再利用するスレッドの最大数
+	 * @return エクゼキュータ
+	 */
+	public static ChainExecutor pool(int maxThreads) {
+		return new PoolExecutor(maxThreads);
+	}
+
+	/**
+	 * 仮想スレッドで処理を実行するエクゼキュータを生成する。
+	 *
+	 * @return エクゼキュータ
+	 * @throws UnsupportedOperationException 実行環境が仮想スレッドに対応していない場合
+	 */
+	public static ChainExecutor virtualThread() {
+		return new VirtualThreadExecutor();
+	}
+
+	/**
+	 * 生成済みのスレッドを{@link Task}として扱う。
+	 *
+	 * @param thread スレッド
+	 * @return スレッドのTask
+	 */
+	public static Task task(Thread thread) {
+		return new ThreadTask(thread);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	/**
+	 * 別スレッドで実行中の処理
+	 */
+	public static interface Task {
+		/**
+		 * 処理の終了を待機する。
+		 *
+		 * @throws InterruptedException 待機中に割り込みが発生した場合
+		 */
+		public void join() throws InterruptedException;
+
+		/**
+		 * 処理を実行中のスレッドに割り込む。処理が終了している場合は何もしない。
+		 */
+		public void interrupt();
+
+		/**
+		 * 処理を実行するスレッドの名前を返す。
+		 *
+		 * @return スレッド名
+		 */
+		public String getName();
+
+		/**
+		 * 呼出し元のスレッドが、処理を実行中のスレッドであるかを返す。
+		 * <p>
+		 * プールのスレッドは処理ごとに名前を変更し、名前は一意でないため、スレッドの判定には名前を使用しないこと。
+		 * </p>
+		 *
+		 * @return 呼出し元のスレッドが処理を実行中の場合はtrue
+		 */
+		public boolean isCurrentThread();
+	}
+
+	private static class ThreadTask implements Task {
+		private final Thread thread_;
+
+		private ThreadTask(Thread thread) {
+			thread_ = thread;
+		}
+
+		@Override
+		public void join() throws InterruptedException {
+			thread_.join();
+		}
+
+		@Override
+		public void interrupt() {
+			thread_.interrupt();
+		}
+
+		@Override
+		public String getName() {
+			return thread_.getName();
+		}
+
+		@Override
+		public boolean isCurrentThread() {
+			return thread_ == Thread.currentThread();
+		}
+	}
+
+	/**
+	 * スレッドプールで実行する処理
+	 * <p>
+	 * 実行中はスレッド名をTaskの名前に変更し、終了後に元に戻す。
+	 * </p>
+	 */
+	private static class PooledTask implements Task, Runnable {
+		private final Runnable runnable_;
+
+		private final String name_;
+
+		private final CountDownLatch done_ = new CountDownLatch(1);
+
+		private Thread runner_ = null;
+
+		private boolean interruptReserved_ = false;
+
+		private PooledTask(Runnable runnable, String name) {
+			runnable_ = runnable;
+			name_ = name;
+		}
+
+		@Override
+		public void run() {
+			Thread current = Thread.currentThread();
+			String originalName = current.getName();
+			synchronized (this) {
+				runner_ = current;
+				if (interruptReserved_) {
+					// 開始前に割り込まれた場合は、開始時点で割り込み状態とする
+					current.interrupt();
+				}
+			}
+			current.setName(name_);
+			try {
+				runnable_.run();
+			} catch (RuntimeException e) {
+				// プールのスレッドは終了させずに、次の処理に再利用する
+				LOG.error("task " + name_ + " failed. " + e.getMessage(), e);
+			} catch (Error e) {
+				// Errorはスレッドを終了させ、プールには新しいスレッドを生成させる
+				LOG.fatal("task " + name_ + " failed. " + e.getMessage(), e);
+				throw e;
+			} finally {
+				synchronized (this) {
+					runner_ = null;
+				}
+				// 次の処理に割り込み状態を持ち越さない
+				Thread.interrupted();
+				current.setName(originalName);
+				done_.countDown();
+			}
+		}
+
+		@Override
+		public void join() throws InterruptedException {
+			done_.await();
+		}
+
+		@Override
+		public synchronized void interrupt() {
+			if (null != runner_) {
+				runner_.interrupt();
+			} else if (0 < done_.getCount()) {
+				interruptReserved_ = true;
+			}
+		}
+
+		@Override
+		public String getName() {
+			return name_;
+		}
+
+		@Override
+		public synchronized boolean isCurrentThread() {
+			return runner_ == Thread.currentThread();
+		}
+	}
+
+	private static class PoolExecutor extends ChainExecutor {
+		private final ThreadPoolExecutor executor_;
+
+		private final AtomicInteger taskCount_ = new AtomicInteger(0);
+
+		private final AtomicInteger overflowCount_ = new AtomicInteger(0);
+
+		private final int poolNumber_;
+
+		private static final AtomicInteger POOL_COUNT = new AtomicInteger(0);
+
+		private static final long KEEP_ALIVE_SECONDS = 60L;
+
+		private PoolExecutor(int maxThreads) {
+			final int poolNumber = POOL_COUNT.incrementAndGet();
+			poolNumber_ = poolNumber;
+			executor_ = new ThreadPoolExecutor(0, (maxThreads < 1 ? 1 : maxThreads), KEEP_ALIVE_SECONDS,
+					TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+						private final AtomicInteger threadCount_ = new AtomicInteger(0);
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r,
+									"ChainPool-" + poolNumber + "-Thread-" + threadCount_.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+
+		@Override
+		public Task execute(Runnable runnable) {
+			PooledTask task = new PooledTask(runnable, "ChainPool-Task-" + taskCount_.incrementAndGet());
+			try {
+				executor_.execute(task);
+			} catch (RejectedExecutionException e) {
+				// プールのスレッドがすべて使用中の場合は、待ち合わせによるデッドロックを避けるため、新しいスレッドで実行する
+				Thread thread = new Thread(task,
+						"ChainPool-" + poolNumber_ + "-Overflow-" + overflowCount_.incrementAndGet());
+				thread.setDaemon(true);
+				thread.start();
+			}
+			return task;
+		}
+	}
+
+	private static class VirtualThreadExecutor extends ChainExecutor {
+		private final Object builder_;
+
+		private final Method unstarted_;
+
+		private final AtomicInteger taskCount_ = new AtomicInteger(0);
+
+		private VirtualThreadExecutor() {
+			try {
+				// 古いJDKでもコンパイルできるよう、仮想スレッドのAPIはリフレクションで呼び出す
+				builder_ = Thread.class.getMethod("ofVirtual").invoke(null);
+				unstarted_ = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+			} catch (Exception e) {
+				throw new UnsupportedOperationException("virtual thread is not supported.", e);
+			}
+		}
+
+		@Override
+		public Task execute(Runnable runnable) {
+			Thread thread;
+			try {
+				thread = (Thread) unstarted_.invoke(builder_, runnable);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+			thread.setName("ChainVirtual-Thread-" + taskCount_.incrementAndGet());
+			thread.start();
+			return new ThreadTask(thread);
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Logger
+
+	private static final LaolLogger LOG = new LaolLogger(ChainExecutor.class.getName());
+}
@@ -0,0 +1,199 @@
+package jp.gr.naoco.chain;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import jp.gr.naoco.core.log.LaolLogger;
+
+/**
+ * {@link ResumableProducer}の再開位置をファイルに記録するチェックポイント
+ * <p>
+ * Chainの要素は、処理を完了した（DBへのコミット等、再実行が不要となった）Containerの連番を{@link #acknowledge(long)}で通知する。
+ * 先頭から連続して通知を受けた要素数を再開位置とし、saveInterval回の通知ごとにファイルに記録する。<br/>
+ * {@link Chain#execute(Checkpoint)}は、異常終了した場合に再開位置をファイルに記録し、
+ * すべての要素の通知を受けて正常終了した場合にファイルを削除する。
+ * </p>
+ * <p>
+ * 1つの入力から複数のContainerをofferするConsumerProducerの後段では、同じ連番のContainerが複数渡る。
+ * チェックポイントはofferされたContainerの数を連番ごとに数え、すべてのContainerの通知を受けた時点で、その連番の処理を完了とする。
+ * 後段の要素は、Containerごとに通知すればよい。
+ * </p>
+ * <p>
+ * Consumerのフィルタで処理対象外としたContainerと、ConsumerProducerが1つもofferしなかった入力のContainerは、
+ * 後続の要素に渡らないため、{@link Consumer#skip(Container)}、{@link ConsumerProducer#skip(Container)}で自動的に通知する。
+ * {@link Factory}で生成したトランザクション境界のプロキシも、実装クラスがConsumer、ConsumerProducerであれば同様に通知する。
+ * それ以外の{@link ConsumerInterface}、{@link ConsumerProducerInterface}の実装は、処理対象外としたContainerも自身で通知すること
+ * （実行時にWARNログを出力する）。
+ * {@link jp.gr.naoco.chain.queue.BackpressureProducerQueue}がDROP_OLDESTで破棄したContainerは、キューから通知する。
+ * </p>
+ */
+public class Checkpoint {
+	private final File file_;
+
+	private final int saveInterval_;
+
+	/** 先頭から連続して通知を受けた要素数 */
+	private long position_;
+
+	/** position_以降に通知を受けた連番（position_からの差分） */
+	private BitSet acknowledged_ = new BitSet();
+
+	/** 完了までに追加で通知が必要な数（ConsumerProducerがofferしたContainerの数から、入力の分の1を引いた数） */
+	private Map<Long, Integer> holds_ = new HashMap<Long, Integer>();
+
+	private int unsaved_ = 0;
+
+	private static final int DEFAULT_SAVE_INTERVAL = 1000;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * このコンストラクタは new Checkpoint(file, 1000) を呼び出すのと同等。
+	 */
+	public Checkpoint(File file) {
+		this(file, DEFAULT_SAVE_INTERVAL);
+	}
+
+	/**
+	 * チェックポイントを生成する。ファイルが存在する場合は、記録された再開位置を読み込む。
+	 *
+	 * @param file 再開位置を記録するファイル
+	 * @param saveInterval ファイルに記録する通知の間隔
+	 */
+	public Checkpoint(File file, int saveInterval) {
+		file_ = file;
+		saveInterval_ = (saveInterval < 1 ? 1 : saveInterval);
+		position_ = load(file);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	/**
+	 * 再開位置を返す。
+	 *
+	 * @return 先頭から連続して処理を完了した要素数
+	 */
+	public synchronized long getPosition() {
+		return position_;
+	}
+
+	/**
+	 * 指定した連番のContainerの処理の完了を通知する。再開位置より前の連番は無視する。
+	 * <p>
+	 * ConsumerProducerが同じ連番のContainerを複数offerした場合は、すべてのContainerの通知を受けた時点で完了とする。
+	 * </p>
+	 *
+	 * @param sequence {@link Container#getSequence()}の連番
+	 */
+	public synchronized void acknowledge(long sequence) {
+		if (sequence < position_) {
+			return;
+		}
+		Integer hold = holds_.remove(sequence);
+		if (null != hold) {
+			if (1 < hold) {
+				holds_.put(sequence, hold - 1);
+			}
+			return;
+		}
+		long offset = sequence - position_;
+		if (Integer.MAX_VALUE <= offset) {
+			throw new IllegalStateException("too many containers are not acknowledged. sequence:" + sequence
+					+ " position:" + position_);
+		}
+		acknowledged_.set((int) offset);
+		int advance = acknowledged_.nextClearBit(0);
+		if (0 < advance) {
+			position_ += advance;
+			acknowledged_ = acknowledged_.get(advance, Math.max(advance, acknowledged_.length()));
+		}
+		if (saveInterval_ <= ++unsaved_) {
+			save();
+		}
+	}
+
+	/**
+	 * 指定した連番のContainerを、ConsumerProducerが次の要素にofferすることを通知する。
+	 * <p>
+	 * 入力のContainerの通知は、offerしたすべてのContainerの通知を受けるまで完了としない。
+	 * ConsumerProducerは入力の処理を終えた後、入力の分を{@link #acknowledge(long)}で通知すること。
+	 * </p>
+	 *
+	 * @param sequence offerするContainerの連番
+	 */
+	synchronized void hold(long sequence) {
+		if (sequence < position_) {
+			return;
+		}
+		Integer hold = holds_.get(sequence);
+		holds_.put(sequence, (null == hold) ? 1 : hold + 1);
+	}
+
+	/**
+	 * 再開位置をファイルに記録する。
+	 * <p>
+	 * 一時ファイルに書き込んでから置き換えるため、記録中に異常終了した場合も、前回の再開位置が残る。
+	 * </p>
+	 */
+	public synchronized void save() {
+		File temp = new File(file_.getPath() + ".tmp");
+		try {
+			FileOutputStream out = new FileOutputStream(temp);
+			try {
+				out.write(Long.toString(position_).getBytes(StandardCharsets.US_ASCII));
+				out.getFD().sync();
+			} finally {
+				out.close();
+			}
+			Files.move(temp.toPath(), file_.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException("checkpoint save failed. " + file_.getAbsolutePath(), e);
+		}
+		unsaved_ = 0;
+		LOG.debug("checkpoint saved. position:" + position_);
+	}
+
+	/**
+	 * ファイルを削除し、再開位置を先頭に戻す。
+	 */
+	public synchronized void clear() {
+		if (file_.exists() && !file_.delete()) {
+			throw new RuntimeException("checkpoint delete failed. " + file_.getAbsolutePath());
+		}
+		position_ = 0L;
+		acknowledged_ = new BitSet();
+		holds_ = new HashMap<Long, Integer>();
+		unsaved_ = 0;
+	}
+
+	private static long load(File file) {
+		if (!file.exists()) {
+			return 0L;
+		}
+		try {
+			String value = new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII).trim();
+			long position = Long.parseLong(value);
+			LOG.info("checkpoint loaded. position:" + position + " file:" + file.getAbsolutePath());
+			return position;
+		} catch (IOException e) {
+			throw new RuntimeException("checkpoint load failed. " + file.getAbsolutePath(), e);
+		} catch (NumberFormatException e) {
+			throw new IllegalStateException("checkpoint file is broken. " + file.getAbsolutePath(), e);
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Logger
+
+	private static final LaolLogger LOG = new LaolLogger(Checkpoint.class.getName());
+}
@@ -4,14 +4,19 @@ import java.util.Iterator;
 
 public abstract class Consumer implements ConsumerInterface {
 
+	/** {@link Chain#execute(Checkpoint)}で実行中のチェックポイント */
+	private Checkpoint checkpoint_ = null;
+
 	@Override
-	public void execute(Iterator<Container> containers, ConsumerFilter filter) {
+	public void execute(Iterator<Container<?>> containers, ConsumerFilter filter) {
 		init();
 		try {
 			while (containers.hasNext()) {
-				Container container = containers.next();
+				Container<?> container = containers.next();
 				if (filter.accept(container)) {
 					execute_(container);
+				} else {
+					skip(container);
 				}
 			}
 			finish();
@@ -44,5 +49,23 @@ public abstract class Consumer implements ConsumerInterface {
 		return ConsumerFilter.PASS_THROUGH_FILTER;
 	}
 
-	public abstract void execute_(Container container);
+	/**
+	 * 処理せずに終えたContainerの連番を、処理の完了としてチェックポイントに通知する。
+	 * <p>
+	 * {@link Chain#execute(Checkpoint)}で実行した場合のみ通知する。フィルタで処理対象外としたContainerは、自動的に通知する。
+	 * </p>
+	 *
+	 * @param container 処理せずに終えたContainer
+	 */
+	public void skip(Container<?> container) {
+		if ((null != checkpoint_) && (0 <= container.getSequence())) {
+			checkpoint_.acknowledge(container.getSequence());
+		}
+	}
+
+	void setCheckpoint(Checkpoint checkpoint) {
+		checkpoint_ = checkpoint;
+	}
+
+	public abstract void execute_(Container<?> container);
 }
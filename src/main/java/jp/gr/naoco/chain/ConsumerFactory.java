@@ -0,0 +1,8 @@
+package jp.gr.naoco.chain;
+
+/**
+ * Chainのワーカープール接続で、ワーカースレッドごとのConsumerを生成するファクトリ
+ */
+public interface ConsumerFactory {
+	public ConsumerInterface newInstance();
+}
@@ -5,14 +5,19 @@ import java.util.Iterator;
 import jp.gr.naoco.chain.queue.ProducerQueue;
 
 public abstract class ConsumerProducer implements ConsumerProducerInterface {
+
+	/** {@link Chain#execute(Checkpoint)}で実行中のチェックポイント */
+	private Checkpoint checkpoint_ = null;
+
 	@Override
-	public void execute(Iterator<Container> containers, ProducerQueue queue, ConsumerFilter filter) {
+	public void execute(Iterator<Container<?>> containers, ProducerQueue queue, ConsumerFilter filter) {
 		init();
+		SequenceQueue sequenceQueue = new SequenceQueue(queue);
 		try {
 			while (containers.hasNext()) {
-				Container container = containers.next();
+				Container<?> container = containers.next();
 				if (filter.accept(container)) {
-					execute_(container, queue);
+					execute(container, sequenceQueue);
 				} else {
 					queue.offer(container);
 				}
@@ -47,5 +52,52 @@ public abstract class ConsumerProducer implements ConsumerProducerInterface {
 		return ConsumerFilter.PASS_THROUGH_FILTER;
 	}
 
-	public abstract void execute_(Container container, ProducerQueue queue);
+	/**
+	 * 1つのContainerを処理する。
+	 * <p>
+	 * 入力のContainerに連番がある場合は、offerしたContainerに連番を引き継ぎ、
+	 * 1つもofferしなかった場合は、{@link #skip(Container)}で処理の完了を通知する。<br/>
+	 * offerした場合は、offerしたContainerの数をチェックポイントで数えた上で入力の分を通知するため、
+	 * 入力の処理はofferしたすべてのContainerの通知を受けた時点で完了となる。
+	 * </p>
+	 *
+	 * @param container 入力のContainer
+	 * @param queue 次の要素のキュー
+	 */
+	public void execute(Container<?> container, ProducerQueue queue) {
+		if ((container.getSequence() < 0) && !(queue instanceof SequenceQueue)) {
+			execute_(container, queue);
+			return;
+		}
+		SequenceQueue sequenceQueue = (queue instanceof SequenceQueue) ? (SequenceQueue) queue : new SequenceQueue(
+				queue);
+		sequenceQueue.setSequence(container.getSequence(), checkpoint_);
+		execute_(container, sequenceQueue);
+		if (!sequenceQueue.isOffered()) {
+			skip(container);
+		} else if ((null != checkpoint_) && (0 <= container.getSequence())) {
+			checkpoint_.acknowledge(container.getSequence());
+		}
+	}
+
+	/**
+	 * 後続の要素に何も渡さずに処理を終えたContainerの連番を、処理の完了としてチェックポイントに通知する。
+	 * <p>
+	 * {@link Chain#execute(Checkpoint)}で実行した場合のみ通知する。execute_で1つもofferしなかったContainerは、自動的に通知する。
+	 * 入力を保持して後の入力の処理でまとめてofferする場合は、通知後に異常終了すると、保持した入力は再開時に再実行されないことに注意すること。
+	 * </p>
+	 *
+	 * @param container 処理を終えたContainer
+	 */
+	public void skip(Container<?> container) {
+		if ((null != checkpoint_) && (0 <= container.getSequence())) {
+			checkpoint_.acknowledge(container.getSequence());
+		}
+	}
+
+	void setCheckpoint(Checkpoint checkpoint) {
+		checkpoint_ = checkpoint;
+	}
+
+	public abstract void execute_(Container<?> container, ProducerQueue queue);
 }
@@ -0,0 +1,8 @@
+package jp.gr.naoco.chain;
+
+/**
+ * Chainのワーカープール接続で、ワーカースレッドごとのConsumerProducerを生成するファクトリ
+ */
+public interface ConsumerProducerFactory {
+	public ConsumerProducerInterface newInstance();
+}
@@ -5,6 +5,6 @@ import java.util.Iterator;
 import jp.gr.naoco.chain.queue.ProducerQueue;
 
 public interface ConsumerProducerInterface {
-	public void execute(Iterator<Container> containers, ProducerQueue queue,
+	public void execute(Iterator<Container<?>> containers, ProducerQueue queue,
 			ConsumerFilter filter);
 }
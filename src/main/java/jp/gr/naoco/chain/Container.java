@@ -1,13 +1,69 @@
 package jp.gr.naoco.chain;
 
-public class Container {
-	private final Object object_;
+/**
+ * Chainの要素間で受け渡すオブジェクトの入れ物
+ *
+ * @param <T> 格納するオブジェクトの型
+ */
+public class Container<T> {
+	private final T object_;
 
-	public Container(Object object) {
+	/** {@link ResumableProducer}が付与した連番（付与しない場合は-1） */
+	private long sequence_ = -1L;
+
+	public Container(T object) {
+		object_ = object;
+	}
+
+	/**
+	 * 連番を指定してContainerを生成する。
+	 * <p>
+	 * キューが格納したContainerを別の形式（ファイルへの退避等）で保持し、復元する場合に使用する。
+	 * </p>
+	 *
+	 * @param object 格納するオブジェクト
+	 * @param sequence {@link #getSequence()}の連番
+	 */
+	public Container(T object, long sequence) {
 		object_ = object;
+		sequence_ = sequence;
+	}
+
+	/**
+	 * 格納するオブジェクトを{@link #get()}のオーバーライドで返すサブクラス用のコンストラクタ
+	 */
+	protected Container() {
+		object_ = null;
 	}
 
-	public Object get() {
+	public T get() {
 		return object_;
 	}
+
+	/**
+	 * {@link ResumableProducer}が付与した連番を返す。
+	 * <p>
+	 * ConsumerProducerがofferしたContainerには、処理中の入力のContainerの連番を引き継ぐ。
+	 * 処理を完了した連番は{@link Checkpoint#acknowledge(long)}で通知する。
+	 * </p>
+	 *
+	 * @return 連番（付与しない場合は-1）
+	 */
+	public long getSequence() {
+		return sequence_;
+	}
+
+	void setSequence(long sequence) {
+		sequence_ = sequence;
+	}
+
+	/**
+	 * 格納するオブジェクトが指定した型のインスタンスであるかを返す。
+	 *
+	 * @param type 型
+	 * @return 指定した型のインスタンスの場合はtrue
+	 */
+	public boolean is(Class<?> type) {
+		return type.isInstance(get());
+	}
 }
@@ -0,0 +1,26 @@
+package jp.gr.naoco.chain;
+
+import java.util.Iterator;
+
+/**
+ * Consumerがキューから取り出した数だけ、次の要素を生成するJoinedProducer
+ * <p>
+ * 先頭のProducerが本インタフェースを実装する場合、parallel接続、ワーカープール接続、パーティション接続では、
+ * 各Consumerスレッドがキューから要素を取り出すIteratorを{@link #consumerIterator(Iterator, int)}で置き換える。
+ * また、キューには要素ごとにConsumerを起床する実装を使用する。
+ * </p>
+ * <p>
+ * 実装クラスは、キューに滞留する要素数がキューの最大要素数を超えないように生成を控えることで、offerで待機しないようにすること。
+ * </p>
+ */
+public interface DemandProducer extends JoinedProducer {
+
+	/**
+	 * Consumerスレッドが使用するIteratorを返す。Consumerスレッドごとに、Producerの実行より前に呼び出す。
+	 *
+	 * @param iterator キューのIterator
+	 * @param maxQueueSize キューの最大要素数
+	 * @return 取り出した要素をProducerに通知するIterator
+	 */
+	public Iterator<Container<?>> consumerIterator(Iterator<Container<?>> iterator, int maxQueueSize);
+}
@@ -61,4 +61,36 @@ public class Factory {
 		};
 		return factory.getInsatnce();
 	}
+
+	/**
+	 * Chainのワーカープール接続用に、呼出しごとに{@link #consumer(Class)}でConsumerを生成するファクトリを返す。
+	 *
+	 * @param instanceClass Consumerのクラス
+	 * @return ファクトリ
+	 */
+	public static ConsumerFactory consumerFactory(
+			final Class<? extends ConsumerInterface> instanceClass) {
+		return new ConsumerFactory() {
+			@Override
+			public ConsumerInterface newInstance() {
+				return consumer(instanceClass);
+			}
+		};
+	}
+
+	/**
+	 * Chainのワーカープール接続用に、呼出しごとに{@link #consumerProducer(Class)}でConsumerProducerを生成するファクトリを返す。
+	 *
+	 * @param instanceClass ConsumerProducerのクラス
+	 * @return ファクトリ
+	 */
+	public static ConsumerProducerFactory consumerProducerFactory(
+			final Class<? extends ConsumerProducerInterface> instanceClass) {
+		return new ConsumerProducerFactory() {
+			@Override
+			public ConsumerProducerInterface newInstance() {
+				return consumerProducer(instanceClass);
+			}
+		};
+	}
 }
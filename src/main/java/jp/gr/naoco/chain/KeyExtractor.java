@@ -0,0 +1,17 @@
+package jp.gr.naoco.chain;
+
+/**
+ * Chainのパーティション接続で、Containerを振り分けるキーを取得するインタフェース
+ * <p>
+ * 同じキー（equalsかつhashCodeが等しい）のContainerは、同じスレッドでofferされた順に処理される。
+ * </p>
+ */
+public interface KeyExtractor {
+	/**
+	 * Containerのキーを返す。
+	 *
+	 * @param container Container
+	 * @return キー（nullの場合は先頭のパーティションに振り分ける）
+	 */
+	public Object key(Container<?> container);
+}
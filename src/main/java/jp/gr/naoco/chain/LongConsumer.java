@@ -0,0 +1,39 @@
+package jp.gr.naoco.chain;
+
+/**
+ * long値を受け取るConsumer
+ * <p>
+ * {@link LongContainer}からはボクシングせずに値を受け取る。それ以外のContainerはLongのオブジェクトを格納していること。
+ * </p>
+ */
+public abstract class LongConsumer extends TypedConsumer<Long> {
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	protected LongConsumer() {
+		super(Long.class);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public final void execute_(Container<?> container) {
+		if (container instanceof LongContainer) {
+			consume(((LongContainer) container).getLong());
+		} else {
+			consume(((Long) container.get()).longValue());
+		}
+	}
+
+	/**
+	 * {@link #consume(long)}に値を渡す。
+	 */
+	@Override
+	public final void consume(Long value) {
+		consume(value.longValue());
+	}
+
+	public abstract void consume(long value);
+}
@@ -0,0 +1,65 @@
+package jp.gr.naoco.chain;
+
+/**
+ * long値をボクシングせずに受け渡す、値を変更可能なContainer
+ * <p>
+ * {@link LongConsumer}は{@link #getLong()}で値を受け取るため、Containerごとにオブジェクトを生成しない。
+ * </p>
+ * <p>
+ * 後続の接続がすべてdirect接続の場合、offerから処理が戻った時点で後続の処理は完了しているため、
+ * Producerは1つのLongContainerの値を{@link #set(long)}で変更しながら繰り返しofferできる。
+ * ただし、再利用する場合は後続のすべての要素が、execute_の処理中にのみContainerを参照し、
+ * Containerを保持（フィールドへの格納、リストへのバッファリング、別スレッドへの受渡し）しないこと。
+ * 保持されたContainerの値は、次のofferで上書きされる。
+ * </p>
+ * <p>
+ * sequential接続、parallel接続を含む場合、あるいは{@link BufferedConsumerProducer}のようにContainerを保持する要素を接続する場合は、
+ * offerごとに新しいLongContainerを生成すること。
+ * </p>
+ */
+public class LongContainer extends Container<Long> {
+	private long value_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	public LongContainer() {
+		this(0L);
+	}
+
+	public LongContainer(long value) {
+		super();
+		value_ = value;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	public long getLong() {
+		return value_;
+	}
+
+	/**
+	 * 値を変更する。offer済みのContainerの値を変更する場合は、後続の要素がContainerを保持していないこと。
+	 *
+	 * @param value 値
+	 * @return 本オブジェクト
+	 */
+	public LongContainer set(long value) {
+		value_ = value;
+		return this;
+	}
+
+	/**
+	 * 値をボクシングして返す。値を受け取る場合は{@link #getLong()}を使用すること。
+	 */
+	@Override
+	public Long get() {
+		return Long.valueOf(value_);
+	}
+
+	@Override
+	public boolean is(Class<?> type) {
+		return type.isAssignableFrom(Long.class);
+	}
+}
@@ -0,0 +1,45 @@
+package jp.gr.naoco.chain;
+
+import jp.gr.naoco.chain.queue.ProducerQueue;
+
+/**
+ * 途中から処理を再開できるProducer
+ * <p>
+ * offerしたContainerには、先頭から0で始まる連番を付与する。<br/>
+ * {@link Chain#execute(Checkpoint)}で実行した場合は、チェックポイントに記録した位置をresumeFromに渡す。
+ * 実装クラスは、先頭からresumeFrom個の要素を読み飛ばし（あるいは読込み位置を移動し）、resumeFrom番目の要素からofferすること。
+ * </p>
+ */
+public abstract class ResumableProducer implements Producer {
+	private long resumeFrom_ = 0L;
+
+	/** 正常終了した場合の次の連番（終了していない場合は-1） */
+	private volatile long endPosition_ = -1L;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public final void execute(ProducerQueue queue) {
+		endPosition_ = -1L;
+		SequenceQueue sequenceQueue = new SequenceQueue(queue, resumeFrom_);
+		execute(sequenceQueue, resumeFrom_);
+		endPosition_ = sequenceQueue.getSequence();
+	}
+
+	/**
+	 * resumeFrom番目の要素から、Containerをキューにofferする。
+	 *
+	 * @param queue キュー
+	 * @param resumeFrom 再開する位置（最初から実行する場合は0）
+	 */
+	public abstract void execute(ProducerQueue queue, long resumeFrom);
+
+	void resume(long resumeFrom) {
+		resumeFrom_ = resumeFrom;
+	}
+
+	long getEndPosition() {
+		return endPosition_;
+	}
+}
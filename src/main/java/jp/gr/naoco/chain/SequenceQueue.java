@@ -0,0 +1,111 @@
+package jp.gr.naoco.chain;
+
+import java.util.Iterator;
+
+import jp.gr.naoco.chain.queue.ProducerQueue;
+
+/**
+ * offerしたContainerに連番を付与して、元のキューに渡すキュー
+ * <p>
+ * {@link ResumableProducer}では、offerごとに連番を1ずつ増やして付与する。<br/>
+ * ConsumerProducerでは、処理中の入力のContainerの連番を{@link #setSequence(long, Checkpoint)}で設定し、offerしたContainerに引き継ぐ。
+ * チェックポイントを設定した場合は、offerごとに{@link Checkpoint#hold(long)}で通知し、同じ連番のContainerの数を数える。
+ * 連番が-1の場合は付与しない。
+ * </p>
+ */
+class SequenceQueue implements ProducerQueue {
+	private final ProducerQueue queue_;
+
+	private final boolean increment_;
+
+	private long sequence_ = -1L;
+
+	/** 引き継いだ連番のofferを通知するチェックポイント（通知しない場合はnull） */
+	private Checkpoint checkpoint_ = null;
+
+	/** 連番を設定してからofferした場合はtrue */
+	private boolean offered_ = false;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * 入力のContainerの連番を引き継ぐキューを生成する。
+	 *
+	 * @param queue 元のキュー
+	 */
+	SequenceQueue(ProducerQueue queue) {
+		queue_ = queue;
+		increment_ = false;
+	}
+
+	/**
+	 * firstから始まる連番を付与するキューを生成する。
+	 *
+	 * @param queue 元のキュー
+	 * @param first 最初に付与する連番
+	 */
+	SequenceQueue(ProducerQueue queue, long first) {
+		queue_ = queue;
+		increment_ = true;
+		sequence_ = first;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void offer(Container<?> obj) {
+		if (0 <= sequence_) {
+			obj.setSequence(sequence_);
+			if (increment_) {
+				sequence_++;
+			} else if (null != checkpoint_) {
+				// 後段で先に通知を受けても入力の連番が完了しないよう、offerより前に数える
+				checkpoint_.hold(sequence_);
+			}
+		}
+		offered_ = true;
+		queue_.offer(obj);
+	}
+
+	@Override
+	public void finish() {
+		queue_.finish();
+	}
+
+	@Override
+	public Iterator<Container<?>> consumerIterator() {
+		return queue_.consumerIterator();
+	}
+
+	/**
+	 * 処理中の入力のContainerの連番を設定する。
+	 *
+	 * @param sequence 入力のContainerの連番
+	 * @param checkpoint offerを通知するチェックポイント（通知しない場合はnull）
+	 */
+	void setSequence(long sequence, Checkpoint checkpoint) {
+		sequence_ = sequence;
+		checkpoint_ = checkpoint;
+		offered_ = false;
+	}
+
+	/**
+	 * {@link #setSequence(long, Checkpoint)}で連番を設定してから、Containerをofferしたかを返す。
+	 *
+	 * @return offerした場合はtrue
+	 */
+	boolean isOffered() {
+		return offered_;
+	}
+
+	/**
+	 * 次に付与する連番を返す。
+	 *
+	 * @return 連番
+	 */
+	long getSequence() {
+		return sequence_;
+	}
+}
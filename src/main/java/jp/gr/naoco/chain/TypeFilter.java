@@ -0,0 +1,21 @@
+package jp.gr.naoco.chain;
+
+/**
+ * Containerのオブジェクトが指定した型のインスタンスの場合のみ受け入れるフィルタ
+ */
+public class TypeFilter implements ConsumerFilter {
+	private final Class<?> type_;
+
+	public TypeFilter(Class<?> type) {
+		type_ = type;
+	}
+
+	@Override
+	public boolean accept(Container<?> container) {
+		return container.is(type_);
+	}
+
+	public Class<?> getType() {
+		return type_;
+	}
+}
@@ -0,0 +1,50 @@
+package jp.gr.naoco.chain;
+
+/**
+ * 受け取るContainerのオブジェクトの型を宣言するConsumer
+ * <p>
+ * デフォルトフィルタは指定した型のオブジェクトのみを受け入れる。
+ * 前の要素が同じ型を宣言している場合、Chainは接続時に型の検査を省略する。
+ * </p>
+ *
+ * @param <T> 受け取るContainerのオブジェクトの型
+ */
+public abstract class TypedConsumer<T> extends Consumer implements TypedStage {
+	private final Class<T> inputType_;
+
+	private final ConsumerFilter filter_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	protected TypedConsumer(Class<T> inputType) {
+		inputType_ = inputType;
+		filter_ = new TypeFilter(inputType);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void execute_(Container<?> container) {
+		consume((T) container.get());
+	}
+
+	@Override
+	public ConsumerFilter getDefaultFilter() {
+		return filter_;
+	}
+
+	@Override
+	public Class<T> getInputType() {
+		return inputType_;
+	}
+
+	@Override
+	public Class<?> getOutputType() {
+		return null;
+	}
+
+	public abstract void consume(T value);
+}
@@ -0,0 +1,63 @@
+package jp.gr.naoco.chain;
+
+import jp.gr.naoco.chain.queue.ProducerQueue;
+
+/**
+ * 受け取るContainerと渡すContainerのオブジェクトの型を宣言するConsumerProducer
+ * <p>
+ * デフォルトフィルタは指定した型のオブジェクトのみを受け入れる。
+ * 前の要素が同じ型を宣言している場合、Chainは接続時に型の検査を省略する。<br/>
+ * 型の検査を省略した場合のみ、次の要素にはoutputTypeのオブジェクトのみが渡る（フィルタで除外したContainerはそのまま次の要素に渡るため）。
+ * </p>
+ *
+ * @param <I> 受け取るContainerのオブジェクトの型
+ * @param <O> 次の要素に渡すContainerのオブジェクトの型
+ */
+public abstract class TypedConsumerProducer<I, O> extends ConsumerProducer implements TypedStage {
+	private final Class<I> inputType_;
+
+	private final Class<O> outputType_;
+
+	private final ConsumerFilter filter_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	protected TypedConsumerProducer(Class<I> inputType, Class<O> outputType) {
+		inputType_ = inputType;
+		outputType_ = outputType;
+		filter_ = new TypeFilter(inputType);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public final void execute_(Container<?> container, ProducerQueue queue) {
+		process((I) container.get(), queue);
+	}
+
+	@Override
+	public ConsumerFilter getDefaultFilter() {
+		return filter_;
+	}
+
+	@Override
+	public Class<I> getInputType() {
+		return inputType_;
+	}
+
+	@Override
+	public Class<O> getOutputType() {
+		return outputType_;
+	}
+
+	/**
+	 * 受け取ったオブジェクトを処理し、outputTypeのオブジェクトを格納したContainerをqueueにofferする。
+	 *
+	 * @param value 受け取ったオブジェクト
+	 * @param queue 次の要素へのキュー
+	 */
+	public abstract void process(I value, ProducerQueue queue);
+}
@@ -0,0 +1,30 @@
+package jp.gr.naoco.chain;
+
+/**
+ * 渡すContainerのオブジェクトの型を宣言するProducer
+ *
+ * @param <T> 渡すContainerのオブジェクトの型
+ */
+public abstract class TypedProducer<T> implements Producer, TypedStage {
+	private final Class<T> outputType_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	protected TypedProducer(Class<T> outputType) {
+		outputType_ = outputType;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public Class<?> getInputType() {
+		return null;
+	}
+
+	@Override
+	public Class<T> getOutputType() {
+		return outputType_;
+	}
+}
@@ -0,0 +1,24 @@
+package jp.gr.naoco.chain;
+
+/**
+ * 受け取るContainerと渡すContainerのオブジェクトの型を宣言するChainの要素
+ * <p>
+ * Chainは接続時に、前の要素が渡す型が次の要素の受け取る型に代入可能な場合、次の要素のデフォルトフィルタ（{@link TypeFilter}）の代わりに
+ * {@link ConsumerFilter#PASS_THROUGH_FILTER}を使用し、Containerごとの型の検査を省略する。
+ * </p>
+ */
+public interface TypedStage {
+	/**
+	 * 受け取るContainerのオブジェクトの型を返す。
+	 *
+	 * @return 型（Producerの場合はnull）
+	 */
+	public Class<?> getInputType();
+
+	/**
+	 * 次の要素に渡すContainerのオブジェクトの型を返す。
+	 *
+	 * @return 型（Consumerの場合はnull）
+	 */
+	public Class<?> getOutputType();
+}
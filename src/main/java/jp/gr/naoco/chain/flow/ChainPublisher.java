@@ -0,0 +1,231 @@
+package jp.gr.naoco.chain.flow;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jp.gr.naoco.chain.Consumer;
+import jp.gr.naoco.chain.Container;
+
+/**
+ * Chainの末端のConsumerとして、受け取ったContainerのオブジェクトを{@link Flow.Subscriber}に渡すPublisher
+ * <p>
+ * Subscriberは1つのみ登録できる。Subscriberが{@link Flow.Subscription#request(long)}で要求した数だけ、
+ * Containerのオブジェクトを{@link Flow.Subscriber#onNext(Object)}で渡す。
+ * 要求数が0の間は、キューの満杯ではなく要求数によって前の要素の処理を待機させる。
+ * </p>
+ * <p>
+ * Chainが正常に終了した場合は{@link Flow.Subscriber#onComplete()}を、異常終了した場合は{@link Flow.Subscriber#onError(Throwable)}を呼び出す。
+ * Subscriberの登録より前にChainが終了した場合は、終了の状態を保持し、登録時に通知する。
+ * Subscriberがキャンセルした後に受け取ったContainerは破棄する。
+ * </p>
+ * <p>
+ * Subscriberの登録と要求を待機する最大時間を超えた場合は、RuntimeExceptionが発生する。
+ * </p>
+ *
+ * @param <T> 渡すオブジェクトの型
+ */
+public class ChainPublisher<T> extends Consumer implements Flow.Publisher<T> {
+
+	private final long waitNanos_;
+
+	private final ReentrantLock lock_ = new ReentrantLock();
+
+	private final Condition demanded_ = lock_.newCondition();
+
+	private Flow.Subscriber<? super T> subscriber_ = null;
+
+	private long demand_ = 0L;
+
+	private boolean isCancelled_ = false;
+
+	private volatile boolean failed_ = false;
+
+	private volatile boolean isTerminated_ = false;
+
+	/** Subscriberの登録より前にChainが終了した場合はtrue */
+	private boolean isFinished_ = false;
+
+	/** Subscriberの登録より前にChainが異常終了した場合の例外 */
+	private Throwable failure_ = null;
+
+	private static final long DEFAULT_WAIT_MINUTES = 120L;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * このコンストラクタは new ChainPublisher(120) を呼び出すのと同等。
+	 */
+	public ChainPublisher() {
+		this(DEFAULT_WAIT_MINUTES);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link ChainPublisher} オブジェクトを構築します。
+	 *
+	 * @param waitTimeMinutes Subscriberの登録と要求を待機する最大時間（分）
+	 */
+	public ChainPublisher(long waitTimeMinutes) {
+		waitNanos_ = TimeUnit.MINUTES.toNanos(waitTimeMinutes < 1 ? 1 : waitTimeMinutes);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		if (null == subscriber) {
+			throw new NullPointerException("subscriber is null.");
+		}
+		boolean finished;
+		lock_.lock();
+		try {
+			if (null != subscriber_) {
+				subscriber.onSubscribe(new Flow.Subscription() {
+					@Override
+					public void request(long n) {
+						// nothing to do
+					}
+
+					@Override
+					public void cancel() {
+						// nothing to do
+					}
+				});
+				subscriber.onError(new IllegalStateException("ChainPublisher supports only one subscriber."));
+				return;
+			}
+			subscriber_ = subscriber;
+			finished = isFinished_;
+			isTerminated_ = finished;
+		} finally {
+			lock_.unlock();
+		}
+		subscriber.onSubscribe(new ChainSubscription());
+		// 登録より前に終了していた場合は、保持した終了の状態を通知する
+		if (finished) {
+			signal(subscriber, failure_);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void execute_(Container<?> container) {
+		if (!awaitDemand()) {
+			return;
+		}
+		subscriber_.onNext((T) container.get());
+	}
+
+	@Override
+	public void error(Throwable t) {
+		failed_ = true;
+		terminate(t);
+	}
+
+	/**
+	 * Chainの終了時にonCompleteを呼び出す。（direct接続ではfinishがContainerごとに呼び出されるため、finalizeで通知する）
+	 */
+	@Override
+	public void finalize() {
+		if (!failed_) {
+			terminate(null);
+		}
+	}
+
+	// ////////////////////////////////
+
+	/**
+	 * Subscriberの要求を待機し、要求数を1減らす。
+	 *
+	 * @return Subscriberに渡す場合はtrue、キャンセル済みの場合はfalse
+	 */
+	private boolean awaitDemand() {
+		lock_.lock();
+		try {
+			long nanos = waitNanos_;
+			while (!isCancelled_ && ((null == subscriber_) || (demand_ <= 0))) {
+				if (nanos <= 0) {
+					throw new RuntimeException("time over by waiting for subscriber's request.");
+				}
+				nanos = demanded_.awaitNanos(nanos);
+			}
+			if (isCancelled_) {
+				return false;
+			}
+			if (Long.MAX_VALUE != demand_) {
+				demand_--;
+			}
+			return true;
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	private void terminate(Throwable t) {
+		Flow.Subscriber<? super T> subscriber;
+		lock_.lock();
+		try {
+			if (isTerminated_ || isCancelled_ || isFinished_) {
+				return;
+			}
+			if (null == subscriber_) {
+				isFinished_ = true;
+				failure_ = t;
+				return;
+			}
+			isTerminated_ = true;
+			subscriber = subscriber_;
+		} finally {
+			lock_.unlock();
+		}
+		signal(subscriber, t);
+	}
+
+	private void signal(Flow.Subscriber<? super T> subscriber, Throwable t) {
+		if (null == t) {
+			subscriber.onComplete();
+		} else {
+			subscriber.onError(t);
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	private class ChainSubscription implements Flow.Subscription {
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				cancel();
+				subscriber_.onError(new IllegalArgumentException("request must be positive. n:" + n));
+				return;
+			}
+			lock_.lock();
+			try {
+				// 要求数の合計はLong.MAX_VALUEで打ち切る（無制限の要求として扱う）
+				demand_ = (Long.MAX_VALUE - demand_ <= n) ? Long.MAX_VALUE : demand_ + n;
+				demanded_.signalAll();
+			} finally {
+				lock_.unlock();
+			}
+		}
+
+		@Override
+		public void cancel() {
+			lock_.lock();
+			try {
+				isCancelled_ = true;
+				demanded_.signalAll();
+			} finally {
+				lock_.unlock();
+			}
+		}
+	}
+}
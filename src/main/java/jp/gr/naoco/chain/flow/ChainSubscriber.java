@@ -0,0 +1,246 @@
+package jp.gr.naoco.chain.flow;
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jp.gr.naoco.chain.Container;
+import jp.gr.naoco.chain.DemandProducer;
+import jp.gr.naoco.chain.queue.InterruptibleProducerQueue;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.log.LaolLogger;
+
+/**
+ * {@link Flow.Publisher}から受け取った要素を、Chainの先頭のProducerとして次の要素に渡すSubscriber
+ * <p>
+ * 要素はPublisherのスレッドから{@link #onNext(Object)}で受け取り、Containerに格納して次の要素にofferする。
+ * Producer用のスレッドは使用しない。<br/>
+ * Publisherにはbatch個の要素を要求し、その半数を次の要素が処理するごとに、処理した数だけ追加で要求する。
+ * </p>
+ * <p>
+ * 次の要素がparallel接続、ワーカープール接続、パーティション接続の場合、Consumerのスレッドがキューから取り出した数だけ要素を要求する。
+ * キューに滞留する要素数は要求した数を超えないため、onNextはキューへのofferで待機しない。
+ * 要求する数はbatchとキューの最大要素数の小さい方とする。<br/>
+ * 次の要素がdirect接続の場合、Publisherのスレッドで後続の処理を実行し、処理を終えた分だけ要素を要求する。
+ * この場合、direct接続の後続にparallel接続があると、onNextはそのキューへのofferで待機することがある。
+ * </p>
+ * <p>
+ * 使用手順は以下の通り。Chainの実行開始とPublisherへの登録は、どちらを先に行ってもよい。
+ * </p>
+ * <pre>
+ * ChainSubscriber&lt;T&gt; subscriber = new ChainSubscriber&lt;T&gt;(64);
+ * Chain chain = new Chain(subscriber);
+ * chain.direct(consumer);
+ * chain.executeWithoutJoin();
+ * publisher.subscribe(subscriber);
+ * chain.join();
+ * </pre>
+ * <p>
+ * Publisherから{@link #onError(Throwable)}を受け取った場合、次の要素のキューを中断し、{@link #join()}でRuntimeExceptionが発生する。
+ * 次の要素で例外が発生した場合は、Subscriptionをキャンセルする。
+ * </p>
+ *
+ * @param <T> 受け取る要素の型
+ */
+public class ChainSubscriber<T> implements Flow.Subscriber<T>, DemandProducer {
+
+	/** Publisherに最初に要求する要素数 */
+	private int demand_;
+
+	/** 追加で要求するまでに処理する要素数 */
+	private volatile int refill_;
+
+	/** Consumerのスレッドが取り出した数で要求する場合はtrue */
+	private volatile boolean consumerDriven_ = false;
+
+	private Flow.Subscription subscription_ = null;
+
+	private ProducerQueue queue_ = null;
+
+	/** 前回の要求後に次の要素に渡した数（Publisherのスレッドのみ参照） */
+	private int delivered_ = 0;
+
+	/** 前回の要求後にConsumerのスレッドが取り出した数 */
+	private final AtomicInteger consumed_ = new AtomicInteger(0);
+
+	private final CountDownLatch done_ = new CountDownLatch(1);
+
+	private volatile boolean isDone_ = false;
+
+	private volatile Throwable error_ = null;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link ChainSubscriber} オブジェクトを構築します。
+	 *
+	 * @param batch Publisherに要求する要素数（1以上）
+	 */
+	public ChainSubscriber(int batch) {
+		if (batch < 1) {
+			throw new IllegalArgumentException("batch must be greater than 0.");
+		}
+		demand_ = batch;
+		refill_ = Math.max(1, batch / 2);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void execute(ProducerQueue queue) {
+		Flow.Subscription subscription;
+		synchronized (this) {
+			queue_ = queue;
+			subscription = subscription_;
+			refill_ = Math.max(1, demand_ / 2);
+		}
+		// 次の要素の準備ができるまで、Publisherに要素を要求しない
+		if (null != subscription) {
+			subscription.request(demand_);
+		}
+	}
+
+	@Override
+	public synchronized Iterator<Container<?>> consumerIterator(final Iterator<Container<?>> iterator,
+			int maxQueueSize) {
+		consumerDriven_ = true;
+		demand_ = Math.max(1, Math.min(demand_, maxQueueSize));
+		return new Iterator<Container<?>>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Container<?> next() {
+				Container<?> container = iterator.next();
+				consumed();
+				return container;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		if (null == subscription) {
+			throw new NullPointerException("subscription is null.");
+		}
+		int demand;
+		synchronized (this) {
+			if (null != subscription_) {
+				// 2つ目以降のSubscriptionは受け付けない
+				subscription.cancel();
+				return;
+			}
+			subscription_ = subscription;
+			demand = (null != queue_ ? demand_ : 0);
+		}
+		if (0 < demand) {
+			subscription.request(demand);
+		}
+	}
+
+	@Override
+	public void onNext(T item) {
+		if (null == item) {
+			throw new NullPointerException("item is null.");
+		}
+		if (isDone_) {
+			return;
+		}
+		try {
+			// Consumerのスレッドが取り出した数だけ要求するため、キューは満杯にならない
+			queue_.offer(new Container<T>(item));
+		} catch (Throwable t) {
+			// 後続の要素の異常はPublisherに返さず、Subscriptionをキャンセルする
+			LOG.error(t.getMessage(), t);
+			subscription_.cancel();
+			done(t);
+			return;
+		}
+		if (consumerDriven_) {
+			return;
+		}
+		if (refill_ <= ++delivered_) {
+			subscription_.request(delivered_);
+			delivered_ = 0;
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		LOG.error(throwable.getMessage(), throwable);
+		if (queue_ instanceof InterruptibleProducerQueue) {
+			((InterruptibleProducerQueue) queue_).reserveInterrupt(throwable);
+		}
+		done(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		done(null);
+	}
+
+	/**
+	 * Publisherの完了、あるいは異常終了を待機する。
+	 */
+	@Override
+	public void join() {
+		try {
+			done_.await();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		if (null != error_) {
+			throw new RuntimeException(error_);
+		}
+	}
+
+	@Override
+	public void reserveInterrupt(Throwable t) {
+		Flow.Subscription subscription;
+		synchronized (this) {
+			subscription = subscription_;
+		}
+		if (null != subscription) {
+			subscription.cancel();
+		}
+		done(t);
+	}
+
+	// ////////////////////////////////
+
+	/**
+	 * Consumerのスレッドが要素を取り出したことを記録し、refill個に達した場合は取り出した数だけPublisherに要求する。
+	 */
+	private void consumed() {
+		int consumed = consumed_.incrementAndGet();
+		// 並行して取り出した他のスレッドが数え直した場合は、最後に数えたスレッドが要求する
+		if ((refill_ <= consumed) && consumed_.compareAndSet(consumed, 0) && !isDone_) {
+			subscription_.request(consumed);
+		}
+	}
+
+	private synchronized void done(Throwable t) {
+		if (isDone_) {
+			return;
+		}
+		error_ = t;
+		isDone_ = true;
+		done_.countDown();
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Logger
+
+	private static final LaolLogger LOG = new LaolLogger(ChainSubscriber.class.getName());
+}
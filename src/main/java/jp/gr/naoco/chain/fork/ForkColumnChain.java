@@ -4,15 +4,20 @@ import java.util.ArrayList;
 import java.util.List;
 
 import jp.gr.naoco.chain.Chain;
+import jp.gr.naoco.chain.ChainExecutor;
 import jp.gr.naoco.chain.Consumer;
+import jp.gr.naoco.chain.ConsumerFactory;
 import jp.gr.naoco.chain.ConsumerFilter;
 import jp.gr.naoco.chain.ConsumerInterface;
 import jp.gr.naoco.chain.Producer;
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
 import jp.gr.naoco.core.log.LaolLogger;
 
 public class ForkColumnChain extends Chain {
 	private List<ForkLegChain> legList_;
 
+	private ForkPolicy policy_ = ForkPolicy.DEFAULT;
+
 	// ////////////////////////////////////////////////////////////////////////////////////////////
 	// Constructor
 
@@ -24,6 +29,39 @@ public class ForkColumnChain extends Chain {
 		super(producer, queueSize);
 	}
 
+	/**
+	 * コンストラクタ
+	 * <p>
+	 * 各レッグへのContainerの受け渡しの設定を指定する。指定しない場合は{@link ForkPolicy#DEFAULT}を使用する。
+	 * </p>
+	 *
+	 * @param producer 先頭のProducer
+	 * @param queueSize parallel接続のキューの最大要素数
+	 * @param policy レッグへのContainerの受け渡しの設定
+	 */
+	public ForkColumnChain(Producer producer, int queueSize, ForkPolicy policy) {
+		super(producer, queueSize);
+		policy_ = policy;
+	}
+
+	/**
+	 * コンストラクタ
+	 * <p>
+	 * 各レッグへのContainerの受け渡しの設定と、parallel接続で別スレッドの処理を実行するエクゼキュータを指定する。<br/>
+	 * 各レッグのスレッドは、レッグのChainに指定したエクゼキュータで実行する。
+	 * </p>
+	 *
+	 * @param producer 先頭のProducer
+	 * @param queueSize parallel接続のキューの最大要素数
+	 * @param policy レッグへのContainerの受け渡しの設定
+	 * @param executor 別スレッドの処理を実行するエクゼキュータ
+	 * @see ForkLegChain#ForkLegChain(ConsumerFilter, int, ChainExecutor)
+	 */
+	public ForkColumnChain(Producer producer, int queueSize, ForkPolicy policy, ChainExecutor executor) {
+		super(producer, queueSize, ParallelQueueFactory.BLOCKING, executor);
+		policy_ = policy;
+	}
+
 	// ////////////////////////////////////////////////////////////////////////////////////////////
 	// Methods
 
@@ -57,6 +95,16 @@ public class ForkColumnChain extends Chain {
 		throw new UnsupportedOperationException();
 	}
 
+	@Override
+	public Chain parallel(ConsumerFactory factory, int nThreads) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Chain parallel(ConsumerFactory factory, ConsumerFilter filter, int nThreads) {
+		throw new UnsupportedOperationException();
+	}
+
 	@Override
 	public void execute() {
 		for (ForkLegChain leg : legList_) {
@@ -79,7 +127,10 @@ public class ForkColumnChain extends Chain {
 
 	public void connectLegs(List<ForkLegChain> legList) {
 		legList_ = legList;
-		super.direct(new ForkColumnConsumer(legList), ConsumerFilter.PASS_THROUGH_FILTER);
+		for (ForkLegChain leg : legList) {
+			leg.getForkLegConsumerProducer().setPolicy(policy_);
+		}
+		super.direct(new ForkColumnConsumer(legList, policy_.getRouting()), ConsumerFilter.PASS_THROUGH_FILTER);
 
 		ArrayList<Broker> mergedList = new ArrayList<Broker>();
 		mergedList.addAll(interruptBrokerList_);
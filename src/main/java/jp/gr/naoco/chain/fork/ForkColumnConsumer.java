@@ -5,16 +5,24 @@ import java.util.List;
 
 import jp.gr.naoco.chain.Consumer;
 import jp.gr.naoco.chain.Container;
+import jp.gr.naoco.chain.fork.ForkPolicy.Routing;
 import jp.gr.naoco.core.log.LaolLogger;
 
 public class ForkColumnConsumer extends Consumer {
 
 	private List<ForkLegProducer> legProducerList_;
 
+	private Routing routing_;
+
 	// ////////////////////////////////////////////////////////////////////////////////////////////
 	// Constructor
 
 	protected ForkColumnConsumer(List<ForkLegChain> legChainList) {
+		this(legChainList, Routing.BROADCAST);
+	}
+
+	protected ForkColumnConsumer(List<ForkLegChain> legChainList, Routing routing) {
+		routing_ = routing;
 		legProducerList_ = new ArrayList<ForkLegProducer>(legChainList.size());
 		for (ForkLegChain legChain : legChainList) {
 			legProducerList_.add(legChain.getForkLegConsumerProducer());
@@ -25,9 +33,11 @@ public class ForkColumnConsumer extends Consumer {
 	// Methods
 
 	@Override
-	public void execute_(Container container) {
+	public void execute_(Container<?> container) {
 		for (ForkLegProducer producer : legProducerList_) {
-			producer.connect(container);
+			if (producer.connect(container) && (Routing.PARTITION == routing_)) {
+				return;
+			}
 		}
 	}
 
@@ -37,7 +47,7 @@ public class ForkColumnConsumer extends Consumer {
 		for (ForkLegProducer producer : legProducerList_) {
 			try {
 				producer.finish();
-				LOG.debug("finish to " + producer.getThread().getName());
+				LOG.debug("finish to " + producer.getName());
 			} catch (Throwable e) {
 				t = e;
 			}
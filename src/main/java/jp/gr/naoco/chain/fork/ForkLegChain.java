@@ -4,7 +4,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import jp.gr.naoco.chain.Chain;
+import jp.gr.naoco.chain.ChainExecutor;
 import jp.gr.naoco.chain.ConsumerFilter;
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
 
 public class ForkLegChain extends Chain {
 
@@ -23,6 +25,22 @@ public class ForkLegChain extends Chain {
 		init();
 	}
 
+	/**
+	 * コンストラクタ
+	 * <p>
+	 * レッグのContainerを次の要素に渡すスレッドと、レッグ内のparallel接続で、別スレッドの処理を実行するエクゼキュータを指定する。
+	 * 指定しない場合は{@link ChainExecutor#getDefault()}を使用する。
+	 * </p>
+	 *
+	 * @param filter レッグが受け入れるContainerのフィルタ
+	 * @param queueSize parallel接続のキューの最大要素数
+	 * @param executor 別スレッドの処理を実行するエクゼキュータ
+	 */
+	public ForkLegChain(ConsumerFilter filter, int queueSize, ChainExecutor executor) {
+		super(new ForkLegProducer(filter), queueSize, ParallelQueueFactory.BLOCKING, executor);
+		init();
+	}
+
 	// ////////////////////////////////////////////////////////////////////////////////////////////
 	// Methods
 
@@ -45,5 +63,6 @@ public class ForkLegChain extends Chain {
 
 	private void init() {
 		legProducer_ = (ForkLegProducer) super.getProducer();
+		legProducer_.setExecutor(getExecutor());
 	}
 }
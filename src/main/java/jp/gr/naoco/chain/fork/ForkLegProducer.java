@@ -1,29 +1,66 @@
 package jp.gr.naoco.chain.fork;
 
 import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import jp.gr.naoco.chain.ChainExecutor;
 import jp.gr.naoco.chain.ConsumerFilter;
 import jp.gr.naoco.chain.Container;
 import jp.gr.naoco.chain.JoinedProducer;
+import jp.gr.naoco.chain.queue.BoundedProducerQueue;
+import jp.gr.naoco.chain.queue.InterruptibleProducerQueue;
 import jp.gr.naoco.chain.queue.ParallelProducerQueue;
 import jp.gr.naoco.chain.queue.ProducerQueue;
 import jp.gr.naoco.core.log.LaolLogger;
 
 public class ForkLegProducer implements JoinedProducer {
 
-	private final ParallelProducerQueue queue_ = new ParallelProducerQueue(100, Integer.MAX_VALUE);
+	private ParallelProducerQueue queue_;
 
 	private ConsumerFilter filter_;
 
-	private Thread thread_ = null;
+	/** レッグのContainerを次の要素に渡すスレッドのエクゼキュータ（レッグのChainのエクゼキュータ） */
+	private ChainExecutor executor_ = ChainExecutor.getDefault();
+
+	private ChainExecutor.Task thread_ = null;
 
 	private volatile Throwable inThreadError_ = null;
 
+	// ForkJoinPoolで実行する場合のみ使用
+
+	private ForkJoinPool pool_ = null;
+
+	private ArrayBlockingQueue<Container<?>> buffer_;
+
+	private ProducerQueue nextQueue_;
+
+	/** バッファのContainerを次の要素に渡すタスクを、スケジュール済みあるいは実行中の場合はtrue */
+	private final AtomicBoolean scheduled_ = new AtomicBoolean(false);
+
+	private final CountDownLatch done_ = new CountDownLatch(1);
+
+	private volatile boolean isFinished_ = false;
+
+	private volatile boolean reserveInterrupt_ = false;
+
+	private volatile Throwable interruptCause_ = null;
+
+	/** 1回のタスクで次の要素に渡すContainerの最大数（他のレッグのタスクに順番を譲るため） */
+	private static final int DRAIN_SIZE = 100;
+
+	private static final long OFFER_WAIT_MILLIS = 100L;
+
 	// ////////////////////////////////////////////////////////////////////////////////////////////
 	// Constructor
 
 	protected ForkLegProducer(ConsumerFilter filter) {
 		filter_ = filter;
+		setPolicy(ForkPolicy.DEFAULT);
 	}
 
 	// ////////////////////////////////////////////////////////////////////////////////////////////
@@ -32,8 +69,13 @@ public class ForkLegProducer implements JoinedProducer {
 	@Override
 	public void execute(ProducerQueue queue) {
 		final ProducerQueue nextQueue = queue;
+		if (null != pool_) {
+			// レッグのタスクは、フォーク列からContainerを受け取った時点でスケジュールする
+			nextQueue_ = nextQueue;
+			return;
+		}
 		try {
-			final Iterator<Container> containeres = queue_.consumerIterator();
+			final Iterator<Container<?>> containeres = queue_.consumerIterator();
 			Runnable runner = new Runnable() {
 				@Override
 				public void run() {
@@ -45,8 +87,7 @@ public class ForkLegProducer implements JoinedProducer {
 					LOG.info("thread exit");
 				}
 			};
-			thread_ = new Thread(runner);
-			thread_.start();
+			thread_ = executor_.execute(runner);
 		} catch (Throwable t) {
 			inThreadError_ = t;
 			LOG.fatal(t.getMessage(), t);
@@ -57,7 +98,11 @@ public class ForkLegProducer implements JoinedProducer {
 	@Override
 	public void join() {
 		try {
-			thread_.join();
+			if (null != pool_) {
+				done_.await();
+			} else {
+				thread_.join();
+			}
 		} catch (InterruptedException e) {
 			throw new RuntimeException(e);
 		}
@@ -65,9 +110,14 @@ public class ForkLegProducer implements JoinedProducer {
 
 	@Override
 	public void reserveInterrupt(Throwable t) {
-		queue_.reserveInterrupt(t);
-		if (null != thread_) {
-			thread_.interrupt();
+		if (null != pool_) {
+			interruptCause_ = t;
+			reserveInterrupt_ = true;
+		} else {
+			queue_.reserveInterrupt(t);
+			if (null != thread_) {
+				thread_.interrupt();
+			}
 		}
 		if (null != inThreadError_) {
 			throw new RuntimeException(inThreadError_);
@@ -76,17 +126,34 @@ public class ForkLegProducer implements JoinedProducer {
 
 	// ////////////////////////////////
 
-	protected void connect(Container container) {
-		if (filter_.accept(container)) {
-			queue_.offer(container);
+	/**
+	 * フィルタが受け入れる場合はContainerをバッファに追加する。バッファが満杯の場合は空きができるまで待機する。
+	 *
+	 * @param container Container
+	 * @return フィルタが受け入れた場合はtrue
+	 */
+	protected boolean connect(Container<?> container) {
+		boolean accepted = filter_.accept(container);
+		if (accepted) {
+			if (null != pool_) {
+				put(container);
+			} else {
+				queue_.offer(container);
+			}
 		}
 		if (null != inThreadError_) {
 			throw new RuntimeException(inThreadError_);
 		}
+		return accepted;
 	}
 
 	protected void finish() {
-		queue_.finish();
+		if (null != pool_) {
+			isFinished_ = true;
+			schedule();
+		} else {
+			queue_.finish();
+		}
 		if (null != inThreadError_) {
 			throw new RuntimeException(inThreadError_);
 		}
@@ -94,14 +161,161 @@ public class ForkLegProducer implements JoinedProducer {
 
 	// /////////////////////////////////
 
+	void setPolicy(ForkPolicy policy) {
+		pool_ = policy.getPool();
+		if (null != pool_) {
+			buffer_ = new ArrayBlockingQueue<Container<?>>(policy.getLegBufferSize());
+			queue_ = null;
+		} else {
+			queue_ = new ParallelProducerQueue(policy.getLegBufferSize(), Integer.MAX_VALUE);
+			buffer_ = null;
+		}
+	}
+
+	void setExecutor(ChainExecutor executor) {
+		executor_ = executor;
+	}
+
 	ParallelProducerQueue getQueue() {
 		return queue_;
 	}
 
-	Thread getThread() {
+	ChainExecutor.Task getThread() {
 		return thread_;
 	}
 
+	String getName() {
+		if (null != pool_) {
+			return "ForkJoinPool";
+		}
+		return (null == thread_) ? "" : thread_.getName();
+	}
+
+	// ////////////////////////////////
+
+	private void put(Container<?> container) {
+		try {
+			while (!buffer_.offer(container, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+				// レッグのタスクが異常終了した場合は、バッファが空かないため待機しない
+				interrupted();
+				if (null != inThreadError_) {
+					throw new RuntimeException(inThreadError_);
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		schedule();
+	}
+
+	private void schedule() {
+		if (scheduled_.compareAndSet(false, true)) {
+			pool_.execute(new LegTask());
+		}
+	}
+
+	private void interrupted() {
+		if (reserveInterrupt_) {
+			if (null == interruptCause_) {
+				throw new RuntimeException("this thread is interrupted.");
+			} else {
+				throw new RuntimeException("this thread is interrupted.", interruptCause_);
+			}
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	/**
+	 * バッファのContainerを最大{@link ForkLegProducer#DRAIN_SIZE}個まで次の要素に渡すタスク
+	 * <p>
+	 * バッファにContainerが残っている場合は、新しいタスクをフォークして終了する。
+	 * フォークしたタスクは、空いたワーカースレッドに横取りされて実行される場合がある。<br/>
+	 * レッグ内のContainerの順序を保つため、1つのレッグで同時に実行されるタスクは1つのみとする。
+	 * </p>
+	 * <p>
+	 * 次の要素が別スレッドの要素の場合、キューが満杯のofferは{@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}で待機し、
+	 * 待機中はプールが代わりのワーカースレッドで他のレッグのタスクを処理する。
+	 * キューが{@link BoundedProducerQueue}で空きがある場合は、managedBlockを経由せずにofferする。
+	 * </p>
+	 */
+	private class LegTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void compute() {
+			try {
+				Container<?> container;
+				for (int i = 0; (i < DRAIN_SIZE) && (null != (container = buffer_.poll())); i++) {
+					interrupted();
+					offer(container);
+				}
+				if (isFinished_ && buffer_.isEmpty()) {
+					// 終了後はscheduled_をtrueのままとし、タスクをスケジュールしない
+					nextQueue_.finish();
+					done_.countDown();
+					return;
+				}
+			} catch (Throwable t) {
+				inThreadError_ = t;
+				LOG.fatal(t.getMessage(), t);
+				done_.countDown();
+				return;
+			}
+			scheduled_.set(false);
+			// フラグを戻す前に追加されたContainerと終了通知を取りこぼさないよう、再度確認する
+			if ((isFinished_ || !buffer_.isEmpty()) && scheduled_.compareAndSet(false, true)) {
+				new LegTask().fork();
+			}
+		}
+
+		private void offer(Container<?> container) throws InterruptedException {
+			// direct接続、sequential接続のキューは待機しないため、そのまま渡す
+			if (!(nextQueue_ instanceof InterruptibleProducerQueue)) {
+				nextQueue_.offer(container);
+				return;
+			}
+			// 空きがある場合は待機しないため、ブロッカーを生成せずに渡す
+			// （レッグのタスクは同時に1つのみ実行するため、判定からofferまでの間に空きは減らない）
+			if ((nextQueue_ instanceof BoundedProducerQueue)
+					&& ((BoundedProducerQueue) nextQueue_).canOfferWithoutWait()) {
+				nextQueue_.offer(container);
+				return;
+			}
+			ForkJoinPool.managedBlock(new OfferBlocker(container));
+		}
+	}
+
+	/**
+	 * 次の要素のキューへのofferで待機する間、ForkJoinPoolに代わりのワーカースレッドを起動させるブロッカー
+	 */
+	private class OfferBlocker implements ForkJoinPool.ManagedBlocker {
+		private Container<?> container_;
+
+		private OfferBlocker(Container<?> container) {
+			container_ = container;
+		}
+
+		@Override
+		public boolean block() {
+			nextQueue_.offer(container_);
+			container_ = null;
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			// managedBlockの呼出しまでに空きができた場合は、代わりのワーカースレッドを起動せずに渡す
+			if ((null != container_) && (nextQueue_ instanceof BoundedProducerQueue)
+					&& ((BoundedProducerQueue) nextQueue_).canOfferWithoutWait()) {
+				nextQueue_.offer(container_);
+				container_ = null;
+			}
+			return (null == container_);
+		}
+	}
+
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Logger
 
@@ -0,0 +1,73 @@
+package jp.gr.naoco.chain.fork;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@link ForkColumnChain}から各レッグへのContainerの受け渡しの設定
+ * <p>
+ * レッグごとにlegBufferSize個までのバッファを持ち、フォーク列はContainerを渡すレッグのバッファが満杯の場合のみ待機する。
+ * </p>
+ * <ul>
+ * <li><b>BROADCAST</b>:フィルタが受け入れるすべてのレッグにContainerを渡す。</li>
+ * <li><b>PARTITION</b>:フィルタが受け入れる最初のレッグにのみContainerを渡す。</li>
+ * </ul>
+ * <p>
+ * poolを指定した場合、各レッグはスレッドを専有せずに、バッファのContainerを次の要素に渡すタスクとしてForkJoinPoolで実行される。
+ * 処理の遅いレッグのタスクが残っている間も、空いたワーカースレッドは他のレッグのタスクを処理する。
+ * レッグのタスクが次の要素のキューで待機する間は、プールが代わりのワーカースレッドを起動する。<br/>
+ * poolを指定しない場合は、レッグごとにレッグのChainのエクゼキュータ（{@link jp.gr.naoco.chain.ChainExecutor}）でスレッドを開始する。
+ * </p>
+ */
+public class ForkPolicy {
+
+	public static enum Routing {
+		BROADCAST, PARTITION
+	}
+
+	/** レッグごとのスレッドで、すべてのレッグにContainerを渡すデフォルトの設定 */
+	public static final ForkPolicy DEFAULT = new ForkPolicy(100, Routing.BROADCAST, null);
+
+	private final int legBufferSize_;
+
+	private final Routing routing_;
+
+	private final ForkJoinPool pool_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link ForkPolicy} オブジェクトを構築します。
+	 *
+	 * @param legBufferSize レッグごとのバッファの最大要素数（1以上）
+	 * @param routing Containerを渡すレッグの選択方法
+	 * @param pool レッグのタスクを実行するForkJoinPool（nullの場合はレッグごとにスレッドを開始）
+	 */
+	public ForkPolicy(int legBufferSize, Routing routing, ForkJoinPool pool) {
+		if (legBufferSize < 1) {
+			throw new IllegalArgumentException("legBufferSize must be greater than 0.");
+		}
+		if (null == routing) {
+			throw new IllegalArgumentException("routing is null.");
+		}
+		legBufferSize_ = legBufferSize;
+		routing_ = routing;
+		pool_ = pool;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	public int getLegBufferSize() {
+		return legBufferSize_;
+	}
+
+	public Routing getRouting() {
+		return routing_;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool_;
+	}
+}
@@ -0,0 +1,201 @@
+package jp.gr.naoco.chain.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Chainの接続ごとの計測値を保持する。
+ * <p>
+ * {@link jp.gr.naoco.chain.Chain#metrics(ChainMetrics)}で設定したChainの実行時に、接続ごとの{@link StageMetrics}を生成する。
+ * 同じChainMetricsを設定したChainを繰り返し実行した場合、計測値は累積する。<br/>
+ * ChainMetricsを設定しない場合は計測を行わず、Containerの受け渡しに計測のためのオーバーヘッドは発生しない。
+ * </p>
+ * <p>
+ * 計測値は{@link #snapshot()}で取得するか、{@link #register(String)}でJMXのMBeanとして公開する。
+ * </p>
+ */
+public class ChainMetrics implements ChainMetricsMBean {
+
+	private final List<StageMetrics> stages_ = new ArrayList<StageMetrics>();
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	/**
+	 * 指定した順番の接続の計測値を返す。存在しない場合は生成する。
+	 *
+	 * @param index Chainの先頭からの接続の順番
+	 * @param name 接続の名前
+	 * @return 接続の計測値
+	 */
+	public synchronized StageMetrics stage(int index, String name) {
+		while (stages_.size() <= index) {
+			stages_.add(null);
+		}
+		StageMetrics stage = stages_.get(index);
+		if (null == stage) {
+			stage = new StageMetrics(name);
+			stages_.set(index, stage);
+		}
+		return stage;
+	}
+
+	/**
+	 * すべての接続の計測値を返す。
+	 *
+	 * @return 接続の順の計測値のスナップショット
+	 */
+	public synchronized List<StageMetrics.Snapshot> snapshot() {
+		List<StageMetrics.Snapshot> list = new ArrayList<StageMetrics.Snapshot>(stages_.size());
+		for (StageMetrics stage : stages_) {
+			if (null != stage) {
+				list.add(stage.snapshot());
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * 本オブジェクトをプラットフォームのMBeanサーバに登録する。
+	 *
+	 * @param objectName MBeanの名前（例: "jp.gr.naoco.chain:type=ChainMetrics,name=import"）
+	 */
+	public void register(String objectName) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(this, new ObjectName(objectName));
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * 本オブジェクトをプラットフォームのMBeanサーバから登録解除する。
+	 *
+	 * @param objectName MBeanの名前
+	 */
+	public void unregister(String objectName) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.unregisterMBean(new ObjectName(objectName));
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// ////////////////////////////////
+	// ChainMetricsMBean
+
+	@Override
+	public String[] getStageNames() {
+		List<StageMetrics.Snapshot> list = snapshot();
+		String[] result = new String[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).getName();
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getContainersIn() {
+		List<StageMetrics.Snapshot> list = snapshot();
+		long[] result = new long[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).getContainersIn();
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getContainersOut() {
+		List<StageMetrics.Snapshot> list = snapshot();
+		long[] result = new long[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).getContainersOut();
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getDepth() {
+		List<StageMetrics.Snapshot> list = snapshot();
+		long[] result = new long[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).getDepth();
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getProducerBlockedMillis() {
+		List<StageMetrics.Snapshot> list = snapshot();
+		long[] result = new long[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).getProducerBlockedNanos() / 1000000L;
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getConsumerBlockedMillis() {
+		List<StageMetrics.Snapshot> list = snapshot();
+		long[] result = new long[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).getConsumerBlockedNanos() / 1000000L;
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getLatencyP99Micros() {
+		List<StageMetrics.Snapshot> list = snapshot();
+		long[] result = new long[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).getLatencyP99Nanos() / 1000L;
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getDroppedCount() {
+		List<StageMetrics.Snapshot> list = snapshot();
+		long[] result = new long[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).getDroppedCount();
+		}
+		return result;
+	}
+
+	@Override
+	public int[] getCapacity() {
+		List<StageMetrics.Snapshot> list = snapshot();
+		int[] result = new int[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).getCapacity();
+		}
+		return result;
+	}
+
+	@Override
+	public String[] getSummaries() {
+		List<StageMetrics.Snapshot> list = snapshot();
+		String[] result = new String[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).toString();
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void reset() {
+		for (StageMetrics stage : stages_) {
+			if (null != stage) {
+				stage.reset();
+			}
+		}
+	}
+}
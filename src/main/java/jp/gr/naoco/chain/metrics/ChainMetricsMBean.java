@@ -0,0 +1,28 @@
+package jp.gr.naoco.chain.metrics;
+
+/**
+ * {@link ChainMetrics}をJMXで公開するためのインタフェース
+ */
+public interface ChainMetricsMBean {
+	public String[] getStageNames();
+
+	public long[] getContainersIn();
+
+	public long[] getContainersOut();
+
+	public long[] getDepth();
+
+	public long[] getProducerBlockedMillis();
+
+	public long[] getConsumerBlockedMillis();
+
+	public long[] getLatencyP99Micros();
+
+	public long[] getDroppedCount();
+
+	public int[] getCapacity();
+
+	public String[] getSummaries();
+
+	public void reset();
+}
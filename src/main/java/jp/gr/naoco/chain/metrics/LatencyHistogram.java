@@ -0,0 +1,109 @@
+package jp.gr.naoco.chain.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 処理時間の分布を、2のべき乗のナノ秒単位のバケットで集計するヒストグラム
+ * <p>
+ * 複数スレッドから同時に記録できる。パーセンタイルはバケットの上限値で近似する。
+ * </p>
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKET_NUM = 64;
+
+	private final AtomicLongArray buckets_ = new AtomicLongArray(BUCKET_NUM);
+
+	private final AtomicLong count_ = new AtomicLong(0L);
+
+	private final AtomicLong totalNanos_ = new AtomicLong(0L);
+
+	private final AtomicLong maxNanos_ = new AtomicLong(0L);
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	/**
+	 * 処理時間を記録する。
+	 *
+	 * @param nanos 処理時間（ナノ秒）
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		buckets_.incrementAndGet(bucketOf(nanos));
+		count_.incrementAndGet();
+		totalNanos_.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxNanos_.get())) {
+			if (maxNanos_.compareAndSet(max, nanos)) {
+				break;
+			}
+		}
+	}
+
+	public long getCount() {
+		return count_.get();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos_.get();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos_.get();
+	}
+
+	/**
+	 * 平均処理時間を返す。
+	 *
+	 * @return 平均処理時間（ナノ秒）、記録がない場合は0
+	 */
+	public long getMeanNanos() {
+		long count = count_.get();
+		return (0 == count ? 0L : (totalNanos_.get() / count));
+	}
+
+	/**
+	 * 指定したパーセンタイルの処理時間の近似値（バケットの上限値）を返す。
+	 *
+	 * @param percentile パーセンタイル（0～100）
+	 * @return 処理時間（ナノ秒）、記録がない場合は0
+	 */
+	public long getPercentileNanos(double percentile) {
+		long count = count_.get();
+		if (0 == count) {
+			return 0L;
+		}
+		long threshold = (long) Math.ceil(count * (percentile / 100.0));
+		long accumulated = 0L;
+		for (int i = 0; i < BUCKET_NUM; i++) {
+			accumulated += buckets_.get(i);
+			if (threshold <= accumulated) {
+				return Math.min(upperBoundOf(i), maxNanos_.get());
+			}
+		}
+		return maxNanos_.get();
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKET_NUM; i++) {
+			buckets_.set(i, 0L);
+		}
+		count_.set(0L);
+		totalNanos_.set(0L);
+		maxNanos_.set(0L);
+	}
+
+	// ////////////////////////////////
+
+	private static int bucketOf(long nanos) {
+		return Math.min(BUCKET_NUM - 1, BUCKET_NUM - Long.numberOfLeadingZeros(nanos));
+	}
+
+	private static long upperBoundOf(int bucket) {
+		return (bucket < (BUCKET_NUM - 1) ? ((1L << bucket) - 1) : Long.MAX_VALUE);
+	}
+}
@@ -0,0 +1,137 @@
+package jp.gr.naoco.chain.metrics;
+
+import java.util.Iterator;
+
+import jp.gr.naoco.chain.Container;
+import jp.gr.naoco.chain.queue.BoundedProducerQueue;
+import jp.gr.naoco.chain.queue.InterruptibleProducerQueue;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+
+/**
+ * キューのofferとConsumer側のIteratorを計測するキューのラッパー
+ * <p>
+ * Chainの計測を有効にした場合のみ、各接続のキューを本クラスでラップする。
+ * </p>
+ */
+public class MeasuredProducerQueue implements BoundedProducerQueue {
+
+	private final ProducerQueue queue_;
+
+	private final StageMetrics metrics_;
+
+	private final boolean direct_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link MeasuredProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param queue 計測するキュー
+	 * @param metrics 計測値
+	 * @param direct offer内でConsumerを直接実行するキュー（direct接続）の場合はtrue
+	 */
+	public MeasuredProducerQueue(ProducerQueue queue, StageMetrics metrics, boolean direct) {
+		queue_ = queue;
+		metrics_ = metrics;
+		direct_ = direct;
+		metrics_.setQueue(queue);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void offer(Container<?> obj) {
+		metrics_.onOffer();
+		long start = System.nanoTime();
+		try {
+			queue_.offer(obj);
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			if (direct_) {
+				metrics_.onConsume();
+				metrics_.recordProcessing(elapsed);
+			} else {
+				metrics_.addProducerBlocked(elapsed);
+			}
+		}
+	}
+
+	@Override
+	public void finish() {
+		queue_.finish();
+	}
+
+	@Override
+	public Iterator<Container<?>> consumerIterator() {
+		return measure(queue_.consumerIterator(), metrics_);
+	}
+
+	@Override
+	public void reserveInterrupt() {
+		if (queue_ instanceof InterruptibleProducerQueue) {
+			((InterruptibleProducerQueue) queue_).reserveInterrupt();
+		}
+	}
+
+	@Override
+	public void reserveInterrupt(Throwable interruptCause) {
+		if (queue_ instanceof InterruptibleProducerQueue) {
+			((InterruptibleProducerQueue) queue_).reserveInterrupt(interruptCause);
+		}
+	}
+
+	@Override
+	public boolean canOfferWithoutWait() {
+		return (queue_ instanceof BoundedProducerQueue) && ((BoundedProducerQueue) queue_).canOfferWithoutWait();
+	}
+
+	/**
+	 * ラップしているキューを返す。
+	 *
+	 * @return キュー
+	 */
+	public ProducerQueue getQueue() {
+		return queue_;
+	}
+
+	/**
+	 * Consumer側のIteratorを計測するIteratorでラップする。
+	 *
+	 * @param iterator Consumer側のIterator
+	 * @param metrics 計測値
+	 * @return 計測するIterator
+	 */
+	public static Iterator<Container<?>> measure(final Iterator<Container<?>> iterator, final StageMetrics metrics) {
+		return new Iterator<Container<?>>() {
+			private long lastNextTime_ = 0L;
+
+			@Override
+			public boolean hasNext() {
+				long start = System.nanoTime();
+				if (0L != lastNextTime_) {
+					metrics.recordProcessing(start - lastNextTime_);
+					lastNextTime_ = 0L;
+				}
+				boolean result = iterator.hasNext();
+				metrics.addConsumerBlocked(System.nanoTime() - start);
+				return result;
+			}
+
+			@Override
+			public Container<?> next() {
+				Container<?> container = iterator.next();
+				metrics.onConsume();
+				lastNextTime_ = System.nanoTime();
+				return container;
+			}
+
+			@Override
+			public void remove() {
+				iterator.remove();
+			}
+		};
+	}
+}
@@ -0,0 +1,296 @@
+package jp.gr.naoco.chain.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import jp.gr.naoco.chain.queue.AdaptiveProducerQueue;
+import jp.gr.naoco.chain.queue.BackpressureProducerQueue;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+
+/**
+ * Chainの1つの接続（ブローカ）の計測値
+ * <p>
+ * 接続のキューにofferされたContainer数（in）、Consumerが受け取ったContainer数（out）、
+ * Producerがofferで待機した累積時間、ConsumerがhasNextで待機した累積時間、およびConsumerの1Containerあたりの処理時間を計測する。<br/>
+ * キューの要素数はinとoutの差で求める。
+ * </p>
+ * <p>
+ * Consumerの処理時間は、nextでContainerを受け取ってから次のhasNextを呼び出すまでの時間であり、
+ * 後続の接続へのofferで待機した時間を含む。direct接続の場合は、offerの呼出しから復帰までの時間を処理時間とする。
+ * </p>
+ * <p>
+ * 接続のキューが{@link BackpressureProducerQueue}の場合は破棄した要素数を、{@link AdaptiveProducerQueue}の場合は
+ * 格納できる要素数と格納している要素のバイト数を、キューから取得する。
+ * </p>
+ */
+public class StageMetrics {
+
+	private final String name_;
+
+	private final AtomicLong containersIn_ = new AtomicLong(0L);
+
+	private final AtomicLong containersOut_ = new AtomicLong(0L);
+
+	private final AtomicLong maxDepth_ = new AtomicLong(0L);
+
+	private final AtomicLong producerBlockedNanos_ = new AtomicLong(0L);
+
+	private final AtomicLong consumerBlockedNanos_ = new AtomicLong(0L);
+
+	private final LatencyHistogram latency_ = new LatencyHistogram();
+
+	/** 現在の実行での接続のキュー */
+	private ProducerQueue queue_ = null;
+
+	/** 以前の実行のキューで破棄した要素数の累計（resetした時点の値を差し引く） */
+	private long droppedCount_ = 0L;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	StageMetrics(String name) {
+		name_ = name;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	public String getName() {
+		return name_;
+	}
+
+	/**
+	 * 現在の計測値を返す。
+	 *
+	 * @return 計測値のスナップショット
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	public void reset() {
+		containersIn_.set(0L);
+		containersOut_.set(0L);
+		maxDepth_.set(0L);
+		producerBlockedNanos_.set(0L);
+		consumerBlockedNanos_.set(0L);
+		latency_.reset();
+		synchronized (this) {
+			droppedCount_ = -droppedCountOf(queue_);
+		}
+	}
+
+	// ////////////////////////////////
+
+	void onOffer() {
+		long depth = containersIn_.incrementAndGet() - containersOut_.get();
+		long max;
+		while (depth > (max = maxDepth_.get())) {
+			if (maxDepth_.compareAndSet(max, depth)) {
+				break;
+			}
+		}
+	}
+
+	void onConsume() {
+		containersOut_.incrementAndGet();
+	}
+
+	void addProducerBlocked(long nanos) {
+		producerBlockedNanos_.addAndGet(nanos);
+	}
+
+	void addConsumerBlocked(long nanos) {
+		consumerBlockedNanos_.addAndGet(nanos);
+	}
+
+	void recordProcessing(long nanos) {
+		latency_.record(nanos);
+	}
+
+	synchronized void setQueue(ProducerQueue queue) {
+		droppedCount_ += droppedCountOf(queue_);
+		queue_ = queue;
+	}
+
+	private synchronized ProducerQueue getQueue() {
+		return queue_;
+	}
+
+	private synchronized long getDroppedCount() {
+		return droppedCount_ + droppedCountOf(queue_);
+	}
+
+	private static long droppedCountOf(ProducerQueue queue) {
+		return (queue instanceof BackpressureProducerQueue) ? ((BackpressureProducerQueue) queue).getDroppedCount() : 0L;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	/**
+	 * 接続の計測値のスナップショット
+	 */
+	public static class Snapshot {
+		private final String name_;
+
+		private final long containersIn_;
+
+		private final long containersOut_;
+
+		private final long maxDepth_;
+
+		private final long producerBlockedNanos_;
+
+		private final long consumerBlockedNanos_;
+
+		private final long latencyCount_;
+
+		private final long latencyMeanNanos_;
+
+		private final long latencyP50Nanos_;
+
+		private final long latencyP90Nanos_;
+
+		private final long latencyP99Nanos_;
+
+		private final long latencyMaxNanos_;
+
+		private final long droppedCount_;
+
+		private final int capacity_;
+
+		private final long queuedBytes_;
+
+		private Snapshot(StageMetrics metrics) {
+			name_ = metrics.name_;
+			containersOut_ = metrics.containersOut_.get();
+			containersIn_ = metrics.containersIn_.get();
+			maxDepth_ = metrics.maxDepth_.get();
+			producerBlockedNanos_ = metrics.producerBlockedNanos_.get();
+			consumerBlockedNanos_ = metrics.consumerBlockedNanos_.get();
+			latencyCount_ = metrics.latency_.getCount();
+			latencyMeanNanos_ = metrics.latency_.getMeanNanos();
+			latencyP50Nanos_ = metrics.latency_.getPercentileNanos(50.0);
+			latencyP90Nanos_ = metrics.latency_.getPercentileNanos(90.0);
+			latencyP99Nanos_ = metrics.latency_.getPercentileNanos(99.0);
+			latencyMaxNanos_ = metrics.latency_.getMaxNanos();
+			droppedCount_ = metrics.getDroppedCount();
+			ProducerQueue queue = metrics.getQueue();
+			if (queue instanceof AdaptiveProducerQueue) {
+				capacity_ = ((AdaptiveProducerQueue) queue).getCapacity();
+				queuedBytes_ = ((AdaptiveProducerQueue) queue).getQueuedBytes();
+			} else {
+				capacity_ = -1;
+				queuedBytes_ = 0L;
+			}
+		}
+
+		public String getName() {
+			return name_;
+		}
+
+		public long getContainersIn() {
+			return containersIn_;
+		}
+
+		public long getContainersOut() {
+			return containersOut_;
+		}
+
+		/**
+		 * スナップショット取得時点のキューの要素数（処理中のContainerを含み、破棄した要素を含まない）を返す。
+		 */
+		public long getDepth() {
+			return Math.max(0L, containersIn_ - containersOut_ - droppedCount_);
+		}
+
+		public long getMaxDepth() {
+			return maxDepth_;
+		}
+
+		public long getProducerBlockedNanos() {
+			return producerBlockedNanos_;
+		}
+
+		public long getConsumerBlockedNanos() {
+			return consumerBlockedNanos_;
+		}
+
+		public long getLatencyCount() {
+			return latencyCount_;
+		}
+
+		public long getLatencyMeanNanos() {
+			return latencyMeanNanos_;
+		}
+
+		public long getLatencyP50Nanos() {
+			return latencyP50Nanos_;
+		}
+
+		public long getLatencyP90Nanos() {
+			return latencyP90Nanos_;
+		}
+
+		public long getLatencyP99Nanos() {
+			return latencyP99Nanos_;
+		}
+
+		public long getLatencyMaxNanos() {
+			return latencyMaxNanos_;
+		}
+
+		/**
+		 * {@link BackpressureProducerQueue}がDROP_OLDESTで破棄した要素数の累計を返す。
+		 *
+		 * @return 破棄した要素数（キューがBackpressureProducerQueueでない場合は0）
+		 */
+		public long getDroppedCount() {
+			return droppedCount_;
+		}
+
+		/**
+		 * スナップショット取得時点の{@link AdaptiveProducerQueue}の格納できる要素数を返す。
+		 *
+		 * @return 格納できる要素数（キューがAdaptiveProducerQueueでない場合は-1）
+		 */
+		public int getCapacity() {
+			return capacity_;
+		}
+
+		/**
+		 * スナップショット取得時点の{@link AdaptiveProducerQueue}に格納している要素の見積もったバイト数の合計を返す。
+		 *
+		 * @return バイト数（キューがAdaptiveProducerQueueでない場合は0）
+		 */
+		public long getQueuedBytes() {
+			return queuedBytes_;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(name_);
+			builder.append(" in=").append(containersIn_);
+			builder.append(" out=").append(containersOut_);
+			builder.append(" depth=").append(getDepth());
+			builder.append(" maxDepth=").append(maxDepth_);
+			builder.append(" producerBlocked=").append(producerBlockedNanos_ / 1000000L).append("msec");
+			builder.append(" consumerBlocked=").append(consumerBlockedNanos_ / 1000000L).append("msec");
+			if (0L < droppedCount_) {
+				builder.append(" dropped=").append(droppedCount_);
+			}
+			if (0 <= capacity_) {
+				builder.append(" capacity=").append(capacity_);
+				builder.append(" queuedBytes=").append(queuedBytes_);
+			}
+			builder.append(" latency[mean=").append(latencyMeanNanos_ / 1000L);
+			builder.append(" p50=").append(latencyP50Nanos_ / 1000L);
+			builder.append(" p90=").append(latencyP90Nanos_ / 1000L);
+			builder.append(" p99=").append(latencyP99Nanos_ / 1000L);
+			builder.append(" max=").append(latencyMaxNanos_ / 1000L);
+			builder.append("](usec)");
+			return builder.toString();
+		}
+	}
+}
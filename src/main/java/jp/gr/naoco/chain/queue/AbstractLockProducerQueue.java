@@ -0,0 +1,214 @@
+package jp.gr.naoco.chain.queue;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jp.gr.naoco.chain.Container;
+
+/**
+ * 1つのロックでProducerとConsumerの受け渡しを同期するキュー実装の基底クラス
+ * <p>
+ * ProducerとConsumerがそれぞれ1スレッドの場合を想定する。<br/>
+ * Consumer側のIterator、キューが空の場合の待機、finishとreserveInterruptの振る舞いを実装する。
+ * サブクラスはofferと、ロックの取得中に呼び出される{@link #isEmpty()}、{@link #poll()}を実装する。
+ * </p>
+ */
+abstract class AbstractLockProducerQueue implements InterruptibleProducerQueue {
+
+	protected final ReentrantLock lock_ = new ReentrantLock();
+
+	protected final Condition notEmpty_ = lock_.newCondition();
+
+	/** Consumerの最大待機時間（ナノ秒） */
+	protected final long waitTimeNanos_;
+
+	protected volatile int size_ = 0;
+
+	protected volatile long consumerBlockedNanos_ = 0L;
+
+	protected volatile boolean isFinished_ = false;
+
+	private volatile boolean reserveInterrupt_ = false;
+
+	private volatile Throwable interruptCause_ = null;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link AbstractLockProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param waitTimeMinutes Consumerの最大待機時間（分）
+	 */
+	protected AbstractLockProducerQueue(long waitTimeMinutes) {
+		if (waitTimeMinutes < 1) {
+			waitTimeMinutes = 1;
+		}
+		waitTimeNanos_ = TimeUnit.MINUTES.toNanos(waitTimeMinutes);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void finish() {
+		lock_.lock();
+		try {
+			isFinished_ = true;
+			notEmpty_.signal();
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	@Override
+	public Iterator<Container<?>> consumerIterator() {
+		return new ConsumerIterator();
+	}
+
+	@Override
+	public void reserveInterrupt() {
+		reserveInterrupt(null);
+	}
+
+	@Override
+	public void reserveInterrupt(Throwable interruptCause) {
+		interruptCause_ = interruptCause;
+		reserveInterrupt_ = true;
+		lock_.lock();
+		try {
+			notEmpty_.signalAll();
+			signalProducer();
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	/**
+	 * キューに格納されている要素数を返す。
+	 *
+	 * @return 要素数
+	 */
+	public int size() {
+		return size_;
+	}
+
+	/**
+	 * ConsumerがhasNextで待機した累積時間を返す。
+	 *
+	 * @return 累積待機時間（ナノ秒）
+	 */
+	public long getConsumerBlockedNanos() {
+		return consumerBlockedNanos_;
+	}
+
+	// ////////////////////////////////
+
+	/**
+	 * キューに要素がないかを返す。ロックの取得中に呼び出される。
+	 *
+	 * @return 要素がない場合はtrue
+	 */
+	protected abstract boolean isEmpty();
+
+	/**
+	 * 先頭の要素を取り出す。ロックの取得中に呼び出される。
+	 *
+	 * @return 要素（要素がない場合はnull）
+	 */
+	protected abstract Container<?> poll();
+
+	/**
+	 * reserveInterruptで、待機中のProducerを起床する。ロックの取得中に呼び出される。
+	 */
+	protected void signalProducer() {
+		// nothing to do
+	}
+
+	/**
+	 * Consumerが待機を開始する前に呼び出される。ロックの取得中に呼び出される。
+	 */
+	protected void onConsumerBlocked() {
+		// nothing to do
+	}
+
+	/**
+	 * reserveInterruptで中断する前に呼び出される。
+	 */
+	protected void onInterrupted() {
+		// nothing to do
+	}
+
+	protected final void interrupted() {
+		if (reserveInterrupt_) {
+			onInterrupted();
+			if (null == interruptCause_) {
+				throw new RuntimeException("this thread is interrupted.");
+			} else {
+				throw new RuntimeException("this thread is interrupted.", interruptCause_);
+			}
+		}
+	}
+
+	private Container<?> take() {
+		lock_.lock();
+		try {
+			if (isEmpty() && !isFinished_) {
+				onConsumerBlocked();
+				long start = System.nanoTime();
+				long nanos = waitTimeNanos_;
+				try {
+					while (isEmpty() && !isFinished_) {
+						interrupted();
+						if (nanos <= 0) {
+							throw new RuntimeException("time over by hasNext.");
+						}
+						nanos = notEmpty_.awaitNanos(nanos);
+					}
+				} finally {
+					consumerBlockedNanos_ += (System.nanoTime() - start);
+				}
+			}
+			return poll();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	private class ConsumerIterator implements Iterator<Container<?>> {
+		private Container<?> next_ = null;
+
+		@Override
+		public boolean hasNext() {
+			interrupted();
+			if (null == next_) {
+				next_ = take();
+			}
+			return (null != next_);
+		}
+
+		@Override
+		public Container<?> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Container<?> container = next_;
+			next_ = null;
+			return container;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
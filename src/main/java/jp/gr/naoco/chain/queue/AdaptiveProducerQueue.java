@@ -0,0 +1,242 @@
+package jp.gr.naoco.chain.queue;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+import jp.gr.naoco.chain.Container;
+
+/**
+ * 実行中に計測した処理速度から、格納できる要素数を調整するキュー実装
+ * <p>
+ * ProducerとConsumerがそれぞれ1スレッドの場合を想定する。<br/>
+ * 一定間隔ごとにConsumerの処理速度を計測し、targetLatencyMillisの間にConsumerが処理できる要素数を、
+ * minQueueSizeからmaxQueueSizeの範囲で格納できる要素数とする。
+ * 計測の間隔内にProducerとConsumerの両方が待機した場合は、処理量に偏りがあるものとして、格納できる要素数を2倍にする。
+ * </p>
+ * <p>
+ * maxBytesに正の値を指定した場合は、{@link ContainerSizeEstimator}で見積もった要素のバイト数の合計がmaxBytesを超えないよう、
+ * offerを待機する。キューが空の場合は、maxBytesを超える要素でも格納する。
+ * </p>
+ * <p>
+ * 現在の要素数と格納できる要素数、見積もったバイト数の合計、ProducerとConsumerが待機した累積時間を参照できる。
+ * </p>
+ */
+public class AdaptiveProducerQueue extends AbstractLockProducerQueue {
+
+	private final ArrayDeque<Object> queue_;
+
+	private final int minQueueSize_;
+
+	private final int maxQueueSize_;
+
+	private final long targetLatencyNanos_;
+
+	private final long maxBytes_;
+
+	private final ContainerSizeEstimator estimator_;
+
+	private final Condition notFull_ = lock_.newCondition();
+
+	private volatile int capacity_;
+
+	private volatile long queuedBytes_ = 0L;
+
+	private volatile long producerBlockedNanos_ = 0L;
+
+	/** 計測の間隔の開始時刻（lock_の取得中のみ参照） */
+	private long windowStart_ = System.nanoTime();
+
+	/** 計測の間隔内に取り出した要素数（lock_の取得中のみ参照） */
+	private long windowTaken_ = 0L;
+
+	private boolean windowProducerBlocked_ = false;
+
+	private boolean windowConsumerBlocked_ = false;
+
+	/** 処理速度を計測する間隔（ナノ秒） */
+	private static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link AdaptiveProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param minQueueSize 格納できる要素数の下限（1以上）
+	 * @param maxQueueSize 格納できる要素数の上限（minQueueSize以上）
+	 * @param targetLatencyMillis 要素がキューに滞留する目標時間（ミリ秒、0以下の場合は要素数を調整せず、maxQueueSizeを上限とする）
+	 * @param maxBytes 格納する要素のバイト数の合計の上限（0以下の場合はバイト数で制限しない）
+	 * @param estimator 要素のバイト数の見積り（nullの場合は{@link ContainerSizeEstimator#DEFAULT}）
+	 * @param waitTimeMinutes 最大待機時間（分）
+	 */
+	public AdaptiveProducerQueue(int minQueueSize, int maxQueueSize, long targetLatencyMillis, long maxBytes,
+			ContainerSizeEstimator estimator, long waitTimeMinutes) {
+		super(waitTimeMinutes);
+		minQueueSize_ = (minQueueSize < 1 ? 1 : minQueueSize);
+		maxQueueSize_ = (maxQueueSize < minQueueSize_ ? minQueueSize_ : maxQueueSize);
+		targetLatencyNanos_ = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis < 0 ? 0 : targetLatencyMillis);
+		maxBytes_ = maxBytes;
+		estimator_ = (null == estimator ? ContainerSizeEstimator.DEFAULT : estimator);
+		// 調整する場合は下限から開始し、処理速度に応じて増やす
+		capacity_ = (0 < targetLatencyNanos_ ? minQueueSize_ : maxQueueSize_);
+		queue_ = new ArrayDeque<Object>(Math.min(maxQueueSize_, 1024));
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void offer(Container<?> obj) {
+		interrupted();
+		long bytes = 0L;
+		Object element = obj;
+		if (0 < maxBytes_) {
+			bytes = estimator_.sizeOf(obj);
+			element = new SizedContainer(bytes, obj);
+		}
+		lock_.lock();
+		try {
+			if (!hasRoom(bytes)) {
+				waitForRoom(bytes);
+			}
+			queue_.add(element);
+			size_ = queue_.size();
+			queuedBytes_ += bytes;
+			notEmpty_.signal();
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	/**
+	 * 現在の格納できる要素数を返す。
+	 *
+	 * @return 格納できる要素数
+	 */
+	public int getCapacity() {
+		return capacity_;
+	}
+
+	/**
+	 * キューに格納されている要素の見積もったバイト数の合計を返す。maxBytesを指定しない場合は常に0を返す。
+	 *
+	 * @return バイト数
+	 */
+	public long getQueuedBytes() {
+		return queuedBytes_;
+	}
+
+	/**
+	 * Producerがofferで待機した累積時間を返す。
+	 *
+	 * @return 累積待機時間（ナノ秒）
+	 */
+	public long getProducerBlockedNanos() {
+		return producerBlockedNanos_;
+	}
+
+	// ////////////////////////////////
+
+	private boolean hasRoom(long bytes) {
+		if (queue_.isEmpty()) {
+			return true;
+		}
+		if (capacity_ <= queue_.size()) {
+			return false;
+		}
+		return ((maxBytes_ <= 0) || ((queuedBytes_ + bytes) <= maxBytes_));
+	}
+
+	private void waitForRoom(long bytes) {
+		windowProducerBlocked_ = true;
+		long start = System.nanoTime();
+		long nanos = waitTimeNanos_;
+		try {
+			while (!hasRoom(bytes)) {
+				interrupted();
+				if (nanos <= 0) {
+					throw new RuntimeException("time over by offer.");
+				}
+				nanos = notFull_.awaitNanos(nanos);
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			producerBlockedNanos_ += (System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	protected boolean isEmpty() {
+		return queue_.isEmpty();
+	}
+
+	@Override
+	protected Container<?> poll() {
+		Object element = queue_.poll();
+		if (null == element) {
+			return null;
+		}
+		size_ = queue_.size();
+		windowTaken_++;
+		if (0 < targetLatencyNanos_) {
+			adjustCapacity();
+		}
+		Container<?> container;
+		if (element instanceof SizedContainer) {
+			SizedContainer sized = (SizedContainer) element;
+			queuedBytes_ -= sized.bytes_;
+			container = sized.container_;
+		} else {
+			container = (Container<?>) element;
+		}
+		notFull_.signal();
+		return container;
+	}
+
+	@Override
+	protected void signalProducer() {
+		notFull_.signalAll();
+	}
+
+	@Override
+	protected void onConsumerBlocked() {
+		windowConsumerBlocked_ = true;
+	}
+
+	private void adjustCapacity() {
+		long now = System.nanoTime();
+		long elapsed = now - windowStart_;
+		if (elapsed < ADJUST_INTERVAL_NANOS) {
+			return;
+		}
+		// 目標時間の間にConsumerが処理できる要素数
+		long target = (long) Math.ceil((double) windowTaken_ * targetLatencyNanos_ / elapsed);
+		if (windowProducerBlocked_ && windowConsumerBlocked_) {
+			target = Math.max(target, capacity_ * 2L);
+		}
+		// 急激な変動を避けるため、現在の値との中間を新しい値とする
+		long capacity = (capacity_ + target + 1) / 2;
+		capacity_ = (int) Math.max(minQueueSize_, Math.min(maxQueueSize_, capacity));
+		windowStart_ = now;
+		windowTaken_ = 0L;
+		windowProducerBlocked_ = false;
+		windowConsumerBlocked_ = false;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	private static class SizedContainer {
+		private final long bytes_;
+
+		private final Container<?> container_;
+
+		private SizedContainer(long bytes, Container<?> container) {
+			bytes_ = bytes;
+			container_ = container;
+		}
+	}
+}
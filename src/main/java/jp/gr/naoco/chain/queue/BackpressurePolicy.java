@@ -0,0 +1,74 @@
+package jp.gr.naoco.chain.queue;
+
+/**
+ * {@link BackpressureProducerQueue}のバックプレッシャーの設定
+ * <p>
+ * キューの要素数が上限（highWatermark）に達した場合のProducer側の振る舞いを、{@link Overflow}で指定する。
+ * </p>
+ * <ul>
+ * <li><b>BLOCK</b>:要素数が下限（lowWatermark）以下に減るまで、最大maxWaitMillisの間offerを待機する。待機時間を超えた場合はRuntimeExceptionが発生する。</li>
+ * <li><b>DROP_OLDEST</b>:待機せずに最も古い要素を破棄して、offerした要素を追加する。</li>
+ * <li><b>FAIL_FAST</b>:待機せずにRuntimeExceptionが発生する。</li>
+ * </ul>
+ */
+public class BackpressurePolicy {
+
+	public static enum Overflow {
+		BLOCK, DROP_OLDEST, FAIL_FAST
+	}
+
+	private final int highWatermark_;
+
+	private final int lowWatermark_;
+
+	private final Overflow overflow_;
+
+	private final long maxWaitMillis_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link BackpressurePolicy} オブジェクトを構築します。
+	 *
+	 * @param highWatermark キューの要素数の上限（1以上）
+	 * @param lowWatermark BLOCKの場合に待機を解除する要素数（0以上、highWatermark未満）
+	 * @param overflow 上限に達した場合の振る舞い
+	 * @param maxWaitMillis BLOCKの場合の最大待機時間（ミリ秒、0以下の場合はChainの最大待機時間）
+	 */
+	public BackpressurePolicy(int highWatermark, int lowWatermark, Overflow overflow, long maxWaitMillis) {
+		if (highWatermark < 1) {
+			throw new IllegalArgumentException("highWatermark must be greater than 0.");
+		}
+		if ((lowWatermark < 0) || (highWatermark <= lowWatermark)) {
+			throw new IllegalArgumentException("lowWatermark must be between 0 and highWatermark - 1.");
+		}
+		if (null == overflow) {
+			throw new IllegalArgumentException("overflow is null.");
+		}
+		highWatermark_ = highWatermark;
+		lowWatermark_ = lowWatermark;
+		overflow_ = overflow;
+		maxWaitMillis_ = maxWaitMillis;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	public int getHighWatermark() {
+		return highWatermark_;
+	}
+
+	public int getLowWatermark() {
+		return lowWatermark_;
+	}
+
+	public Overflow getOverflow() {
+		return overflow_;
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis_;
+	}
+}
@@ -0,0 +1,190 @@
+package jp.gr.naoco.chain.queue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+import jp.gr.naoco.chain.Checkpoint;
+import jp.gr.naoco.chain.Container;
+
+/**
+ * {@link BackpressurePolicy}に従ってProducerの待機を制御するキュー実装
+ * <p>
+ * ProducerとConsumerがそれぞれ1スレッドの場合を想定する。<br/>
+ * 現在の要素数と、ProducerとConsumerが待機した累積時間を参照できる。
+ * </p>
+ * <p>
+ * チェックポイントを設定した場合は、DROP_OLDESTで破棄した要素の連番を、処理の完了として{@link Checkpoint}に通知する。
+ * </p>
+ */
+public class BackpressureProducerQueue extends AbstractLockProducerQueue implements BoundedProducerQueue {
+
+	private final ArrayDeque<Container<?>> queue_;
+
+	private final BackpressurePolicy policy_;
+
+	private final long producerWaitNanos_;
+
+	private final Condition belowLowWatermark_ = lock_.newCondition();
+
+	private volatile long producerBlockedNanos_ = 0L;
+
+	private volatile long droppedCount_ = 0L;
+
+	private volatile Checkpoint checkpoint_ = null;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link BackpressureProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param policy バックプレッシャーの設定
+	 * @param waitTimeMinutes Consumerの最大待機時間、およびpolicyで最大待機時間を指定しない場合のProducerの最大待機時間（分）
+	 */
+	public BackpressureProducerQueue(BackpressurePolicy policy, long waitTimeMinutes) {
+		super(waitTimeMinutes);
+		policy_ = policy;
+		queue_ = new ArrayDeque<Container<?>>(policy.getHighWatermark());
+		producerWaitNanos_ = (0 < policy.getMaxWaitMillis() ? TimeUnit.MILLISECONDS.toNanos(policy.getMaxWaitMillis())
+				: waitTimeNanos_);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void offer(Container<?> obj) {
+		interrupted();
+		List<Container<?>> dropped = null;
+		lock_.lock();
+		try {
+			if (policy_.getHighWatermark() <= queue_.size()) {
+				switch (policy_.getOverflow()) {
+				case DROP_OLDEST:
+					while (policy_.getHighWatermark() <= queue_.size()) {
+						Container<?> container = queue_.poll();
+						droppedCount_++;
+						if (null != checkpoint_) {
+							if (null == dropped) {
+								dropped = new ArrayList<Container<?>>();
+							}
+							dropped.add(container);
+						}
+					}
+					break;
+				case FAIL_FAST:
+					throw new RuntimeException("queue is full. size:" + queue_.size());
+				default:
+					waitForLowWatermark();
+					break;
+				}
+			}
+			queue_.add(obj);
+			size_ = queue_.size();
+			notEmpty_.signal();
+		} finally {
+			lock_.unlock();
+		}
+		// チェックポイントのファイルへの記録で、Consumerを待たせないようロックの外で通知する
+		if (null != dropped) {
+			acknowledge(dropped);
+		}
+	}
+
+	@Override
+	public boolean canOfferWithoutWait() {
+		// DROP_OLDEST、FAIL_FASTは満杯でも待機しない
+		return ((BackpressurePolicy.Overflow.BLOCK != policy_.getOverflow())
+				|| (size_ < policy_.getHighWatermark()));
+	}
+
+	/**
+	 * Producerがofferで待機した累積時間を返す。
+	 *
+	 * @return 累積待機時間（ナノ秒）
+	 */
+	public long getProducerBlockedNanos() {
+		return producerBlockedNanos_;
+	}
+
+	/**
+	 * DROP_OLDESTで破棄した要素数を返す。
+	 *
+	 * @return 破棄した要素数
+	 */
+	public long getDroppedCount() {
+		return droppedCount_;
+	}
+
+	public BackpressurePolicy getPolicy() {
+		return policy_;
+	}
+
+	/**
+	 * DROP_OLDESTで破棄した要素の連番を通知するチェックポイントを設定する。
+	 * <p>
+	 * {@link jp.gr.naoco.chain.Chain#execute(Checkpoint)}から設定する。
+	 * </p>
+	 *
+	 * @param checkpoint チェックポイント（通知しない場合はnull）
+	 */
+	public void setCheckpoint(Checkpoint checkpoint) {
+		checkpoint_ = checkpoint;
+	}
+
+	// ////////////////////////////////
+
+	@Override
+	protected boolean isEmpty() {
+		return queue_.isEmpty();
+	}
+
+	@Override
+	protected Container<?> poll() {
+		Container<?> container = queue_.poll();
+		size_ = queue_.size();
+		if (queue_.size() <= policy_.getLowWatermark()) {
+			belowLowWatermark_.signal();
+		}
+		return container;
+	}
+
+	@Override
+	protected void signalProducer() {
+		belowLowWatermark_.signalAll();
+	}
+
+	private void waitForLowWatermark() {
+		long start = System.nanoTime();
+		long nanos = producerWaitNanos_;
+		try {
+			while (policy_.getLowWatermark() < queue_.size()) {
+				interrupted();
+				if (nanos <= 0) {
+					throw new RuntimeException("time over by offer.");
+				}
+				nanos = belowLowWatermark_.awaitNanos(nanos);
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			producerBlockedNanos_ += (System.nanoTime() - start);
+		}
+	}
+
+	private void acknowledge(List<Container<?>> dropped) {
+		Checkpoint checkpoint = checkpoint_;
+		if (null == checkpoint) {
+			return;
+		}
+		for (Container<?> container : dropped) {
+			if (0 <= container.getSequence()) {
+				checkpoint.acknowledge(container.getSequence());
+			}
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package jp.gr.naoco.chain.queue;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jp.gr.naoco.chain.ChainExecutor;
+import jp.gr.naoco.chain.Container;
+import jp.gr.naoco.core.log.LaolLogger;
+
+/**
+ * 複数の要素をまとめてスレッド間で受け渡すキュー実装
+ * <p>
+ * Producer側でofferされた要素を最大batchSize個までバッファし、バッファが満杯になった時点、
+ * あるいは最初の要素のバッファからlingerMillisを経過した時点で、まとめて1回で内部のキューに渡す。<br/>
+ * finishメソッドの呼出し時には、バッファに残った要素を内部のキューに渡してから終了を通知する。
+ * </p>
+ * <p>
+ * Producerがofferを呼び出さない間も、lingerMillisを経過したバッファはキューごとのフラッシュ処理が内部のキューに渡す。
+ * 内部のキューが満杯の場合は、フラッシュ処理が内部のキューの待機に従うが、他のキューのフラッシュには影響しない。
+ * フラッシュ処理は最初の要素のバッファ時に{@link ChainExecutor}で開始し、finishメソッドあるいはreserveInterruptメソッドの呼出しで終了する。<br/>
+ * 内部のキューに渡した後、Consumerが受け取るまでの時間は内部のキューの待機方法による。
+ * {@link ParallelProducerQueue}はConsumerの起床を要素数で判定するため、遅延を抑える場合は{@link RingBufferProducerQueue}を使用する。
+ * </p>
+ * <p>
+ * Consumer側のIteratorは、内部のキューから受け取った要素のまとまりを1個ずつ返却する。
+ * </p>
+ */
+public class BatchingProducerQueue implements InterruptibleProducerQueue {
+
+	private final InterruptibleProducerQueue queue_;
+
+	private final int batchSize_;
+
+	private final long lingerNanos_;
+
+	/** フラッシュ処理を実行するエクゼキュータ */
+	private final ChainExecutor executor_;
+
+	/** Producerスレッドとフラッシュ処理の、バッファの参照と内部のキューへの受渡しの排他 */
+	private final ReentrantLock lock_ = new ReentrantLock();
+
+	/** バッファに最初の要素が入ったこと、あるいは終了をフラッシュ処理に通知する */
+	private final Condition buffered_ = lock_.newCondition();
+
+	/** Producer側のバッファ（{@link #lock_}で排他） */
+	private Container<?>[] buffer_;
+
+	private int bufferCount_ = 0;
+
+	private long bufferStartTime_ = 0L;
+
+	private boolean isFinished_ = false;
+
+	private volatile boolean reserveInterrupt_ = false;
+
+	/** フラッシュ処理で内部のキューに渡す際に発生した例外（Producerスレッドで再送出する） */
+	private volatile RuntimeException flushError_ = null;
+
+	/** フラッシュ処理を開始済みの場合はtrue（{@link #lock_}で排他） */
+	private boolean isFlusherStarted_ = false;
+
+	/** lingerMillisを経過したバッファを内部のキューに渡す処理 */
+	private volatile ChainExecutor.Task flusher_ = null;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link BatchingProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param queue 要素のまとまりを受け渡す内部のキュー
+	 * @param batchSize まとめて渡す最大要素数
+	 * @param lingerMillis 最初の要素をバッファしてから、内部のキューに渡すまでの最大待機時間（ミリ秒）
+	 */
+	public BatchingProducerQueue(InterruptibleProducerQueue queue, int batchSize, long lingerMillis) {
+		this(queue, batchSize, lingerMillis, ChainExecutor.getDefault());
+	}
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link BatchingProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param queue 要素のまとまりを受け渡す内部のキュー
+	 * @param batchSize まとめて渡す最大要素数
+	 * @param lingerMillis 最初の要素をバッファしてから、内部のキューに渡すまでの最大待機時間（ミリ秒）
+	 * @param executor フラッシュ処理を実行するエクゼキュータ
+	 */
+	public BatchingProducerQueue(InterruptibleProducerQueue queue, int batchSize, long lingerMillis,
+			ChainExecutor executor) {
+		queue_ = queue;
+		executor_ = executor;
+		batchSize_ = (batchSize < 1 ? 1 : batchSize);
+		lingerNanos_ = TimeUnit.MILLISECONDS.toNanos(lingerMillis < 0 ? 0 : lingerMillis);
+		buffer_ = new Container<?>[batchSize_];
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void offer(Container<?> obj) {
+		rethrowFlushError();
+		boolean startFlusher = false;
+		lock_.lock();
+		try {
+			boolean first = (0 == bufferCount_);
+			if (first) {
+				bufferStartTime_ = System.nanoTime();
+			}
+			buffer_[bufferCount_++] = obj;
+			if ((batchSize_ <= bufferCount_) || (lingerNanos_ <= (System.nanoTime() - bufferStartTime_))) {
+				flush();
+			} else if (first) {
+				startFlusher = !isFlusherStarted_;
+				isFlusherStarted_ = true;
+				buffered_.signal();
+			}
+		} finally {
+			lock_.unlock();
+		}
+		// エクゼキュータへの受渡しはロックの外で行う（フラッシュ処理は開始後にロックを取得してバッファを確認する）
+		if (startFlusher) {
+			startFlusher();
+		}
+	}
+
+	@Override
+	public void finish() {
+		rethrowFlushError();
+		lock_.lock();
+		try {
+			isFinished_ = true;
+			buffered_.signal();
+			flush();
+		} finally {
+			lock_.unlock();
+		}
+		queue_.finish();
+	}
+
+	@Override
+	public Iterator<Container<?>> consumerIterator() {
+		return new ConsumerIterator(queue_.consumerIterator());
+	}
+
+	@Override
+	public void reserveInterrupt() {
+		reserveInterrupt(null);
+	}
+
+	@Override
+	public void reserveInterrupt(Throwable interruptCause) {
+		reserveInterrupt_ = true;
+		queue_.reserveInterrupt(interruptCause);
+		// 内部のキューのofferで待機中の場合もあるため、ロックを取得せずに割り込む
+		ChainExecutor.Task flusher = flusher_;
+		if (null != flusher) {
+			flusher.interrupt();
+		}
+	}
+
+	// ////////////////////////////////
+
+	private void startFlusher() {
+		flusher_ = executor_.execute(new Runnable() {
+			@Override
+			public void run() {
+				flushLingered();
+			}
+		});
+		// 開始より前にreserveInterruptが呼び出された場合も、フラッシュ処理を終了させる
+		if (reserveInterrupt_) {
+			flusher_.interrupt();
+		}
+	}
+
+	/**
+	 * フラッシュ処理で、lingerMillisを経過したバッファを内部のキューに渡す。
+	 */
+	private void flushLingered() {
+		lock_.lock();
+		try {
+			while (!isFinished_ && !reserveInterrupt_) {
+				if (0 == bufferCount_) {
+					buffered_.await();
+					continue;
+				}
+				long remain = lingerNanos_ - (System.nanoTime() - bufferStartTime_);
+				if (0 < remain) {
+					// 待機中にProducerスレッドがバッファを渡した場合は、新しいバッファの経過時間で待ち直す
+					buffered_.awaitNanos(remain);
+					continue;
+				}
+				flush();
+			}
+		} catch (InterruptedException e) {
+			// reserveInterruptによる終了
+		} catch (RuntimeException e) {
+			if (!reserveInterrupt_) {
+				LOG.error(e.getMessage(), e);
+				flushError_ = e;
+			}
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	private void rethrowFlushError() {
+		RuntimeException e = flushError_;
+		if (null != e) {
+			throw e;
+		}
+	}
+
+	private void flush() {
+		if (0 == bufferCount_) {
+			return;
+		}
+		queue_.offer(new Container<Batch>(new Batch(buffer_, bufferCount_)));
+		// 渡したバッファはConsumer側で参照するため、新しいバッファを確保する
+		buffer_ = new Container<?>[batchSize_];
+		bufferCount_ = 0;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	private static class ConsumerIterator implements Iterator<Container<?>> {
+		private final Iterator<Container<?>> iterator_;
+
+		private Batch batch_ = null;
+
+		private int index_ = 0;
+
+		private ConsumerIterator(Iterator<Container<?>> iterator) {
+			iterator_ = iterator;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while ((null == batch_) || (batch_.count_ <= index_)) {
+				if (!iterator_.hasNext()) {
+					return false;
+				}
+				batch_ = (Batch) iterator_.next().get();
+				index_ = 0;
+			}
+			return true;
+		}
+
+		@Override
+		public Container<?> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Container<?> container = batch_.containers_[index_];
+			batch_.containers_[index_++] = null;
+			return container;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	// ///////////////////////
+
+	private static class Batch {
+		private final Container<?>[] containers_;
+
+		private final int count_;
+
+		private Batch(Container<?>[] containers, int count) {
+			containers_ = containers;
+			count_ = count;
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Logger
+
+	private static final LaolLogger LOG = new LaolLogger(BatchingProducerQueue.class.getName());
+}
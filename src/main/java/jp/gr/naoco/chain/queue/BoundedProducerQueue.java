@@ -0,0 +1,18 @@
+package jp.gr.naoco.chain.queue;
+
+/**
+ * offerが待機するかを、offerの前に判定できるキューのインタフェース
+ * <p>
+ * ForkJoinPoolのワーカースレッドからofferする場合に、待機しないofferを
+ * {@link java.util.concurrent.ForkJoinPool#managedBlock(java.util.concurrent.ForkJoinPool.ManagedBlocker)}を経由せずに実行するために使用する。
+ * </p>
+ */
+public interface BoundedProducerQueue extends InterruptibleProducerQueue {
+
+	/**
+	 * 次のofferが待機せずに完了するかを返す。Producerのスレッドから呼び出すこと。
+	 *
+	 * @return 待機せずに完了する場合はtrue（判定できない場合はfalse）
+	 */
+	public boolean canOfferWithoutWait();
+}
@@ -0,0 +1,45 @@
+package jp.gr.naoco.chain.queue;
+
+import jp.gr.naoco.chain.Container;
+
+/**
+ * キューに格納する{@link Container}のおおよそのバイト数を見積もるインタフェース
+ * <p>
+ * {@link AdaptiveProducerQueue}のメモリ上限の判定に使用する。offerごとに1回呼び出すため、軽量な実装とすること。
+ * </p>
+ */
+public interface ContainerSizeEstimator {
+
+	/**
+	 * 要素の型から見積もるデフォルトの実装
+	 * <p>
+	 * byte[]、char[]、文字列は長さから、それ以外は固定のバイト数で見積もる。
+	 * </p>
+	 */
+	public static final ContainerSizeEstimator DEFAULT = new ContainerSizeEstimator() {
+		private static final long HEADER_SIZE = 16L;
+
+		private static final long OBJECT_SIZE = 64L;
+
+		@Override
+		public long sizeOf(Container<?> container) {
+			Object obj = container.get();
+			if (obj instanceof byte[]) {
+				return HEADER_SIZE + ((byte[]) obj).length;
+			} else if (obj instanceof char[]) {
+				return HEADER_SIZE + (((char[]) obj).length * 2L);
+			} else if (obj instanceof CharSequence) {
+				return HEADER_SIZE + (((CharSequence) obj).length() * 2L);
+			}
+			return OBJECT_SIZE;
+		}
+	};
+
+	/**
+	 * 要素のバイト数を見積もる。
+	 *
+	 * @param container 要素
+	 * @return 見積もったバイト数（0以上）
+	 */
+	public long sizeOf(Container<?> container);
+}
@@ -32,7 +32,7 @@ public class DirectProducerQueue implements ProducerQueue {
 	// Methods
 
 	@Override
-	public void offer(Container obj) {
+	public void offer(Container<?> obj) {
 		if (null == queue_) {
 			if (filter_.accept(obj)) {
 				Consumer c = (Consumer) instance_;
@@ -44,13 +44,16 @@ public class DirectProducerQueue implements ProducerQueue {
 					c.error(t);
 					throw t;
 				}
+			} else {
+				((Consumer) instance_).skip(obj);
 			}
 		} else {
 			if (filter_.accept(obj)) {
 				ConsumerProducer cp = (ConsumerProducer) instance_;
 				try {
 					cp.init();
-					cp.execute_(obj, queue_);
+					// 入力の連番を、offerするContainerに引き継ぐ
+					cp.execute(obj, queue_);
 					cp.finish();
 				} catch (Throwable t) {
 					cp.error(t);
@@ -69,7 +72,7 @@ public class DirectProducerQueue implements ProducerQueue {
 	}
 
 	@Override
-	public Iterator<Container> consumerIterator() {
+	public Iterator<Container<?>> consumerIterator() {
 		throw new UnsupportedOperationException();
 	}
 
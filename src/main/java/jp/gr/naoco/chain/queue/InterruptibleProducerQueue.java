@@ -0,0 +1,15 @@
+package jp.gr.naoco.chain.queue;
+
+/**
+ * スレッド間でContainerを受け渡すキューのインタフェース
+ * <p>
+ * Producer側とConsumer側が別スレッドで動作するキューは、本インタフェースを実装する。<br/>
+ * 一方のスレッドで異常が発生した場合、reserveInterruptメソッドにより他方のスレッドのoffer、あるいはhasNextで例外を発生させる。
+ * </p>
+ */
+public interface InterruptibleProducerQueue extends ProducerQueue {
+
+	public void reserveInterrupt();
+
+	public void reserveInterrupt(Throwable interruptCause);
+}
@@ -0,0 +1,406 @@
+package jp.gr.naoco.chain.queue;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jp.gr.naoco.chain.Container;
+
+/**
+ * 複数のConsumerProducerスレッドがofferした要素を、1つのConsumerスレッドにまとめて渡すキュー実装
+ * <p>
+ * ConsumerProducerスレッドごとに{@link #newWorker(SharedProducerQueue.ConsumerIterator)}で{@link Worker}を生成し、
+ * {@link Worker#iterator()}から要素を受け取り、{@link Worker#queue()}へofferする。
+ * 処理を終えたConsumerProducerスレッドは{@link Worker#finish()}を呼び出す。すべてのWorkerが終了した時点で、
+ * {@link #consumerIterator()}のhasNextはキューに残った要素を返却した後にfalseを返す。
+ * </p>
+ * <p>
+ * 順序付きモードの場合、入力側の{@link SharedProducerQueue}に付与された連番の順に出力を並べ替えて返却する。
+ * ある入力要素の処理中にofferされた要素は、その入力要素の出力として扱うため、
+ * 入力要素の処理中にofferを完了しないConsumerProducer（{@link jp.gr.naoco.chain.BufferedConsumerProducer}など）は順序付きモードで使用できない。
+ * </p>
+ */
+public class MergeProducerQueue implements InterruptibleProducerQueue {
+
+	private final boolean ordered_;
+
+	private final int maxQueueSize_;
+
+	private final long waitTimeNanos_;
+
+	private final ReentrantLock lock_ = new ReentrantLock();
+
+	private final Condition notEmpty_ = lock_.newCondition();
+
+	private final Condition notFull_ = lock_.newCondition();
+
+	/** 順序なしモードのキュー */
+	private final ArrayDeque<Container<?>> queue_;
+
+	/** 順序付きモードの連番ごとの出力 */
+	private final Map<Long, Slot> slots_;
+
+	/** 順序付きモードで、入力要素の処理外（ConsumerProducerのfinishなど）でofferされた出力 */
+	private final ArrayDeque<Container<?>> trailing_;
+
+	/** 順序付きモードで次に返却する連番 */
+	private long emitSequence_ = 0L;
+
+	/** キューに格納されている要素数 */
+	private int size_ = 0;
+
+	private int runningWorkers_ = 0;
+
+	private volatile boolean reserveInterrupt_ = false;
+
+	private volatile Throwable interruptCause_ = null;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link MergeProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param maxQueueSize キューの最大要素数（10以上を設定すること）
+	 * @param waitTimeMinutes 最大待機時間（分）
+	 * @param ordered 入力の連番の順に出力する場合はtrue
+	 */
+	public MergeProducerQueue(int maxQueueSize, long waitTimeMinutes, boolean ordered) {
+		maxQueueSize_ = (maxQueueSize < 10 ? 10 : maxQueueSize);
+		ordered_ = ordered;
+		if (ordered) {
+			queue_ = null;
+			slots_ = new HashMap<Long, Slot>();
+			trailing_ = new ArrayDeque<Container<?>>();
+		} else {
+			queue_ = new ArrayDeque<Container<?>>(maxQueueSize_);
+			slots_ = null;
+			trailing_ = null;
+		}
+		if (waitTimeMinutes < 1) {
+			waitTimeMinutes = 1;
+		}
+		waitTimeNanos_ = TimeUnit.MINUTES.toNanos(waitTimeMinutes);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	/**
+	 * ConsumerProducerスレッド用のWorkerを生成する。Workerの生成はスレッド開始前に行うこと。
+	 *
+	 * @param input 入力側のキューのIterator
+	 * @return Worker
+	 */
+	public Worker newWorker(SharedProducerQueue.ConsumerIterator input) {
+		lock_.lock();
+		try {
+			runningWorkers_++;
+		} finally {
+			lock_.unlock();
+		}
+		return new Worker(input);
+	}
+
+	/**
+	 * ConsumerProducerスレッド用のWorkerを生成する。入力に連番がないため、順序なしモードでのみ使用できる。
+	 *
+	 * @param input 入力側のキューのIterator
+	 * @return Worker
+	 */
+	public Worker newWorker(Iterator<Container<?>> input) {
+		if (ordered_) {
+			throw new IllegalStateException("ordered MergeProducerQueue requires SharedProducerQueue.ConsumerIterator.");
+		}
+		lock_.lock();
+		try {
+			runningWorkers_++;
+		} finally {
+			lock_.unlock();
+		}
+		return new Worker(input);
+	}
+
+	/**
+	 * Workerを経由せずに要素を追加することはできない。
+	 */
+	@Override
+	public void offer(Container<?> obj) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * キューの終了は、すべてのWorkerの{@link Worker#finish()}呼出しで判定するため、何もしない。
+	 */
+	@Override
+	public void finish() {
+		// nothing to do
+	}
+
+	@Override
+	public Iterator<Container<?>> consumerIterator() {
+		return new ConsumerIterator();
+	}
+
+	@Override
+	public void reserveInterrupt() {
+		reserveInterrupt(null);
+	}
+
+	@Override
+	public void reserveInterrupt(Throwable interruptCause) {
+		interruptCause_ = interruptCause;
+		reserveInterrupt_ = true;
+		lock_.lock();
+		try {
+			notEmpty_.signalAll();
+			notFull_.signalAll();
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	// ////////////////////////////////
+
+	private void put(long sequence, Container<?> container) {
+		interrupted();
+		lock_.lock();
+		try {
+			long nanos = waitTimeNanos_;
+			// 順序付きモードでは、次に返却する連番の出力と入力要素の処理外の出力は待機させない（待機するとデッドロックとなるため）
+			while ((maxQueueSize_ <= size_) && (!ordered_ || ((emitSequence_ != sequence) && (0 <= sequence)))) {
+				interrupted();
+				if (nanos <= 0) {
+					throw new RuntimeException("time over by offer.");
+				}
+				nanos = notFull_.awaitNanos(nanos);
+			}
+			if (ordered_ && (sequence < 0)) {
+				trailing_.add(container);
+			} else if (ordered_) {
+				slot(sequence).containers_.add(container);
+			} else {
+				queue_.add(container);
+			}
+			size_++;
+			notEmpty_.signal();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	private void complete(long sequence, boolean finishWorker) {
+		lock_.lock();
+		try {
+			if (ordered_ && (0 <= sequence)) {
+				slot(sequence).completed_ = true;
+			}
+			if (finishWorker) {
+				runningWorkers_--;
+			}
+			notEmpty_.signal();
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	private Slot slot(long sequence) {
+		Slot slot = slots_.get(sequence);
+		if (null == slot) {
+			slot = new Slot();
+			slots_.put(sequence, slot);
+		}
+		return slot;
+	}
+
+	private Container<?> poll() {
+		if (ordered_) {
+			while (true) {
+				Slot slot = slots_.get(emitSequence_);
+				if (null == slot) {
+					// すべてのWorkerの終了後に、入力要素の処理外の出力を返却する
+					return ((0 == runningWorkers_) && slots_.isEmpty()) ? trailing_.poll() : null;
+				}
+				if (!slot.containers_.isEmpty()) {
+					return slot.containers_.poll();
+				}
+				if (!slot.completed_) {
+					return null;
+				}
+				slots_.remove(emitSequence_);
+				emitSequence_++;
+				notFull_.signalAll();
+			}
+		} else {
+			return queue_.poll();
+		}
+	}
+
+	private Container<?> take() {
+		lock_.lock();
+		try {
+			long nanos = waitTimeNanos_;
+			Container<?> container;
+			while (null == (container = poll())) {
+				interrupted();
+				if (0 == runningWorkers_) {
+					return null;
+				}
+				if (nanos <= 0) {
+					throw new RuntimeException("time over by hasNext.");
+				}
+				nanos = notEmpty_.awaitNanos(nanos);
+			}
+			size_--;
+			notFull_.signalAll();
+			return container;
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	private void interrupted() {
+		if (reserveInterrupt_) {
+			if (null == interruptCause_) {
+				throw new RuntimeException("this thread is interrupted.");
+			} else {
+				throw new RuntimeException("this thread is interrupted.", interruptCause_);
+			}
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	/**
+	 * ConsumerProducerスレッドごとの入出力
+	 */
+	public class Worker {
+		private final Iterator<Container<?>> input_;
+
+		private long sequence_ = -1L;
+
+		private boolean finished_ = false;
+
+		private final Iterator<Container<?>> iterator_ = new Iterator<Container<?>>() {
+			@Override
+			public boolean hasNext() {
+				// 次の要素の確認時点で、処理中の要素の出力は完了している
+				completeCurrent();
+				return input_.hasNext();
+			}
+
+			@Override
+			public Container<?> next() {
+				completeCurrent();
+				Container<?> container = input_.next();
+				if (input_ instanceof SharedProducerQueue.ConsumerIterator) {
+					sequence_ = ((SharedProducerQueue.ConsumerIterator) input_).currentSequence();
+				}
+				return container;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+
+		private final ProducerQueue queue_ = new ProducerQueue() {
+			@Override
+			public void offer(Container<?> obj) {
+				put(sequence_, obj);
+			}
+
+			@Override
+			public void finish() {
+				// nothing to do
+			}
+
+			@Override
+			public Iterator<Container<?>> consumerIterator() {
+				throw new UnsupportedOperationException();
+			}
+		};
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Constructor
+
+		private Worker(Iterator<Container<?>> input) {
+			input_ = input;
+		}
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Methods
+
+		public Iterator<Container<?>> iterator() {
+			return iterator_;
+		}
+
+		public ProducerQueue queue() {
+			return queue_;
+		}
+
+		public void finish() {
+			if (finished_) {
+				return;
+			}
+			finished_ = true;
+			complete(sequence_, true);
+			sequence_ = -1L;
+		}
+
+		private void completeCurrent() {
+			if (0 <= sequence_) {
+				complete(sequence_, false);
+				sequence_ = -1L;
+			}
+		}
+	}
+
+	private class ConsumerIterator implements Iterator<Container<?>> {
+		private Container<?> next_ = null;
+
+		@Override
+		public boolean hasNext() {
+			interrupted();
+			if (null == next_) {
+				next_ = take();
+			}
+			return (null != next_);
+		}
+
+		@Override
+		public Container<?> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Container<?> container = next_;
+			next_ = null;
+			return container;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	// ///////////////////////
+
+	private static class Slot {
+		private final ArrayDeque<Container<?>> containers_ = new ArrayDeque<Container<?>>();
+
+		private boolean completed_ = false;
+	}
+}
@@ -29,9 +29,9 @@ import jp.gr.naoco.core.log.LaolLogger;
  * 待機時間の指定は分単位であるが、ProducerとConsumerが1要素の処理に費やす最大時間の100倍よりかなり大きいの値を指定するのが望ましい。
  * </p>
  */
-public class ParallelProducerQueue implements ProducerQueue {
+public class ParallelProducerQueue implements BoundedProducerQueue {
 
-	private volatile LinkedList<Container> queue_ = new LinkedList<Container>();
+	private volatile LinkedList<Container<?>> queue_ = new LinkedList<Container<?>>();
 
 	private volatile Blocker producerBlocker_;
 
@@ -81,7 +81,7 @@ public class ParallelProducerQueue implements ProducerQueue {
 	// Methods
 
 	@Override
-	public void offer(Container obj) {
+	public void offer(Container<?> obj) {
 		producerThreadName_ = Thread.currentThread().getName();
 		interrupted();
 		BLOCK_PRODUCER: if (maxQueueSize_ < queue_.size()) {
@@ -123,7 +123,7 @@ public class ParallelProducerQueue implements ProducerQueue {
 	}
 
 	@Override
-	public Iterator<Container> consumerIterator() {
+	public Iterator<Container<?>> consumerIterator() {
 		return new ConsumerIterator();
 	}
 
@@ -136,6 +136,11 @@ public class ParallelProducerQueue implements ProducerQueue {
 		interruptCause_ = interruptCause;
 	}
 
+	@Override
+	public boolean canOfferWithoutWait() {
+		return (queue_.size() <= maxQueueSize_);
+	}
+
 	private void interrupted() {
 		if (reserveInterrupt_) {
 			producerBlocker_.clear();
@@ -151,7 +156,7 @@ public class ParallelProducerQueue implements ProducerQueue {
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Inner classes
 
-	public class ConsumerIterator implements Iterator<Container> {
+	public class ConsumerIterator implements Iterator<Container<?>> {
 
 		@Override
 		public boolean hasNext() {
@@ -190,8 +195,8 @@ public class ParallelProducerQueue implements ProducerQueue {
 		}
 
 		@Override
-		public Container next() {
-			Container container = null;
+		public Container<?> next() {
+			Container<?> container = null;
 			synchronized (queue_) {
 				while (null == (container = queue_.poll())) {
 					interrupted();
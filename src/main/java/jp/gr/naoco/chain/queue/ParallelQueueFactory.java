@@ -0,0 +1,185 @@
+package jp.gr.naoco.chain.queue;
+
+import java.io.File;
+
+import jp.gr.naoco.chain.ChainExecutor;
+
+/**
+ * Chainのparallel接続で使用するキューを生成するファクトリ
+ */
+public abstract class ParallelQueueFactory {
+
+	/** {@link ParallelProducerQueue}を生成するファクトリ（デフォルト） */
+	public static final ParallelQueueFactory BLOCKING = new ParallelQueueFactory() {
+		@Override
+		public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes) {
+			return new ParallelProducerQueue(maxQueueSize, waitTimeMinutes);
+		}
+	};
+
+	/** {@link RingBufferProducerQueue}を生成するファクトリ */
+	public static final ParallelQueueFactory RING_BUFFER = new ParallelQueueFactory() {
+		@Override
+		public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes) {
+			return new RingBufferProducerQueue(maxQueueSize, waitTimeMinutes);
+		}
+	};
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	/**
+	 * 指定したバックプレッシャーの設定に従う{@link BackpressureProducerQueue}を生成するファクトリを返す。
+	 * <p>
+	 * キューの最大要素数の指定は無視し、policyの上限を使用する。破棄した要素数は、
+	 * {@link jp.gr.naoco.chain.Chain#metrics(jp.gr.naoco.chain.metrics.ChainMetrics)}で設定した計測値から取得する。
+	 * </p>
+	 *
+	 * @param policy バックプレッシャーの設定
+	 * @return ファクトリ
+	 */
+	public static ParallelQueueFactory backpressure(final BackpressurePolicy policy) {
+		return new ParallelQueueFactory() {
+			@Override
+			public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes) {
+				return new BackpressureProducerQueue(policy, waitTimeMinutes);
+			}
+		};
+	}
+
+	/**
+	 * 処理速度に応じて格納できる要素数を調整する{@link AdaptiveProducerQueue}を生成するファクトリを返す。
+	 * <p>
+	 * キューの最大要素数を、格納できる要素数の上限とする。調整した格納できる要素数は、
+	 * {@link jp.gr.naoco.chain.Chain#metrics(jp.gr.naoco.chain.metrics.ChainMetrics)}で設定した計測値から取得する。
+	 * </p>
+	 *
+	 * @param minQueueSize 格納できる要素数の下限
+	 * @param targetLatencyMillis 要素がキューに滞留する目標時間（ミリ秒）
+	 * @return ファクトリ
+	 */
+	public static ParallelQueueFactory adaptive(int minQueueSize, long targetLatencyMillis) {
+		return adaptive(minQueueSize, targetLatencyMillis, 0L, null);
+	}
+
+	/**
+	 * 処理速度に応じて格納できる要素数を調整し、要素のバイト数の合計を制限する{@link AdaptiveProducerQueue}を生成するファクトリを返す。
+	 * <p>
+	 * キューの最大要素数を、格納できる要素数の上限とする。
+	 * </p>
+	 *
+	 * @param minQueueSize 格納できる要素数の下限
+	 * @param targetLatencyMillis 要素がキューに滞留する目標時間（ミリ秒）
+	 * @param maxBytes 格納する要素のバイト数の合計の上限（0以下の場合はバイト数で制限しない）
+	 * @param estimator 要素のバイト数の見積り（nullの場合は{@link ContainerSizeEstimator#DEFAULT}）
+	 * @return ファクトリ
+	 */
+	public static ParallelQueueFactory adaptive(final int minQueueSize, final long targetLatencyMillis,
+			final long maxBytes, final ContainerSizeEstimator estimator) {
+		return new ParallelQueueFactory() {
+			@Override
+			public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes) {
+				return new AdaptiveProducerQueue(minQueueSize, maxQueueSize, targetLatencyMillis, maxBytes, estimator,
+						waitTimeMinutes);
+			}
+		};
+	}
+
+	/**
+	 * 要素数ではなく、要素のバイト数の合計で制限する{@link AdaptiveProducerQueue}を生成するファクトリを返す。
+	 * <p>
+	 * キューの最大要素数の指定は無視する。
+	 * </p>
+	 *
+	 * @param maxBytes 格納する要素のバイト数の合計の上限
+	 * @param estimator 要素のバイト数の見積り（nullの場合は{@link ContainerSizeEstimator#DEFAULT}）
+	 * @return ファクトリ
+	 */
+	public static ParallelQueueFactory memoryBudget(final long maxBytes, final ContainerSizeEstimator estimator) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("maxBytes must be greater than 0.");
+		}
+		return new ParallelQueueFactory() {
+			@Override
+			public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes) {
+				return new AdaptiveProducerQueue(1, Integer.MAX_VALUE, 0L, maxBytes, estimator, waitTimeMinutes);
+			}
+		};
+	}
+
+	/**
+	 * メモリの上限を超えた要素をファイルに退避する{@link SpillableProducerQueue}を生成するファクトリを返す。
+	 * <p>
+	 * キューの最大要素数の指定は無視する。Producerはofferで待機しない。
+	 * </p>
+	 *
+	 * @param memoryBytes メモリ上に保持する要素のバイト数の合計の上限
+	 * @param estimator 要素のバイト数の見積り（nullの場合は{@link ContainerSizeEstimator#DEFAULT}）
+	 * @param directory 一時ファイルを生成するディレクトリ（nullの場合はjava.io.tmpdir）
+	 * @return ファクトリ
+	 */
+	public static ParallelQueueFactory spillable(final long memoryBytes, final ContainerSizeEstimator estimator,
+			final File directory) {
+		return new ParallelQueueFactory() {
+			@Override
+			public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes) {
+				return new SpillableProducerQueue(memoryBytes, estimator, directory, waitTimeMinutes);
+			}
+		};
+	}
+
+	/**
+	 * 指定したファクトリで生成したキューを使用して、要素をまとめて受け渡す{@link BatchingProducerQueue}を生成するファクトリを返す。
+	 * <p>
+	 * 内部のキューの最大要素数は、キューの最大要素数をbatchSizeで割った値とする。
+	 * lingerMillisを経過したバッファのフラッシュ処理は、Chainのエクゼキュータで実行する。
+	 * </p>
+	 *
+	 * @param factory 内部のキューのファクトリ
+	 * @param batchSize まとめて渡す最大要素数
+	 * @param lingerMillis 最初の要素をバッファしてから、内部のキューに渡すまでの最大待機時間（ミリ秒）
+	 * @return ファクトリ
+	 */
+	public static ParallelQueueFactory batching(final ParallelQueueFactory factory, final int batchSize,
+			final long lingerMillis) {
+		return new ParallelQueueFactory() {
+			@Override
+			public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes) {
+				return create(maxQueueSize, waitTimeMinutes, ChainExecutor.getDefault());
+			}
+
+			@Override
+			public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes, ChainExecutor executor) {
+				int batchQueueSize = (1 < batchSize ? (maxQueueSize / batchSize) : maxQueueSize);
+				return new BatchingProducerQueue(factory.create(batchQueueSize, waitTimeMinutes, executor), batchSize,
+						lingerMillis, executor);
+			}
+		};
+	}
+
+	/**
+	 * キューを生成する。
+	 * 
+	 * @param maxQueueSize キューの最大要素数
+	 * @param waitTimeMinutes 最大待機時間（分）
+	 * @return 生成したキュー
+	 */
+	public abstract InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes);
+
+	/**
+	 * Chainのエクゼキュータを指定して、キューを生成する。
+	 * <p>
+	 * Chainはparallel接続とパーティション接続のキューを本メソッドで生成する。
+	 * キューの処理を別スレッドで実行する場合はオーバーライドし、指定したエクゼキュータを使用すること。
+	 * デフォルトでは{@link #create(int, long)}を呼び出す。
+	 * </p>
+	 *
+	 * @param maxQueueSize キューの最大要素数
+	 * @param waitTimeMinutes 最大待機時間（分）
+	 * @param executor Chainの別スレッドの処理を実行するエクゼキュータ
+	 * @return 生成したキュー
+	 */
+	public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes, ChainExecutor executor) {
+		return create(maxQueueSize, waitTimeMinutes);
+	}
+}
@@ -0,0 +1,138 @@
+package jp.gr.naoco.chain.queue;
+
+import java.util.Iterator;
+
+import jp.gr.naoco.chain.ChainExecutor;
+import jp.gr.naoco.chain.Checkpoint;
+import jp.gr.naoco.chain.Container;
+import jp.gr.naoco.chain.KeyExtractor;
+
+/**
+ * キーのハッシュ値で、要素を複数のConsumerスレッドに振り分けるキュー実装
+ * <p>
+ * Producerは1スレッドを想定し、パーティションごとに1つのキュー（レーン）を持つ。
+ * 同じキーの要素は常に同じレーンに渡されるため、レーンごとに1つのConsumerスレッドで処理すれば、キーごとの順序が保たれる。
+ * </p>
+ * <p>
+ * Consumerは{@link #consumerIterator()}で取得したIteratorをスレッドごとに使用する。
+ * 呼出しごとに先頭のレーンから順にIteratorを返し、パーティション数を超えて呼び出した場合はIllegalStateExceptionが発生する。
+ * </p>
+ */
+public class PartitionedProducerQueue implements InterruptibleProducerQueue {
+
+	private final KeyExtractor keyExtractor_;
+
+	private final InterruptibleProducerQueue[] lanes_;
+
+	private int nextLane_ = 0;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link PartitionedProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param keyExtractor キーの取得方法
+	 * @param nPartitions パーティション数
+	 * @param queueFactory レーンのキューのファクトリ
+	 * @param maxQueueSize レーンごとのキューの最大要素数
+	 * @param waitTimeMinutes 最大待機時間（分）
+	 */
+	public PartitionedProducerQueue(KeyExtractor keyExtractor, int nPartitions, ParallelQueueFactory queueFactory,
+			int maxQueueSize, long waitTimeMinutes) {
+		this(keyExtractor, nPartitions, queueFactory, maxQueueSize, waitTimeMinutes, ChainExecutor.getDefault());
+	}
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link PartitionedProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param keyExtractor キーの取得方法
+	 * @param nPartitions パーティション数
+	 * @param queueFactory レーンのキューのファクトリ
+	 * @param maxQueueSize レーンごとのキューの最大要素数
+	 * @param waitTimeMinutes 最大待機時間（分）
+	 * @param executor レーンのキューの別スレッドの処理を実行するエクゼキュータ
+	 */
+	public PartitionedProducerQueue(KeyExtractor keyExtractor, int nPartitions, ParallelQueueFactory queueFactory,
+			int maxQueueSize, long waitTimeMinutes, ChainExecutor executor) {
+		if (nPartitions < 1) {
+			throw new IllegalArgumentException("nPartitions must be greater than 0.");
+		}
+		keyExtractor_ = keyExtractor;
+		lanes_ = new InterruptibleProducerQueue[nPartitions];
+		for (int i = 0; i < nPartitions; i++) {
+			lanes_[i] = queueFactory.create(maxQueueSize, waitTimeMinutes, executor);
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void offer(Container<?> obj) {
+		lanes_[partition(keyExtractor_.key(obj))].offer(obj);
+	}
+
+	@Override
+	public void finish() {
+		for (InterruptibleProducerQueue lane : lanes_) {
+			lane.finish();
+		}
+	}
+
+	/**
+	 * 次のレーンのIteratorを返す。Consumerスレッドごとに本メソッドを呼び出すこと。
+	 */
+	@Override
+	public synchronized Iterator<Container<?>> consumerIterator() {
+		if (lanes_.length <= nextLane_) {
+			throw new IllegalStateException("all partitions are already assigned. partitions:" + lanes_.length);
+		}
+		return lanes_[nextLane_++].consumerIterator();
+	}
+
+	@Override
+	public void reserveInterrupt() {
+		for (InterruptibleProducerQueue lane : lanes_) {
+			lane.reserveInterrupt();
+		}
+	}
+
+	@Override
+	public void reserveInterrupt(Throwable interruptCause) {
+		for (InterruptibleProducerQueue lane : lanes_) {
+			lane.reserveInterrupt(interruptCause);
+		}
+	}
+
+	public int getPartitions() {
+		return lanes_.length;
+	}
+
+	/**
+	 * {@link BackpressureProducerQueue}のレーンに、DROP_OLDESTで破棄した要素の連番を通知するチェックポイントを設定する。
+	 *
+	 * @param checkpoint チェックポイント（通知しない場合はnull）
+	 */
+	public void setCheckpoint(Checkpoint checkpoint) {
+		for (InterruptibleProducerQueue lane : lanes_) {
+			if (lane instanceof BackpressureProducerQueue) {
+				((BackpressureProducerQueue) lane).setCheckpoint(checkpoint);
+			}
+		}
+	}
+
+	// ////////////////////////////////
+
+	private int partition(Object key) {
+		if (null == key) {
+			return 0;
+		}
+		// 下位ビットの偏りを減らすため、上位ビットを混ぜる
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return (h & Integer.MAX_VALUE) % lanes_.length;
+	}
+}
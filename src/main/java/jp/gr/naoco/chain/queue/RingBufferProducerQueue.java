@@ -0,0 +1,272 @@
+package jp.gr.naoco.chain.queue;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import jp.gr.naoco.chain.Container;
+
+/**
+ * Producer-Consumerマルチスレッドパターンのリングバッファによるキュー実装
+ * <p>
+ * 本クラスは、ProducerとConsumerがそれぞれ1スレッドのみの場合（Single-Producer/Single-Consumer）に限定したキューである。<br/>
+ * 構築時に要素の配列を確保し、offerとnextではロックの取得とオブジェクトの生成を行わない。<br/>
+ * ProducerあるいはConsumerが複数スレッドある場合の動作は保証しない。
+ * </p>
+ * <p>
+ * キューが満杯の場合のoffer、およびキューが空の場合のhasNextは、一定回数のスピンとyieldの後、
+ * 相手側スレッドから起床されるまでスレッドをparkして待機する。待機時間が最大待機時間を超えた場合はRuntimeExceptionが発生する。
+ * </p>
+ * <p>
+ * finishメソッド、reserveInterruptメソッドの振る舞いは{@link ParallelProducerQueue}と同じである。
+ * </p>
+ */
+public class RingBufferProducerQueue implements BoundedProducerQueue {
+
+	private final Container<?>[] buffer_;
+
+	private final int mask_;
+
+	/** 次にConsumerが読み出す位置 */
+	private final AtomicLong head_ = new AtomicLong(0L);
+
+	/** 次にProducerが書き込む位置 */
+	private final AtomicLong tail_ = new AtomicLong(0L);
+
+	/** Producer側で保持するheadの読込み値（Producerスレッドのみ参照） */
+	private long headCache_ = 0L;
+
+	/** Consumer側で保持するtailの読込み値（Consumerスレッドのみ参照） */
+	private long tailCache_ = 0L;
+
+	private volatile Thread producerWaiter_ = null;
+
+	private volatile Thread consumerWaiter_ = null;
+
+	private final long waitTimeNanos_;
+
+	private volatile boolean isFinished_ = false;
+
+	private volatile boolean reserveInterrupt_ = false;
+
+	private volatile Throwable interruptCause_ = null;
+
+	private static final int SPIN_COUNT = 100;
+
+	private static final int YIELD_COUNT = 10;
+
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link RingBufferProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param maxQueueSize キューの最大要素数（10以上を設定すること。内部では2のべき乗に切り上げる）
+	 * @param waitTimeMinutes 最大待機時間（分）
+	 */
+	public RingBufferProducerQueue(int maxQueueSize, long waitTimeMinutes) {
+		int capacity = 1;
+		while (capacity < (maxQueueSize < 10 ? 10 : maxQueueSize)) {
+			capacity <<= 1;
+		}
+		buffer_ = new Container<?>[capacity];
+		mask_ = capacity - 1;
+		if (waitTimeMinutes < 1) {
+			waitTimeMinutes = 1;
+		}
+		waitTimeNanos_ = TimeUnit.MINUTES.toNanos(waitTimeMinutes);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void offer(Container<?> obj) {
+		interrupted();
+		long tail = tail_.get();
+		if (buffer_.length <= (tail - headCache_)) {
+			headCache_ = head_.get();
+			if (buffer_.length <= (tail - headCache_)) {
+				waitForSpace(tail);
+			}
+		}
+		buffer_[(int) (tail & mask_)] = obj;
+		tail_.set(tail + 1);
+		Thread waiter = consumerWaiter_;
+		if (null != waiter) {
+			LockSupport.unpark(waiter);
+		}
+	}
+
+	@Override
+	public void finish() {
+		isFinished_ = true;
+		Thread waiter = consumerWaiter_;
+		if (null != waiter) {
+			LockSupport.unpark(waiter);
+		}
+	}
+
+	@Override
+	public Iterator<Container<?>> consumerIterator() {
+		return new ConsumerIterator();
+	}
+
+	@Override
+	public void reserveInterrupt() {
+		reserveInterrupt(null);
+	}
+
+	@Override
+	public void reserveInterrupt(Throwable interruptCause) {
+		interruptCause_ = interruptCause;
+		reserveInterrupt_ = true;
+		Thread waiter = producerWaiter_;
+		if (null != waiter) {
+			LockSupport.unpark(waiter);
+		}
+		waiter = consumerWaiter_;
+		if (null != waiter) {
+			LockSupport.unpark(waiter);
+		}
+	}
+
+	@Override
+	public boolean canOfferWithoutWait() {
+		long tail = tail_.get();
+		if ((tail - headCache_) < buffer_.length) {
+			return true;
+		}
+		headCache_ = head_.get();
+		return ((tail - headCache_) < buffer_.length);
+	}
+
+	/**
+	 * キューに格納されている要素数を返す。
+	 *
+	 * @return 要素数
+	 */
+	public int size() {
+		return (int) (tail_.get() - head_.get());
+	}
+
+	// ////////////////////////////////
+
+	private void waitForSpace(long tail) {
+		long deadline = System.nanoTime() + waitTimeNanos_;
+		for (int i = 0; buffer_.length <= (tail - headCache_); i++) {
+			interrupted();
+			if (i < SPIN_COUNT) {
+				// busy spin
+			} else if (i < (SPIN_COUNT + YIELD_COUNT)) {
+				Thread.yield();
+			} else {
+				producerWaiter_ = Thread.currentThread();
+				try {
+					if (buffer_.length <= (tail - head_.get())) {
+						park(deadline, "time over by offer.");
+					}
+				} finally {
+					producerWaiter_ = null;
+				}
+			}
+			headCache_ = head_.get();
+		}
+	}
+
+	private boolean waitForElement(long head) {
+		long deadline = System.nanoTime() + waitTimeNanos_;
+		for (int i = 0; tailCache_ <= head; i++) {
+			interrupted();
+			if (isFinished_) {
+				// finish呼出し前のofferを取りこぼさないよう、フラグ確認後にtailを再読込みする
+				tailCache_ = tail_.get();
+				return (head < tailCache_);
+			}
+			if (i < SPIN_COUNT) {
+				// busy spin
+			} else if (i < (SPIN_COUNT + YIELD_COUNT)) {
+				Thread.yield();
+			} else {
+				consumerWaiter_ = Thread.currentThread();
+				try {
+					if ((tail_.get() <= head) && !isFinished_) {
+						park(deadline, "time over by hasNext.");
+					}
+				} finally {
+					consumerWaiter_ = null;
+				}
+			}
+			tailCache_ = tail_.get();
+		}
+		return true;
+	}
+
+	private void park(long deadline, String timeOverMessage) {
+		long remaining = deadline - System.nanoTime();
+		if (remaining <= 0) {
+			throw new RuntimeException(timeOverMessage);
+		}
+		LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+		if (Thread.interrupted()) {
+			throw new RuntimeException(new InterruptedException());
+		}
+	}
+
+	private void interrupted() {
+		if (reserveInterrupt_) {
+			if (null == interruptCause_) {
+				throw new RuntimeException("this thread is interrupted.");
+			} else {
+				throw new RuntimeException("this thread is interrupted.", interruptCause_);
+			}
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public class ConsumerIterator implements Iterator<Container<?>> {
+
+		@Override
+		public boolean hasNext() {
+			interrupted();
+			long head = head_.get();
+			if (head < tailCache_) {
+				return true;
+			}
+			tailCache_ = tail_.get();
+			if (head < tailCache_) {
+				return true;
+			}
+			return waitForElement(head);
+		}
+
+		@Override
+		public Container<?> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			long head = head_.get();
+			int index = (int) (head & mask_);
+			Container<?> container = buffer_[index];
+			buffer_[index] = null;
+			head_.set(head + 1);
+			Thread waiter = producerWaiter_;
+			if (null != waiter) {
+				LockSupport.unpark(waiter);
+			}
+			return container;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -7,7 +7,7 @@ import jp.gr.naoco.chain.Container;
 
 public class SequentialProducerQueue implements ProducerQueue {
 
-	private final LinkedList<Container> queue_ = new LinkedList<Container>();
+	private final LinkedList<Container<?>> queue_ = new LinkedList<Container<?>>();
 
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Constructor
@@ -19,7 +19,7 @@ public class SequentialProducerQueue implements ProducerQueue {
 	// Methods
 
 	@Override
-	public void offer(Container obj) {
+	public void offer(Container<?> obj) {
 		queue_.offer(obj);
 	}
 
@@ -29,7 +29,7 @@ public class SequentialProducerQueue implements ProducerQueue {
 	}
 
 	@Override
-	public Iterator<Container> consumerIterator() {
+	public Iterator<Container<?>> consumerIterator() {
 		return queue_.iterator();
 	}
 }
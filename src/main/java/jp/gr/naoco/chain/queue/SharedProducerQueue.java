@@ -0,0 +1,227 @@
+package jp.gr.naoco.chain.queue;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jp.gr.naoco.chain.Container;
+
+/**
+ * 複数のConsumerスレッドで要素を分け合うキュー実装
+ * <p>
+ * Producerは1スレッドを想定し、Consumerは{@link #consumerIterator()}で取得したIteratorをスレッドごとに使用する。<br/>
+ * 各要素はいずれか1つのConsumerにのみ渡される。
+ * </p>
+ * <p>
+ * 順序付きモードで構築した場合、offerされた順に0から始まる連番を要素に付与し、
+ * {@link ConsumerIterator#currentSequence()}で最後にnextで取得した要素の連番を参照できる。
+ * </p>
+ */
+public class SharedProducerQueue implements InterruptibleProducerQueue {
+
+	private final ArrayDeque<Object> queue_;
+
+	private final int maxQueueSize_;
+
+	private final boolean sequenced_;
+
+	/** 次に付与する連番（Producerスレッドのみ参照） */
+	private long sequence_ = 0L;
+
+	private final long waitTimeNanos_;
+
+	private final ReentrantLock lock_ = new ReentrantLock();
+
+	private final Condition notEmpty_ = lock_.newCondition();
+
+	private final Condition notFull_ = lock_.newCondition();
+
+	private volatile boolean isFinished_ = false;
+
+	private volatile boolean reserveInterrupt_ = false;
+
+	private volatile Throwable interruptCause_ = null;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link SharedProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param maxQueueSize キューの最大要素数（10以上を設定すること）
+	 * @param waitTimeMinutes 最大待機時間（分）
+	 * @param sequenced 要素に連番を付与する場合はtrue
+	 */
+	public SharedProducerQueue(int maxQueueSize, long waitTimeMinutes, boolean sequenced) {
+		maxQueueSize_ = (maxQueueSize < 10 ? 10 : maxQueueSize);
+		queue_ = new ArrayDeque<Object>(maxQueueSize_);
+		sequenced_ = sequenced;
+		if (waitTimeMinutes < 1) {
+			waitTimeMinutes = 1;
+		}
+		waitTimeNanos_ = TimeUnit.MINUTES.toNanos(waitTimeMinutes);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void offer(Container<?> obj) {
+		interrupted();
+		Object element = (sequenced_ ? new SequencedContainer(sequence_++, obj) : obj);
+		lock_.lock();
+		try {
+			long nanos = waitTimeNanos_;
+			while (maxQueueSize_ <= queue_.size()) {
+				interrupted();
+				if (nanos <= 0) {
+					throw new RuntimeException("time over by offer.");
+				}
+				nanos = notFull_.awaitNanos(nanos);
+			}
+			queue_.add(element);
+			notEmpty_.signal();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	@Override
+	public void finish() {
+		lock_.lock();
+		try {
+			isFinished_ = true;
+			notEmpty_.signalAll();
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	/**
+	 * Consumerスレッド用のIteratorを生成する。Consumerスレッドごとに本メソッドを呼び出すこと。
+	 */
+	@Override
+	public ConsumerIterator consumerIterator() {
+		return new ConsumerIterator();
+	}
+
+	@Override
+	public void reserveInterrupt() {
+		reserveInterrupt(null);
+	}
+
+	@Override
+	public void reserveInterrupt(Throwable interruptCause) {
+		interruptCause_ = interruptCause;
+		reserveInterrupt_ = true;
+		lock_.lock();
+		try {
+			notEmpty_.signalAll();
+			notFull_.signalAll();
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	// ////////////////////////////////
+
+	private Object take() {
+		lock_.lock();
+		try {
+			long nanos = waitTimeNanos_;
+			while (queue_.isEmpty()) {
+				interrupted();
+				if (isFinished_) {
+					return null;
+				}
+				if (nanos <= 0) {
+					throw new RuntimeException("time over by hasNext.");
+				}
+				nanos = notEmpty_.awaitNanos(nanos);
+			}
+			Object element = queue_.poll();
+			notFull_.signal();
+			return element;
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	private void interrupted() {
+		if (reserveInterrupt_) {
+			if (null == interruptCause_) {
+				throw new RuntimeException("this thread is interrupted.");
+			} else {
+				throw new RuntimeException("this thread is interrupted.", interruptCause_);
+			}
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public class ConsumerIterator implements Iterator<Container<?>> {
+		private Object next_ = null;
+
+		private long currentSequence_ = -1L;
+
+		@Override
+		public boolean hasNext() {
+			interrupted();
+			if (null == next_) {
+				next_ = take();
+			}
+			return (null != next_);
+		}
+
+		@Override
+		public Container<?> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Object element = next_;
+			next_ = null;
+			if (element instanceof SequencedContainer) {
+				SequencedContainer sequenced = (SequencedContainer) element;
+				currentSequence_ = sequenced.sequence_;
+				return sequenced.container_;
+			}
+			return (Container<?>) element;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * 最後にnextで取得した要素の連番を返す。順序付きモードでない場合、あるいはnext未呼出しの場合は-1を返す。
+		 *
+		 * @return 要素の連番
+		 */
+		public long currentSequence() {
+			return currentSequence_;
+		}
+	}
+
+	// ///////////////////////
+
+	private static class SequencedContainer {
+		private final long sequence_;
+
+		private final Container<?> container_;
+
+		private SequencedContainer(long sequence, Container<?> container) {
+			sequence_ = sequence;
+			container_ = container;
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package jp.gr.naoco.chain.queue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+import jp.gr.naoco.chain.Container;
+import jp.gr.naoco.core.log.LaolLogger;
+
+/**
+ * メモリの上限を超えた要素をファイルに退避するキュー実装
+ * <p>
+ * ProducerとConsumerがそれぞれ1スレッドの場合を想定する。<br/>
+ * {@link ContainerSizeEstimator}で見積もった要素のバイト数の合計がmemoryBytesを超える場合、offerは待機せずに、
+ * 要素の値をシリアライズして一時ファイルに追記する。Consumerには、メモリ上の要素、ファイルに退避した要素の順に、offerされた順で渡す。<br/>
+ * Producerが待機しないため、DBのカーソルを使用するProducerは、Consumerの処理を待たずにカーソルとトランザクションを終了できる。
+ * </p>
+ * <p>
+ * ファイルに退避する要素の値は{@link Serializable}であること。復元した要素は、値を保持する{@link Container}として渡す。<br/>
+ * 一時ファイルは、退避した要素をすべて読み込んだ時点で切り詰め、キューの終了時に削除する。<br/>
+ * {@link #size()}は、メモリ上に保持している要素数を返す。
+ * </p>
+ */
+public class SpillableProducerQueue extends AbstractLockProducerQueue {
+
+	private final ArrayDeque<Container<?>> memory_ = new ArrayDeque<Container<?>>();
+
+	private final ArrayDeque<Long> memorySizes_ = new ArrayDeque<Long>();
+
+	private final long memoryBytes_;
+
+	private final ContainerSizeEstimator estimator_;
+
+	private final File directory_;
+
+	private long queuedBytes_ = 0L;
+
+	/** 一時ファイル（最初に退避する時点で生成） */
+	private FileChannel channel_ = null;
+
+	private File file_ = null;
+
+	private final ByteBuffer writeBuffer_ = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private ByteBuffer readBuffer_ = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/** ファイルに書き込み済みの位置 */
+	private long writePosition_ = 0L;
+
+	/** ファイルから読み込み済みの位置 */
+	private long readPosition_ = 0L;
+
+	/** ファイルに退避し、まだ読み込んでいない要素数 */
+	private long spilled_ = 0L;
+
+	private final ByteArrayOutputStream serializeBuffer_ = new ByteArrayOutputStream();
+
+	private volatile long spilledCount_ = 0L;
+
+	private volatile long spilledBytes_ = 0L;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * コンストラクタ
+	 * 新しく {@link SpillableProducerQueue} オブジェクトを構築します。
+	 *
+	 * @param memoryBytes メモリ上に保持する要素のバイト数の合計の上限
+	 * @param estimator 要素のバイト数の見積り（nullの場合は{@link ContainerSizeEstimator#DEFAULT}）
+	 * @param directory 一時ファイルを生成するディレクトリ（nullの場合はjava.io.tmpdir）
+	 * @param waitTimeMinutes Consumerの最大待機時間（分）
+	 */
+	public SpillableProducerQueue(long memoryBytes, ContainerSizeEstimator estimator, File directory,
+			long waitTimeMinutes) {
+		super(waitTimeMinutes);
+		memoryBytes_ = memoryBytes;
+		estimator_ = (null == estimator ? ContainerSizeEstimator.DEFAULT : estimator);
+		directory_ = directory;
+		// 読み込みバッファは、読み込み済みのデータがない状態から開始する
+		readBuffer_.flip();
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public void offer(Container<?> obj) {
+		interrupted();
+		long bytes = estimator_.sizeOf(obj);
+		lock_.lock();
+		try {
+			// 退避中の要素がある場合は、順序を保つため続けてファイルに退避する
+			if ((0 == spilled_) && (memory_.isEmpty() || ((queuedBytes_ + bytes) <= memoryBytes_))) {
+				memory_.add(obj);
+				memorySizes_.add(bytes);
+				queuedBytes_ += bytes;
+				size_ = memory_.size();
+			} else {
+				spill(obj);
+			}
+			notEmpty_.signal();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	/**
+	 * ファイルに退避した要素の累計数を返す。
+	 *
+	 * @return 要素数
+	 */
+	public long getSpilledCount() {
+		return spilledCount_;
+	}
+
+	/**
+	 * ファイルに退避した要素の累計バイト数を返す。
+	 *
+	 * @return バイト数
+	 */
+	public long getSpilledBytes() {
+		return spilledBytes_;
+	}
+
+	// ////////////////////////////////
+
+	private void spill(Container<?> obj) throws IOException {
+		Object value = obj.get();
+		if ((null != value) && !(value instanceof Serializable)) {
+			throw new IllegalStateException("container value is not serializable. class:" + value.getClass().getName());
+		}
+		if (null == channel_) {
+			file_ = File.createTempFile("chain-spill", ".tmp", directory_);
+			channel_ = FileChannel.open(file_.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE);
+			LOG.info("spill file created. " + file_.getAbsolutePath());
+		}
+		serializeBuffer_.reset();
+		ObjectOutputStream out = new ObjectOutputStream(serializeBuffer_);
+		// チェックポイントの連番を、要素とともに退避する
+		out.writeLong(obj.getSequence());
+		out.writeObject(value);
+		out.close();
+		byte[] record = serializeBuffer_.toByteArray();
+
+		if (writeBuffer_.remaining() < (4 + record.length)) {
+			flushWrite();
+		}
+		if (writeBuffer_.remaining() < (4 + record.length)) {
+			// バッファより大きい要素は直接書き込む
+			ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+			buffer.putInt(record.length).put(record).flip();
+			writeFully(buffer);
+		} else {
+			writeBuffer_.putInt(record.length).put(record);
+		}
+		spilled_++;
+		spilledCount_++;
+		spilledBytes_ += (4 + record.length);
+	}
+
+	private Container<?> unspill() throws IOException {
+		ByteBuffer buffer = fill(4);
+		int length = buffer.getInt();
+		buffer = fill(length);
+		byte[] record = new byte[length];
+		buffer.get(record);
+		spilled_--;
+		if (0 == spilled_) {
+			// 退避した要素をすべて読み込んだため、ファイルを切り詰めて再利用する
+			channel_.truncate(0L);
+			writePosition_ = 0L;
+			readPosition_ = 0L;
+			readBuffer_.clear().flip();
+		}
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(record));
+		try {
+			long sequence = in.readLong();
+			return new Container<Object>(in.readObject(), sequence);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			in.close();
+		}
+	}
+
+	private ByteBuffer fill(int need) throws IOException {
+		if (need <= readBuffer_.remaining()) {
+			return readBuffer_;
+		}
+		if (readBuffer_.capacity() < need) {
+			ByteBuffer buffer = ByteBuffer.allocate(need);
+			buffer.put(readBuffer_);
+			readBuffer_ = buffer;
+		} else {
+			readBuffer_.compact();
+		}
+		while (readBuffer_.position() < need) {
+			if (writePosition_ <= readPosition_) {
+				// 読み込む要素が書込みバッファに残っている場合
+				flushWrite();
+			}
+			int count = channel_.read(readBuffer_, readPosition_);
+			if (count < 0) {
+				throw new IllegalStateException("spill file is broken. position:" + readPosition_);
+			}
+			readPosition_ += count;
+		}
+		readBuffer_.flip();
+		return readBuffer_;
+	}
+
+	private void flushWrite() throws IOException {
+		writeBuffer_.flip();
+		writeFully(writeBuffer_);
+		writeBuffer_.clear();
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			writePosition_ += channel_.write(buffer, writePosition_);
+		}
+	}
+
+	private void close() {
+		if (null == channel_) {
+			return;
+		}
+		try {
+			channel_.close();
+		} catch (IOException e) {
+			LOG.warn("spill file close failed. " + file_.getAbsolutePath(), e);
+		}
+		channel_ = null;
+	}
+
+	@Override
+	protected boolean isEmpty() {
+		return (memory_.isEmpty() && (0 == spilled_));
+	}
+
+	@Override
+	protected Container<?> poll() {
+		if (!memory_.isEmpty()) {
+			queuedBytes_ -= memorySizes_.poll();
+			Container<?> container = memory_.poll();
+			size_ = memory_.size();
+			return container;
+		}
+		if (0 == spilled_) {
+			// 終了後に要素がない場合
+			close();
+			return null;
+		}
+		try {
+			return unspill();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	protected void onInterrupted() {
+		lock_.lock();
+		try {
+			close();
+		} finally {
+			lock_.unlock();
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Logger
+
+	private static final LaolLogger LOG = new LaolLogger(SpillableProducerQueue.class.getName());
+}
@@ -4,10 +4,12 @@ import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import jp.gr.naoco.core.exception.ConnectionInstantiationException;
 import jp.gr.naoco.core.transaction.InterceptorContext;
 import jp.gr.naoco.core.transaction.TransactionManager;
+import jp.gr.naoco.db.sql.Dialect;
 
 /**
  * 本ライブラリ内で利用アプリケーション側が頻繁に使用する処理の呼出しを纏めたファサードクラス
@@ -210,12 +212,30 @@ public class NaocoCoreFacade {
 		return TransactionManager.prepareStatement(sql, columnNames);
 	}
 
+	/**
+	 * Statementをクローズする。
+	 * <p>
+	 * DBの設定でPreparedStatementのキャッシュ（db.statementCacheSize）を指定している場合に、
+	 * {@link java.sql.ResultSet#getStatement()}で取得したStatementをクローズせずにキャッシュに戻すために使用する。
+	 * 本クラスで取得したStatementは、Statement#close()でもキャッシュに戻る。
+	 * </p>
+	 *
+	 * @param statement クローズするStatement
+	 * @throws SQLException
+	 */
+	public static void closeStatement(Statement statement) throws SQLException {
+		TransactionManager.closeStatement(statement);
+	}
+
 	/**
 	 * 現在のトランザクション上にあるDBコネクションを取得する
+	 * <p>
+	 * 遅延接続のトランザクションでDBコネクションを取得していない場合は、ここで取得する。
+	 * </p>
 	 *
 	 * @return 現在のトランザクション上にあるDBコネクション
 	 * @exception IllegalStateException
-	 *                現在の処理がトランザクション内にない場合
+	 *                現在の処理がトランザクション内にない場合、遅延接続でDBコネクションを取得できない場合
 	 */
 	public static Connection getConnection() {
 		return TransactionManager.getCurrentConnection();
@@ -233,6 +253,18 @@ public class NaocoCoreFacade {
 		return TransactionManager.getCurrentConnectionDriverName();
 	}
 
+	/**
+	 * 現在のトランザクション上にあるDBコネクションのドライバ名に対応する、{@link Dialect}を取得する。
+	 * <p>
+	 * Dialectは、トランザクションでDBコネクションを取得した時に解決したものを返す。
+	 * </p>
+	 *
+	 * @return 現在のトランザクション上にあるDBコネクションのDialect（対応するものがない場合はnull）
+	 */
+	public static Dialect getDialect() {
+		return TransactionManager.getCurrentDialect();
+	}
+
 	/**
 	 * 現在のトランザクションについて、例外を浮揚せずにトランザクションの終了まで処理が正常に完了した場合に、 変更をロールバックするように予約をする
 	 * <p>
@@ -29,9 +29,15 @@ import java.lang.annotation.Target;
  * nameによりインターセプト対象のクラスとインターセプタークラスの関連付けを行う。{@link @Interceptee}で 指定したnameと、本アノテーションのnameが一致するもののみを、実際の処理ではインターセプターとして
  * 呼び出す。未指定時は"__default__"が設定される。
  * </p>
+ * <p>
+ * singletonにtrueを指定した場合、インターセプターのインスタンスは設定の読込みごとに1つだけ生成し、すべての呼出しで共有する。
+ * 複数のスレッドから同時に呼び出されるため、状態を持たないクラスとすること。未指定時（false）は、処理の呼出しごとにインスタンスを生成する。
+ * </p>
  */
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Interceptor {
 	public String name() default "__default__";
+
+	public boolean singleton() default false;
 }
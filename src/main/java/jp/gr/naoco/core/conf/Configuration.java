@@ -1,6 +1,5 @@
 package jp.gr.naoco.core.conf;
 
-import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -25,6 +24,7 @@ import jp.gr.naoco.core.connection.JDBCConnectionFactory;
 import jp.gr.naoco.core.exception.ConfigurationException;
 import jp.gr.naoco.core.factory.AbstractInstanceFactory;
 import jp.gr.naoco.core.log.LaolLogger;
+import jp.gr.naoco.core.transaction.TransactionBarrierFactory;
 import jp.gr.naoco.core.transaction.TransactionManager;
 
 /**
@@ -60,6 +60,10 @@ import jp.gr.naoco.core.transaction.TransactionManager;
  * db.retry.1=3
  * #DB接続リトライ時スリープ時間msec（オプション：未設定時は0）
  * db.sleep.1=3000
+ * #トランザクション内で再利用するPreparedStatementの数（オプション：未設定時は0でキャッシュしない）
+ * db.statementCacheSize.1=20
+ * #最初にPreparedStatementかDBコネクションを使用する時にDB接続するか（オプション：未設定時はfalseでトランザクション開始時に接続）
+ * db.lazyConnect.1=true
  * </pre>
  * </p>
  * <p>
@@ -126,6 +130,10 @@ public class Configuration {
 
 	private static final String DB_SLEEP_INTERVAL_PREFIX = DB_PREFIX + "sleep.";
 
+	private static final String DB_STATEMENT_CACHE_SIZE_KEY = "statementCacheSize";
+
+	private static final String DB_LAZY_CONNECT_KEY = "lazyConnect";
+
 	private static final String INTERCEPTOR_PREFIX = "interceptor.";
 
 	private static final String DI_INTERFACE_PREFIX = "di.interface.";
@@ -160,6 +168,9 @@ public class Configuration {
 		// InstanceFactoryサブクラスのキャッシュを全削除する。
 		AbstractInstanceFactory.clearAllCache();
 
+		// トランザクション境界のメソッドごとの設定のキャッシュを削除する。
+		TransactionBarrierFactory.clearCache();
+
 		LOG.debug("end (basename=" + basename + ")");
 	}
 
@@ -282,6 +293,7 @@ public class Configuration {
 	public static void addInterceptor(String className) {
 		checkInterceptor(className);
 		interceptor_.addInterceptor(className);
+		TransactionBarrierFactory.clearCache();
 
 		LOG.info("(className=" + className + ")");
 	}
@@ -362,7 +374,8 @@ public class Configuration {
 				LOG.debug("DB Configuration :lookupName=" + conf.getLookupName() + ", factory="
 						+ conf.getConnectionFactory().getName() + ", driver=" + conf.getDriver() + ", url="
 						+ conf.getUrl() + ", user=" + conf.getUser() + ", password=" + conf.getPassword() + ", retry="
-						+ conf.getRetry() + ", sleep=" + conf.getSleep());
+						+ conf.getRetry() + ", sleep=" + conf.getSleep() + ", statementCacheSize="
+						+ conf.getStatementCacheSize() + ", lazyConnect=" + conf.isLazyConnect());
 			}
 			dbConfigMap_ = dbConfigMap;
 		}
@@ -519,7 +532,7 @@ public class Configuration {
 
 	private static boolean isImplementInterface(Class<?> targetClass, Class<?> interfaceClass) {
 		for (Class<?> having : targetClass.getInterfaces()) {
-			if (interfaceClass.equals(having)) {
+			if (interfaceClass.isAssignableFrom(having)) {
 				return true;
 			}
 		}
@@ -627,6 +640,12 @@ public class Configuration {
 
 		private long sleep_ = 0L;
 
+		private int statementCacheSize_ = 0;
+
+		private boolean lazyConnect_ = false;
+
+		private volatile ConnectionFactory connectionFactoryInstance_ = null;
+
 		private HashMap<String, String> additionalConfMap_;
 
 		private Map<String, Properties> propertiesMap_;
@@ -646,8 +665,8 @@ public class Configuration {
 			} catch (ClassNotFoundException e) {
 				throw new ConfigurationException("class(ConnectionFactory) not found:" + connectionFactory, e);
 			}
-			List<Class<?>> classList = Arrays.asList(connectionFactory_.getInterfaces());
-			if (!classList.contains(ConnectionFactory.class)) {
+			// PooledConnectionFactory等、ConnectionFactoryを継承したインターフェースの実装も許容する
+			if (!ConnectionFactory.class.isAssignableFrom(connectionFactory_)) {
 				throw new ConfigurationException(connectionFactory + " is not ConnectionFactory Class.");
 			}
 			lookupName_ = lookupName;
@@ -683,6 +702,15 @@ public class Configuration {
 					}
 				}
 			}
+			String statementCacheSize = additionalConfMap_.get(DB_STATEMENT_CACHE_SIZE_KEY);
+			try {
+				if (null != statementCacheSize) {
+					statementCacheSize_ = Integer.parseInt(statementCacheSize);
+				}
+			} catch (NumberFormatException e) {
+				LOG.warn("statement cache size is not number:" + statementCacheSize);
+			}
+			lazyConnect_ = Boolean.parseBoolean(additionalConfMap_.get(DB_LAZY_CONNECT_KEY));
 
 			createProperties();
 		}
@@ -698,6 +726,33 @@ public class Configuration {
 			return connectionFactory_;
 		}
 
+		/**
+		 * ConnectionFactoryのインスタンスを返す。
+		 * <p>
+		 * インスタンスは設定ごとに1回だけ生成し、トランザクション間で共有する。
+		 * </p>
+		 *
+		 * @return ConnectionFactoryのインスタンス
+		 */
+		public ConnectionFactory getConnectionFactoryInstance() {
+			ConnectionFactory factory = connectionFactoryInstance_;
+			if (null == factory) {
+				synchronized (this) {
+					factory = connectionFactoryInstance_;
+					if (null == factory) {
+						try {
+							factory = (ConnectionFactory) connectionFactory_.newInstance();
+						} catch (InstantiationException | IllegalAccessException e) {
+							throw new ConfigurationException("ConnectionFactory instantiation failed:"
+									+ connectionFactory_.getName(), e);
+						}
+						connectionFactoryInstance_ = factory;
+					}
+				}
+			}
+			return factory;
+		}
+
 		public String getDriver() {
 			return driver_;
 		}
@@ -722,6 +777,24 @@ public class Configuration {
 			return sleep_;
 		}
 
+		/**
+		 * トランザクション内で再利用するPreparedStatementの数を返す。
+		 *
+		 * @return PreparedStatementの数（0以下の場合はキャッシュしない）
+		 */
+		public int getStatementCacheSize() {
+			return statementCacheSize_;
+		}
+
+		/**
+		 * トランザクションの開始時ではなく、最初にPreparedStatementかDBコネクションを使用する時にDB接続するかを返す。
+		 *
+		 * @return 遅延接続する場合はtrue
+		 */
+		public boolean isLazyConnect() {
+			return lazyConnect_;
+		}
+
 		public Properties getProperties(String keyName) {
 			Properties prop = propertiesMap_.get(keyName);
 			if (null == prop) {
@@ -0,0 +1,652 @@
+package jp.gr.naoco.core.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jp.gr.naoco.core.log.LaolLogger;
+
+/**
+ * {@link PooledJDBCConnectionFactory}が使用する、DriverManagerで取得した物理接続のプール
+ * <p>
+ * 貸出し中でない物理接続は、最後に返却したものから順に貸し出す（LIFO）。貸出し数の上限はSemaphoreで制御し、
+ * 貸出しと返却ではロックを取得しない。ただし、保守処理で生成中の物理接続があるため上限まで生成済みで貸し出せない場合は、
+ * 返却、生成、またはクローズされるまで、待機時間（db.pool.maxWait）の残りの間だけロックの条件で待機する。<br/>
+ * 貸出し時は、最後の使用から一定時間（db.pool.validationInterval）を経過した物理接続のみ有効性を確認する。
+ * 定期的に、一定時間（db.pool.idleTimeout）を超えて使用していない物理接続を最小数までクローズし、
+ * 一定時間（db.pool.leakDetectionThreshold）を超えて返却されていない貸出しを、貸出し元のスタックトレースとともに警告する。
+ * </p>
+ */
+public final class ConnectionPool {
+	private final String lookupName_;
+
+	private final Settings settings_;
+
+	/** 貸出し中でない物理接続（先頭が最後に返却したもの） */
+	private final ConcurrentLinkedDeque<PooledEntry> idleDeque_ = new ConcurrentLinkedDeque<PooledEntry>();
+
+	/** 貸出し中の物理接続 */
+	private final ConcurrentHashMap<PooledEntry, Boolean> borrowedMap_ = new ConcurrentHashMap<PooledEntry, Boolean>();
+
+	/** 貸出し可能な数 */
+	private final Semaphore permits_;
+
+	/** 生成済みの物理接続の数 */
+	private final AtomicInteger totalCount_ = new AtomicInteger();
+
+	/** 上限まで生成済みで、貸し出せる物理接続を待機している数 */
+	private final AtomicInteger waiterCount_ = new AtomicInteger();
+
+	private final ReentrantLock waitLock_ = new ReentrantLock();
+
+	/** 貸出し中でない物理接続の追加、または物理接続の数の減少の通知 */
+	private final Condition available_ = waitLock_.newCondition();
+
+	private final Timer timer_;
+
+	private volatile boolean closed_ = false;
+
+	// 統計
+
+	private final AtomicLong borrowCount_ = new AtomicLong();
+
+	private final AtomicLong borrowNanos_ = new AtomicLong();
+
+	private final AtomicLong maxBorrowNanos_ = new AtomicLong();
+
+	private final AtomicLong createCount_ = new AtomicLong();
+
+	private final AtomicLong destroyCount_ = new AtomicLong();
+
+	private final AtomicLong validationFailureCount_ = new AtomicLong();
+
+	private final AtomicLong leakCount_ = new AtomicLong();
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	ConnectionPool(String lookupName, Settings settings) {
+		lookupName_ = lookupName;
+		settings_ = settings;
+		permits_ = new Semaphore(settings.maxSize_);
+		fill();
+		timer_ = new Timer("naoco-pool-" + lookupName, true);
+		timer_.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				maintain();
+			}
+		}, settings.maintenanceInterval_, settings.maintenanceInterval_);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	public String getLookupName() {
+		return lookupName_;
+	}
+
+	/** 物理接続の数（貸出し中を含む） */
+	public int getTotalCount() {
+		return totalCount_.get();
+	}
+
+	/** 貸出し中でない物理接続の数 */
+	public int getIdleCount() {
+		return idleDeque_.size();
+	}
+
+	/** 貸出し中の物理接続の数 */
+	public int getBorrowedCount() {
+		return borrowedMap_.size();
+	}
+
+	/** 貸出し回数 */
+	public long getBorrowCount() {
+		return borrowCount_.get();
+	}
+
+	/** 貸出しに要した時間の平均（ミリ秒） */
+	public double getAverageBorrowMillis() {
+		long count = borrowCount_.get();
+		return ((0 == count) ? 0.0 : (borrowNanos_.get() / (double) count / 1000000.0));
+	}
+
+	/** 貸出しに要した時間の最大（ミリ秒） */
+	public double getMaxBorrowMillis() {
+		return maxBorrowNanos_.get() / 1000000.0;
+	}
+
+	/** 物理接続を生成した回数 */
+	public long getCreateCount() {
+		return createCount_.get();
+	}
+
+	/** 物理接続をクローズした回数 */
+	public long getDestroyCount() {
+		return destroyCount_.get();
+	}
+
+	/** 貸出し時の有効性の確認で、無効と判定した回数 */
+	public long getValidationFailureCount() {
+		return validationFailureCount_.get();
+	}
+
+	/** 返却されていない貸出しを警告した回数 */
+	public long getLeakCount() {
+		return leakCount_.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionPool[" + lookupName_ + "] total=" + getTotalCount() + ", idle=" + getIdleCount()
+				+ ", borrowed=" + getBorrowedCount() + ", borrow=" + getBorrowCount() + ", avgBorrowMillis="
+				+ getAverageBorrowMillis() + ", maxBorrowMillis=" + getMaxBorrowMillis() + ", create="
+				+ getCreateCount() + ", destroy=" + getDestroyCount() + ", validationFailure="
+				+ getValidationFailureCount() + ", leak=" + getLeakCount();
+	}
+
+	/**
+	 * 物理接続を貸し出す。
+	 *
+	 * @return 論理接続（クローズで物理接続をプールに返却する）
+	 * @throws SQLException 待機時間内に貸し出せない場合、または物理接続の生成に失敗した場合
+	 */
+	Connection borrow() throws SQLException {
+		if (closed_) {
+			throw new SQLException("connection pool is closed:" + lookupName_);
+		}
+		long start = System.nanoTime();
+		try {
+			if (!permits_.tryAcquire(settings_.maxWait_, TimeUnit.MILLISECONDS)) {
+				throw exhausted();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("interrupted while waiting connection:" + lookupName_, e);
+		}
+		PooledEntry entry;
+		try {
+			entry = take(start + TimeUnit.MILLISECONDS.toNanos(settings_.maxWait_));
+		} catch (SQLException e) {
+			permits_.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permits_.release();
+			throw e;
+		}
+		entry.borrowed_ = System.currentTimeMillis();
+		entry.leakReported_ = false;
+		entry.borrowTrace_ = ((0 < settings_.leakDetectionThreshold_) ? new Throwable("connection borrowed here")
+				: null);
+		borrowedMap_.put(entry, Boolean.TRUE);
+
+		long elapsed = System.nanoTime() - start;
+		borrowCount_.incrementAndGet();
+		borrowNanos_.addAndGet(elapsed);
+		long max = maxBorrowNanos_.get();
+		while ((max < elapsed) && !maxBorrowNanos_.compareAndSet(max, elapsed)) {
+			max = maxBorrowNanos_.get();
+		}
+		return new LogicalConnection(entry).proxy_;
+	}
+
+	/**
+	 * プールを終了し、貸出し中でない物理接続をクローズする。貸出し中の物理接続は、返却時にクローズする。
+	 */
+	void close() {
+		closed_ = true;
+		timer_.cancel();
+		PooledEntry entry;
+		while (null != (entry = idleDeque_.pollFirst())) {
+			destroy(entry);
+		}
+	}
+
+	/**
+	 * 論理接続の物理接続を返す。
+	 *
+	 * @param connection {@link #borrow()}で取得した論理接続
+	 * @return 物理接続
+	 */
+	static Connection getPhysicalConnection(Connection connection) {
+		return ((LogicalConnection) Proxy.getInvocationHandler(connection)).entry_.connection_;
+	}
+
+	/**
+	 * 貸出し中でない物理接続を取り出す。ない場合は、上限を超えなければ生成する。
+	 *
+	 * @param deadline 待機の期限（{@link System#nanoTime()}の値）
+	 */
+	private PooledEntry take(long deadline) throws SQLException {
+		while (true) {
+			PooledEntry entry = idleDeque_.pollFirst();
+			if (null == entry) {
+				if (reserve()) {
+					return create();
+				}
+				// 上限まで生成済みの場合は、保守処理で生成中または返却中の物理接続を待つ
+				await(deadline);
+				continue;
+			}
+			if (validate(entry)) {
+				return entry;
+			}
+			validationFailureCount_.incrementAndGet();
+			destroy(entry);
+		}
+	}
+
+	/**
+	 * 貸出し中でない物理接続が追加されるか、物理接続の数が減るまで待機する。
+	 *
+	 * @param deadline 待機の期限（{@link System#nanoTime()}の値）
+	 * @throws SQLException 期限を過ぎた場合、または割り込まれた場合
+	 */
+	private void await(long deadline) throws SQLException {
+		waiterCount_.incrementAndGet();
+		waitLock_.lock();
+		try {
+			// 待機数を増やした後に確認するため、確認後の追加は必ず通知される
+			if (idleDeque_.isEmpty() && (settings_.maxSize_ <= totalCount_.get())) {
+				long nanos = deadline - System.nanoTime();
+				if (nanos <= 0L) {
+					throw exhausted();
+				}
+				available_.awaitNanos(nanos);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("interrupted while waiting connection:" + lookupName_, e);
+		} finally {
+			waitLock_.unlock();
+			waiterCount_.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 待機しているスレッドがある場合に、1つ通知する。
+	 */
+	private void signalAvailable() {
+		if (0 < waiterCount_.get()) {
+			waitLock_.lock();
+			try {
+				available_.signal();
+			} finally {
+				waitLock_.unlock();
+			}
+		}
+	}
+
+	private SQLException exhausted() {
+		return new SQLException("connection pool is exhausted:" + lookupName_ + " maxSize=" + settings_.maxSize_
+				+ " maxWait=" + settings_.maxWait_ + "msec");
+	}
+
+	private boolean validate(PooledEntry entry) {
+		if ((System.currentTimeMillis() - entry.lastUsed_) < settings_.validationInterval_) {
+			return true;
+		}
+		try {
+			if (entry.connection_.isClosed()) {
+				return false;
+			}
+			if (null == settings_.validationQuery_) {
+				return entry.connection_.isValid(settings_.validationTimeout_);
+			}
+			Statement statement = entry.connection_.createStatement();
+			try {
+				statement.setQueryTimeout(settings_.validationTimeout_);
+				statement.execute(settings_.validationQuery_);
+			} finally {
+				statement.close();
+			}
+			return true;
+		} catch (SQLException e) {
+			LOG.info("connection validation failed:" + lookupName_ + " " + e.getMessage());
+			return false;
+		}
+	}
+
+	private void giveBack(PooledEntry entry, boolean reusable) {
+		borrowedMap_.remove(entry);
+		entry.borrowTrace_ = null;
+		try {
+			if (closed_ || !reusable || entry.connection_.isClosed()) {
+				destroy(entry);
+			} else {
+				entry.lastUsed_ = System.currentTimeMillis();
+				idleDeque_.offerFirst(entry);
+				signalAvailable();
+			}
+		} catch (SQLException e) {
+			destroy(entry);
+		} finally {
+			permits_.release();
+		}
+	}
+
+	/**
+	 * 上限を超えない場合に、物理接続の数を1つ増やす。
+	 *
+	 * @return 増やした場合はtrue
+	 */
+	private boolean reserve() {
+		while (true) {
+			int total = totalCount_.get();
+			if (settings_.maxSize_ <= total) {
+				return false;
+			}
+			if (totalCount_.compareAndSet(total, total + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 物理接続を生成する。呼出し前に{@link #reserve()}で物理接続の数を増やしておくこと。
+	 */
+	private PooledEntry create() throws SQLException {
+		long before = System.currentTimeMillis();
+		Connection connection;
+		try {
+			connection = DriverManager.getConnection(settings_.url_, settings_.user_, settings_.password_);
+		} catch (SQLException e) {
+			totalCount_.decrementAndGet();
+			signalAvailable();
+			throw e;
+		}
+		createCount_.incrementAndGet();
+		LOG.info("CREATE POOLED CONNECTION(" + lookupName_ + ") " + (System.currentTimeMillis() - before) + "msec");
+		return new PooledEntry(connection);
+	}
+
+	private void destroy(PooledEntry entry) {
+		totalCount_.decrementAndGet();
+		destroyCount_.incrementAndGet();
+		signalAvailable();
+		try {
+			if (!entry.connection_.isClosed()) {
+				entry.connection_.close();
+			}
+		} catch (SQLException e) {
+			LOG.warn("pooled connection close failed:" + lookupName_ + " " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * 使用していない物理接続のクローズ、最小数までの生成と、返却されていない貸出しの警告
+	 */
+	private void maintain() {
+		long now = System.currentTimeMillis();
+		if (0 < settings_.idleTimeout_) {
+			// 使用していない順（末尾）から確認する
+			Iterator<PooledEntry> it = idleDeque_.descendingIterator();
+			while (it.hasNext() && (settings_.minSize_ < totalCount_.get())) {
+				PooledEntry entry = it.next();
+				if ((settings_.idleTimeout_ < (now - entry.lastUsed_)) && idleDeque_.removeLastOccurrence(entry)) {
+					destroy(entry);
+				}
+			}
+		}
+		fill();
+		if (0 < settings_.leakDetectionThreshold_) {
+			for (PooledEntry entry : borrowedMap_.keySet()) {
+				Throwable trace = entry.borrowTrace_;
+				if (!entry.leakReported_ && (null != trace)
+						&& (settings_.leakDetectionThreshold_ < (now - entry.borrowed_))) {
+					entry.leakReported_ = true;
+					leakCount_.incrementAndGet();
+					LOG.warn("connection leak detected:" + lookupName_ + " borrowed " + (now - entry.borrowed_)
+							+ "msec ago.", trace);
+				}
+			}
+		}
+		if (LOG.requiredDebugLevel()) {
+			LOG.debug(toString());
+		}
+	}
+
+	/**
+	 * 物理接続を最小数まで生成する。
+	 */
+	private void fill() {
+		while (!closed_ && (totalCount_.get() < settings_.minSize_) && reserve()) {
+			try {
+				idleDeque_.offerLast(create());
+				signalAvailable();
+			} catch (SQLException e) {
+				LOG.warn("connection create failed:" + lookupName_ + " " + e.getMessage(), e);
+				break;
+			}
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	/**
+	 * プールの設定
+	 */
+	static final class Settings {
+		String url_;
+
+		String user_;
+
+		String password_;
+
+		int minSize_ = 0;
+
+		int maxSize_ = 10;
+
+		long maxWait_ = 3000L;
+
+		long idleTimeout_ = 600000L;
+
+		long validationInterval_ = 5000L;
+
+		String validationQuery_ = null;
+
+		int validationTimeout_ = 5;
+
+		long leakDetectionThreshold_ = 0L;
+
+		long maintenanceInterval_ = 30000L;
+	}
+
+	// ///////////////////////
+
+	private static final class PooledEntry {
+		private final Connection connection_;
+
+		private volatile long lastUsed_;
+
+		private volatile long borrowed_;
+
+		private volatile boolean leakReported_;
+
+		private volatile Throwable borrowTrace_;
+
+		private PooledEntry(Connection connection) {
+			connection_ = connection;
+			lastUsed_ = System.currentTimeMillis();
+		}
+	}
+
+	// ///////////////////////
+
+	/**
+	 * 貸出し中の論理接続
+	 * <p>
+	 * closeで物理接続をプールに返却する。読み取り専用、トランザクション分離レベル、カタログ、スキーマを変更した物理接続は、
+	 * 後の貸出しに設定が引き継がれないよう、ロールバックして変更前の設定に戻す。
+	 * 変更前の設定を取得できなかった場合、または戻せなかった場合はクローズする。
+	 * </p>
+	 */
+	private final class LogicalConnection implements InvocationHandler {
+		private final PooledEntry entry_;
+
+		private final Connection proxy_;
+
+		private volatile boolean closed_ = false;
+
+		/** 変更前の設定に戻せないため、返却時にクローズする */
+		private volatile boolean dirty_ = false;
+
+		/** 変更前の設定（変更した項目のみ保持する） */
+		private Boolean readOnly_ = null;
+
+		private Integer transactionIsolation_ = null;
+
+		private boolean isCatalogChanged_ = false;
+
+		private String catalog_ = null;
+
+		private boolean isSchemaChanged_ = false;
+
+		private String schema_ = null;
+
+		private LogicalConnection(PooledEntry entry) {
+			entry_ = entry;
+			proxy_ = (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+					new Class<?>[] {Connection.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (Object.class == method.getDeclaringClass()) {
+				if ("equals".equals(name)) {
+					return (proxy == args[0]);
+				} else if ("hashCode".equals(name)) {
+					return System.identityHashCode(proxy);
+				}
+				return "pooled:" + entry_.connection_;
+			}
+			if ("close".equals(name)) {
+				close();
+				return null;
+			} else if ("isClosed".equals(name)) {
+				return (closed_ || entry_.connection_.isClosed());
+			}
+			if (closed_) {
+				throw new SQLException("connection is closed.");
+			}
+			saveOriginal(name);
+			try {
+				return method.invoke(entry_.connection_, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		/**
+		 * 物理接続の設定を変更するメソッドの場合は、初回の呼出しで変更前の設定を保持する。
+		 *
+		 * @param name 呼び出すメソッド名
+		 */
+		private synchronized void saveOriginal(String name) {
+			Connection connection = entry_.connection_;
+			try {
+				if ("setReadOnly".equals(name)) {
+					if (null == readOnly_) {
+						readOnly_ = connection.isReadOnly();
+					}
+				} else if ("setTransactionIsolation".equals(name)) {
+					if (null == transactionIsolation_) {
+						transactionIsolation_ = connection.getTransactionIsolation();
+					}
+				} else if ("setCatalog".equals(name)) {
+					if (!isCatalogChanged_) {
+						catalog_ = connection.getCatalog();
+						isCatalogChanged_ = true;
+					}
+				} else if ("setSchema".equals(name)) {
+					if (!isSchemaChanged_) {
+						schema_ = connection.getSchema();
+						isSchemaChanged_ = true;
+					}
+				}
+			} catch (SQLException e) {
+				LOG.debug("original setting is not available. " + e.getMessage());
+				dirty_ = true;
+			} catch (AbstractMethodError e) {
+				// JDBC 4.1より前のドライバはgetSchemaを実装しない
+				LOG.debug("original setting is not available. " + e.getMessage());
+				dirty_ = true;
+			}
+		}
+
+		private void close() {
+			synchronized (this) {
+				if (closed_) {
+					return;
+				}
+				closed_ = true;
+			}
+			giveBack(entry_, restoreOriginal());
+		}
+
+		/**
+		 * 変更した設定を、変更前の設定に戻す。
+		 *
+		 * @return 物理接続を再利用できる場合はtrue
+		 */
+		private synchronized boolean restoreOriginal() {
+			if (!dirty_ && (null == readOnly_) && (null == transactionIsolation_) && !isCatalogChanged_
+					&& !isSchemaChanged_) {
+				return true;
+			}
+			Connection connection = entry_.connection_;
+			try {
+				// トランザクション中は変更できない設定があるため、先にロールバックする
+				connection.rollback();
+			} catch (SQLException e) {
+				LOG.debug("rollback on return failed. " + e.getMessage());
+				return false;
+			}
+			if (dirty_) {
+				return false;
+			}
+			try {
+				if (isCatalogChanged_) {
+					connection.setCatalog(catalog_);
+				}
+				if (isSchemaChanged_) {
+					connection.setSchema(schema_);
+				}
+				if (null != transactionIsolation_) {
+					connection.setTransactionIsolation(transactionIsolation_);
+				}
+				if (null != readOnly_) {
+					connection.setReadOnly(readOnly_);
+				}
+				return true;
+			} catch (SQLException e) {
+				LOG.debug("restore on return failed. " + e.getMessage());
+				return false;
+			}
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Logger
+
+	private static final LaolLogger LOG = new LaolLogger(ConnectionPool.class.getName());
+}
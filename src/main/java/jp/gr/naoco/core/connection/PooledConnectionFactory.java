@@ -0,0 +1,24 @@
+package jp.gr.naoco.core.connection;
+
+import java.sql.Connection;
+
+/**
+ * トランザクションの終了後も物理接続を保持する（コネクションプールを使用する）DBコネクションの取得
+ * <p>
+ * DB設定でPreparedStatementのキャッシュ（db.statementCacheSize）を指定した場合、
+ * PreparedStatementは{@link #getPhysicalConnection(Connection)}が返す物理接続で生成し、トランザクションの終了後も物理接続ごとに保持する。
+ * 同じ物理接続を使用する後のトランザクションで、同じSQL文のPreparedStatementを再利用する。
+ * </p>
+ */
+public interface PooledConnectionFactory extends ConnectionFactory {
+	/**
+	 * {@link #create(String)}で取得したコネクションの、物理接続を返す。
+	 * <p>
+	 * 返したコネクションは、{@link #create(String)}で取得したコネクションのクローズ後もクローズしないこと。
+	 * </p>
+	 *
+	 * @param connection {@link #create(String)}で取得したコネクション
+	 * @return 物理接続
+	 */
+	public Connection getPhysicalConnection(Connection connection);
+}
@@ -0,0 +1,167 @@
+package jp.gr.naoco.core.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jp.gr.naoco.core.conf.Configuration;
+import jp.gr.naoco.core.conf.Configuration.ConfigrationToPropertiesKey;
+import jp.gr.naoco.core.conf.Configuration.DBConfiguration;
+import jp.gr.naoco.core.exception.ConfigurationException;
+
+/**
+ * DriverManagerで取得した物理接続をプールして、DBコネクションを取得する。
+ * <p>
+ * naocoの設定ファイルの db.factory.X の値に本クラスのクラス名を指定することで、外部ライブラリを使用せずにDB接続をプールする。
+ * 取得したコネクションのクローズでは、物理接続をクローズせずにプールに返却する。
+ * </p>
+ * <p>
+ * プールの設定は、naoco設定ファイルに記述する。
+ * </p>
+ *
+ * <pre>
+ * db.lookupName.1=java:comp/env/jdbc/oracle
+ * db.factory.1=jp.gr.naoco.core.connection.PooledJDBCConnectionFactory
+ * db.driver.1=oracle.jdbc.driver.OracleDriver
+ * db.url.1=jdbc:oracle:thin:@oracle_database_ip:1521:DBNAME
+ * db.user.1=user
+ * db.password.1=password
+ * # 下記はプール設定（すべてオプション）
+ * # 物理接続の最小数（未設定時は0）
+ * db.pool.minSize.1=2
+ * # 物理接続の最大数（未設定時は10）
+ * db.pool.maxSize.1=10
+ * # 最大数まで貸出し中の場合の待機時間msec（未設定時は3000）
+ * db.pool.maxWait.1=3000
+ * # 使用していない物理接続をクローズするまでの時間msec（未設定時は600000、0以下の場合はクローズしない）
+ * db.pool.idleTimeout.1=600000
+ * # 貸出し時に有効性を確認しない、最後の使用からの時間msec（未設定時は5000）
+ * db.pool.validationInterval.1=5000
+ * # 有効性の確認に使用するSQL文（未設定時はConnection#isValid）
+ * db.pool.validationQuery.1=SELECT 1 FROM DUAL
+ * # 有効性の確認のタイムアウト秒（未設定時は5）
+ * db.pool.validationTimeout.1=5
+ * # 返却されていない貸出しを警告するまでの時間msec（未設定時は0、0以下の場合は警告しない）
+ * db.pool.leakDetectionThreshold.1=60000
+ * # 上記のクローズと警告を行う間隔msec（未設定時は30000）
+ * db.pool.maintenanceInterval.1=30000
+ * </pre>
+ * <p>
+ * 貸出し時間等の統計は、{@link #getPool(String)}で取得する{@link ConnectionPool}から取得する。
+ * </p>
+ */
+public class PooledJDBCConnectionFactory implements PooledConnectionFactory {
+	private static final List<ConfigrationToPropertiesKey> CONF2PROP_KEY_LIST = new ArrayList<ConfigrationToPropertiesKey>();
+	static {
+		CONF2PROP_KEY_LIST.add(new ConfigrationToPropertiesKey("pool.minSize", "minSize", "0"));
+		CONF2PROP_KEY_LIST.add(new ConfigrationToPropertiesKey("pool.maxSize", "maxSize", "10"));
+		CONF2PROP_KEY_LIST.add(new ConfigrationToPropertiesKey("pool.maxWait", "maxWait", "3000"));
+		CONF2PROP_KEY_LIST.add(new ConfigrationToPropertiesKey("pool.idleTimeout", "idleTimeout", "600000"));
+		CONF2PROP_KEY_LIST.add(new ConfigrationToPropertiesKey("pool.validationInterval", "validationInterval",
+				"5000"));
+		CONF2PROP_KEY_LIST.add(new ConfigrationToPropertiesKey("pool.validationQuery", "validationQuery"));
+		CONF2PROP_KEY_LIST.add(new ConfigrationToPropertiesKey("pool.validationTimeout", "validationTimeout", "5"));
+		CONF2PROP_KEY_LIST.add(new ConfigrationToPropertiesKey("pool.leakDetectionThreshold",
+				"leakDetectionThreshold", "0"));
+		CONF2PROP_KEY_LIST.add(new ConfigrationToPropertiesKey("pool.maintenanceInterval", "maintenanceInterval",
+				"30000"));
+		Configuration.addDBConfigToPropertiesList(PooledJDBCConnectionFactory.class.getName(), CONF2PROP_KEY_LIST);
+		Configuration.dbCloserHook();
+	}
+
+	private static final ConcurrentHashMap<String, ConnectionPool> POOL_MAP = new ConcurrentHashMap<String, ConnectionPool>();
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	public PooledJDBCConnectionFactory() {
+		// nothing to do
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	@Override
+	public Connection create(String lookupName) throws SQLException, ClassNotFoundException {
+		ConnectionPool pool = POOL_MAP.get(lookupName);
+		if (null == pool) {
+			synchronized (POOL_MAP) {
+				pool = POOL_MAP.get(lookupName);
+				if (null == pool) {
+					pool = createPool(lookupName);
+					POOL_MAP.put(lookupName, pool);
+				}
+			}
+		}
+		return pool.borrow();
+	}
+
+	@Override
+	public Connection getPhysicalConnection(Connection connection) {
+		return ConnectionPool.getPhysicalConnection(connection);
+	}
+
+	/**
+	 * ルックアップ名に対応するプールを返す。
+	 *
+	 * @param lookupName ルックアップ名
+	 * @return プール（未使用の場合はnull）
+	 */
+	public static ConnectionPool getPool(String lookupName) {
+		return POOL_MAP.get(lookupName);
+	}
+
+	/**
+	 * すべてのプールを終了し、貸出し中でない物理接続をクローズする。
+	 */
+	public static void clear() {
+		synchronized (POOL_MAP) {
+			for (ConnectionPool pool : POOL_MAP.values()) {
+				pool.close();
+			}
+			POOL_MAP.clear();
+		}
+	}
+
+	private static ConnectionPool createPool(String lookupName) throws ClassNotFoundException {
+		DBConfiguration conf = Configuration.getDbConfig(lookupName);
+		Class.forName(conf.getDriver());
+		Properties properties = conf.getProperties(PooledJDBCConnectionFactory.class.getName());
+
+		ConnectionPool.Settings settings = new ConnectionPool.Settings();
+		settings.url_ = conf.getUrl();
+		settings.user_ = conf.getUser();
+		settings.password_ = conf.getPassword();
+		try {
+			settings.minSize_ = Integer.parseInt(properties.getProperty("minSize"));
+			settings.maxSize_ = Integer.parseInt(properties.getProperty("maxSize"));
+			settings.maxWait_ = Long.parseLong(properties.getProperty("maxWait"));
+			settings.idleTimeout_ = Long.parseLong(properties.getProperty("idleTimeout"));
+			settings.validationInterval_ = Long.parseLong(properties.getProperty("validationInterval"));
+			settings.validationQuery_ = properties.getProperty("validationQuery");
+			settings.validationTimeout_ = Integer.parseInt(properties.getProperty("validationTimeout"));
+			settings.leakDetectionThreshold_ = Long.parseLong(properties.getProperty("leakDetectionThreshold"));
+			settings.maintenanceInterval_ = Long.parseLong(properties.getProperty("maintenanceInterval"));
+		} catch (NumberFormatException e) {
+			throw new ConfigurationException("connection pool setting is not number:" + lookupName, e);
+		}
+		if ((settings.maxSize_ < 1) || (settings.maxSize_ < settings.minSize_)
+				|| (settings.maintenanceInterval_ < 1)) {
+			throw new ConfigurationException("connection pool setting is invalid:" + lookupName + " minSize="
+					+ settings.minSize_ + ", maxSize=" + settings.maxSize_ + ", maintenanceInterval="
+					+ settings.maintenanceInterval_);
+		}
+
+		final ConnectionPool pool = new ConnectionPool(lookupName, settings);
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				pool.close();
+			}
+		}));
+		return pool;
+	}
+}
@@ -0,0 +1,176 @@
+package jp.gr.naoco.core.transaction;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import jp.gr.naoco.core.annotation.BypassCommitRollback;
+import jp.gr.naoco.core.annotation.BypassInterceptor;
+import jp.gr.naoco.core.annotation.BypassTransaction;
+import jp.gr.naoco.core.annotation.Interceptee;
+import jp.gr.naoco.core.annotation.Transaction;
+import jp.gr.naoco.core.annotation.TransactionType;
+import jp.gr.naoco.core.log.LaolLogger;
+
+/**
+ * トランザクション境界のメソッドごとに、アノテーションから解決したトランザクションとインターセプターの設定
+ * <p>
+ * 実装クラスとインターフェースのメソッドの組合せごとに、最初の呼出し時に生成する。生成後は変更しないため、複数のスレッドで共有できる。
+ * </p>
+ * <p>
+ * 実装クラスのメソッドは、{@link Method#invoke(Object, Object...)}ではなく、生成時に解決した{@link MethodHandle}で呼び出す。
+ * インターフェースにアクセスできずMethodHandleを解決できない場合のみ、Method#invokeで呼び出す。
+ * </p>
+ */
+final class BarrierPlan {
+	private static final InterceptorInvocator.InterceptorDefinition[] NO_INTERCEPTORS = new InterceptorInvocator.InterceptorDefinition[0];
+
+	private final Method method_;
+
+	/** (Object instance, Object[] args)Objectの形式に変換したメソッドの呼出し（解決できない場合はnull） */
+	private final MethodHandle invoker_;
+
+	private final boolean needsTransaction_;
+
+	private final boolean needsInterceptor_;
+
+	private final boolean needsCommitRollback_;
+
+	private final String lookupName_;
+
+	private final TransactionType transactionType_;
+
+	private final InterceptorInvocator.InterceptorDefinition[] interceptors_;
+
+	/** すべてシングルトンのインターセプターの場合に、呼出し間で共有するインターセプター（それ以外はnull） */
+	private final InterceptorInvocator sharedInvocator_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	private BarrierPlan(Method method, boolean needsTransaction, boolean needsInterceptor, boolean needsCommitRollback,
+			String lookupName, TransactionType transactionType,
+			InterceptorInvocator.InterceptorDefinition[] interceptors) {
+		method_ = method;
+		invoker_ = createInvoker(method);
+		needsTransaction_ = needsTransaction;
+		needsInterceptor_ = needsInterceptor;
+		needsCommitRollback_ = needsCommitRollback;
+		lookupName_ = lookupName;
+		transactionType_ = transactionType;
+		interceptors_ = interceptors;
+		sharedInvocator_ = (InterceptorInvocator.isSingleton(interceptors) ? new InterceptorInvocator(interceptors)
+				: null);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	/**
+	 * 実装クラスとメソッドのアノテーションから、設定を解決する。
+	 *
+	 * @param method インターフェースのメソッド
+	 * @param instanceClass 実装クラス
+	 * @return 解決した設定
+	 * @throws NoSuchMethodException 実装クラスにメソッドが存在しない場合
+	 */
+	static BarrierPlan create(Method method, Class<?> instanceClass) throws NoSuchMethodException {
+		Method instanceMethod = instanceClass.getMethod(method.getName(), method.getParameterTypes());
+		Transaction transaction = instanceClass.getAnnotation(Transaction.class);
+		Interceptee interceptee = instanceClass.getAnnotation(Interceptee.class);
+
+		boolean needsTransaction = ((null == instanceMethod.getAnnotation(BypassTransaction.class))
+				&& (null != transaction));
+		boolean needsInterceptor = ((null != interceptee)
+				&& (null == instanceMethod.getAnnotation(BypassInterceptor.class)));
+		boolean needsCommitRollback = (null == instanceMethod.getAnnotation(BypassCommitRollback.class));
+
+		InterceptorInvocator.InterceptorDefinition[] interceptors = NO_INTERCEPTORS;
+		if (needsInterceptor) {
+			interceptors = InterceptorInvocator.resolve(interceptee.name());
+		}
+		return new BarrierPlan(method, needsTransaction, needsInterceptor, needsCommitRollback,
+				((null != transaction) ? transaction.lookupName() : null),
+				((null != transaction) ? transaction.type() : null), interceptors);
+	}
+
+	boolean needsTransaction() {
+		return needsTransaction_;
+	}
+
+	boolean needsInterceptor() {
+		return needsInterceptor_;
+	}
+
+	boolean needsCommitRollback() {
+		return needsCommitRollback_;
+	}
+
+	String getLookupName() {
+		return lookupName_;
+	}
+
+	/**
+	 * トランザクションの種類を返す。
+	 *
+	 * @return トランザクションの種類（実装クラスに{@link Transaction}がない場合はnull）
+	 */
+	TransactionType getTransactionType() {
+		return transactionType_;
+	}
+
+	/**
+	 * 実装クラスのインスタンスのメソッドを呼び出す。
+	 *
+	 * @param instance 実装クラスのインスタンス
+	 * @param args 引数（引数なしの場合はnull）
+	 * @return 戻り値（プリミティブ型はボクシングした値）
+	 * @throws Throwable メソッドが送出した例外
+	 */
+	Object invoke(Object instance, Object[] args) throws Throwable {
+		if (null != invoker_) {
+			return (Object) invoker_.invokeExact(instance, args);
+		}
+		try {
+			return method_.invoke(instance, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * メソッドの呼出しごとのインターセプターを返す。
+	 * <p>
+	 * すべてシングルトンのインターセプターの場合は、インスタンスを生成せずに共有のインターセプターを返す。
+	 * </p>
+	 *
+	 * @return インターセプター
+	 */
+	InterceptorInvocator newInterceptorInvocator() {
+		if (null != sharedInvocator_) {
+			return sharedInvocator_;
+		}
+		return new InterceptorInvocator(interceptors_);
+	}
+
+	private static MethodHandle createInvoker(Method method) {
+		int parameterCount = method.getParameterTypes().length;
+		try {
+			// 可変長引数のメソッドは、Proxyから配列として渡るため、固定長として扱う
+			MethodHandle handle = MethodHandles.publicLookup().unreflect(method).asFixedArity();
+			// 引数と戻り値をObjectに変換し、引数の配列を展開する
+			return handle.asType(MethodType.genericMethodType(1 + parameterCount)).asSpreader(Object[].class,
+					parameterCount);
+		} catch (IllegalAccessException e) {
+			LOG.debug("method handle is not available. " + method + " " + e.getMessage());
+			return null;
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Logger
+
+	private static final LaolLogger LOG = new LaolLogger(BarrierPlan.class.getName());
+}
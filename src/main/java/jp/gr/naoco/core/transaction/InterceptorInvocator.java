@@ -1,12 +1,15 @@
 package jp.gr.naoco.core.transaction;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import jp.gr.naoco.core.annotation.AfterEndTransaction;
 import jp.gr.naoco.core.annotation.AfterStartTransaction;
@@ -18,21 +21,52 @@ import jp.gr.naoco.core.conf.Configuration;
 import jp.gr.naoco.core.exception.ReflectionException;
 import jp.gr.naoco.core.log.LaolLogger;
 
+/**
+ * インターセプターの呼出し
+ * <p>
+ * インターセプター対象クラスの呼出し対象のメソッドは、{@link MethodHandle}として設定の読込みごとに1回だけ解決する。
+ * {@link jp.gr.naoco.core.annotation.Interceptee#name()}のキーの組合せごとに、呼び出すインターセプターの並びを1回だけ解決し、以降の呼出しでは配列を順に呼び出す。<br/>
+ * {@link Interceptor#singleton()}にtrueを指定したインターセプターは、インスタンスも共有する。
+ * </p>
+ */
 public class InterceptorInvocator {
-	private final LinkedList<InterceptorContainer> interceptorList_ = new LinkedList<InterceptorContainer>();
+	private final InterceptorDefinition[] definitions_;
+
+	private final Object[] instances_;
+
+	/** インターセプターのクラスごとの定義のキャッシュ */
+	private static volatile ConcurrentHashMap<Class<?>, InterceptorDefinition> definitionMap_ = new ConcurrentHashMap<Class<?>, InterceptorDefinition>();
+
+	/** インターセプターのキーの組合せごとの定義の並びのキャッシュ */
+	private static volatile ConcurrentHashMap<Set<String>, InterceptorDefinition[]> chainMap_ = new ConcurrentHashMap<Set<String>, InterceptorDefinition[]>();
+
+	private static final int BEFORE_START = 0;
+
+	private static final int AFTER_START = 1;
+
+	private static final int BEFORE_END = 2;
+
+	private static final int AFTER_END = 3;
+
+	private static final int THROW_EXCEPTION = 4;
 
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Constructor
 
 	public InterceptorInvocator(String[] keys) {
-		HashSet<String> keySet = new HashSet<String>(Arrays.asList(keys));
-		keySet.add("__default__");
-		List<Class<?>> list = Configuration.getIinterceptorList();
-		for (Class<?> clazz : list) {
-			Interceptor annotation = clazz.getAnnotation(Interceptor.class);
-			if (keySet.contains(annotation.name())) {
-				interceptorList_.add(new InterceptorContainer(clazz, annotation.name()));
-			}
+		this(resolve(keys));
+	}
+
+	/**
+	 * 解決済みのインターセプターの定義から、インターセプターを生成する。
+	 *
+	 * @param definitions {@link #resolve(String[])}で解決したインターセプターの定義
+	 */
+	InterceptorInvocator(InterceptorDefinition[] definitions) {
+		definitions_ = definitions;
+		instances_ = new Object[definitions.length];
+		for (int i = 0; i < definitions.length; i++) {
+			instances_[i] = definitions[i].getInstance();
 		}
 	}
 
@@ -40,71 +74,123 @@ public class InterceptorInvocator {
 	// Methods
 
 	public void invokeBeforeStartTransaction() {
-		for (InterceptorContainer interceptor : interceptorList_) {
-			interceptor.invokeBeforeStartTransaction();
+		for (int i = 0; i < definitions_.length; i++) {
+			definitions_[i].invoke(BEFORE_START, instances_[i]);
 		}
 	}
 
 	public void invokeAfterStartTransaction() {
-		for (InterceptorContainer interceptor : interceptorList_) {
-			interceptor.invokeAfterStartTransaction();
+		for (int i = 0; i < definitions_.length; i++) {
+			definitions_[i].invoke(AFTER_START, instances_[i]);
 		}
 	}
 
 	public void invokeBeforeEndTransaction() {
-		Iterator<InterceptorContainer> containeres = interceptorList_.descendingIterator();
-		while (containeres.hasNext()) {
-			InterceptorContainer interceptor = containeres.next();
-			interceptor.invokeBeforeEndTransaction();
+		for (int i = definitions_.length - 1; 0 <= i; i--) {
+			definitions_[i].invoke(BEFORE_END, instances_[i]);
 		}
 	}
 
 	public void invokeAfterEndTransaction() {
-		Iterator<InterceptorContainer> containeres = interceptorList_.descendingIterator();
-		while (containeres.hasNext()) {
-			InterceptorContainer interceptor = containeres.next();
-			interceptor.invokeAfterEndTransaction();
+		for (int i = definitions_.length - 1; 0 <= i; i--) {
+			definitions_[i].invoke(AFTER_END, instances_[i]);
 		}
 	}
 
 	public void invokeThrowException() {
-		Iterator<InterceptorContainer> containeres = interceptorList_.descendingIterator();
-		while (containeres.hasNext()) {
-			InterceptorContainer interceptor = containeres.next();
-			interceptor.invokeThrowException();
+		for (int i = definitions_.length - 1; 0 <= i; i--) {
+			definitions_[i].invoke(THROW_EXCEPTION, instances_[i]);
 		}
 	}
 
-	private boolean equals_(String arg1, String arg2) {
-		if ((null == arg1) && (null == arg2)) {
-			return true;
+	/**
+	 * 設定済のインターセプター対象クラスのうち、キーに該当するクラスの定義を、設定の順に返す。
+	 *
+	 * @param keys インターセプターのキー
+	 * @return インターセプターの定義の配列（呼出し元で変更しないこと）
+	 */
+	static InterceptorDefinition[] resolve(String[] keys) {
+		HashSet<String> keySet = new HashSet<String>(Arrays.asList(keys));
+		keySet.add("__default__");
+		ConcurrentHashMap<Set<String>, InterceptorDefinition[]> chainMap = chainMap_;
+		InterceptorDefinition[] definitions = chainMap.get(keySet);
+		if (null != definitions) {
+			return definitions;
+		}
+
+		ConcurrentHashMap<Class<?>, InterceptorDefinition> definitionMap = definitionMap_;
+		List<Class<?>> list = Configuration.getIinterceptorList();
+		ArrayList<InterceptorDefinition> definitionList = new ArrayList<InterceptorDefinition>();
+		for (Class<?> clazz : list) {
+			Interceptor annotation = clazz.getAnnotation(Interceptor.class);
+			if (keySet.contains(annotation.name())) {
+				InterceptorDefinition definition = definitionMap.get(clazz);
+				if (null == definition) {
+					definition = new InterceptorDefinition(clazz, annotation.singleton());
+					InterceptorDefinition existing = definitionMap.putIfAbsent(clazz, definition);
+					if (null != existing) {
+						definition = existing;
+					}
+				}
+				definitionList.add(definition);
+			}
 		}
-		if (null != arg1) {
-			return arg1.equals(arg2);
+		definitions = definitionList.toArray(new InterceptorDefinition[definitionList.size()]);
+		chainMap.put(keySet, definitions);
+		return definitions;
+	}
+
+	/**
+	 * 定義の並びがすべてシングルトンのインターセプターであるかを返す。
+	 *
+	 * @param definitions インターセプターの定義の配列
+	 * @return すべてシングルトンの場合はtrue
+	 */
+	static boolean isSingleton(InterceptorDefinition[] definitions) {
+		for (InterceptorDefinition definition : definitions) {
+			if (null == definition.singleton_) {
+				return false;
+			}
 		}
-		return false;
+		return true;
+	}
+
+	/**
+	 * インターセプターの定義と、シングルトンのインスタンスのキャッシュを削除する。
+	 */
+	static void clearCache() {
+		definitionMap_ = new ConcurrentHashMap<Class<?>, InterceptorDefinition>();
+		chainMap_ = new ConcurrentHashMap<Set<String>, InterceptorDefinition[]>();
 	}
 
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Inner classes
-	private static class InterceptorContainer {
-		private Method beforeStartTxMethod_ = null;
 
-		private Method afterStartTxMethod_ = null;
+	/**
+	 * インターセプター対象クラスと、呼出し対象のメソッド
+	 * <p>
+	 * 生成後は変更しないため、複数のスレッドで共有できる。
+	 * </p>
+	 */
+	static final class InterceptorDefinition {
+		private final Class<?> clazz_;
 
-		private Method beforeEndTxMethod_ = null;
+		/** 呼出し対象のメソッド（BEFORE_STARTからTHROW_EXCEPTIONの順、(Object)void形式、未定義の場合はnull） */
+		private final MethodHandle[] hooks_ = new MethodHandle[5];
 
-		private Method afterEndTxMethod_ = null;
+		private final String[] hookNames_ = new String[5];
 
-		private Method throwExceptionMethod_ = null;
+		private final MethodHandle constructor_;
 
-		private Object instance_ = null;
-
-		private static final Object[] DUMMY_ARGS = new Object[] {};
+		/** シングルトンのインスタンス（シングルトンでない場合はnull） */
+		private final Object singleton_;
 
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Constructor
-		public InterceptorContainer(Class<?> clazz, String key) {
+		private InterceptorDefinition(Class<?> clazz, boolean singleton) {
+			clazz_ = clazz;
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			MethodType hookType = MethodType.methodType(void.class, Object.class);
 			try {
 				Method[] methods = clazz.getMethods();
 				for (Method method : methods) {
@@ -112,73 +198,76 @@ public class InterceptorInvocator {
 					if (0 < method.getParameterTypes().length) {
 						continue;
 					}
+					int index;
 					// トランザクション開始時、コネクション取得前
-					if ((null == beforeStartTxMethod_)
-							&& (null != method.getAnnotation(BeforeStartTransaction.class))) {
-						beforeStartTxMethod_ = method;
+					if (null != method.getAnnotation(BeforeStartTransaction.class)) {
+						index = BEFORE_START;
 					}
 					// トランザクション開始時、コネクション取得後
-					else if ((null == afterStartTxMethod_)
-							&& (null != method.getAnnotation(AfterStartTransaction.class))) {
-						afterStartTxMethod_ = method;
+					else if (null != method.getAnnotation(AfterStartTransaction.class)) {
+						index = AFTER_START;
 					}
-					// トランザクション開始時、コネクション取得前
-					else if ((null == beforeEndTxMethod_)
-							&& (null != method.getAnnotation(BeforeEndTransaction.class))) {
-						beforeEndTxMethod_ = method;
+					// トランザクション終了時、コミット前
+					else if (null != method.getAnnotation(BeforeEndTransaction.class)) {
+						index = BEFORE_END;
 					}
-					// トランザクション開始時、コネクション取得後
-					else if ((null == afterEndTxMethod_) && (null != method.getAnnotation(AfterEndTransaction.class))) {
-						afterEndTxMethod_ = method;
+					// トランザクション終了時、コミット後
+					else if (null != method.getAnnotation(AfterEndTransaction.class)) {
+						index = AFTER_END;
 					}
 					// 例外発生時
-					else if ((null == throwExceptionMethod_) && (null != method.getAnnotation(ThrowException.class))) {
-						throwExceptionMethod_ = method;
+					else if (null != method.getAnnotation(ThrowException.class)) {
+						index = THROW_EXCEPTION;
+					} else {
+						continue;
+					}
+					if (null == hooks_[index]) {
+						// 戻り値は使用しないため破棄する
+						hooks_[index] = lookup.unreflect(method).asType(hookType);
+						hookNames_[index] = method.getName();
 					}
 				}
-				instance_ = clazz.newInstance();
-			} catch (InstantiationException e) {
-				throw new ReflectionException(e);
+				constructor_ = lookup.findConstructor(clazz, MethodType.methodType(void.class)).asType(
+						MethodType.methodType(Object.class));
 			} catch (IllegalAccessException e) {
 				throw new ReflectionException(e);
+			} catch (NoSuchMethodException e) {
+				throw new ReflectionException(e);
 			}
+			singleton_ = (singleton ? newInstance() : null);
 		}
 
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Methods
-		public void invokeBeforeStartTransaction() {
-			invoke_(beforeStartTxMethod_);
-		}
-
-		public void invokeAfterStartTransaction() {
-			invoke_(afterStartTxMethod_);
-		}
 
-		public void invokeBeforeEndTransaction() {
-			invoke_(beforeEndTxMethod_);
+		private Object getInstance() {
+			return ((null != singleton_) ? singleton_ : newInstance());
 		}
 
-		public void invokeAfterEndTransaction() {
-			invoke_(afterEndTxMethod_);
-		}
-
-		public void invokeThrowException() {
-			invoke_(throwExceptionMethod_);
+		private Object newInstance() {
+			try {
+				return (Object) constructor_.invokeExact();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new ReflectionException(t);
+			}
 		}
 
-		private void invoke_(Method method) {
-			if (null == method) {
+		private void invoke(int index, Object instance) {
+			MethodHandle hook = hooks_[index];
+			if (null == hook) {
 				return;
 			}
+			if (LOG.requiredDebugLevel()) {
+				LOG.debug("invoke: " + clazz_.getName() + "#" + hookNames_[index]);
+			}
 			try {
-				LOG.debug("invoke: " + instance_.getClass().getName() + "#" + beforeStartTxMethod_.getName());
-				method.invoke(instance_, DUMMY_ARGS);
-			} catch (IllegalAccessException e) {
-				throw new ReflectionException(e);
-			} catch (IllegalArgumentException e) {
-				throw new ReflectionException(e);
-			} catch (InvocationTargetException e) {
-				throw new ReflectionException(e);
+				hook.invokeExact(instance);
+			} catch (Throwable t) {
+				throw new ReflectionException(t);
 			}
 		}
 	}
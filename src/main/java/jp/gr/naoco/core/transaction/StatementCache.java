@@ -0,0 +1,375 @@
+package jp.gr.naoco.core.transaction;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jp.gr.naoco.core.log.LaolLogger;
+
+/**
+ * トランザクション内で再利用するPreparedStatementのキャッシュ
+ * <p>
+ * SQL文と生成時の引数の組合せごとに、呼出し元がクローズしたPreparedStatementを保持し、同じ組合せの生成時に再利用する。
+ * 呼出し元には貸出し用のラッパーを返し、ラッパーのcloseでPreparedStatementをキャッシュに戻す。<br/>
+ * 保持する数が上限を超えた場合は、最も長く使用していないPreparedStatementをクローズする。
+ * </p>
+ * <p>
+ * キャッシュに戻す際は、パラメータと追加済みのバッチをクリアする。クリアできないPreparedStatementはクローズする。<br/>
+ * fetchSize等のStatement自体の設定を変更したPreparedStatementは、後の呼出し元に設定が引き継がれないよう、キャッシュに戻さずにクローズする。
+ * </p>
+ * <p>
+ * トランザクションごとのキャッシュの場合、キャッシュ中のPreparedStatementのクローズは、トランザクションの終了時に{@link TransactionManager}が行う。
+ * 物理接続ごとのキャッシュ（{@link StatementPool}）の場合は、トランザクションの終了時に貸出し中のPreparedStatementのみクローズし、
+ * 貸出し中でないPreparedStatementは後のトランザクションで再利用する。
+ * </p>
+ */
+final class StatementCache {
+	private final StatementPool pool_;
+
+	private final Connection connection_;
+
+	private final int maxSize_;
+
+	/** 物理接続ごとのキャッシュの場合はtrue */
+	private final boolean pooled_;
+
+	/** 貸出し中でないPreparedStatement（使用順） */
+	private final LinkedHashMap<Key, PreparedStatement> idleMap_ = new LinkedHashMap<Key, PreparedStatement>(16,
+			0.75f, true);
+
+	/** 貸出し中のPreparedStatementと貸出し用のラッパー */
+	private final IdentityHashMap<PreparedStatement, LeasedPreparedStatement> leaseMap_ =
+			new IdentityHashMap<PreparedStatement, LeasedPreparedStatement>();
+
+	private boolean closed_ = false;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	/**
+	 * キャッシュを生成する。
+	 *
+	 * @param pool 統計を集計するルックアップ名ごとのプール
+	 * @param connection PreparedStatementを生成するコネクション
+	 * @param maxSize 貸出し中でないPreparedStatementを保持する数の上限
+	 * @param pooled 物理接続ごとのキャッシュの場合はtrue
+	 */
+	StatementCache(StatementPool pool, Connection connection, int maxSize, boolean pooled) {
+		pool_ = pool;
+		connection_ = connection;
+		maxSize_ = maxSize;
+		pooled_ = pooled;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	/**
+	 * 貸出し中でないPreparedStatementを取り出す。
+	 *
+	 * @param key SQL文と生成時の引数
+	 * @return PreparedStatement（保持していない場合はnull）
+	 */
+	synchronized PreparedStatement take(Key key) {
+		PreparedStatement statement = idleMap_.remove(key);
+		try {
+			if ((null != statement) && statement.isClosed()) {
+				statement = null;
+			}
+		} catch (SQLException e) {
+			statement = null;
+		}
+		if (null == statement) {
+			pool_.miss();
+		} else {
+			pool_.hit();
+		}
+		return statement;
+	}
+
+	/**
+	 * キャッシュのコネクションで、PreparedStatementを生成する。
+	 *
+	 * @param key SQL文と生成時の引数
+	 * @return PreparedStatement
+	 * @throws SQLException
+	 */
+	PreparedStatement prepare(Key key) throws SQLException {
+		return key.prepare(connection_);
+	}
+
+	/**
+	 * 物理接続ごとのキャッシュかを返す。
+	 *
+	 * @return 物理接続ごとのキャッシュの場合はtrue（PreparedStatementのクローズはキャッシュが行う）
+	 */
+	boolean isPooled() {
+		return pooled_;
+	}
+
+	/**
+	 * PreparedStatementを貸し出す。
+	 *
+	 * @param key SQL文と生成時の引数
+	 * @param statement 貸し出すPreparedStatement
+	 * @return 貸出し用のラッパー（CallableStatementの場合はCallableStatementを実装する）
+	 */
+	synchronized PreparedStatement lease(Key key, PreparedStatement statement) {
+		LeasedPreparedStatement lease = (key.callable_ ? new LeasedCallableStatement(this, key,
+				(CallableStatement) statement) : new LeasedPreparedStatement(this, key, statement));
+		leaseMap_.put(statement, lease);
+		return lease;
+	}
+
+	/**
+	 * 貸出し中のPreparedStatementを、ラッパーを経由せずにクローズする場合に、キャッシュに戻す。
+	 *
+	 * @param statement ラッパーの内部のPreparedStatement
+	 * @return 貸出し中のPreparedStatementの場合はtrue
+	 * @throws SQLException
+	 */
+	boolean release(PreparedStatement statement) throws SQLException {
+		LeasedPreparedStatement lease;
+		synchronized (this) {
+			lease = leaseMap_.get(statement);
+		}
+		if (null == lease) {
+			return false;
+		}
+		lease.release();
+		return true;
+	}
+
+	/**
+	 * キャッシュを終了する。以降にクローズしたPreparedStatementは、キャッシュに戻さずにクローズする。
+	 */
+	synchronized void close() {
+		closed_ = true;
+		idleMap_.clear();
+		leaseMap_.clear();
+	}
+
+	/**
+	 * 貸出し中のPreparedStatementをクローズする。貸出し中でないPreparedStatementは、後のトランザクションのために保持する。
+	 *
+	 * @throws SQLException
+	 */
+	void closeLeases() throws SQLException {
+		ArrayList<LeasedPreparedStatement> leaseList;
+		synchronized (this) {
+			leaseList = new ArrayList<LeasedPreparedStatement>(leaseMap_.values());
+		}
+		SQLException e = null;
+		for (LeasedPreparedStatement lease : leaseList) {
+			synchronized (lease) {
+				if (lease.released_) {
+					continue;
+				}
+				lease.released_ = true;
+			}
+			synchronized (this) {
+				leaseMap_.remove(lease.statement_);
+			}
+			try {
+				if (!lease.statement_.isClosed()) {
+					lease.statement_.close();
+				}
+			} catch (SQLException ex) {
+				LOG.error(ex.getMessage(), ex);
+				if (null == e) {
+					e = ex;
+				}
+			}
+		}
+		if (null != e) {
+			throw e;
+		}
+	}
+
+	/**
+	 * キャッシュを終了し、キャッシュ中と貸出し中のPreparedStatementをクローズする。
+	 *
+	 * @throws SQLException
+	 */
+	void closeStatements() throws SQLException {
+		closeLeases();
+		ArrayList<PreparedStatement> statementList;
+		synchronized (this) {
+			closed_ = true;
+			statementList = new ArrayList<PreparedStatement>(idleMap_.values());
+			idleMap_.clear();
+		}
+		for (PreparedStatement statement : statementList) {
+			if (!statement.isClosed()) {
+				statement.close();
+			}
+		}
+	}
+
+	/**
+	 * 貸出し用のラッパーをクローズした場合に、PreparedStatementをキャッシュに戻す。
+	 *
+	 * @param lease クローズした貸出し用のラッパー
+	 * @throws SQLException
+	 */
+	void giveBack(LeasedPreparedStatement lease) throws SQLException {
+		PreparedStatement statement = lease.statement_;
+		PreparedStatement evicted = null;
+		boolean reuse;
+		synchronized (this) {
+			leaseMap_.remove(statement);
+			reuse = (!closed_ && !lease.dirty_ && !statement.isClosed() && !idleMap_.containsKey(lease.key_));
+			if (reuse) {
+				try {
+					// 失敗したトランザクションで追加したバッチが、後の呼出し元で実行されないようにする
+					statement.clearBatch();
+					statement.clearParameters();
+					statement.clearWarnings();
+				} catch (SQLException e) {
+					LOG.debug("statement is not reusable. " + e.getMessage());
+					reuse = false;
+				}
+			}
+			if (reuse) {
+				idleMap_.put(lease.key_, statement);
+				if (maxSize_ < idleMap_.size()) {
+					Iterator<Map.Entry<Key, PreparedStatement>> it = idleMap_.entrySet().iterator();
+					evicted = it.next().getValue();
+					it.remove();
+				}
+			}
+		}
+		if (!reuse && !statement.isClosed()) {
+			statement.close();
+		}
+		if (null != evicted) {
+			pool_.evict();
+			evicted.close();
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	/**
+	 * SQL文と、PreparedStatement生成時の引数の組合せ
+	 */
+	static final class Key {
+		/** {@link Connection#prepareStatement(String)} */
+		static final int PLAIN = 0;
+
+		/** {@link Connection#prepareStatement(String, int)} */
+		static final int AUTO_GENERATED_KEYS = 1;
+
+		/** {@link Connection#prepareStatement(String, int[])} */
+		static final int COLUMN_INDEXES = 2;
+
+		/** {@link Connection#prepareStatement(String, String[])} */
+		static final int COLUMN_NAMES = 3;
+
+		/** {@link Connection#prepareStatement(String, int, int)} */
+		static final int RESULT_SET_TYPE = 4;
+
+		/** {@link Connection#prepareStatement(String, int, int, int)} */
+		static final int RESULT_SET_HOLDABILITY = 5;
+
+		private final boolean callable_;
+
+		private final int variant_;
+
+		private final String sql_;
+
+		private final int[] options_;
+
+		private final String[] columnNames_;
+
+		private final int hashCode_;
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Constructor
+
+		/**
+		 * @param callable CallableStatementの場合はtrue
+		 * @param variant 生成時のメソッドの種類
+		 * @param sql SQL文
+		 * @param options 生成時のint型の引数（ない場合はnull）
+		 * @param columnNames 生成時のカラム名の引数（ない場合はnull）
+		 */
+		Key(boolean callable, int variant, String sql, int[] options, String[] columnNames) {
+			callable_ = callable;
+			variant_ = variant;
+			sql_ = sql;
+			options_ = ((null == options) ? null : options.clone());
+			columnNames_ = ((null == columnNames) ? null : columnNames.clone());
+			hashCode_ = ((sql.hashCode() * 31 + variant) * 31 + Arrays.hashCode(options_)) * 31
+					+ Arrays.hashCode(columnNames_) + (callable ? 1 : 0);
+		}
+
+		// /////////////////////////////////////////////////////////////////////////////////////////
+		// Methods
+
+		/**
+		 * 引数に応じたメソッドで、PreparedStatementを生成する。
+		 *
+		 * @param connection コネクション
+		 * @return PreparedStatement（callableの場合はCallableStatement）
+		 * @throws SQLException
+		 */
+		PreparedStatement prepare(Connection connection) throws SQLException {
+			if (callable_) {
+				switch (variant_) {
+				case RESULT_SET_TYPE:
+					return connection.prepareCall(sql_, options_[0], options_[1]);
+				case RESULT_SET_HOLDABILITY:
+					return connection.prepareCall(sql_, options_[0], options_[1], options_[2]);
+				default:
+					return connection.prepareCall(sql_);
+				}
+			}
+			switch (variant_) {
+			case AUTO_GENERATED_KEYS:
+				return connection.prepareStatement(sql_, options_[0]);
+			case COLUMN_INDEXES:
+				return connection.prepareStatement(sql_, options_);
+			case COLUMN_NAMES:
+				return connection.prepareStatement(sql_, columnNames_);
+			case RESULT_SET_TYPE:
+				return connection.prepareStatement(sql_, options_[0], options_[1]);
+			case RESULT_SET_HOLDABILITY:
+				return connection.prepareStatement(sql_, options_[0], options_[1], options_[2]);
+			default:
+				return connection.prepareStatement(sql_);
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode_;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return (callable_ == other.callable_) && (variant_ == other.variant_) && sql_.equals(other.sql_)
+					&& Arrays.equals(options_, other.options_) && Arrays.equals(columnNames_, other.columnNames_);
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Logger
+
+	private static final LaolLogger LOG = new LaolLogger(StatementCache.class.getName());
+}
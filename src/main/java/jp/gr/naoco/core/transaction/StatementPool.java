@@ -0,0 +1,197 @@
+package jp.gr.naoco.core.transaction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jp.gr.naoco.core.connection.ConnectionFactory;
+import jp.gr.naoco.core.connection.PooledConnectionFactory;
+import jp.gr.naoco.core.log.LaolLogger;
+
+/**
+ * DB設定（ルックアップ名）ごとの、PreparedStatementのキャッシュと統計
+ * <p>
+ * ConnectionFactoryが{@link PooledConnectionFactory}の場合は、物理接続ごとにキャッシュを保持し、トランザクションを横断して
+ * PreparedStatementを再利用する。それ以外の場合は、トランザクションごとにキャッシュを生成する。<br/>
+ * いずれの場合も、キャッシュのヒット、ミス、上限を超えたことによるクローズの回数を、ルックアップ名ごとに集計する。
+ * </p>
+ */
+public final class StatementPool {
+	private static final ConcurrentHashMap<String, StatementPool> POOL_MAP = new ConcurrentHashMap<String, StatementPool>();
+
+	private final String lookupName_;
+
+	/** 物理接続ごとのキャッシュ */
+	private final HashMap<Connection, StatementCache> cacheMap_ = new HashMap<Connection, StatementCache>();
+
+	private final AtomicLong hitCount_ = new AtomicLong();
+
+	private final AtomicLong missCount_ = new AtomicLong();
+
+	private final AtomicLong evictionCount_ = new AtomicLong();
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Constructor
+
+	private StatementPool(String lookupName) {
+		lookupName_ = lookupName;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Methods
+
+	/**
+	 * ルックアップ名に対応する統計を返す。
+	 *
+	 * @param lookupName ルックアップ名
+	 * @return 統計
+	 */
+	public static StatementPool get(String lookupName) {
+		StatementPool pool = POOL_MAP.get(lookupName);
+		if (null == pool) {
+			pool = new StatementPool(lookupName);
+			StatementPool existing = POOL_MAP.putIfAbsent(lookupName, pool);
+			if (null != existing) {
+				pool = existing;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * すべての物理接続のキャッシュ中のPreparedStatementをクローズし、統計を初期化する。
+	 */
+	public static void closeAll() {
+		for (StatementPool pool : POOL_MAP.values()) {
+			pool.close();
+		}
+		POOL_MAP.clear();
+	}
+
+	public String getLookupName() {
+		return lookupName_;
+	}
+
+	/**
+	 * キャッシュ中のPreparedStatementを再利用した回数を返す。
+	 *
+	 * @return ヒット数
+	 */
+	public long getHitCount() {
+		return hitCount_.get();
+	}
+
+	/**
+	 * キャッシュ中にPreparedStatementがなく、生成した回数を返す。
+	 *
+	 * @return ミス数
+	 */
+	public long getMissCount() {
+		return missCount_.get();
+	}
+
+	/**
+	 * キャッシュの上限を超えたため、PreparedStatementをクローズした回数を返す。
+	 *
+	 * @return クローズ数
+	 */
+	public long getEvictionCount() {
+		return evictionCount_.get();
+	}
+
+	/**
+	 * キャッシュを保持している物理接続の数を返す。
+	 *
+	 * @return 物理接続の数
+	 */
+	public synchronized int getConnectionCount() {
+		return cacheMap_.size();
+	}
+
+	@Override
+	public String toString() {
+		return "StatementPool[" + lookupName_ + "] hit=" + hitCount_.get() + ", miss=" + missCount_.get()
+				+ ", eviction=" + evictionCount_.get();
+	}
+
+	/**
+	 * トランザクションで使用するキャッシュを返す。
+	 *
+	 * @param factory コネクションの取得に使用したConnectionFactory
+	 * @param connection トランザクションのコネクション
+	 * @param maxSize 貸出し中でないPreparedStatementを保持する数の上限
+	 * @return キャッシュ
+	 */
+	StatementCache getCache(ConnectionFactory factory, Connection connection, int maxSize) {
+		if (!(factory instanceof PooledConnectionFactory)) {
+			return new StatementCache(this, connection, maxSize, false);
+		}
+		Connection physical = ((PooledConnectionFactory) factory).getPhysicalConnection(connection);
+		synchronized (this) {
+			purge();
+			StatementCache cache = cacheMap_.get(physical);
+			if (null == cache) {
+				cache = new StatementCache(this, physical, maxSize, true);
+				cacheMap_.put(physical, cache);
+			}
+			return cache;
+		}
+	}
+
+	void hit() {
+		hitCount_.incrementAndGet();
+	}
+
+	void miss() {
+		missCount_.incrementAndGet();
+	}
+
+	void evict() {
+		evictionCount_.incrementAndGet();
+	}
+
+	/**
+	 * クローズ済みの物理接続のキャッシュを削除する。
+	 */
+	private void purge() {
+		Iterator<Map.Entry<Connection, StatementCache>> it = cacheMap_.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Connection, StatementCache> entry = it.next();
+			boolean closed;
+			try {
+				closed = entry.getKey().isClosed();
+			} catch (SQLException e) {
+				closed = true;
+			}
+			if (closed) {
+				it.remove();
+				entry.getValue().close();
+			}
+		}
+	}
+
+	private void close() {
+		ArrayList<StatementCache> cacheList;
+		synchronized (this) {
+			cacheList = new ArrayList<StatementCache>(cacheMap_.values());
+			cacheMap_.clear();
+		}
+		for (StatementCache cache : cacheList) {
+			try {
+				cache.closeStatements();
+			} catch (SQLException e) {
+				LOG.warn(e.getMessage(), e);
+			}
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Logger
+
+	private static final LaolLogger LOG = new LaolLogger(StatementPool.class.getName());
+}
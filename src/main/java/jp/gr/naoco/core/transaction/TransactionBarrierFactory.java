@@ -4,15 +4,17 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
 
-import jp.gr.naoco.core.annotation.BypassCommitRollback;
-import jp.gr.naoco.core.annotation.BypassInterceptor;
-import jp.gr.naoco.core.annotation.BypassTransaction;
-import jp.gr.naoco.core.annotation.Interceptee;
-import jp.gr.naoco.core.annotation.Transaction;
 import jp.gr.naoco.core.log.LaolLogger;
 
 public class TransactionBarrierFactory {
+	/** 実装クラスごと、メソッドごとの設定のキャッシュ */
+	private static volatile ConcurrentHashMap<Class<?>, ConcurrentHashMap<Method, BarrierPlan>> planMap_ = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<Method, BarrierPlan>>();
+
+	/** キャッシュを削除するごとに増やす世代番号 */
+	private static volatile int generation_ = 0;
+
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Constructor
 
@@ -24,45 +26,54 @@ public class TransactionBarrierFactory {
 	// Methods
 
 	public static Object createBarrier(Class<?> interfaceClass, Object logicInstance) {
-		InvocationHandler handler = new TxBarrierInvocationHandler(logicInstance);
+		InvocationHandler handler = new TxBarrierInvocationHandler(interfaceClass, logicInstance);
 		Object barriered = Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class[] {interfaceClass },
 				handler);
 		return barriered;
 	}
 
-	private static Transaction getTransactionAnnotation_(Method method, Class<?> instanceClass) {
-		return instanceClass.getAnnotation(Transaction.class);
-	}
-
-	private static boolean needsTransaction_(Method method, Class<?> instanceClass) throws NoSuchMethodException {
-		return ((null == instanceClass.getMethod(method.getName(), method.getParameterTypes())
-				.getAnnotation(BypassTransaction.class)) && (null != getTransactionAnnotation_(method, instanceClass)));
-	}
-
-	private static boolean needsInterceptor_(Method method, Class<?> instanceClass) throws NoSuchMethodException {
-		if (null == instanceClass.getAnnotation(Interceptee.class)) {
-			return false;
-		}
-		if (null != instanceClass.getMethod(method.getName(), method.getParameterTypes())
-				.getAnnotation(BypassInterceptor.class)) {
-			return false;
+	/**
+	 * {@link #createBarrier(Class, Object)}で生成したインスタンスから、実装クラスのインスタンスを取り出す。
+	 *
+	 * @param barriered createBarrierで生成したインスタンス
+	 * @return 実装クラスのインスタンス（createBarrierで生成したインスタンスでない場合は、引数をそのまま返す）
+	 */
+	public static Object getLogicInstance(Object barriered) {
+		if ((null != barriered) && Proxy.isProxyClass(barriered.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(barriered);
+			if (handler instanceof TxBarrierInvocationHandler) {
+				return ((TxBarrierInvocationHandler) handler).instance_;
+			}
 		}
-		return true;
-	}
-
-	private static boolean needsCommitRollback_(Method method, Class<?> instanceClass) throws NoSuchMethodException {
-		return (null == instanceClass.getMethod(method.getName(), method.getParameterTypes())
-				.getAnnotation(BypassCommitRollback.class));
+		return barriered;
 	}
 
-	private static String[] getInterceptorKey_(Method method, Class<?> instanceClass) throws NoSuchMethodException {
-		Interceptee annotation = instanceClass.getAnnotation(Interceptee.class);
-		return ((null != annotation) ? annotation.name() : null);
+	/**
+	 * メソッドごとのトランザクションとインターセプターの設定のキャッシュを削除する。
+	 * シングルトンのインターセプターのインスタンスも破棄する。
+	 * <p>
+	 * インターセプターの設定を変更した場合に、{@link jp.gr.naoco.core.conf.Configuration}から呼び出す。
+	 * </p>
+	 */
+	public static void clearCache() {
+		synchronized (TransactionBarrierFactory.class) {
+			planMap_ = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<Method, BarrierPlan>>();
+			generation_++;
+			InterceptorInvocator.clearCache();
+		}
 	}
 
-	private static String getLookupName_(Method method, Class<?> instanceClass) {
-		Transaction annotation = instanceClass.getAnnotation(Transaction.class);
-		return ((null != annotation) ? annotation.lookupName() : null);
+	private static ConcurrentHashMap<Method, BarrierPlan> getPlans_(Class<?> instanceClass) {
+		ConcurrentHashMap<Class<?>, ConcurrentHashMap<Method, BarrierPlan>> planMap = planMap_;
+		ConcurrentHashMap<Method, BarrierPlan> plans = planMap.get(instanceClass);
+		if (null == plans) {
+			plans = new ConcurrentHashMap<Method, BarrierPlan>();
+			ConcurrentHashMap<Method, BarrierPlan> existing = planMap.putIfAbsent(instanceClass, plans);
+			if (null != existing) {
+				plans = existing;
+			}
+		}
+		return plans;
 	}
 
 	// /////////////////////////////////////////////////////////////////////////////////////////////
@@ -71,6 +82,9 @@ public class TransactionBarrierFactory {
 	public static class TxBarrierInvocationHandler implements InvocationHandler {
 		private Object instance_;
 
+		/** 実装クラスのメソッドごとの設定（キャッシュの世代が変わった場合に取得し直す） */
+		private PlanCache cache_ = null;
+
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Constructor
 
@@ -78,19 +92,37 @@ public class TransactionBarrierFactory {
 			instance_ = instance;
 		}
 
+		/**
+		 * インターフェースのメソッドの設定を、生成時に解決する。
+		 *
+		 * @param interfaceClass インターフェース
+		 * @param instance 実装クラスのインスタンス
+		 */
+		public TxBarrierInvocationHandler(Class<?> interfaceClass, Object instance) {
+			this(instance);
+			try {
+				for (Method method : interfaceClass.getMethods()) {
+					getPlan_(method);
+				}
+			} catch (NoSuchMethodException e) {
+				// 呼出し時に改めて例外とする
+				LOG.debug(e.getMessage());
+			}
+		}
+
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Methods
 
 		/** {@inheritDoc} */
 		@Override
 		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-			final boolean needsTransaction = needsTransaction_(method, instance_.getClass());
-			final boolean needsInterceptor = needsInterceptor_(method, instance_.getClass());
-			final boolean needsCommitRollback = needsCommitRollback_(method, instance_.getClass());
+			final BarrierPlan plan = getPlan_(method);
+			final boolean needsTransaction = plan.needsTransaction();
+			final boolean needsInterceptor = plan.needsInterceptor();
+			final boolean needsCommitRollback = plan.needsCommitRollback();
 			InterceptorInvocator interceptor = null;
 			if (needsInterceptor) {
-				String[] interceptorKeys = getInterceptorKey_(method, instance_.getClass());
-				interceptor = ((null != interceptorKeys) ? new InterceptorInvocator(interceptorKeys) : null);
+				interceptor = plan.newInterceptorInvocator();
 			}
 			Object result = null;
 			try {
@@ -99,12 +131,11 @@ public class TransactionBarrierFactory {
 				if (needsInterceptor) {
 					interceptor.invokeBeforeStartTransaction();
 				}
-				final String lookupName = getLookupName_(method, instance_.getClass());
-				final Transaction anno = getTransactionAnnotation_(method, instance_.getClass());
+				final String lookupName = plan.getLookupName();
 				try {
 					// トランザクションの開始
-					if (needsTransaction && (null != anno)) {
-						switch (anno.type()) {
+					if (needsTransaction) {
+						switch (plan.getTransactionType()) {
 						case NEW:
 							TransactionManager.startTransaction(lookupName);
 							break;
@@ -123,7 +154,7 @@ public class TransactionBarrierFactory {
 
 					// メソッドの実行
 					try {
-						result = method.invoke(instance_, args);
+						result = plan.invoke(instance_, args);
 					} catch (Throwable t) {
 						Throwable cause;
 						if (t instanceof InvocationTargetException) {
@@ -170,6 +201,36 @@ public class TransactionBarrierFactory {
 			}
 			return result;
 		}
+
+		private BarrierPlan getPlan_(Method method) throws NoSuchMethodException {
+			PlanCache cache = cache_;
+			int generation = generation_;
+			if ((null == cache) || (generation != cache.generation_)) {
+				// 世代番号を先に読むため、取得中にキャッシュが削除された場合は次の呼出しで取得し直す
+				cache = new PlanCache(generation, getPlans_(instance_.getClass()));
+				cache_ = cache;
+			}
+			BarrierPlan plan = cache.plans_.get(method);
+			if (null == plan) {
+				plan = BarrierPlan.create(method, instance_.getClass());
+				cache.plans_.put(method, plan);
+			}
+			return plan;
+		}
+	}
+
+	/**
+	 * 世代番号と、その世代の実装クラスのメソッドごとの設定の組
+	 */
+	private static final class PlanCache {
+		private final int generation_;
+
+		private final ConcurrentHashMap<Method, BarrierPlan> plans_;
+
+		private PlanCache(int generation, ConcurrentHashMap<Method, BarrierPlan> plans) {
+			generation_ = generation;
+			plans_ = plans;
+		}
 	}
 
 	// /////////////////////////////////////////////////////////////////////////////////////////////
@@ -4,6 +4,7 @@ import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -20,6 +21,8 @@ import jp.gr.naoco.core.connection.ConnectionFactory;
 import jp.gr.naoco.core.exception.ConnectionInstantiationException;
 import jp.gr.naoco.core.log.LaolLogger;
 import jp.gr.naoco.db.entity.ORMapper;
+import jp.gr.naoco.db.sql.DatabaseBridge;
+import jp.gr.naoco.db.sql.Dialect;
 
 public class TransactionManager {
 	private static ThreadLocal<TransactionStack> transactionStack_ = new ThreadLocal<TransactionStack>();
@@ -51,6 +54,10 @@ public class TransactionManager {
 		return getTransactionStack_().getCurrentConnectionDriverName();
 	}
 
+	public static Dialect getCurrentDialect() {
+		return getTransactionStack_().getCurrentDialect();
+	}
+
 	public static void reserveRollback() {
 		getTransactionStack_().reserveRollback();
 	}
@@ -126,6 +133,7 @@ public class TransactionManager {
 		}
 		transactionStack_ = new ThreadLocal<TransactionStack>();
 		connectionSet_.clear();
+		StatementPool.closeAll();
 		if (null != e) {
 			throw e;
 		}
@@ -134,69 +142,88 @@ public class TransactionManager {
 	}
 
 	public static CallableStatement prepareCall(String sql) throws SQLException {
-		CallableStatement statement = getCurrentConnection().prepareCall(sql);
-		getTransactionStack_().setSyncClosePreparedStatement(statement);
-		return statement;
+		return (CallableStatement) prepareStatement_(new StatementCache.Key(true, StatementCache.Key.PLAIN, sql, null,
+				null));
 	}
 
 	public static CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
 			throws SQLException {
-		CallableStatement statement = getCurrentConnection().prepareCall(sql, resultSetType, resultSetConcurrency);
-		getTransactionStack_().setSyncClosePreparedStatement(statement);
-		return statement;
+		return (CallableStatement) prepareStatement_(new StatementCache.Key(true, StatementCache.Key.RESULT_SET_TYPE,
+				sql, new int[] {resultSetType, resultSetConcurrency }, null));
 	}
 
 	public static CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
 			int resultSetHoldability) throws SQLException {
-		CallableStatement statement = getCurrentConnection().prepareCall(sql, resultSetType, resultSetConcurrency,
-				resultSetHoldability);
-		getTransactionStack_().setSyncClosePreparedStatement(statement);
-		return statement;
+		return (CallableStatement) prepareStatement_(new StatementCache.Key(true,
+				StatementCache.Key.RESULT_SET_HOLDABILITY, sql,
+				new int[] {resultSetType, resultSetConcurrency, resultSetHoldability }, null));
 	}
 
 	public static PreparedStatement prepareStatement(String sql) throws SQLException {
-		PreparedStatement statement = getCurrentConnection().prepareStatement(sql);
-		getTransactionStack_().setSyncClosePreparedStatement(statement);
-		return statement;
+		return prepareStatement_(new StatementCache.Key(false, StatementCache.Key.PLAIN, sql, null, null));
 	}
 
 	public static PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
-		PreparedStatement statement = getCurrentConnection().prepareStatement(sql, autoGeneratedKeys);
-		getTransactionStack_().setSyncClosePreparedStatement(statement);
-		return statement;
+		return prepareStatement_(new StatementCache.Key(false, StatementCache.Key.AUTO_GENERATED_KEYS, sql,
+				new int[] {autoGeneratedKeys }, null));
 	}
 
 	public static PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
-		PreparedStatement statement = getCurrentConnection().prepareStatement(sql, columnIndexes);
-		getTransactionStack_().setSyncClosePreparedStatement(statement);
-		return statement;
+		return prepareStatement_(new StatementCache.Key(false, StatementCache.Key.COLUMN_INDEXES, sql, columnIndexes,
+				null));
 	}
 
 	public static PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
 			throws SQLException {
-		PreparedStatement statement = getCurrentConnection().prepareStatement(sql, resultSetType, resultSetConcurrency);
-		getTransactionStack_().setSyncClosePreparedStatement(statement);
-		return statement;
+		return prepareStatement_(new StatementCache.Key(false, StatementCache.Key.RESULT_SET_TYPE, sql,
+				new int[] {resultSetType, resultSetConcurrency }, null));
 	}
 
 	public static PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
 			int resultSetHoldability) throws SQLException {
-		PreparedStatement statement = getCurrentConnection().prepareStatement(sql, resultSetType, resultSetConcurrency,
-				resultSetHoldability);
-		getTransactionStack_().setSyncClosePreparedStatement(statement);
-		return statement;
+		return prepareStatement_(new StatementCache.Key(false, StatementCache.Key.RESULT_SET_HOLDABILITY, sql,
+				new int[] {resultSetType, resultSetConcurrency, resultSetHoldability }, null));
 	}
 
 	public static PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
-		PreparedStatement statement = getCurrentConnection().prepareStatement(sql, columnNames);
-		getTransactionStack_().setSyncClosePreparedStatement(statement);
-		return statement;
+		return prepareStatement_(new StatementCache.Key(false, StatementCache.Key.COLUMN_NAMES, sql, null,
+				columnNames));
+	}
+
+	/**
+	 * Statementをクローズする。
+	 * <p>
+	 * ResultSet#getStatement()等で取得した、{@link #prepareStatement(String)}等が返すラッパーの内部のStatementの場合は、
+	 * クローズせずにトランザクション内のキャッシュに戻す。
+	 * </p>
+	 *
+	 * @param statement クローズするStatement
+	 * @throws SQLException
+	 */
+	public static void closeStatement(Statement statement) throws SQLException {
+		TransactionStack stack = transactionStack_.get();
+		if ((null != stack) && stack.releaseStatement(statement)) {
+			return;
+		}
+		statement.close();
 	}
 
+	/**
+	 * 新規のトランザクションを開始する。
+	 * <p>
+	 * DB設定で遅延接続（db.lazyConnect.N=true）を指定した場合は、DBコネクションを取得せずにトランザクションを開始し、
+	 * 最初にPreparedStatementかDBコネクションを使用する時にDBコネクションを取得する。
+	 * </p>
+	 *
+	 * @param lookupName DB設定のルックアップ名
+	 * @throws ConnectionInstantiationException
+	 */
 	public static void startTransaction(String lookupName) throws ConnectionInstantiationException {
-		ConnectionWrapper connection = getNewConnection_(lookupName);
-		String driverName = getDriverName_(connection.get(), lookupName);
-		getTransactionStack_().pushTransaction(lookupName, connection, driverName);
+		TransactionStackElemSubstance elem = new TransactionStackElemSubstance(lookupName);
+		if (!Configuration.getDbConfig(lookupName).isLazyConnect()) {
+			elem.connect();
+		}
+		getTransactionStack_().pushTransaction(elem);
 		LOG.debug("start transaction:" + lookupName);
 	}
 
@@ -216,6 +243,10 @@ public class TransactionManager {
 
 	// ///////////////////////
 
+	private static PreparedStatement prepareStatement_(StatementCache.Key key) throws SQLException {
+		return getTransactionStack_().prepareStatement(key);
+	}
+
 	private static TransactionStack getTransactionStack_() {
 		TransactionStack stack = transactionStack_.get();
 		if (null == stack) {
@@ -228,7 +259,7 @@ public class TransactionManager {
 	private static ConnectionWrapper getNewConnection_(String lookupName) throws ConnectionInstantiationException {
 		DBConfiguration dbConfig = Configuration.getDbConfig(lookupName);
 		try {
-			ConnectionFactory factory = (ConnectionFactory) dbConfig.getConnectionFactory().newInstance();
+			ConnectionFactory factory = dbConfig.getConnectionFactoryInstance();
 			Connection connection = retryConnect(factory, lookupName, dbConfig.getRetry(), dbConfig.getSleep());
 			connection.setAutoCommit(false);
 			ConnectionWrapper wrapper = new ConnectionWrapper(connection);
@@ -282,9 +313,9 @@ public class TransactionManager {
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Methods
 
-		public void pushTransaction(String lookupName, ConnectionWrapper connection, String driverName) {
-			stack_.push(new TransactionStackElemSubstance(lookupName, connection, driverName));
-			LOG.trace("start transaction depth[" + (stack_.size() - 1) + "]." + lookupName);
+		public void pushTransaction(TransactionStackElemSubstance elem) {
+			stack_.push(elem);
+			LOG.trace("start transaction depth[" + (stack_.size() - 1) + "]." + elem.getLookupName());
 		}
 
 		public boolean pushVirtual(String lookupName) {
@@ -320,6 +351,13 @@ public class TransactionManager {
 			return stack_.getFirst().getDriverName();
 		}
 
+		public Dialect getCurrentDialect() {
+			if (stack_.isEmpty()) {
+				throw new IllegalStateException("transaction is not start.");
+			}
+			return stack_.getFirst().getDialect();
+		}
+
 		public void reserveRollback() {
 			TransactionStackElem elem = stack_.getFirst();
 			elem.reserveRollback();
@@ -327,6 +365,11 @@ public class TransactionManager {
 
 		public void commitForce() throws SQLException {
 			TransactionStackElem elem = stack_.getFirst();
+			if (!elem.isConnected()) {
+				// DBコネクションを取得していない場合は、コミットする変更がない
+				elem.cancelRollback();
+				return;
+			}
 			Connection connection = elem.getConnection();
 			if (elem.isRollbackReserved()) {
 				// 接続のチェック（クローズ済み、読み取り専用）はしないで、SQLException浮揚を容認する。
@@ -346,6 +389,11 @@ public class TransactionManager {
 
 		public void rollbackForce() throws SQLException {
 			TransactionStackElem elem = stack_.getFirst();
+			if (!elem.isConnected()) {
+				// DBコネクションを取得していない場合は、ロールバックする変更がない
+				elem.cancelRollback();
+				return;
+			}
 			// 接続のチェック（クローズ済み、読み取り専用）はしないで、SQLException浮揚を容認する。
 			Connection connection = elem.getConnection();
 			synchronized (connection) {
@@ -410,8 +458,20 @@ public class TransactionManager {
 			}
 		}
 
-		public void setSyncClosePreparedStatement(PreparedStatement preparedStatement) throws SQLException {
-			stack_.getFirst().setSyncClosePreparedStatement(preparedStatement);
+		public PreparedStatement prepareStatement(StatementCache.Key key) throws SQLException {
+			if (stack_.isEmpty()) {
+				throw new IllegalStateException("transaction is not start.");
+			}
+			return stack_.getFirst().prepareStatement(key);
+		}
+
+		public boolean releaseStatement(Statement statement) throws SQLException {
+			for (TransactionStackElem elem : stack_) {
+				if (elem.releaseStatement(statement)) {
+					return true;
+				}
+			}
+			return false;
 		}
 
 		public void storePreparedStatement(String sql, PreparedStatement st) {
@@ -438,22 +498,29 @@ public class TransactionManager {
 
 		public Connection getConnection();
 
+		public boolean isConnected();
+
 		public void reserveRollback();
 
 		public void cancelRollback();
 
 		public boolean isRollbackReserved();
 
-		public void setSyncClosePreparedStatement(PreparedStatement preparedStatement) throws SQLException;
+		public PreparedStatement prepareStatement(StatementCache.Key key) throws SQLException;
+
+		public boolean releaseStatement(Statement statement) throws SQLException;
 
 		public String getDriverName();
 
+		public Dialect getDialect();
+
 		public void storePreparedStatement(String sql, PreparedStatement st);
 
 		public PreparedStatement getStoredPreparedStatement(String sql);
 	}
 
 	private static class TransactionStackElemSubstance implements TransactionStackElem {
+		/** DBコネクション（遅延接続で取得前の場合はnull） */
 		private ConnectionWrapper connection_;
 
 		private String lookupName_;
@@ -466,15 +533,19 @@ public class TransactionManager {
 
 		private String driverName_;
 
+		/** ドライバ名に対応するDialect（対応するものがない場合はnull） */
+		private Dialect dialect_;
+
 		private HashMap<String, PreparedStatement> storedPreparedStatement_ = new HashMap<String, PreparedStatement>();
 
+		/** トランザクション内で再利用するPreparedStatement（キャッシュしない場合はnull） */
+		private StatementCache statementCache_;
+
 		// /////////////////////////////////////////////////////////////////////////////////////////
 		// Constructor
 
-		private TransactionStackElemSubstance(String lookupName, ConnectionWrapper connection, String driverName) {
+		private TransactionStackElemSubstance(String lookupName) {
 			lookupName_ = lookupName;
-			connection_ = connection;
-			driverName_ = driverName;
 		}
 
 		// /////////////////////////////////////////////////////////////////////////////////////////
@@ -485,8 +556,76 @@ public class TransactionManager {
 			return lookupName_;
 		}
 
+		/**
+		 * DBコネクションを取得していない場合は取得し、ドライバ名とPreparedStatementのキャッシュを準備する。
+		 *
+		 * @return DBコネクション
+		 * @throws ConnectionInstantiationException
+		 */
+		private ConnectionWrapper connect() throws ConnectionInstantiationException {
+			if (null != connection_) {
+				return connection_;
+			}
+			ConnectionWrapper connection = getNewConnection_(lookupName_);
+			try {
+				driverName_ = getDriverName_(connection.get(), lookupName_);
+				dialect_ = DatabaseBridge.findDialect(driverName_);
+				DBConfiguration dbConfig = Configuration.getDbConfig(lookupName_);
+				if (0 < dbConfig.getStatementCacheSize()) {
+					statementCache_ = StatementPool.get(lookupName_).getCache(dbConfig.getConnectionFactoryInstance(),
+							connection.get(), dbConfig.getStatementCacheSize());
+				}
+			} catch (ConnectionInstantiationException e) {
+				discardConnection(connection);
+				throw e;
+			}
+			connection_ = connection;
+			return connection;
+		}
+
+		private void discardConnection(ConnectionWrapper connection) {
+			connectionSet_.remove(connection);
+			try {
+				connection.get().close();
+			} catch (SQLException e) {
+				LOG.warn(e.getMessage(), e);
+			}
+		}
+
+		/**
+		 * 遅延接続で、DBコネクションを取得する。
+		 *
+		 * @return DBコネクション
+		 * @throws SQLException DBコネクションを取得できない場合
+		 */
+		private ConnectionWrapper connectForStatement() throws SQLException {
+			try {
+				return connect();
+			} catch (ConnectionInstantiationException e) {
+				throw new SQLException(e.getMessage(), e);
+			}
+		}
+
+		/**
+		 * 遅延接続で、DBコネクションを取得する。
+		 *
+		 * @return DBコネクション
+		 * @exception IllegalStateException DBコネクションを取得できない場合
+		 */
+		private ConnectionWrapper connectForAccess() {
+			try {
+				return connect();
+			} catch (ConnectionInstantiationException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+
 		@Override
 		public void commitTransaction(boolean needsCommit) throws SQLException {
+			if (null == connection_) {
+				LOG.debug("transaction ended without connection.");
+				return;
+			}
 			Connection connection = connection_.get();
 			synchronized (connection_) {
 				for (PreparedStatement st : storedPreparedStatement_.values()) {
@@ -501,6 +640,7 @@ public class TransactionManager {
 				} finally {
 					try {
 						storedPreparedStatement_.clear();
+						closeStatementCache();
 						closeStatement();
 					} finally {
 						try {
@@ -519,6 +659,10 @@ public class TransactionManager {
 
 		@Override
 		public void rollbackTransaction(boolean needsRollback) throws SQLException {
+			if (null == connection_) {
+				LOG.debug("transaction ended without connection.");
+				return;
+			}
 			Connection connection = connection_.get();
 			synchronized (connection_) {
 				try {
@@ -530,6 +674,7 @@ public class TransactionManager {
 				} finally {
 					try {
 						storedPreparedStatement_.clear();
+						closeStatementCache();
 						closeStatement();
 					} finally {
 						try {
@@ -548,7 +693,12 @@ public class TransactionManager {
 
 		@Override
 		public Connection getConnection() {
-			return connection_.get();
+			return connectForAccess().get();
+		}
+
+		@Override
+		public boolean isConnected() {
+			return null != connection_;
 		}
 
 		@Override
@@ -567,7 +717,33 @@ public class TransactionManager {
 		}
 
 		@Override
-		public void setSyncClosePreparedStatement(PreparedStatement preparedStatement) throws SQLException {
+		public PreparedStatement prepareStatement(StatementCache.Key key) throws SQLException {
+			ConnectionWrapper connection = connectForStatement();
+			if (null == statementCache_) {
+				PreparedStatement statement = key.prepare(connection.get());
+				setSyncClosePreparedStatement(statement);
+				return statement;
+			}
+			PreparedStatement statement = statementCache_.take(key);
+			if (null == statement) {
+				statement = statementCache_.prepare(key);
+				// 物理接続ごとのキャッシュの場合は、トランザクションの終了時にクローズしない
+				if (!statementCache_.isPooled()) {
+					setSyncClosePreparedStatement(statement);
+				}
+			}
+			return statementCache_.lease(key, statement);
+		}
+
+		@Override
+		public boolean releaseStatement(Statement statement) throws SQLException {
+			if ((null == statementCache_) || !(statement instanceof PreparedStatement)) {
+				return false;
+			}
+			return statementCache_.release((PreparedStatement) statement);
+		}
+
+		private void setSyncClosePreparedStatement(PreparedStatement preparedStatement) throws SQLException {
 			if (MAX_UNCLOSED_STATEMENT_NUM < statementStack_.size()) {
 				gabageStatement();
 			}
@@ -599,6 +775,17 @@ public class TransactionManager {
 			}
 		}
 
+		private void closeStatementCache() throws SQLException {
+			if (null == statementCache_) {
+				return;
+			}
+			if (statementCache_.isPooled()) {
+				statementCache_.closeLeases();
+			} else {
+				statementCache_.close();
+			}
+		}
+
 		private void closeStatement() throws SQLException {
 			SQLException e = null;
 			while (!statementStack_.isEmpty()) {
@@ -622,9 +809,16 @@ public class TransactionManager {
 
 		@Override
 		public String getDriverName() {
+			connectForAccess();
 			return driverName_;
 		}
 
+		@Override
+		public Dialect getDialect() {
+			connectForAccess();
+			return dialect_;
+		}
+
 		@Override
 		public void storePreparedStatement(String sql, PreparedStatement st) {
 			storedPreparedStatement_.put(sql, st);
@@ -671,6 +865,11 @@ public class TransactionManager {
 			return substance_.getConnection();
 		}
 
+		@Override
+		public boolean isConnected() {
+			return substance_.isConnected();
+		}
+
 		@Override
 		public void reserveRollback() {
 			substance_.reserveRollback();
@@ -687,8 +886,14 @@ public class TransactionManager {
 		}
 
 		@Override
-		public void setSyncClosePreparedStatement(PreparedStatement preparedStatement) throws SQLException {
-			substance_.setSyncClosePreparedStatement(preparedStatement);
+		public PreparedStatement prepareStatement(StatementCache.Key key) throws SQLException {
+			return substance_.prepareStatement(key);
+		}
+
+		@Override
+		public boolean releaseStatement(Statement statement) throws SQLException {
+			// 引継ぎ元のトランザクションで判定する
+			return false;
 		}
 
 		@Override
@@ -696,6 +901,11 @@ public class TransactionManager {
 			return substance_.getDriverName();
 		}
 
+		@Override
+		public Dialect getDialect() {
+			return substance_.getDialect();
+		}
+
 		@Override
 		public void storePreparedStatement(String sql, PreparedStatement st) {
 			substance_.storePreparedStatement(sql, st);
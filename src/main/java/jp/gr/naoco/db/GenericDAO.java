@@ -20,6 +20,7 @@ import jp.gr.naoco.db.entity.ORMapper;
 import jp.gr.naoco.db.exception.QueryRenderingException;
 import jp.gr.naoco.db.exception.QueryTemplateException;
 import jp.gr.naoco.db.sql.DatabaseBridge;
+import jp.gr.naoco.db.sql.Dialect;
 import jp.gr.naoco.db.sql.TemplateAnalyzer;
 import jp.gr.naoco.db.sql.TemplateReader;
 import jp.gr.naoco.db.sql.elem.SqlElem;
@@ -597,10 +598,14 @@ public class GenericDAO {
 	private static void setParameter(PreparedStatement statement, List<Object> parameterList,
 			Class<? extends AbstractEntity> entityClass) throws SQLException {
 		Iterator<Object> parameters = parameterList.iterator();
+		Dialect dialect = null;
 		for (int i = 1; parameters.hasNext(); i++) {
 			Object parameter = parameters.next();
 			if (null == parameter) {
-				DatabaseBridge.setNull(statement, i);
+				if (null == dialect) {
+					dialect = DatabaseBridge.getDialect();
+				}
+				dialect.setNull(statement, i);
 				continue;
 			}
 			ParameterSetter setter = SETTER_MAP.get(parameter.getClass());
@@ -639,7 +644,8 @@ public class GenericDAO {
 
 	private static String createSql(SqlElem firstElem, Map<String, Object> variableMap, List<Object> parameterList) {
 		StringBuilder builder = new StringBuilder();
-		firstElem.appendSqlBuilder(builder, variableMap, parameterList);
+		// Dialectは描画ごとに1回だけ解決し、各要素に渡す
+		firstElem.appendSqlBuilder(builder, variableMap, parameterList, DatabaseBridge.getDialect());
 		String sql = builder.toString();
 		return sql.replaceAll("\\s+", " ") // 空白文字列はスペース1文字に置換
 				.replaceAll("\\s*,\\s*", ", ") // カンマは後ろスペース1文字に置換
@@ -18,6 +18,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 
+import jp.gr.naoco.core.NaocoCoreFacade;
 import jp.gr.naoco.core.exception.ReflectionException;
 import jp.gr.naoco.core.log.LaolLogger;
 import jp.gr.naoco.db.entity.FixedQueryRenderer.NameMethod;
@@ -363,7 +364,8 @@ public class ORMapper {
 			}
 		} finally {
 			if ((null != st) && !st.isClosed()) {
-				st.close();
+				// トランザクション内のキャッシュに戻す
+				NaocoCoreFacade.closeStatement(st);
 			}
 		}
 
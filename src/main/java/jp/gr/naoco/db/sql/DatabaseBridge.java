@@ -4,13 +4,19 @@ import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import jp.gr.naoco.core.NaocoCoreFacade;
 
+/**
+ * 接続先DBアプリケーション間の差異の吸収
+ * <p>
+ * DBコネクションのドライバ名ごとに{@link Dialect}を保持する。各メソッドは、現在のトランザクションで解決済みのDialectに委譲する。
+ * </p>
+ */
 public class DatabaseBridge {
-	private static HashMap<String, DBElem> MAP = new HashMap<String, DBElem>();
+	private static final ConcurrentHashMap<String, Dialect> MAP = new ConcurrentHashMap<String, Dialect>();
 	static {
 		// Oracle
 		MAP.put("Oracle JDBC driver", new DBElem() {
@@ -126,61 +132,109 @@ public class DatabaseBridge {
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Methods
 
-	public static HashSet<Class<?>> getAvaliableParameterTypes() {
-		String driverName = NaocoCoreFacade.getDriverName();
-		DBElem elem = MAP.get(driverName);
-		if (null == elem) {
-			throw new IllegalArgumentException("Not configured driver name in DatabaseBridge:" + driverName);
+	/**
+	 * ドライバ名に対応するDialectを登録する。
+	 * <p>
+	 * 登録済みのドライバ名の場合は置き換える。登録前に開始したトランザクションには反映しない。
+	 * </p>
+	 *
+	 * @param driverName DatabaseMetaData#getDriverName()が返すドライバ名
+	 * @param dialect Dialect
+	 */
+	public static void registerDialect(String driverName, Dialect dialect) {
+		if ((null == driverName) || (null == dialect)) {
+			throw new IllegalArgumentException("driver name or dialect is null.");
+		}
+		MAP.put(driverName, dialect);
+	}
+
+	/**
+	 * ドライバ名に対応するDialectを返す。
+	 *
+	 * @param driverName DatabaseMetaData#getDriverName()が返すドライバ名
+	 * @return Dialect（登録されていない場合はnull）
+	 */
+	public static Dialect findDialect(String driverName) {
+		if (null == driverName) {
+			return null;
+		}
+		return MAP.get(driverName);
+	}
+
+	/**
+	 * 現在のトランザクションのDialectを返す。
+	 *
+	 * @return Dialect
+	 * @exception IllegalArgumentException ドライバ名に対応するDialectが登録されていない場合
+	 */
+	public static Dialect getDialect() {
+		Dialect dialect = NaocoCoreFacade.getDialect();
+		if (null == dialect) {
+			throw new IllegalArgumentException("Not configured driver name in DatabaseBridge:"
+					+ NaocoCoreFacade.getDriverName());
 		}
-		HashSet<Class<?>> result = elem.getAvaliableParameterTypes();
+		return dialect;
+	}
+
+	public static HashSet<Class<?>> getAvaliableParameterTypes() {
+		return getAvaliableParameterTypes(getDialect());
+	}
+
+	/**
+	 * 解決済みのDialectで、PreparedStatementのパラメータに設定できる型を返す。
+	 *
+	 * @param dialect 現在のトランザクションのDialect
+	 * @return パラメータに設定できる型
+	 * @exception UnsupportedOperationException Dialectがパラメータの型に対応していない場合
+	 */
+	public static HashSet<Class<?>> getAvaliableParameterTypes(Dialect dialect) {
+		HashSet<Class<?>> result = dialect.getAvaliableParameterTypes();
 		if (null == result) {
-			throw new UnsupportedOperationException("Not supported db type:" + driverName);
+			throw new UnsupportedOperationException("Not supported db type:" + NaocoCoreFacade.getDriverName());
 		}
 		return result;
 	}
 
 	public static String getHintComment(String comment) {
-		String driverName = NaocoCoreFacade.getDriverName();
-		DBElem elem = MAP.get(driverName);
-		if (null == elem) {
-			throw new IllegalArgumentException("Not configured driver name in DatabaseBridge:" + driverName);
-		}
-		return elem.getHintComment(comment);
+		return getDialect().getHintComment(comment);
 	}
 
 	public static void setNull(PreparedStatement statement, int index) throws SQLException {
-		String driverName = NaocoCoreFacade.getDriverName();
-		DBElem elem = MAP.get(driverName);
-		if (null == elem) {
-			throw new IllegalArgumentException("Not configured driver name in DatabaseBridge:" + driverName);
-		}
-		elem.setNull(statement, index);
+		getDialect().setNull(statement, index);
 	}
 
 	public static String sequence(String sequenceName) throws SQLException {
-		String driverName = NaocoCoreFacade.getDriverName();
-		DBElem elem = MAP.get(driverName);
-		return elem.nextSequence(sequenceName);
+		return getDialect().nextSequence(sequenceName);
 	}
 
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Inner classes
 
-	private static class DBElem {
+	/**
+	 * 対応する機能のないDBアプリケーションのDialect
+	 * <p>
+	 * 独自のDialectを登録する場合は、本クラスを継承して差異のあるメソッドのみオーバーライドできる。
+	 * </p>
+	 */
+	public static class DBElem implements Dialect {
+		@Override
 		public HashSet<Class<?>> getAvaliableParameterTypes() {
 			return null;
 		}
 
+		@Override
 		public String getHintComment(String comment) {
 			return "";
 		}
 
+		@Override
 		public void setNull(PreparedStatement statement, int index) throws SQLException {
 			ParameterMetaData meta = statement.getParameterMetaData();
 			int sqlType = meta.getParameterType(index);
 			statement.setNull(index, sqlType);
 		}
 
+		@Override
 		public String nextSequence(String sequenceName) throws SQLException {
 			throw new UnsupportedOperationException();
 		}
@@ -0,0 +1,49 @@
+package jp.gr.naoco.db.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashSet;
+
+/**
+ * 接続先DBアプリケーションごとの、クエリ表現とパラメータ設定の差異
+ * <p>
+ * DBコネクションのドライバ名に対応するDialectは、トランザクションでDBコネクションを取得した時に
+ * {@link DatabaseBridge#findDialect(String)}で1回だけ解決し、トランザクション内で使用する。<br/>
+ * 組み込みのもの以外のDBアプリケーションに対応する場合は、トランザクションの開始前に
+ * {@link DatabaseBridge#registerDialect(String, Dialect)}で登録する。
+ * </p>
+ */
+public interface Dialect {
+	/**
+	 * PreparedStatementのパラメータに設定できる型を返す。
+	 *
+	 * @return パラメータに設定できる型（対応しない場合はnull）
+	 */
+	public HashSet<Class<?>> getAvaliableParameterTypes();
+
+	/**
+	 * SQLテンプレートのコメントから、クエリに出力するヒント句を返す。
+	 *
+	 * @param comment SQLテンプレートのコメント
+	 * @return ヒント句（出力しない場合は空文字列）
+	 */
+	public String getHintComment(String comment);
+
+	/**
+	 * PreparedStatementのパラメータにnullを設定する。
+	 *
+	 * @param statement PreparedStatement
+	 * @param index パラメータの位置
+	 * @throws SQLException
+	 */
+	public void setNull(PreparedStatement statement, int index) throws SQLException;
+
+	/**
+	 * シーケンスの次の値を取得する。
+	 *
+	 * @param sequenceName シーケンスの名称
+	 * @return シーケンスから取得した値
+	 * @throws SQLException
+	 */
+	public String nextSequence(String sequenceName) throws SQLException;
+}
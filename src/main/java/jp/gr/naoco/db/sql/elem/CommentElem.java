@@ -3,7 +3,7 @@ package jp.gr.naoco.db.sql.elem;
 import java.util.List;
 import java.util.Map;
 
-import jp.gr.naoco.db.sql.DatabaseBridge;
+import jp.gr.naoco.db.sql.Dialect;
 
 public class CommentElem implements SqlElem {
 	private SqlElem next_ = EoqElem.INSTANCE;
@@ -37,9 +37,9 @@ public class CommentElem implements SqlElem {
 
 	@Override
 	public void appendSqlBuilder(StringBuilder builder,
-			Map<String, Object> variableMap, List<Object> parameterList) {
-		builder.append(DatabaseBridge.getHintComment(comment_));
-		next_.appendSqlBuilder(builder, variableMap, parameterList);
+			Map<String, Object> variableMap, List<Object> parameterList, Dialect dialect) {
+		builder.append(dialect.getHintComment(comment_));
+		next_.appendSqlBuilder(builder, variableMap, parameterList, dialect);
 	}
 
 	@Override
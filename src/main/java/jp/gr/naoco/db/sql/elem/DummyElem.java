@@ -3,6 +3,8 @@ package jp.gr.naoco.db.sql.elem;
 import java.util.List;
 import java.util.Map;
 
+import jp.gr.naoco.db.sql.Dialect;
+
 public class DummyElem implements SqlElem {
 	private SqlElem next_ = EoqElem.INSTANCE;
 
@@ -32,8 +34,9 @@ public class DummyElem implements SqlElem {
 	}
 
 	@Override
-	public void appendSqlBuilder(StringBuilder builder, Map<String, Object> variableMap, List<Object> parameterList) {
-		next_.appendSqlBuilder(builder, variableMap, parameterList);
+	public void appendSqlBuilder(StringBuilder builder, Map<String, Object> variableMap, List<Object> parameterList,
+			Dialect dialect) {
+		next_.appendSqlBuilder(builder, variableMap, parameterList, dialect);
 	}
 
 	@Override
@@ -3,6 +3,8 @@ package jp.gr.naoco.db.sql.elem;
 import java.util.List;
 import java.util.Map;
 
+import jp.gr.naoco.db.sql.Dialect;
+
 public class EoqElem implements SqlElem {
 	public static EoqElem INSTANCE = new EoqElem();
 
@@ -33,7 +35,7 @@ public class EoqElem implements SqlElem {
 
 	@Override
 	public void appendSqlBuilder(StringBuilder builder,
-			Map<String, Object> variableMap, List<Object> parameterList) {
+			Map<String, Object> variableMap, List<Object> parameterList, Dialect dialect) {
 		// nothing to do
 	}
 
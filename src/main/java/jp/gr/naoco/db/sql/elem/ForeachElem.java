@@ -4,6 +4,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import jp.gr.naoco.db.sql.Dialect;
+
 public class ForeachElem implements SqlElem {
 	private String key_;
 
@@ -37,7 +39,8 @@ public class ForeachElem implements SqlElem {
 	}
 
 	@Override
-	public void appendSqlBuilder(StringBuilder builder, Map<String, Object> variableMap, List<Object> parameterList) {
+	public void appendSqlBuilder(StringBuilder builder, Map<String, Object> variableMap, List<Object> parameterList,
+			Dialect dialect) {
 		Object obj = variableMap.get(key_);
 		if ((null != obj) && (obj instanceof Iterable)) {
 			Iterable<? extends Object> ite = (Iterable<? extends Object>) obj;
@@ -46,11 +49,11 @@ public class ForeachElem implements SqlElem {
 				if (elem instanceof Map) {
 					newMap.putAll((Map<? extends String, ? extends Object>) elem);
 				}
-				body_.appendSqlBuilder(builder, newMap, parameterList);
+				body_.appendSqlBuilder(builder, newMap, parameterList, dialect);
 			}
 		}
 		if (!isLast()) {
-			next_.appendSqlBuilder(builder, variableMap, parameterList);
+			next_.appendSqlBuilder(builder, variableMap, parameterList, dialect);
 		}
 	}
 
@@ -3,6 +3,8 @@ package jp.gr.naoco.db.sql.elem;
 import java.util.List;
 import java.util.Map;
 
+import jp.gr.naoco.db.sql.Dialect;
+
 public class IfElem implements SqlElem {
 	private String key_;
 
@@ -38,19 +40,20 @@ public class IfElem implements SqlElem {
 	}
 
 	@Override
-	public void appendSqlBuilder(StringBuilder builder, Map<String, Object> variableMap, List<Object> parameterList) {
+	public void appendSqlBuilder(StringBuilder builder, Map<String, Object> variableMap, List<Object> parameterList,
+			Dialect dialect) {
 		Object value = variableMap.get(key_);
 		if ((null == value) || !(value instanceof Boolean)) {
-			next_.appendSqlBuilder(builder, variableMap, parameterList);
+			next_.appendSqlBuilder(builder, variableMap, parameterList, dialect);
 			return;
 		}
 		boolean result = ((Boolean) value).booleanValue();
 		if (result && (null != if_)) {
-			if_.appendSqlBuilder(builder, variableMap, parameterList);
+			if_.appendSqlBuilder(builder, variableMap, parameterList, dialect);
 		} else if (null != else_) {
-			else_.appendSqlBuilder(builder, variableMap, parameterList);
+			else_.appendSqlBuilder(builder, variableMap, parameterList, dialect);
 		}
-		next_.appendSqlBuilder(builder, variableMap, parameterList);
+		next_.appendSqlBuilder(builder, variableMap, parameterList, dialect);
 	}
 
 	@Override
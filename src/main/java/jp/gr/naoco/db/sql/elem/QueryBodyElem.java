@@ -3,6 +3,8 @@ package jp.gr.naoco.db.sql.elem;
 import java.util.List;
 import java.util.Map;
 
+import jp.gr.naoco.db.sql.Dialect;
+
 public class QueryBodyElem implements SqlElem {
 	private SqlElem next_ = EoqElem.INSTANCE;
 
@@ -35,9 +37,9 @@ public class QueryBodyElem implements SqlElem {
 
 	@Override
 	public void appendSqlBuilder(StringBuilder builder,
-			Map<String, Object> variableMap, List<Object> parameterList) {
+			Map<String, Object> variableMap, List<Object> parameterList, Dialect dialect) {
 		builder.append(value_);
-		next_.appendSqlBuilder(builder, variableMap, parameterList);
+		next_.appendSqlBuilder(builder, variableMap, parameterList, dialect);
 	}
 
 	@Override
@@ -3,6 +3,9 @@ package jp.gr.naoco.db.sql.elem;
 import java.util.List;
 import java.util.Map;
 
+import jp.gr.naoco.db.sql.DatabaseBridge;
+import jp.gr.naoco.db.sql.Dialect;
+
 public interface SqlElem {
 	public void setNext(SqlElem next);
 
@@ -10,6 +13,29 @@ public interface SqlElem {
 
 	public boolean isLast();
 
+	/**
+	 * クエリとパラメータリストに、本要素以降を出力する。
+	 * <p>
+	 * 現在のトランザクションのDialectを解決して、{@link #appendSqlBuilder(StringBuilder, Map, List, Dialect)}を呼び出す。
+	 * </p>
+	 *
+	 * @param builder 出力先のクエリ
+	 * @param variableMap 変数のマップ
+	 * @param parameterList 出力先のパラメータリスト
+	 */
+	public default void appendSqlBuilder(StringBuilder builder,
+			Map<String, Object> variableMap, List<Object> parameterList) {
+		appendSqlBuilder(builder, variableMap, parameterList, DatabaseBridge.getDialect());
+	}
+
+	/**
+	 * クエリとパラメータリストに、本要素以降を出力する。
+	 *
+	 * @param builder 出力先のクエリ
+	 * @param variableMap 変数のマップ
+	 * @param parameterList 出力先のパラメータリスト
+	 * @param dialect 描画の開始時に1回だけ解決した、現在のトランザクションのDialect
+	 */
 	public void appendSqlBuilder(StringBuilder builder,
-			Map<String, Object> variableMap, List<Object> parameterList);
+			Map<String, Object> variableMap, List<Object> parameterList, Dialect dialect);
 }
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 
 import jp.gr.naoco.db.sql.DatabaseBridge;
+import jp.gr.naoco.db.sql.Dialect;
 
 public class VariableElem implements SqlElem {
 	private SqlElem next_ = EoqElem.INSTANCE;
@@ -38,7 +39,7 @@ public class VariableElem implements SqlElem {
 
 	@Override
 	public void appendSqlBuilder(StringBuilder builder,
-			Map<String, Object> variableMap, List<Object> parameterList) {
+			Map<String, Object> variableMap, List<Object> parameterList, Dialect dialect) {
 		Object variable = variableMap.get(key_);
 		if (null == variable) {
 			parameterList.add(null);
@@ -59,7 +60,7 @@ public class VariableElem implements SqlElem {
 			}
 		} else {
 			HashSet<Class<?>> typeSet = DatabaseBridge
-					.getAvaliableParameterTypes();
+					.getAvaliableParameterTypes(dialect);
 			if (typeSet.contains(variable.getClass())) {
 				parameterList.add(variable);
 				builder.append("? ");
@@ -71,7 +72,7 @@ public class VariableElem implements SqlElem {
 			}
 		}
 
-		next_.appendSqlBuilder(builder, variableMap, parameterList);
+		next_.appendSqlBuilder(builder, variableMap, parameterList, dialect);
 	}
 
 	@Override
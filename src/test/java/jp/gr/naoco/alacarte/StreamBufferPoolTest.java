@@ -0,0 +1,133 @@
+package jp.gr.naoco.alacarte;
+
+import jp.gr.naoco.alacarte.ZipEncoder.StreamBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * StreamBufferPoolについて、バイト配列の再利用と保持量の上限、StreamBufferの参照数による返却を確認
+ */
+public class StreamBufferPoolTest {
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Cases
+
+	/**
+	 * 2のべき乗に切り上げたバイト配列を取得し、返却したバイト配列を同じ長さの取得で再利用することを確認
+	 */
+	@Test
+	public void test01() {
+		StreamBufferPool pool = new StreamBufferPool();
+		StreamBuffer buffer01 = pool.acquire(5000);
+		byte[] bytes01 = buffer01.getBytes();
+		Assert.assertEquals(8192, bytes01.length);
+		Assert.assertEquals(0, buffer01.getLength());
+		Assert.assertEquals(0L, pool.getPooledBytes());
+
+		buffer01.release();
+		Assert.assertNull(buffer01.getBytes());
+		Assert.assertEquals(8192L, pool.getPooledBytes());
+
+		// 長さの異なるバイト配列は再利用しない
+		StreamBuffer buffer02 = pool.acquire(10000);
+		Assert.assertEquals(16384, buffer02.getBytes().length);
+		Assert.assertEquals(8192L, pool.getPooledBytes());
+
+		StreamBuffer buffer03 = pool.acquire(8192);
+		Assert.assertSame(bytes01, buffer03.getBytes());
+		Assert.assertEquals(0L, pool.getPooledBytes());
+		buffer02.release();
+		buffer03.release();
+
+		Assert.assertSame(StreamBufferPool.getDefault(), StreamBufferPool.getDefault());
+	}
+
+	/**
+	 * 保持量の上限を超えるバイト配列と、2のべき乗でないバイト配列はプールしないことを確認
+	 */
+	@Test
+	public void test02() {
+		StreamBufferPool pool = new StreamBufferPool(8192);
+		StreamBuffer buffer01 = pool.acquire(8192);
+		StreamBuffer buffer02 = pool.acquire(8192);
+		buffer01.release();
+		buffer02.release();
+		Assert.assertEquals(8192L, pool.getPooledBytes());
+
+		pool.recycle(new byte[5000]);
+		Assert.assertEquals(8192L, pool.getPooledBytes());
+
+		try {
+			pool.acquire((1 << 30) + 1);
+			Assert.fail("exception is not thrown.");
+		} catch (IllegalArgumentException e) {
+			// 想定どおり
+		}
+	}
+
+	/**
+	 * 入力の総バイト数から、読み込み単位のバイト数を決定することを確認
+	 */
+	@Test
+	public void test03() {
+		Assert.assertEquals(StreamBufferPool.DEFAULT_CHUNK_SIZE, StreamBufferPool.chunkSizeFor(-1L));
+		Assert.assertEquals(StreamBufferPool.MIN_CHUNK_SIZE, StreamBufferPool.chunkSizeFor(0L));
+		Assert.assertEquals(StreamBufferPool.MIN_CHUNK_SIZE,
+				StreamBufferPool.chunkSizeFor(64L * StreamBufferPool.MIN_CHUNK_SIZE));
+		Assert.assertEquals(16384, StreamBufferPool.chunkSizeFor(64L * 10000));
+		Assert.assertEquals(16384, StreamBufferPool.chunkSizeFor(64L * 16384));
+		Assert.assertEquals(StreamBufferPool.MAX_CHUNK_SIZE, StreamBufferPool.chunkSizeFor(Long.MAX_VALUE));
+	}
+
+	/**
+	 * 参照元を追加したStreamBufferは、すべての参照元が解放した時点でプールに返却し、
+	 * 返却後の解放と参照元の追加は例外となることを確認
+	 */
+	@Test
+	public void test04() {
+		StreamBufferPool pool = new StreamBufferPool();
+		StreamBuffer buffer = pool.acquire(4096);
+		Assert.assertSame(buffer, buffer.retain());
+
+		buffer.release();
+		Assert.assertNotNull(buffer.getBytes());
+		Assert.assertEquals(0L, pool.getPooledBytes());
+
+		buffer.release();
+		Assert.assertNull(buffer.getBytes());
+		Assert.assertEquals(4096L, pool.getPooledBytes());
+
+		try {
+			buffer.release();
+			Assert.fail("exception is not thrown.");
+		} catch (IllegalStateException e) {
+			// 想定どおり
+		}
+		try {
+			buffer.retain();
+			Assert.fail("exception is not thrown.");
+		} catch (IllegalStateException e) {
+			// 想定どおり
+		}
+		// 二重の解放でプールに二重に返却しない
+		Assert.assertEquals(4096L, pool.getPooledBytes());
+	}
+
+	/**
+	 * プールから取得していないStreamBufferも、二重の解放は例外となることを確認
+	 */
+	@Test
+	public void test05() {
+		byte[] bytes = new byte[10];
+		StreamBuffer buffer = new StreamBuffer(bytes, 10);
+		buffer.release();
+		Assert.assertSame(bytes, buffer.getBytes());
+		try {
+			buffer.release();
+			Assert.fail("exception is not thrown.");
+		} catch (IllegalStateException e) {
+			// 想定どおり
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package jp.gr.naoco.alacarte;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import jp.gr.naoco.alacarte.ZipDecoder;
+import jp.gr.naoco.chain.OriginalLogAdaptor;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ZipDecoderの並列解凍について、エントリ単位に解凍した内容が元のデータと一致することを確認
+ */
+public class ZipParallelDecodeTest {
+
+	private static final int DECODE_THREADS = 4;
+
+	private File workDir_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Preparations
+
+	@Before
+	public void setup() throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		workDir_ = File.createTempFile("ZipParallelDecodeTest", "");
+		workDir_.delete();
+		workDir_.mkdirs();
+	}
+
+	@After
+	public void teardown() throws Exception {
+		delete(workDir_);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Cases
+
+	/**
+	 * ネストしたディレクトリを含むアーカイブを並列解凍し、すべてのファイルが元のデータと一致することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test01() throws Exception {
+		Map<String, byte[]> expected = entries();
+		File zip = new File(workDir_, "test.zip");
+		writeZip(zip, expected);
+
+		File out = new File(workDir_, "test");
+		new ZipDecoder().decode(zip, out, DECODE_THREADS);
+
+		for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+			Assert.assertArrayEquals(entry.getKey(), entry.getValue(), read(new File(out, entry.getKey())));
+		}
+		Assert.assertTrue(new File(out, "a/b/c").isDirectory());
+	}
+
+	/**
+	 * フィルタを指定して並列解凍し、対象のエントリのみが出力されることを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test02() throws Exception {
+		Map<String, byte[]> expected = entries();
+		File zip = new File(workDir_, "test.zip");
+		writeZip(zip, expected);
+
+		File out = new File(workDir_, "test_csv");
+		new ZipDecoder().decode(zip, out, DECODE_THREADS, new ZipDecoder.EntryFilter() {
+			@Override
+			public boolean accept(ZipEntry entry) {
+				return entry.getName().endsWith(".csv");
+			}
+		});
+
+		for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+			File file = new File(out, entry.getKey());
+			if (entry.getKey().endsWith(".csv")) {
+				Assert.assertArrayEquals(entry.getKey(), entry.getValue(), read(file));
+			} else {
+				Assert.assertFalse(entry.getKey(), file.exists());
+			}
+		}
+	}
+
+	/**
+	 * 出力先ディレクトリの外を指すエントリを含むアーカイブは、IllegalStateExceptionで解凍を中断することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test03() throws Exception {
+		Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+		entries.put("../outside.txt", textBytes(100));
+		File zip = new File(workDir_, "traversal.zip");
+		writeZip(zip, entries);
+
+		File out = new File(workDir_, "traversal");
+		try {
+			new ZipDecoder().decode(zip, out, DECODE_THREADS);
+			Assert.fail("IllegalStateException is not thrown.");
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("outside of output directory"));
+		} finally {
+			clearInterrupt();
+		}
+		Assert.assertFalse(new File(workDir_, "outside.txt").exists());
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Utilities
+
+	/**
+	 * ネストしたディレクトリに、圧縮しやすいデータ、圧縮しにくいデータ、空のファイルを配置したエントリ
+	 */
+	private static Map<String, byte[]> entries() {
+		Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+		entries.put("root.csv", textBytes(64 * 1024 + 11));
+		entries.put("root.txt", textBytes(100));
+		entries.put("a/first.csv", textBytes(3000));
+		entries.put("a/random.bin", randomBytes(200 * 1024 + 3));
+		entries.put("a/b/second.csv", textBytes(10));
+		entries.put("a/b/c/empty.txt", new byte[0]);
+		entries.put("a/b/c/third.csv", randomBytes(5000));
+		return entries;
+	}
+
+	/**
+	 * ディレクトリのエントリを含めて、アーカイブを作成する。
+	 */
+	private static void writeZip(File file, Map<String, byte[]> entries) throws IOException {
+		Set<String> dirs = new HashSet<String>();
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				String name = entry.getKey();
+				for (int index = name.indexOf('/'); 0 <= index; index = name.indexOf('/', index + 1)) {
+					String dir = name.substring(0, index + 1);
+					if (!"../".equals(dir) && dirs.add(dir)) {
+						out.putNextEntry(new ZipEntry(dir));
+						out.closeEntry();
+					}
+				}
+				out.putNextEntry(new ZipEntry(name));
+				out.write(entry.getValue());
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * 異常終了時にChainが設定した割り込み状態を、他のスレッドの終了を待って解除する。
+	 */
+	private static void clearInterrupt() {
+		while (true) {
+			try {
+				Thread.sleep(200L);
+				return;
+			} catch (InterruptedException e) {
+				// 割り込み状態は解除済みのため、割り込まれなくなるまで待機し直す
+			}
+		}
+	}
+
+	private static byte[] textBytes(int length) {
+		byte[] bytes = new byte[length];
+		String line = "\"id\",\"0123456789\",\"hoge hige\"\r\n";
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) line.charAt(i % line.length());
+		}
+		return bytes;
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+
+	private static byte[] read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int length;
+			while (0 <= (length = in.read(buffer))) {
+				out.write(buffer, 0, length);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (null != children) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,195 @@
+package jp.gr.naoco.alacarte;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import jp.gr.naoco.alacarte.ZipDecoder;
+import jp.gr.naoco.alacarte.ZipEncoder;
+import jp.gr.naoco.chain.OriginalLogAdaptor;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ZipEncoderの並列圧縮について、出力が標準のZip形式として解凍でき、入力と同じ内容となることを確認
+ */
+public class ZipParallelDeflateTest {
+
+	/** 圧縮ブロックのバイト数（複数のブロックに分割されるよう、入力より小さくする） */
+	private static final int BLOCK_SIZE = 16 * 1024;
+
+	private static final int DEFLATE_THREADS = 4;
+
+	private File workDir_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Preparations
+
+	@Before
+	public void setup() throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		workDir_ = File.createTempFile("ZipParallelDeflateTest", "");
+		workDir_.delete();
+		workDir_.mkdirs();
+	}
+
+	@After
+	public void teardown() throws Exception {
+		delete(workDir_);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Cases
+
+	/**
+	 * ディレクトリを並列圧縮したアーカイブを、ZipFileとZipDecoderで解凍でき、各エントリが元のファイルと一致することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test01() throws Exception {
+		File in = new File(workDir_, "export");
+		Map<String, byte[]> expected = new HashMap<String, byte[]>();
+		// 複数ブロックに分割される圧縮しやすいデータ、圧縮しにくいデータ、1ブロック未満のデータ、空のファイル
+		expected.put("text.csv", textBytes(BLOCK_SIZE * 5 + 123));
+		expected.put("sub/random.bin", randomBytes(BLOCK_SIZE * 3 + 7));
+		expected.put("sub/small.txt", textBytes(100));
+		expected.put("empty.txt", new byte[0]);
+		for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+			write(new File(in, entry.getKey()), entry.getValue());
+		}
+
+		File out = new File(workDir_, "export.zip");
+		ZipEncoder encoder = new ZipEncoder(Deflater.DEFAULT_COMPRESSION, BLOCK_SIZE, false, DEFLATE_THREADS);
+		encoder.output(in, out);
+
+		// 標準のZipとして読み込めること
+		ZipFile zip = new ZipFile(out);
+		try {
+			Assert.assertEquals(expected.size(), zip.size());
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				byte[] bytes = expected.get(entry.getName());
+				Assert.assertNotNull(entry.getName(), bytes);
+				InputStream entryIn = zip.getInputStream(entry);
+				try {
+					Assert.assertArrayEquals(entry.getName(), bytes, read(entryIn));
+				} finally {
+					entryIn.close();
+				}
+			}
+		} finally {
+			zip.close();
+		}
+
+		// ZipDecoderで解凍できること
+		File decoded = new File(workDir_, "export_decoded");
+		new ZipDecoder().decode(out, decoded);
+		for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+			Assert.assertArrayEquals(entry.getKey(), entry.getValue(), read(new File(decoded, entry.getKey())));
+		}
+	}
+
+	/**
+	 * ストリームを並列圧縮した結果を、ZipInputStreamで解凍でき、元のデータと一致することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test02() throws Exception {
+		byte[] bytes = textBytes(BLOCK_SIZE * 8 + 1);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ZipEncoder encoder = new ZipEncoder(Deflater.BEST_SPEED, BLOCK_SIZE, false, DEFLATE_THREADS);
+		encoder.encode(new ByteArrayInputStream(bytes), out, "data.txt");
+
+		// 圧縮されていること
+		Assert.assertTrue(out.size() < bytes.length);
+
+		ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+		try {
+			ZipEntry entry = zipIn.getNextEntry();
+			Assert.assertNotNull(entry);
+			Assert.assertEquals("data.txt", entry.getName());
+			Assert.assertArrayEquals(bytes, read(zipIn));
+			Assert.assertNull(zipIn.getNextEntry());
+		} finally {
+			zipIn.close();
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Utilities
+
+	private static byte[] textBytes(int length) {
+		byte[] bytes = new byte[length];
+		String line = "\"id\",\"0123456789\",\"hoge hige\"\r\n";
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) line.charAt(i % line.length());
+		}
+		return bytes;
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+
+	private static void write(File file, byte[] bytes) throws IOException {
+		file.getParentFile().mkdirs();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static byte[] read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int length;
+		while (0 <= (length = in.read(buffer))) {
+			out.write(buffer, 0, length);
+		}
+		return out.toByteArray();
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (null != children) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,79 @@
+package jp.gr.naoco.chain;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.Chain;
+import jp.gr.naoco.chain.Consumer;
+import jp.gr.naoco.chain.ConsumerProducer;
+import jp.gr.naoco.chain.Container;
+import jp.gr.naoco.chain.Producer;
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap08 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		log.debug("***************** ring buffer execute start");
+		long start = System.currentTimeMillis();
+		Chain chain = new Chain(new SampleProducer(), 1024, ParallelQueueFactory.RING_BUFFER) //
+				.parallel(new SampleConsumerProducer()) //
+				.parallel(new SampleConsumer());
+		chain.execute();
+		log.debug("***************** ring buffer execute end " + (System.currentTimeMillis() - start) + "msec");
+		log.debug("");
+
+		log.debug("***************** blocking execute start");
+		start = System.currentTimeMillis();
+		chain = new Chain(new SampleProducer(), 1024) //
+				.parallel(new SampleConsumerProducer()) //
+				.parallel(new SampleConsumer());
+		chain.execute();
+		log.debug("***************** blocking execute end " + (System.currentTimeMillis() - start) + "msec");
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class SampleProducer implements Producer {
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(new Container<Integer>(Integer.valueOf(i)));
+			}
+		}
+	}
+
+	public static class SampleConsumerProducer extends ConsumerProducer {
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			queue.offer(new Container<Long>(Long.valueOf(((Integer) container.get()).longValue() * 2)));
+		}
+	}
+
+	public static class SampleConsumer extends Consumer {
+		private long expected_ = 0L;
+
+		@Override
+		public void execute_(Container<?> container) {
+			long value = (Long) container.get();
+			if (value != expected_) {
+				throw new IllegalStateException("unexpected value:" + value + ", expected:" + expected_);
+			}
+			expected_ += 2;
+		}
+
+		@Override
+		public void finish() {
+			log.debug("consumer count:" + (expected_ / 2));
+		}
+	}
+
+	private static final int COUNT = 1000000;
+
+	public static final Logger log = Logger.getRootLogger();
+}
@@ -0,0 +1,190 @@
+package jp.gr.naoco.chain;
+
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.Chain;
+import jp.gr.naoco.chain.Consumer;
+import jp.gr.naoco.chain.ConsumerFactory;
+import jp.gr.naoco.chain.ConsumerInterface;
+import jp.gr.naoco.chain.ConsumerProducer;
+import jp.gr.naoco.chain.ConsumerProducerFactory;
+import jp.gr.naoco.chain.ConsumerProducerInterface;
+import jp.gr.naoco.chain.Container;
+import jp.gr.naoco.chain.Producer;
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap09 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		log.debug("***************** worker pool execute start");
+		Chain chain = new Chain(new SampleProducer(), 10) //
+				.parallel(new SampleConsumerProducerFactory(), 4) //
+				.parallel(new SampleConsumer());
+		chain.execute();
+		log.debug("***************** worker pool execute end");
+		log.debug("");
+
+		log.debug("***************** ordered worker pool execute start");
+		chain = new Chain(new SampleProducer(), 10) //
+				.parallel(new SampleConsumerProducerFactory(), 4, true) //
+				.parallel(new SampleConsumer());
+		chain.execute();
+		log.debug("***************** ordered worker pool execute end");
+		log.debug("");
+
+		// ワーカーで発生した例外が、そのまま呼出し元に届く
+		// （プロデューサのoffer中に異常終了する場合と、プロデューサの終了後の待機中に異常終了する場合）
+		Producer[] producers = new Producer[] {new SampleProducer(), new SmallProducer() };
+		for (Producer producer : producers) {
+			log.debug("***************** worker pool failure execute start. " + producer.getClass().getSimpleName());
+			FailConsumerFactory factory = new FailConsumerFactory();
+			chain = new Chain(producer, 10) //
+					.parallel(factory, 4);
+			RuntimeException caught = null;
+			try {
+				chain.execute();
+			} catch (RuntimeException e) {
+				caught = e;
+				// 異常終了時にChainが設定した割り込み状態を解除する
+				Thread.interrupted();
+			}
+			if ((null == caught) || (caught != factory.error_)) {
+				throw new IllegalStateException("worker exception is not thrown to caller. caught:" + caught, caught);
+			}
+			log.debug("caught:" + caught.getMessage());
+			log.debug("***************** worker pool failure execute end. " + producer.getClass().getSimpleName());
+		}
+
+		// parallel接続のConsumerProducerで発生した例外も、プールのスレッドで実行した場合にそのまま呼出し元に届く
+		log.debug("***************** pooled parallel failure execute start");
+		FailConsumerProducer failConsumerProducer = new FailConsumerProducer();
+		chain = new Chain(new SampleProducer(), 10, ParallelQueueFactory.BLOCKING, ChainExecutor.pool(4)) //
+				.parallel(failConsumerProducer) //
+				.parallel(new SampleConsumer());
+		RuntimeException caught = null;
+		try {
+			chain.execute();
+		} catch (RuntimeException e) {
+			caught = e;
+			Thread.interrupted();
+		}
+		if ((null == caught) || (caught != failConsumerProducer.error_)) {
+			throw new IllegalStateException("consumerProducer exception is not thrown to caller. caught:" + caught,
+					caught);
+		}
+		log.debug("caught:" + caught.getMessage());
+		log.debug("***************** pooled parallel failure execute end");
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class SampleProducer implements Producer {
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < 30; i++) {
+				log.debug("producer[" + i + "]");
+				queue.offer(new Container<Integer>(Integer.valueOf(i)));
+			}
+		}
+	}
+
+	/**
+	 * キューに収まる数だけofferし、ワーカーの異常終了より先に終了する
+	 */
+	public static class SmallProducer implements Producer {
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i <= SMALL_FAIL_AT; i++) {
+				queue.offer(new Container<Integer>(Integer.valueOf(i)));
+			}
+		}
+	}
+
+	public static class SampleConsumerProducerFactory implements ConsumerProducerFactory {
+
+		@Override
+		public ConsumerProducerInterface newInstance() {
+			return new SampleConsumerProducer();
+		}
+	}
+
+	public static class SampleConsumerProducer extends ConsumerProducer {
+		private Random random = new Random();
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			log.debug("consumerProducer:" + container.get());
+			try {
+				Thread.sleep((long) (random.nextDouble() * 100));
+			} catch (InterruptedException e) {
+
+			}
+			queue.offer(container);
+		}
+	}
+
+	public static class FailConsumerFactory implements ConsumerFactory {
+		private volatile RuntimeException error_ = null;
+
+		@Override
+		public ConsumerInterface newInstance() {
+			return new Consumer() {
+				@Override
+				public void execute_(Container<?> container) {
+					int value = (Integer) container.get();
+					if ((FAIL_AT == value) || (SMALL_FAIL_AT == value)) {
+						if (SMALL_FAIL_AT == value) {
+							sleep(100L);
+						}
+						error_ = new IllegalStateException("fail at " + value);
+						throw error_;
+					}
+				}
+			};
+		}
+	}
+
+	public static class FailConsumerProducer extends ConsumerProducer {
+		private volatile RuntimeException error_ = null;
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			if (FAIL_AT == (Integer) container.get()) {
+				error_ = new IllegalStateException("fail at " + FAIL_AT);
+				throw error_;
+			}
+			queue.offer(container);
+		}
+	}
+
+	public static class SampleConsumer extends Consumer {
+
+		@Override
+		public void execute_(Container<?> container) {
+			log.debug("consumer:" + container.get());
+		}
+	}
+
+	private static final int FAIL_AT = 15;
+
+	private static final int SMALL_FAIL_AT = 5;
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static final Logger log = Logger.getRootLogger();
+}
@@ -0,0 +1,86 @@
+package jp.gr.naoco.chain;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.metrics.ChainMetrics;
+import jp.gr.naoco.chain.metrics.StageMetrics;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap10 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		ChainMetrics metrics = new ChainMetrics();
+		metrics.register("jp.gr.naoco.chain:type=ChainMetrics,name=SampleBootstrap10");
+
+		log.debug("***************** metrics execute start");
+		Chain chain = new Chain(new SampleProducer(), 100).metrics(metrics) //
+				.parallel(new SlowConsumerProducer()) //
+				.direct(new SampleConsumerProducer()) //
+				.sequential(new SampleConsumer());
+		chain.execute();
+		log.debug("***************** metrics execute end");
+
+		for (StageMetrics.Snapshot snapshot : metrics.snapshot()) {
+			log.debug(snapshot.toString());
+		}
+		metrics.unregister("jp.gr.naoco.chain:type=ChainMetrics,name=SampleBootstrap10");
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class SampleProducer implements Producer {
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(new Container<Integer>(Integer.valueOf(i)));
+			}
+		}
+	}
+
+	public static class SlowConsumerProducer extends ConsumerProducer {
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			// キューの滞留とProducerの待機を発生させる
+			if (0 == ((Integer) container.get()) % 100) {
+				try {
+					Thread.sleep(1L);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			queue.offer(container);
+		}
+	}
+
+	public static class SampleConsumerProducer extends ConsumerProducer {
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			queue.offer(new Container<Long>(Long.valueOf(((Integer) container.get()).longValue() * 2)));
+		}
+	}
+
+	public static class SampleConsumer extends Consumer {
+		private long count_ = 0L;
+
+		@Override
+		public void execute_(Container<?> container) {
+			count_++;
+		}
+
+		@Override
+		public void finish() {
+			log.debug("consumer count:" + count_);
+		}
+	}
+
+	private static final int COUNT = 100000;
+
+	public static final Logger log = Logger.getRootLogger();
+}
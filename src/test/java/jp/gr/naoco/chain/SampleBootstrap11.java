@@ -0,0 +1,202 @@
+package jp.gr.naoco.chain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.fork.ForkColumnChain;
+import jp.gr.naoco.chain.fork.ForkLegChain;
+import jp.gr.naoco.chain.fork.ForkPolicy;
+import jp.gr.naoco.chain.fork.ForkPolicy.Routing;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap11 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			execute("thread broadcast", ForkPolicy.DEFAULT, 50000, 33334, 100000);
+			execute("fork/join broadcast", new ForkPolicy(1000, Routing.BROADCAST, pool), 50000, 33334, 100000);
+			// 偶数は1番目、偶数以外の3の倍数は2番目、残りは3番目のレッグに渡る
+			execute("fork/join partition", new ForkPolicy(1000, Routing.PARTITION, pool), 50000, 16667, 33333);
+			executeBlocked(pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void execute(String name, ForkPolicy policy, long... expected) {
+		log.debug("***************** " + name + " execute start");
+		List<ForkLegChain> legList = new ArrayList<ForkLegChain>();
+		List<CountConsumer> consumerList = new ArrayList<CountConsumer>();
+		int[] divisors = {2, 3, 1 };
+		for (int i = 0; i < divisors.length; i++) {
+			CountConsumer consumer = new CountConsumer(0 == i);
+			ForkLegChain leg = new ForkLegChain(new ModFilter(divisors[i]));
+			leg.direct(consumer);
+			legList.add(leg);
+			consumerList.add(consumer);
+		}
+		ForkColumnChain column = new ForkColumnChain(new SampleProducer(), 100, policy);
+		column.connectLegs(legList);
+		column.execute();
+		for (int i = 0; i < consumerList.size(); i++) {
+			long count = consumerList.get(i).count_.get();
+			log.debug("leg" + i + " count:" + count);
+			if (expected[i] != count) {
+				throw new IllegalStateException("leg" + i + " count is " + count + ", expected " + expected[i]);
+			}
+		}
+		log.debug("***************** " + name + " execute end");
+	}
+
+	/**
+	 * プールのスレッド数と同じ数の遅いレッグが次の要素のキューで待機しても、速いレッグの処理が進むことを確認する。
+	 */
+	private static void executeBlocked(ForkJoinPool pool) {
+		log.debug("***************** fork/join blocked execute start");
+		List<ForkLegChain> legList = new ArrayList<ForkLegChain>();
+		List<SlowConsumer> slowList = new ArrayList<SlowConsumer>();
+		for (int i = 0; i < pool.getParallelism(); i++) {
+			SlowConsumer slow = new SlowConsumer();
+			// 遅いレッグは小さいキューのparallel接続で、レッグのタスクがofferで待機する
+			ForkLegChain leg = new ForkLegChain(new ModFilter(SLOW_DIVISOR), 10);
+			leg.parallel(slow);
+			legList.add(leg);
+			slowList.add(slow);
+		}
+		FastConsumer fast = new FastConsumer(slowList);
+		ForkLegChain fastLeg = new ForkLegChain(new ModFilter(1));
+		fastLeg.direct(fast);
+		legList.add(fastLeg);
+
+		ForkColumnChain column = new ForkColumnChain(new SampleProducer(), 100, new ForkPolicy(COUNT / SLOW_DIVISOR,
+				Routing.BROADCAST, pool));
+		column.connectLegs(legList);
+		column.execute();
+
+		log.debug("fast leg count:" + fast.count_ + " slow count at fast leg end:" + fast.slowCountAtEnd_);
+		if (COUNT != fast.count_) {
+			throw new IllegalStateException("fast leg count is " + fast.count_);
+		}
+		long slowTotal = (long) pool.getParallelism() * (COUNT / SLOW_DIVISOR);
+		// 遅いレッグの処理を待たずに、速いレッグの処理が終わること
+		if ((slowTotal / 2) <= fast.slowCountAtEnd_) {
+			throw new IllegalStateException("fast leg is stalled by slow legs.");
+		}
+		for (SlowConsumer slow : slowList) {
+			if ((COUNT / SLOW_DIVISOR) != slow.count_.get()) {
+				throw new IllegalStateException("slow leg count is " + slow.count_.get());
+			}
+		}
+		log.debug("***************** fork/join blocked execute end");
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class SampleProducer implements Producer {
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(new Container<Integer>(Integer.valueOf(i)));
+			}
+		}
+	}
+
+	public static class ModFilter implements ConsumerFilter {
+		private final int divisor_;
+
+		public ModFilter(int divisor) {
+			divisor_ = divisor;
+		}
+
+		@Override
+		public boolean accept(Container<?> container) {
+			return (0 == ((Integer) container.get()) % divisor_);
+		}
+	}
+
+	public static class CountConsumer extends Consumer {
+		private final AtomicLong count_ = new AtomicLong(0L);
+
+		private final boolean slow_;
+
+		private int last_ = -1;
+
+		public CountConsumer(boolean slow) {
+			slow_ = slow;
+		}
+
+		@Override
+		public void execute_(Container<?> container) {
+			// レッグ内の順序が保たれていることを確認する
+			int value = (Integer) container.get();
+			if (value <= last_) {
+				throw new IllegalStateException("order is broken. last:" + last_ + " value:" + value);
+			}
+			last_ = value;
+
+			// 遅いレッグ
+			if (slow_ && (0 == value % 1000)) {
+				try {
+					Thread.sleep(1L);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			count_.incrementAndGet();
+		}
+	}
+
+	public static class SlowConsumer extends Consumer {
+		private final AtomicLong count_ = new AtomicLong(0L);
+
+		@Override
+		public void execute_(Container<?> container) {
+			try {
+				Thread.sleep(1L);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			count_.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 全件を処理した時点の、遅いレッグの処理件数を記録する
+	 */
+	public static class FastConsumer extends Consumer {
+		private final List<SlowConsumer> slowList_;
+
+		private long count_ = 0L;
+
+		private long slowCountAtEnd_ = 0L;
+
+		public FastConsumer(List<SlowConsumer> slowList) {
+			slowList_ = slowList;
+		}
+
+		@Override
+		public void execute_(Container<?> container) {
+			if (COUNT == ++count_) {
+				for (SlowConsumer slow : slowList_) {
+					slowCountAtEnd_ += slow.count_.get();
+				}
+			}
+		}
+	}
+
+	private static final int COUNT = 100000;
+
+	private static final int SLOW_DIVISOR = 100;
+
+	public static final Logger log = Logger.getRootLogger();
+}
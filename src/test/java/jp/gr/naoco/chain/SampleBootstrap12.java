@@ -0,0 +1,135 @@
+package jp.gr.naoco.chain;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap12 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		log.debug("***************** partitioned consumer execute start");
+		new Chain(new SampleProducer(), 100) //
+				.partitioned(new CustomerKeyExtractor(), 4, new ConsumerFactory() {
+					@Override
+					public ConsumerInterface newInstance() {
+						return new OrderCheckConsumer();
+					}
+				}).execute();
+		check();
+		log.debug("***************** partitioned consumer execute end");
+
+		log.debug("***************** partitioned consumerProducer execute start");
+		Chain chain = new Chain(new SampleProducer(), 100);
+		chain.partitioned(new CustomerKeyExtractor(), 4, new ConsumerProducerFactory() {
+			@Override
+			public ConsumerProducerInterface newInstance() {
+				return new SlowConsumerProducer();
+			}
+		}).sequential(new OrderCheckConsumer());
+		chain.execute();
+		check();
+		log.debug("***************** partitioned consumerProducer execute end");
+	}
+
+	private static void check() {
+		if (COUNT != COUNTER.get()) {
+			throw new IllegalStateException("count is " + COUNTER.get() + ", expected " + COUNT);
+		}
+		log.debug("count:" + COUNTER.get() + " keys:" + THREAD_OF_KEY.size());
+		COUNTER.set(0L);
+		THREAD_OF_KEY.clear();
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	/**
+	 * 顧客IDとその顧客内の連番
+	 */
+	public static class Record {
+		private final int customerId_;
+
+		private final int sequence_;
+
+		public Record(int customerId, int sequence) {
+			customerId_ = customerId;
+			sequence_ = sequence;
+		}
+	}
+
+	public static class SampleProducer implements Producer {
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(new Container<Record>(new Record(i % CUSTOMERS, i / CUSTOMERS)));
+			}
+		}
+	}
+
+	public static class CustomerKeyExtractor implements KeyExtractor {
+
+		@Override
+		public Object key(Container<?> container) {
+			return ((Record) container.get()).customerId_;
+		}
+	}
+
+	public static class SlowConsumerProducer extends ConsumerProducer {
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			// パーティションごとに処理時間をばらつかせる
+			if (0 == ((Record) container.get()).sequence_ % 100) {
+				try {
+					Thread.sleep(1L);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			queue.offer(container);
+		}
+	}
+
+	public static class OrderCheckConsumer extends Consumer {
+		private final Map<Integer, Integer> lastSequence_ = new HashMap<Integer, Integer>();
+
+		@Override
+		public void execute_(Container<?> container) {
+			Record record = (Record) container.get();
+			Integer last = lastSequence_.get(record.customerId_);
+			if ((null != last) && (record.sequence_ != last + 1)) {
+				throw new IllegalStateException("order is broken. customer:" + record.customerId_ + " last:" + last
+						+ " sequence:" + record.sequence_);
+			}
+			lastSequence_.put(record.customerId_, record.sequence_);
+
+			// 同じ顧客は同じスレッドで処理されていることを確認する
+			String thread = Thread.currentThread().getName();
+			String previous = THREAD_OF_KEY.putIfAbsent(record.customerId_, thread);
+			if ((null != previous) && !previous.equals(thread)) {
+				throw new IllegalStateException("customer:" + record.customerId_ + " is processed by " + previous
+						+ " and " + thread);
+			}
+			COUNTER.incrementAndGet();
+		}
+	}
+
+	private static final int COUNT = 100000;
+
+	private static final int CUSTOMERS = 37;
+
+	private static final AtomicLong COUNTER = new AtomicLong(0L);
+
+	private static final ConcurrentHashMap<Integer, String> THREAD_OF_KEY = new ConcurrentHashMap<Integer, String>();
+
+	public static final Logger log = Logger.getRootLogger();
+}
@@ -0,0 +1,132 @@
+package jp.gr.naoco.chain;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap13 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		// direct接続のみのため、1つのLongContainerを使い回す
+		log.debug("***************** long execute start");
+		SumConsumer sum = new SumConsumer();
+		new Chain(new RangeProducer()).direct(sum).execute();
+		check("long", (long) COUNT * (COUNT - 1) / 2, sum.sum_);
+		log.debug("***************** long execute end");
+
+		// 型を宣言した要素同士の接続は、Containerごとの型の検査を省略する
+		log.debug("***************** typed execute start");
+		LengthSumConsumer lengthSum = new LengthSumConsumer();
+		Chain chain = new Chain(new StringProducer(), 100);
+		chain.parallel(new LengthConsumerProducer()).sequential(lengthSum);
+		chain.execute();
+		check("typed", expectedLengthSum(), lengthSum.sum_);
+		log.debug("***************** typed execute end");
+
+		// 型を宣言しない要素からは、デフォルトフィルタで型の異なるContainerを除外する
+		log.debug("***************** mixed execute start");
+		LengthSumConsumer mixedSum = new LengthSumConsumer();
+		new Chain(new MixedProducer()).direct(mixedSum).execute();
+		check("mixed", (long) COUNT * (COUNT - 1) / 2, mixedSum.sum_);
+		log.debug("***************** mixed execute end");
+	}
+
+	private static void check(String name, long expected, long actual) {
+		log.debug(name + " sum:" + actual);
+		if (expected != actual) {
+			throw new IllegalStateException(name + " sum is " + actual + ", expected " + expected);
+		}
+	}
+
+	private static long expectedLengthSum() {
+		long sum = 0L;
+		for (int i = 0; i < COUNT; i++) {
+			sum += String.valueOf(i).length();
+		}
+		return sum;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class RangeProducer extends TypedProducer<Long> {
+
+		public RangeProducer() {
+			super(Long.class);
+		}
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			LongContainer container = new LongContainer();
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(container.set(i));
+			}
+		}
+	}
+
+	public static class SumConsumer extends LongConsumer {
+		private long sum_ = 0L;
+
+		@Override
+		public void consume(long value) {
+			sum_ += value;
+		}
+	}
+
+	public static class StringProducer extends TypedProducer<String> {
+
+		public StringProducer() {
+			super(String.class);
+		}
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(new Container<String>(String.valueOf(i)));
+			}
+		}
+	}
+
+	public static class LengthConsumerProducer extends TypedConsumerProducer<String, Integer> {
+
+		public LengthConsumerProducer() {
+			super(String.class, Integer.class);
+		}
+
+		@Override
+		public void process(String value, ProducerQueue queue) {
+			queue.offer(new Container<Integer>(value.length()));
+		}
+	}
+
+	public static class LengthSumConsumer extends TypedConsumer<Integer> {
+		private long sum_ = 0L;
+
+		public LengthSumConsumer() {
+			super(Integer.class);
+		}
+
+		@Override
+		public void consume(Integer value) {
+			sum_ += value;
+		}
+	}
+
+	public static class MixedProducer implements Producer {
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(new Container<Integer>(i));
+				queue.offer(new Container<String>("skip"));
+			}
+		}
+	}
+
+	private static final int COUNT = 100000;
+
+	public static final Logger log = Logger.getRootLogger();
+}
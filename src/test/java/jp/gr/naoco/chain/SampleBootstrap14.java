@@ -0,0 +1,241 @@
+package jp.gr.naoco.chain;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.flow.ChainPublisher;
+import jp.gr.naoco.chain.flow.ChainSubscriber;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap14 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		log.debug("***************** flow execute start");
+		// Publisher => ChainSubscriber => ConsumerProducer => ChainPublisher => Subscriber
+		ChainSubscriber<Integer> chainSubscriber = new ChainSubscriber<Integer>(64);
+		ChainPublisher<Long> chainPublisher = new ChainPublisher<Long>();
+		Chain chain = new Chain(chainSubscriber);
+		chain.direct(new DoubleConsumerProducer()).direct(chainPublisher);
+
+		SumSubscriber sumSubscriber = new SumSubscriber(16);
+		chainPublisher.subscribe(sumSubscriber);
+		chain.executeWithoutJoin();
+
+		SubmissionPublisher<Integer> publisher = new SubmissionPublisher<Integer>();
+		publisher.subscribe(chainSubscriber);
+		for (int i = 0; i < COUNT; i++) {
+			publisher.submit(i);
+		}
+		publisher.close();
+		chain.join();
+
+		if (!sumSubscriber.completed_.await(1, TimeUnit.MINUTES)) {
+			throw new IllegalStateException("onComplete is not called.");
+		}
+		long expected = (long) COUNT * (COUNT - 1);
+		log.debug("sum:" + sumSubscriber.sum_ + " max requested:" + sumSubscriber.maxOutstanding_);
+		if (COUNT != sumSubscriber.countAtComplete_) {
+			throw new IllegalStateException("onComplete is called before all onNext. " + sumSubscriber.countAtComplete_);
+		}
+		if (expected != sumSubscriber.sum_) {
+			throw new IllegalStateException("sum is " + sumSubscriber.sum_ + ", expected " + expected);
+		}
+		if (16 < sumSubscriber.maxOutstanding_) {
+			throw new IllegalStateException("onNext is called over request. " + sumSubscriber.maxOutstanding_);
+		}
+		log.debug("***************** flow execute end");
+		log.debug("");
+
+		log.debug("***************** flow parallel execute start");
+		// Publisher => ChainSubscriber => (parallel) Consumer
+		// Consumerのスレッドが取り出した数だけ要求するため、キューに滞留する要素数は要求数を超えない
+		SumConsumer sumConsumer = new SumConsumer();
+		CountingSubscriber countingSubscriber = new CountingSubscriber(64, sumConsumer);
+		chain = new Chain(countingSubscriber);
+		chain.parallel(sumConsumer);
+		chain.executeWithoutJoin();
+
+		publisher = new SubmissionPublisher<Integer>();
+		publisher.subscribe(countingSubscriber);
+		for (int i = 0; i < COUNT; i++) {
+			publisher.submit(i);
+		}
+		publisher.close();
+		chain.join();
+
+		expected = (long) COUNT * (COUNT - 1) / 2;
+		log.debug("sum:" + sumConsumer.sum_.get() + " max pending:" + countingSubscriber.maxPending_);
+		if (expected != sumConsumer.sum_.get()) {
+			throw new IllegalStateException("sum is " + sumConsumer.sum_.get() + ", expected " + expected);
+		}
+		if (64 < countingSubscriber.maxPending_) {
+			throw new IllegalStateException("onNext is called over request. " + countingSubscriber.maxPending_);
+		}
+		log.debug("***************** flow parallel execute end");
+		log.debug("");
+
+		log.debug("***************** flow late subscribe start");
+		// 要素がないまま正常終了したChainに、後から登録したSubscriberにもonCompleteを通知する
+		ChainPublisher<Integer> latePublisher = new ChainPublisher<Integer>();
+		chain = new Chain(new CountProducer(0));
+		chain.sequential(latePublisher);
+		chain.execute();
+		SumSubscriber lateSubscriber = new SumSubscriber(16);
+		latePublisher.subscribe(lateSubscriber);
+		if (!lateSubscriber.completed_.await(1, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("onComplete is not called for late subscriber.");
+		}
+
+		// 登録より前に異常終了したChainは、後から登録したSubscriberにonErrorを通知する
+		latePublisher = new ChainPublisher<Integer>();
+		chain = new Chain(new CountProducer(10));
+		chain.sequential(latePublisher, new ConsumerFilter() {
+			@Override
+			public boolean accept(Container<?> container) {
+				throw new IllegalStateException("filter failed.");
+			}
+		});
+		try {
+			chain.execute();
+			throw new IllegalStateException("chain is not failed.");
+		} catch (RuntimeException e) {
+			log.debug("chain failed as expected. " + e.getMessage());
+		}
+		lateSubscriber = new SumSubscriber(16);
+		latePublisher.subscribe(lateSubscriber);
+		if (!(lateSubscriber.error_ instanceof IllegalStateException)) {
+			throw new IllegalStateException("onError is not called for late subscriber. " + lateSubscriber.error_);
+		}
+		log.debug("***************** flow late subscribe end");
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class CountProducer implements Producer {
+		private final int count_;
+
+		public CountProducer(int count) {
+			count_ = count;
+		}
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < count_; i++) {
+				queue.offer(new Container<Integer>(Integer.valueOf(i)));
+			}
+		}
+	}
+
+	public static class DoubleConsumerProducer extends ConsumerProducer {
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			queue.offer(new Container<Long>(((Integer) container.get()).longValue() * 2));
+		}
+	}
+
+	public static class SumConsumer extends Consumer {
+		private final AtomicLong count_ = new AtomicLong(0L);
+
+		private final AtomicLong sum_ = new AtomicLong(0L);
+
+		@Override
+		public void execute_(Container<?> container) {
+			sum_.addAndGet(((Integer) container.get()).longValue());
+			count_.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 受け取った数とConsumerが処理した数の差の最大値を記録するChainSubscriber
+	 */
+	public static class CountingSubscriber extends ChainSubscriber<Integer> {
+		private final SumConsumer consumer_;
+
+		private long received_ = 0L;
+
+		private long maxPending_ = 0L;
+
+		public CountingSubscriber(int batch, SumConsumer consumer) {
+			super(batch);
+			consumer_ = consumer;
+		}
+
+		@Override
+		public void onNext(Integer item) {
+			// Consumerが処理中の1件を含めて数える
+			maxPending_ = Math.max(maxPending_, ++received_ - consumer_.count_.get() - 1);
+			super.onNext(item);
+		}
+	}
+
+	/**
+	 * batch個ずつ要求して、受け取った値を合計するSubscriber
+	 */
+	public static class SumSubscriber implements Flow.Subscriber<Number> {
+		private final int batch_;
+
+		private Flow.Subscription subscription_;
+
+		private int outstanding_ = 0;
+
+		private int maxOutstanding_ = 0;
+
+		private long sum_ = 0L;
+
+		private int count_ = 0;
+
+		private volatile int countAtComplete_ = -1;
+
+		private final CountDownLatch completed_ = new CountDownLatch(1);
+
+		private volatile Throwable error_ = null;
+
+		public SumSubscriber(int batch) {
+			batch_ = batch;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			subscription_ = subscription;
+			outstanding_ = batch_;
+			subscription.request(batch_);
+		}
+
+		@Override
+		public void onNext(Number item) {
+			maxOutstanding_ = Math.max(maxOutstanding_, batch_ - outstanding_ + 1);
+			sum_ += item.longValue();
+			count_++;
+			if (0 == --outstanding_) {
+				outstanding_ = batch_;
+				subscription_.request(batch_);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			log.error(throwable.getMessage(), throwable);
+			error_ = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+			countAtComplete_ = count_;
+			completed_.countDown();
+		}
+	}
+
+	private static final int COUNT = 100000;
+
+	public static final Logger log = Logger.getRootLogger();
+}
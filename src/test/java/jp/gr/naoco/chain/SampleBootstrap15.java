@@ -0,0 +1,137 @@
+package jp.gr.naoco.chain;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.queue.AdaptiveProducerQueue;
+import jp.gr.naoco.chain.queue.ContainerSizeEstimator;
+import jp.gr.naoco.chain.queue.InterruptibleProducerQueue;
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap15 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		// Consumerが遅い場合は、目標時間に処理できる要素数までキューを縮める
+		log.debug("***************** adaptive execute start");
+		CapturingFactory adaptive = new CapturingFactory(ParallelQueueFactory.adaptive(10, 20));
+		SlowConsumer slow = new SlowConsumer(adaptive, Long.MAX_VALUE);
+		new Chain(new CountProducer(), 1000, adaptive).parallel(slow).execute();
+		log.debug("capacity:" + adaptive.queue_.getCapacity() + " max size:" + slow.maxSize_);
+		if ((long) COUNT * (COUNT - 1) / 2 != slow.sum_) {
+			throw new IllegalStateException("adaptive sum is " + slow.sum_);
+		}
+		if (1000 <= adaptive.queue_.getCapacity()) {
+			throw new IllegalStateException("capacity is not adjusted. " + adaptive.queue_.getCapacity());
+		}
+		log.debug("***************** adaptive execute end");
+
+		// 要素数ではなく、見積もったバイト数の合計で制限する
+		log.debug("***************** memory budget execute start");
+		CapturingFactory budget = new CapturingFactory(
+				ParallelQueueFactory.memoryBudget(MAX_BYTES, ContainerSizeEstimator.DEFAULT));
+		SlowConsumer bytesConsumer = new SlowConsumer(budget, MAX_BYTES);
+		new Chain(new BytesProducer(), 1000, budget).parallel(bytesConsumer).execute();
+		log.debug("max queued bytes:" + bytesConsumer.maxBytes_ + " max size:" + bytesConsumer.maxSize_);
+		if ((long) BYTES_COUNT * BYTES_LENGTH != bytesConsumer.sum_) {
+			throw new IllegalStateException("memory budget sum is " + bytesConsumer.sum_);
+		}
+		log.debug("***************** memory budget execute end");
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	/**
+	 * 生成したキューを保持するファクトリ
+	 */
+	public static class CapturingFactory extends ParallelQueueFactory {
+		private final ParallelQueueFactory factory_;
+
+		private volatile AdaptiveProducerQueue queue_;
+
+		public CapturingFactory(ParallelQueueFactory factory) {
+			factory_ = factory;
+		}
+
+		@Override
+		public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes) {
+			queue_ = (AdaptiveProducerQueue) factory_.create(maxQueueSize, waitTimeMinutes);
+			return queue_;
+		}
+	}
+
+	public static class CountProducer implements Producer {
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(new Container<Integer>(i));
+			}
+		}
+	}
+
+	public static class BytesProducer implements Producer {
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < BYTES_COUNT; i++) {
+				queue.offer(new Container<byte[]>(new byte[BYTES_LENGTH]));
+			}
+		}
+	}
+
+	public static class SlowConsumer extends Consumer {
+		private final CapturingFactory factory_;
+
+		private final long limitBytes_;
+
+		private long sum_ = 0L;
+
+		private int count_ = 0;
+
+		private int maxSize_ = 0;
+
+		private long maxBytes_ = 0L;
+
+		public SlowConsumer(CapturingFactory factory, long maxBytes) {
+			factory_ = factory;
+			limitBytes_ = maxBytes;
+		}
+
+		@Override
+		public void execute_(Container<?> container) {
+			AdaptiveProducerQueue queue = factory_.queue_;
+			maxSize_ = Math.max(maxSize_, queue.size());
+			maxBytes_ = Math.max(maxBytes_, queue.getQueuedBytes());
+			if (limitBytes_ < queue.getQueuedBytes()) {
+				throw new IllegalStateException("queued bytes over budget. " + queue.getQueuedBytes());
+			}
+			Object value = container.get();
+			if (value instanceof byte[]) {
+				sum_ += ((byte[]) value).length;
+			} else {
+				sum_ += (Integer) value;
+			}
+			if (0 == (++count_ % 10)) {
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+
+				}
+			}
+		}
+	}
+
+	private static final int COUNT = 20000;
+
+	private static final int BYTES_COUNT = 500;
+
+	private static final int BYTES_LENGTH = 64 * 1024;
+
+	private static final long MAX_BYTES = 1024 * 1024;
+
+	public static final Logger log = Logger.getRootLogger();
+}
@@ -0,0 +1,89 @@
+package jp.gr.naoco.chain;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.queue.InterruptibleProducerQueue;
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.chain.queue.SpillableProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap16 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		// メモリの上限を超えた要素はファイルに退避し、Producerは待機せずに終了する
+		log.debug("***************** spill execute start");
+		final SpillableProducerQueue[] queue = new SpillableProducerQueue[1];
+		ParallelQueueFactory factory = new ParallelQueueFactory() {
+			@Override
+			public InterruptibleProducerQueue create(int maxQueueSize, long waitTimeMinutes) {
+				queue[0] = (SpillableProducerQueue) ParallelQueueFactory.spillable(MEMORY_BYTES, null, null)
+						.create(maxQueueSize, waitTimeMinutes);
+				return queue[0];
+			}
+		};
+		BurstProducer producer = new BurstProducer();
+		OrderConsumer consumer = new OrderConsumer();
+		new Chain(producer, 10, factory).parallel(consumer).execute();
+
+		log.debug("spilled count:" + queue[0].getSpilledCount() + " bytes:" + queue[0].getSpilledBytes());
+		if (COUNT != consumer.count_) {
+			throw new IllegalStateException("consumed count is " + consumer.count_);
+		}
+		if (0 == queue[0].getSpilledCount()) {
+			throw new IllegalStateException("no container is spilled.");
+		}
+		if (consumer.endTime_ <= producer.endTime_) {
+			throw new IllegalStateException("producer is blocked by consumer.");
+		}
+		log.debug("***************** spill execute end");
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class BurstProducer implements Producer {
+		private volatile long endTime_;
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(new Container<String>(VALUE_PREFIX + i));
+			}
+			endTime_ = System.nanoTime();
+		}
+	}
+
+	public static class OrderConsumer extends Consumer {
+		private int count_ = 0;
+
+		private volatile long endTime_;
+
+		@Override
+		public void execute_(Container<?> container) {
+			String expected = VALUE_PREFIX + count_;
+			if (!expected.equals(container.get())) {
+				throw new IllegalStateException("order is broken. expected:" + expected + " actual:" + container.get());
+			}
+			count_++;
+			if (0 == (count_ % 1000)) {
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+
+				}
+			}
+			endTime_ = System.nanoTime();
+		}
+	}
+
+	private static final int COUNT = 50000;
+
+	private static final long MEMORY_BYTES = 64 * 1024;
+
+	private static final String VALUE_PREFIX = "spill-value-";
+
+	public static final Logger log = Logger.getRootLogger();
+}
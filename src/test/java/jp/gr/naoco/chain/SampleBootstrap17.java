@@ -0,0 +1,249 @@
+package jp.gr.naoco.chain;
+
+import java.io.File;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.queue.BackpressurePolicy;
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap17 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		File file = new File(System.getProperty("java.io.tmpdir"), "SampleBootstrap17.checkpoint");
+		file.delete();
+
+		// 1回目は途中で異常終了し、処理を完了した位置をチェックポイントに記録する
+		log.debug("***************** checkpoint execute start");
+		Checkpoint checkpoint = new Checkpoint(file, 100);
+		AckConsumer first = new AckConsumer(checkpoint, FAIL_AT);
+		boolean failed = false;
+		try {
+			new Chain(new RangeProducer(), 100).parallel(new DoubleConsumerProducer()).parallel(first)
+					.execute(checkpoint);
+		} catch (RuntimeException e) {
+			log.debug("chain failed. " + e.getMessage());
+			failed = true;
+			// 異常終了時にChainが設定した割り込み状態を解除する
+			Thread.interrupted();
+		}
+		if (!failed) {
+			throw new IllegalStateException("chain is not failed.");
+		}
+		long position = new Checkpoint(file).getPosition();
+		log.debug("checkpoint position:" + position);
+		if (position != FAIL_AT) {
+			throw new IllegalStateException("checkpoint position is " + position + ", expected " + FAIL_AT);
+		}
+		log.debug("***************** checkpoint execute end");
+
+		// 2回目はチェックポイントから再開し、処理済みの要素は再実行しない
+		log.debug("***************** resume execute start");
+		Checkpoint resume = new Checkpoint(file, 100);
+		AckConsumer second = new AckConsumer(resume, -1);
+		new Chain(new RangeProducer(), 100).parallel(new DoubleConsumerProducer()).parallel(second).execute(resume);
+		if ((COUNT - FAIL_AT) != second.count_) {
+			throw new IllegalStateException("resumed count is " + second.count_);
+		}
+		long expected = (long) COUNT * (COUNT - 1) - (long) FAIL_AT * (FAIL_AT - 1);
+		if (expected != second.sum_) {
+			throw new IllegalStateException("resumed sum is " + second.sum_ + ", expected " + expected);
+		}
+		if (file.exists()) {
+			throw new IllegalStateException("checkpoint file is not deleted.");
+		}
+		log.debug("***************** resume execute end");
+		log.debug("");
+
+		// 1つの入力から複数のContainerをofferした場合、すべての通知を受けるまで入力の処理を完了としない
+		log.debug("***************** split checkpoint execute start");
+		checkpoint = new Checkpoint(file, 100);
+		first = new AckConsumer(checkpoint, -1, (2L * FAIL_AT) + 1);
+		failed = false;
+		try {
+			new Chain(new RangeProducer(), 100).parallel(new SplitConsumerProducer()).parallel(first)
+					.execute(checkpoint);
+		} catch (RuntimeException e) {
+			log.debug("chain failed. " + e.getMessage());
+			failed = true;
+			clearInterrupt();
+		}
+		if (!failed) {
+			throw new IllegalStateException("chain is not failed.");
+		}
+		position = new Checkpoint(file).getPosition();
+		log.debug("checkpoint position:" + position);
+		if (position != FAIL_AT) {
+			throw new IllegalStateException("checkpoint position is " + position + ", expected " + FAIL_AT);
+		}
+
+		// 失敗したContainerと同じ入力からofferしたContainerも、再開時に再実行する
+		resume = new Checkpoint(file, 100);
+		second = new AckConsumer(resume, -1);
+		new Chain(new RangeProducer(), 100).parallel(new SplitConsumerProducer()).parallel(second).execute(resume);
+		if ((2 * (COUNT - FAIL_AT)) != second.count_) {
+			throw new IllegalStateException("resumed count is " + second.count_);
+		}
+		if (file.exists()) {
+			throw new IllegalStateException("checkpoint file is not deleted.");
+		}
+		log.debug("***************** split checkpoint execute end");
+		log.debug("");
+
+		// Factoryで生成したプロキシのConsumerも、フィルタで処理対象外としたContainerを通知する
+		log.debug("***************** proxy checkpoint execute start");
+		checkpoint = new Checkpoint(file, 100);
+		new Chain(new RangeProducer(), 100).parallel(Factory.consumer(NeverConsumer.class),
+				ConsumerFilter.ALL_SKIP_FILTER).execute(checkpoint);
+		if (file.exists()) {
+			throw new IllegalStateException("checkpoint file is not deleted. position:" + checkpoint.getPosition());
+		}
+		log.debug("***************** proxy checkpoint execute end");
+		log.debug("");
+
+		// DROP_OLDESTで破棄したContainerも、キューから通知する
+		log.debug("***************** drop oldest checkpoint execute start");
+		checkpoint = new Checkpoint(file, 100);
+		SlowAckConsumer slow = new SlowAckConsumer(checkpoint);
+		new Chain(new RangeProducer(), 100, ParallelQueueFactory.backpressure(new BackpressurePolicy(16, 8,
+				BackpressurePolicy.Overflow.DROP_OLDEST, 0L))).parallel(slow).execute(checkpoint);
+		log.debug("consumed count:" + slow.count_);
+		if (COUNT <= slow.count_) {
+			throw new IllegalStateException("no container is dropped.");
+		}
+		if (file.exists()) {
+			throw new IllegalStateException("checkpoint file is not deleted. position:" + checkpoint.getPosition());
+		}
+		log.debug("***************** drop oldest checkpoint execute end");
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class RangeProducer extends ResumableProducer {
+
+		@Override
+		public void execute(ProducerQueue queue, long resumeFrom) {
+			for (int i = (int) resumeFrom; i < COUNT; i++) {
+				queue.offer(new Container<Integer>(i));
+			}
+		}
+	}
+
+	public static class DoubleConsumerProducer extends ConsumerProducer {
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			queue.offer(new Container<Long>(((Integer) container.get()).longValue() * 2));
+		}
+	}
+
+	/**
+	 * 1つの入力から2つのContainerをofferする
+	 */
+	public static class SplitConsumerProducer extends ConsumerProducer {
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			long value = ((Integer) container.get()).longValue() * 2;
+			queue.offer(new Container<Long>(value));
+			queue.offer(new Container<Long>(value + 1));
+		}
+	}
+
+	public static class AckConsumer extends Consumer {
+		private final Checkpoint checkpoint_;
+
+		private final long failAt_;
+
+		private final long failValue_;
+
+		private int count_ = 0;
+
+		private long sum_ = 0L;
+
+		public AckConsumer(Checkpoint checkpoint, long failAt) {
+			this(checkpoint, failAt, -1L);
+		}
+
+		public AckConsumer(Checkpoint checkpoint, long failAt, long failValue) {
+			checkpoint_ = checkpoint;
+			failAt_ = failAt;
+			failValue_ = failValue;
+		}
+
+		@Override
+		public void execute_(Container<?> container) {
+			if (failAt_ == container.getSequence()) {
+				throw new IllegalStateException("test exception. sequence:" + container.getSequence());
+			}
+			if (failValue_ == (Long) container.get()) {
+				throw new IllegalStateException("test exception. value:" + container.get());
+			}
+			sum_ += (Long) container.get();
+			count_++;
+			checkpoint_.acknowledge(container.getSequence());
+		}
+	}
+
+	/**
+	 * 最初のContainerの処理で待機し、キューを溢れさせる
+	 */
+	public static class SlowAckConsumer extends Consumer {
+		private final Checkpoint checkpoint_;
+
+		private int count_ = 0;
+
+		public SlowAckConsumer(Checkpoint checkpoint) {
+			checkpoint_ = checkpoint;
+		}
+
+		@Override
+		public void execute_(Container<?> container) {
+			if (0 == container.getSequence()) {
+				try {
+					Thread.sleep(200L);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			count_++;
+			checkpoint_.acknowledge(container.getSequence());
+		}
+	}
+
+	/**
+	 * フィルタですべて処理対象外とするため、呼び出されない
+	 */
+	public static class NeverConsumer extends Consumer {
+
+		@Override
+		public void execute_(Container<?> container) {
+			throw new IllegalStateException("container is not skipped. sequence:" + container.getSequence());
+		}
+	}
+
+	/**
+	 * 異常終了時に他の要素のスレッドが設定する割り込み状態を、それらのスレッドの終了を待って解除する
+	 */
+	private static void clearInterrupt() {
+		while (true) {
+			try {
+				Thread.sleep(500L);
+				return;
+			} catch (InterruptedException e) {
+				// 割り込み状態は解除済みのため、割り込まれなくなるまで待機し直す
+			}
+		}
+	}
+
+	private static final int COUNT = 10000;
+
+	private static final int FAIL_AT = 6543;
+
+	public static final Logger log = Logger.getRootLogger();
+}
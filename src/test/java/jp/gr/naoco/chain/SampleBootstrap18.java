@@ -0,0 +1,155 @@
+package jp.gr.naoco.chain;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap18 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		// Producerがofferを止めても、lingerMillisを経過したバッファはConsumerに渡される
+		log.debug("***************** batching linger execute start");
+		CountDownLatch received = new CountDownLatch(PAUSE_AT);
+		PausingProducer producer = new PausingProducer(received);
+		OrderConsumer consumer = new OrderConsumer(received);
+		new Chain(producer, 1024, ParallelQueueFactory.batching(ParallelQueueFactory.RING_BUFFER, BATCH_SIZE,
+				LINGER_MILLIS)).parallel(consumer).execute();
+
+		log.debug("received while producer paused:" + producer.receivedWhilePaused_);
+		if (!producer.receivedWhilePaused_) {
+			throw new IllegalStateException("buffered containers are not flushed while producer paused.");
+		}
+		if (COUNT != consumer.count_) {
+			throw new IllegalStateException("consumed count is " + consumer.count_);
+		}
+		log.debug("***************** batching linger execute end");
+		log.debug("");
+
+		// バッチサイズを指定したコンストラクタでも、lingerMillisを経過したバッファはConsumerに渡される
+		log.debug("***************** batching constructor execute start");
+		received = new CountDownLatch(PAUSE_AT);
+		producer = new PausingProducer(received);
+		consumer = new OrderConsumer(received);
+		new Chain(producer, 1024, BATCH_SIZE, LINGER_MILLIS).parallel(consumer).execute();
+
+		log.debug("received while producer paused:" + producer.receivedWhilePaused_);
+		if (!producer.receivedWhilePaused_) {
+			throw new IllegalStateException("buffered containers are not flushed while producer paused.");
+		}
+		if (COUNT != consumer.count_) {
+			throw new IllegalStateException("consumed count is " + consumer.count_);
+		}
+		log.debug("***************** batching constructor execute end");
+		log.debug("");
+
+		// lingerMillisを経過したバッファのフラッシュ処理も、Chainのエクゼキュータで実行する
+		log.debug("***************** batching executor execute start");
+		received = new CountDownLatch(PAUSE_AT);
+		producer = new PausingProducer(received);
+		consumer = new OrderConsumer(received);
+		CountingExecutor executor = new CountingExecutor(ChainExecutor.pool(2));
+		new Chain(producer, 1024, ParallelQueueFactory.batching(ParallelQueueFactory.RING_BUFFER, BATCH_SIZE,
+				LINGER_MILLIS), executor).parallel(consumer).execute();
+
+		log.debug("received while producer paused:" + producer.receivedWhilePaused_ + " tasks:"
+				+ executor.count_.get());
+		if (!producer.receivedWhilePaused_) {
+			throw new IllegalStateException("buffered containers are not flushed while producer paused.");
+		}
+		// Consumerのスレッドとフラッシュ処理
+		if (2 != executor.count_.get()) {
+			throw new IllegalStateException("flusher is not executed by chain executor. tasks:"
+					+ executor.count_.get());
+		}
+		if (COUNT != consumer.count_) {
+			throw new IllegalStateException("consumed count is " + consumer.count_);
+		}
+		log.debug("***************** batching executor execute end");
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class PausingProducer implements Producer {
+		private final CountDownLatch received_;
+
+		private volatile boolean receivedWhilePaused_ = false;
+
+		public PausingProducer(CountDownLatch received) {
+			received_ = received;
+		}
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				if (PAUSE_AT == i) {
+					// バッチサイズに満たない要素をバッファしたまま、offerを止める
+					try {
+						receivedWhilePaused_ = received_.await(PAUSE_MILLIS, TimeUnit.MILLISECONDS);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+				queue.offer(new Container<Integer>(i));
+			}
+		}
+	}
+
+	/**
+	 * 実行した処理の数を数えるエクゼキュータ
+	 */
+	public static class CountingExecutor extends ChainExecutor {
+		private final ChainExecutor executor_;
+
+		private final AtomicInteger count_ = new AtomicInteger(0);
+
+		public CountingExecutor(ChainExecutor executor) {
+			executor_ = executor;
+		}
+
+		@Override
+		public Task execute(Runnable runnable) {
+			count_.incrementAndGet();
+			return executor_.execute(runnable);
+		}
+	}
+
+	public static class OrderConsumer extends Consumer {
+		private final CountDownLatch received_;
+
+		private int count_ = 0;
+
+		public OrderConsumer(CountDownLatch received) {
+			received_ = received;
+		}
+
+		@Override
+		public void execute_(Container<?> container) {
+			if (count_ != (Integer) container.get()) {
+				throw new IllegalStateException("order is broken. expected:" + count_ + " actual:" + container.get());
+			}
+			count_++;
+			received_.countDown();
+		}
+	}
+
+	private static final int COUNT = 10000;
+
+	private static final int PAUSE_AT = 3;
+
+	private static final int BATCH_SIZE = 100;
+
+	private static final long LINGER_MILLIS = 20L;
+
+	private static final long PAUSE_MILLIS = 5000L;
+
+	public static final Logger log = Logger.getRootLogger();
+}
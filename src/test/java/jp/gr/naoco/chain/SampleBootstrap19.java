@@ -0,0 +1,177 @@
+package jp.gr.naoco.chain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.fork.ForkColumnChain;
+import jp.gr.naoco.chain.fork.ForkLegChain;
+import jp.gr.naoco.chain.fork.ForkPolicy;
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap19 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		// プールの最大スレッド数より多い要素を接続しても、デッドロックせずにすべて処理する
+		log.debug("***************** pooled execute start");
+		ChainExecutor executor = ChainExecutor.pool(2);
+		ThreadConsumer consumer = new ThreadConsumer();
+		new Chain(new SampleProducer(), 100, ParallelQueueFactory.BLOCKING, executor) //
+				.parallel(new PassConsumerProducer()) //
+				.parallel(new PassConsumerProducer()) //
+				.parallel(new PassConsumerProducer()) //
+				.parallel(consumer) //
+				.execute();
+		consumer.check(COUNT, POOL_THREAD_PREFIX);
+		log.debug("***************** pooled execute end");
+
+		// 各レッグは、レッグのChainに指定したエクゼキュータのスレッドで処理する
+		log.debug("***************** pooled fork execute start");
+		List<ForkLegChain> legList = new ArrayList<ForkLegChain>();
+		List<ThreadConsumer> consumerList = new ArrayList<ThreadConsumer>();
+		for (int i = 0; i < 2; i++) {
+			ThreadConsumer legConsumer = new ThreadConsumer();
+			ForkLegChain leg = new ForkLegChain(new ModFilter(2, i), 100, executor);
+			leg.direct(legConsumer);
+			legList.add(leg);
+			consumerList.add(legConsumer);
+		}
+		ForkColumnChain column = new ForkColumnChain(new SampleProducer(), 100, ForkPolicy.DEFAULT, executor);
+		column.connectLegs(legList);
+		column.execute();
+		for (ThreadConsumer legConsumer : consumerList) {
+			legConsumer.check(COUNT / 2, POOL_THREAD_PREFIX);
+		}
+		log.debug("***************** pooled fork execute end");
+
+		// プールのスレッドで異常終了した場合も、Chainは例外で終了し、プールのスレッドは再利用できる
+		log.debug("***************** pooled worker pool failure execute start");
+		boolean failed = false;
+		try {
+			new Chain(new SampleProducer(), 100, ParallelQueueFactory.BLOCKING, executor) //
+					.parallel(new FailConsumerFactory(), 3) //
+					.execute();
+		} catch (RuntimeException e) {
+			log.debug("chain failed. " + e.getMessage());
+			failed = true;
+			// 異常終了時にChainが設定した割り込み状態を解除する
+			Thread.interrupted();
+		}
+		if (!failed) {
+			throw new IllegalStateException("chain is not failed.");
+		}
+		consumer = new ThreadConsumer();
+		new Chain(new SampleProducer(), 100, ParallelQueueFactory.BLOCKING, executor) //
+				.parallel(new PassConsumerProducer()) //
+				.parallel(consumer) //
+				.execute();
+		consumer.check(COUNT, POOL_THREAD_PREFIX);
+		log.debug("***************** pooled worker pool failure execute end");
+
+		// 仮想スレッドは、実行環境が対応している場合のみ
+		ChainExecutor virtual = null;
+		try {
+			virtual = ChainExecutor.virtualThread();
+		} catch (UnsupportedOperationException e) {
+			log.debug("virtual thread is not supported. " + e.getMessage());
+		}
+		if (null != virtual) {
+			log.debug("***************** virtual thread execute start");
+			consumer = new ThreadConsumer();
+			new Chain(new SampleProducer(), 100, ParallelQueueFactory.BLOCKING, virtual) //
+					.parallel(new PassConsumerProducer()) //
+					.parallel(consumer) //
+					.execute();
+			consumer.check(COUNT, null);
+			log.debug("***************** virtual thread execute end");
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class SampleProducer implements Producer {
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(new Container<Integer>(i));
+			}
+		}
+	}
+
+	public static class PassConsumerProducer extends ConsumerProducer {
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			queue.offer(container);
+		}
+	}
+
+	public static class ModFilter implements ConsumerFilter {
+		private final int divisor_;
+
+		private final int remainder_;
+
+		public ModFilter(int divisor, int remainder) {
+			divisor_ = divisor;
+			remainder_ = remainder;
+		}
+
+		@Override
+		public boolean accept(Container<?> container) {
+			return (remainder_ == ((Integer) container.get()) % divisor_);
+		}
+	}
+
+	public static class ThreadConsumer extends Consumer {
+		private final AtomicLong count_ = new AtomicLong(0L);
+
+		private volatile String threadName_ = null;
+
+		@Override
+		public void execute_(Container<?> container) {
+			threadName_ = Thread.currentThread().getName();
+			count_.incrementAndGet();
+		}
+
+		public void check(long expected, String threadPrefix) {
+			log.debug("count:" + count_.get() + " thread:" + threadName_);
+			if (expected != count_.get()) {
+				throw new IllegalStateException("count is " + count_.get() + ", expected " + expected);
+			}
+			if ((null != threadPrefix) && !threadName_.startsWith(threadPrefix)) {
+				throw new IllegalStateException("consumer is executed on " + threadName_);
+			}
+		}
+	}
+
+	public static class FailConsumerFactory implements ConsumerFactory {
+
+		@Override
+		public ConsumerInterface newInstance() {
+			return new Consumer() {
+				@Override
+				public void execute_(Container<?> container) {
+					if (FAIL_AT == (Integer) container.get()) {
+						throw new IllegalStateException("fail at " + FAIL_AT);
+					}
+				}
+			};
+		}
+	}
+
+	private static final int COUNT = 10000;
+
+	private static final int FAIL_AT = 5000;
+
+	private static final String POOL_THREAD_PREFIX = "ChainPool-";
+
+	public static final Logger log = Logger.getRootLogger();
+}
@@ -0,0 +1,94 @@
+package jp.gr.naoco.chain;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.metrics.ChainMetrics;
+import jp.gr.naoco.chain.metrics.StageMetrics;
+import jp.gr.naoco.chain.queue.BackpressurePolicy;
+import jp.gr.naoco.chain.queue.BackpressurePolicy.Overflow;
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap20 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		// DROP_OLDESTで破棄した要素数を、Chainの計測値から取得する
+		log.debug("***************** backpressure metrics execute start");
+		ChainMetrics metrics = new ChainMetrics();
+		SlowConsumer consumer = new SlowConsumer();
+		new Chain(new SampleProducer(), 100, ParallelQueueFactory.backpressure(new BackpressurePolicy(10, 5,
+				Overflow.DROP_OLDEST, 0L)), ChainExecutor.getDefault()).metrics(metrics) //
+				.parallel(consumer) //
+				.terminate() //
+				.execute();
+		StageMetrics.Snapshot snapshot = metrics.snapshot().get(0);
+		log.debug(snapshot.toString());
+		if (0L == snapshot.getDroppedCount()) {
+			throw new IllegalStateException("dropped count is not measured.");
+		}
+		if (COUNT != (consumer.count_ + snapshot.getDroppedCount())) {
+			throw new IllegalStateException("consumed:" + consumer.count_ + " dropped:" + snapshot.getDroppedCount());
+		}
+		if (0L != snapshot.getDepth()) {
+			throw new IllegalStateException("depth is " + snapshot.getDepth());
+		}
+		log.debug("***************** backpressure metrics execute end");
+
+		// 処理速度に応じて調整した格納できる要素数を、Chainの計測値から取得する
+		log.debug("***************** adaptive metrics execute start");
+		metrics = new ChainMetrics();
+		consumer = new SlowConsumer();
+		new Chain(new SampleProducer(), 100, ParallelQueueFactory.adaptive(MIN_QUEUE_SIZE, 1L),
+				ChainExecutor.getDefault()).metrics(metrics) //
+				.parallel(consumer) //
+				.terminate() //
+				.execute();
+		snapshot = metrics.snapshot().get(0);
+		log.debug(snapshot.toString());
+		if ((snapshot.getCapacity() < MIN_QUEUE_SIZE) || (100 < snapshot.getCapacity())) {
+			throw new IllegalStateException("capacity is " + snapshot.getCapacity());
+		}
+		if (COUNT != consumer.count_) {
+			throw new IllegalStateException("consumed count is " + consumer.count_);
+		}
+		log.debug("***************** adaptive metrics execute end");
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class SampleProducer implements Producer {
+
+		@Override
+		public void execute(ProducerQueue queue) {
+			for (int i = 0; i < COUNT; i++) {
+				queue.offer(new Container<Integer>(i));
+			}
+		}
+	}
+
+	public static class SlowConsumer extends Consumer {
+		private volatile long count_ = 0L;
+
+		@Override
+		public void execute_(Container<?> container) {
+			if (0 == (Integer) container.get() % 100) {
+				try {
+					Thread.sleep(1L);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			count_++;
+		}
+	}
+
+	private static final int COUNT = 10000;
+
+	private static final int MIN_QUEUE_SIZE = 10;
+
+	public static final Logger log = Logger.getRootLogger();
+}
@@ -0,0 +1,170 @@
+package jp.gr.naoco.chain;
+
+import java.io.File;
+
+import org.apache.log4j.Logger;
+
+import jp.gr.naoco.chain.queue.ParallelQueueFactory;
+import jp.gr.naoco.chain.queue.ProducerQueue;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+
+public class SampleBootstrap21 {
+	public static void main(String[] args) throws Exception {
+		// naocoの初期化
+		NaocoCoreInitializer.initialize("conf.laol01", new OriginalLogAdaptor());
+
+		File file = new File(System.getProperty("java.io.tmpdir"), "SampleBootstrap21.checkpoint");
+
+		// ファイルに退避した要素も連番を保持し、チェックポイントの再開位置が進む
+		log.debug("***************** spillable checkpoint execute start");
+		file.delete();
+		ParallelQueueFactory spillable = ParallelQueueFactory.spillable(1L, null, null);
+		executeAndFail(new Chain(new RangeProducer(), 100, spillable, ChainExecutor.getDefault()), file, FAIL_AT, null);
+
+		Checkpoint resume = new Checkpoint(file, 100);
+		AckConsumer consumer = new AckConsumer(resume, -1);
+		new Chain(new RangeProducer(), 100, spillable, ChainExecutor.getDefault()).parallel(consumer).execute(resume);
+		if ((COUNT - FAIL_AT) != consumer.count_) {
+			throw new IllegalStateException("resumed count is " + consumer.count_);
+		}
+		checkCleared(file);
+		log.debug("***************** spillable checkpoint execute end");
+
+		// フィルタで処理対象外とした要素、何もofferしなかった要素も、チェックポイントの再開位置を止めない
+		for (int i = 0; i < 2; i++) {
+			boolean direct = (0 == i);
+			log.debug("***************** skip checkpoint execute start. direct:" + direct);
+			file.delete();
+			executeAndFail(connect(direct), file, SKIP_FAIL_AT, new EvenFilter());
+
+			resume = new Checkpoint(file, 100);
+			consumer = new AckConsumer(resume, -1);
+			connect(direct).parallel(consumer, new EvenFilter()).execute(resume);
+			long expected = 0L;
+			for (int value = SKIP_FAIL_AT; value < COUNT; value++) {
+				if ((0 != value % 3) && (0 == value % 2)) {
+					expected++;
+				}
+			}
+			if (expected != consumer.count_) {
+				throw new IllegalStateException("resumed count is " + consumer.count_ + ", expected " + expected);
+			}
+			checkCleared(file);
+			log.debug("***************** skip checkpoint execute end. direct:" + direct);
+		}
+	}
+
+	private static Chain connect(boolean direct) {
+		Chain chain = new Chain(new RangeProducer(), 100);
+		return (direct ? chain.direct(new DropConsumerProducer()) : chain.parallel(new DropConsumerProducer()));
+	}
+
+	/**
+	 * 連番failAtの要素で異常終了させ、failAtを再開位置として記録することを確認する。
+	 */
+	private static void executeAndFail(Chain chain, File file, long failAt, ConsumerFilter filter) {
+		Checkpoint checkpoint = new Checkpoint(file, 100);
+		AckConsumer consumer = new AckConsumer(checkpoint, failAt);
+		boolean failed = false;
+		try {
+			if (null == filter) {
+				chain.parallel(consumer).execute(checkpoint);
+			} else {
+				chain.parallel(consumer, filter).execute(checkpoint);
+			}
+		} catch (RuntimeException e) {
+			log.debug("chain failed. " + e.getMessage());
+			failed = true;
+			// 異常終了を検知した他の要素のスレッドからも繰り返し割り込まれるため、割り込まれても一定時間待機してから割り込み状態を解除する
+			long until = System.currentTimeMillis() + 500L;
+			for (long wait = 500L; 0L < wait; wait = until - System.currentTimeMillis()) {
+				try {
+					Thread.sleep(wait);
+				} catch (InterruptedException ie) {
+					// 想定どおり
+				}
+			}
+			Thread.interrupted();
+		}
+		if (!failed) {
+			throw new IllegalStateException("chain is not failed.");
+		}
+		long position = new Checkpoint(file).getPosition();
+		log.debug("checkpoint position:" + position);
+		if (position != failAt) {
+			throw new IllegalStateException("checkpoint position is " + position + ", expected " + failAt);
+		}
+	}
+
+	private static void checkCleared(File file) {
+		if (file.exists()) {
+			throw new IllegalStateException("checkpoint file is not deleted.");
+		}
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	public static class RangeProducer extends ResumableProducer {
+
+		@Override
+		public void execute(ProducerQueue queue, long resumeFrom) {
+			for (int i = (int) resumeFrom; i < COUNT; i++) {
+				queue.offer(new Container<Integer>(i));
+			}
+		}
+	}
+
+	/**
+	 * 3の倍数は何もofferしない
+	 */
+	public static class DropConsumerProducer extends ConsumerProducer {
+
+		@Override
+		public void execute_(Container<?> container, ProducerQueue queue) {
+			int value = (Integer) container.get();
+			if (0 != value % 3) {
+				queue.offer(new Container<Integer>(value));
+			}
+		}
+	}
+
+	public static class EvenFilter implements ConsumerFilter {
+
+		@Override
+		public boolean accept(Container<?> container) {
+			return (0 == (Integer) container.get() % 2);
+		}
+	}
+
+	public static class AckConsumer extends Consumer {
+		private final Checkpoint checkpoint_;
+
+		private final long failAt_;
+
+		private int count_ = 0;
+
+		public AckConsumer(Checkpoint checkpoint, long failAt) {
+			checkpoint_ = checkpoint;
+			failAt_ = failAt;
+		}
+
+		@Override
+		public void execute_(Container<?> container) {
+			if (failAt_ == container.getSequence()) {
+				throw new IllegalStateException("test exception. sequence:" + container.getSequence());
+			}
+			count_++;
+			checkpoint_.acknowledge(container.getSequence());
+		}
+	}
+
+	private static final int COUNT = 10000;
+
+	private static final int FAIL_AT = 6543;
+
+	/** 3の倍数でない偶数 */
+	private static final int SKIP_FAIL_AT = 5000;
+
+	public static final Logger log = Logger.getRootLogger();
+}
@@ -8,8 +8,13 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({ //
 LaolCoreFacadeTest01.class, //
 		LaolCoreFacadeTest02.class, //
+		PooledJDBCConnectionFactoryTest01.class, //
 		SingletoneInstanceFactoryTest01.class, //
-		ThreadLocalInstanceFactoryTest01.class //
+		StatementCacheTest01.class, //
+		StatementPoolTest01.class, //
+		ThreadLocalInstanceFactoryTest01.class, //
+		TransactionManagerTest01.class, //
+		TransactionBarrierFactoryTest01.class //
 })
 public class LaolCoreAllTests {
 
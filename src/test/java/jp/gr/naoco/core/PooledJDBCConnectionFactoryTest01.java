@@ -0,0 +1,144 @@
+package jp.gr.naoco.core;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import jp.gr.naoco.core.connection.ConnectionPool;
+import jp.gr.naoco.core.connection.PooledJDBCConnectionFactory;
+import jp.gr.naoco.core.transaction.TransactionManager;
+import jp.gr.naoco.sample.dummy.DummyConnection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * PooledJDBCConnectionFactoryについて、物理接続の再利用と、貸出しの上限、有効性の確認、返却漏れの警告を確認
+ *
+ * @author naoco0917
+ */
+public class PooledJDBCConnectionFactoryTest01 {
+	private static final String LOOKUP_NAME = "java:comp/env/jdbc/test01";
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Preparations
+
+	@Before
+	public void setup() throws Exception {
+		DummyConnection.clearIdCount();
+		PooledJDBCConnectionFactory.clear();
+	}
+
+	@After
+	public void teardown() throws Exception {
+		// 失敗したテストのトランザクションを後続のテストに残さない
+		TransactionManager.rollbackAllTransaction();
+		PooledJDBCConnectionFactory.clear();
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Cases
+
+	/**
+	 * トランザクションの終了時に物理接続をクローズせず、後のトランザクションで再利用することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test01() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(PooledJDBCConnectionFactoryTest01.class.getName() + "_test01", null);
+		PooledJDBCConnectionFactory factory = new PooledJDBCConnectionFactory();
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		DummyConnection physical01 = (DummyConnection) factory.getPhysicalConnection(NaocoCoreFacade.getConnection());
+		NaocoCoreFacade.commitTransaction();
+		Assert.assertEquals(DummyConnection.STATUS.COMMITTED_UNCLOSED, physical01.getStatus());
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		DummyConnection physical02 = (DummyConnection) factory.getPhysicalConnection(NaocoCoreFacade.getConnection());
+		NaocoCoreFacade.commitTransaction();
+		Assert.assertSame(physical01, physical02);
+
+		ConnectionPool pool = PooledJDBCConnectionFactory.getPool(LOOKUP_NAME);
+		Assert.assertEquals(1, pool.getCreateCount());
+		Assert.assertEquals(2, pool.getBorrowCount());
+		Assert.assertEquals(1, pool.getIdleCount());
+		Assert.assertEquals(0, pool.getBorrowedCount());
+	}
+
+	/**
+	 * 最大数まで貸出し中の場合は待機時間の経過後に例外となり、返却漏れを警告し、無効な物理接続を再利用しないことを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test02() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(PooledJDBCConnectionFactoryTest01.class.getName() + "_test01", null);
+		PooledJDBCConnectionFactory factory = new PooledJDBCConnectionFactory();
+
+		Connection connection01 = factory.create(LOOKUP_NAME);
+		try {
+			factory.create(LOOKUP_NAME);
+			Assert.fail("exception is not thrown.");
+		} catch (SQLException e) {
+			// 想定どおり
+		}
+		ConnectionPool pool = PooledJDBCConnectionFactory.getPool(LOOKUP_NAME);
+		// 返却されていない貸出しを警告する
+		long limit = System.currentTimeMillis() + 3000;
+		while ((0 == pool.getLeakCount()) && (System.currentTimeMillis() < limit)) {
+			Thread.sleep(20);
+		}
+		Assert.assertEquals(1, pool.getLeakCount());
+
+		// 返却後は貸し出せる
+		DummyConnection physical01 = (DummyConnection) factory.getPhysicalConnection(connection01);
+		connection01.close();
+		Assert.assertTrue(connection01.isClosed());
+		Assert.assertFalse(physical01.isClosed());
+
+		// 無効となった物理接続は再利用しない
+		physical01.close();
+		Connection connection02 = factory.create(LOOKUP_NAME);
+		Assert.assertNotSame(physical01, factory.getPhysicalConnection(connection02));
+		Assert.assertEquals(1, pool.getValidationFailureCount());
+		Assert.assertEquals(2, pool.getCreateCount());
+		connection02.close();
+	}
+
+	/**
+	 * 読み取り専用、トランザクション分離レベル、カタログ、スキーマを変更した物理接続を、返却時に変更前の設定に戻して再利用することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test03() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(PooledJDBCConnectionFactoryTest01.class.getName() + "_test01", null);
+		PooledJDBCConnectionFactory factory = new PooledJDBCConnectionFactory();
+
+		Connection connection01 = factory.create(LOOKUP_NAME);
+		DummyConnection physical01 = (DummyConnection) factory.getPhysicalConnection(connection01);
+		connection01.setReadOnly(true);
+		connection01.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+		connection01.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+		connection01.setCatalog("catalog01");
+		connection01.setSchema("schema01");
+		connection01.close();
+
+		Connection connection02 = factory.create(LOOKUP_NAME);
+		Assert.assertSame(physical01, factory.getPhysicalConnection(connection02));
+		Assert.assertFalse(connection02.isReadOnly());
+		Assert.assertEquals(Connection.TRANSACTION_READ_COMMITTED, connection02.getTransactionIsolation());
+		Assert.assertNull(connection02.getCatalog());
+		Assert.assertNull(connection02.getSchema());
+		connection02.close();
+
+		ConnectionPool pool = PooledJDBCConnectionFactory.getPool(LOOKUP_NAME);
+		Assert.assertEquals(1, pool.getCreateCount());
+		Assert.assertEquals(0, pool.getDestroyCount());
+	}
+}
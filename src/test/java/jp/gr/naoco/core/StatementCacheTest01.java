@@ -0,0 +1,159 @@
+package jp.gr.naoco.core;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import jp.gr.naoco.core.transaction.TransactionManager;
+import jp.gr.naoco.sample.dummy.DummyConnection;
+import jp.gr.naoco.sample.dummy.DummyPreparedStatement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * トランザクション内のPreparedStatementのキャッシュについて、再利用とクローズの契機を確認
+ *
+ * @author naoco0917
+ */
+public class StatementCacheTest01 {
+	private static final String LOOKUP_NAME = "java:comp/env/jdbc/test01";
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Preparations
+
+	@Before
+	public void setup() throws Exception {
+		DummyConnection.clearIdCount();
+	}
+
+	@After
+	public void teardown() throws Exception {
+		// 失敗したテストのトランザクションを後続のテストに残さない
+		TransactionManager.rollbackAllTransaction();
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Cases
+
+	/**
+	 * クローズしたPreparedStatementを、同じSQL文の生成時に再利用することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test01() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(StatementCacheTest01.class.getName() + "_test01", null);
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		PreparedStatement lease01 = NaocoCoreFacade.prepareStatement("test sql01");
+		DummyPreparedStatement statement01 = unwrap(lease01);
+		lease01.close();
+		Assert.assertTrue(lease01.isClosed());
+		Assert.assertFalse(statement01.isClosed());
+		// クローズしたラッパーは使用できない
+		try {
+			lease01.executeQuery();
+			Assert.fail("exception is not thrown.");
+		} catch (SQLException e) {
+			// 想定どおり
+		}
+
+		// 同じSQL文はクローズしたPreparedStatementを再利用する
+		PreparedStatement lease02 = NaocoCoreFacade.prepareStatement("test sql01");
+		Assert.assertSame(statement01, unwrap(lease02));
+		// 貸出し中のPreparedStatementは再利用しない
+		PreparedStatement lease03 = NaocoCoreFacade.prepareStatement("test sql01");
+		Assert.assertNotSame(statement01, unwrap(lease03));
+		// SQL文が異なる場合は再利用しない
+		PreparedStatement lease04 = NaocoCoreFacade.prepareStatement("test sql02");
+		DummyPreparedStatement statement04 = unwrap(lease04);
+		Assert.assertNotSame(statement01, statement04);
+		lease02.close();
+
+		// ResultSet#getStatement()等で取得した内部のStatementのクローズでも、キャッシュに戻す
+		NaocoCoreFacade.closeStatement(statement04);
+		Assert.assertTrue(lease04.isClosed());
+		Assert.assertFalse(statement04.isClosed());
+		Assert.assertSame(statement04, unwrap(NaocoCoreFacade.prepareStatement("test sql02")));
+
+		// トランザクションの終了時に、キャッシュ中と貸出し中のPreparedStatementもクローズする
+		DummyPreparedStatement statement03 = unwrap(lease03);
+		NaocoCoreFacade.commitTransaction();
+		Assert.assertTrue(statement01.isClosed());
+		Assert.assertTrue(statement03.isClosed());
+		Assert.assertTrue(statement04.isClosed());
+	}
+
+	/**
+	 * キャッシュの上限を超えた場合に、最も長く使用していないPreparedStatementをクローズすることを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test02() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(StatementCacheTest01.class.getName() + "_test01", null);
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		DummyPreparedStatement statement01 = prepareAndClose("test sql01");
+		DummyPreparedStatement statement02 = prepareAndClose("test sql02");
+		// sql01を使用して、sql02を最も長く使用していない状態にする
+		Assert.assertSame(statement01, prepareAndClose("test sql01"));
+		DummyPreparedStatement statement03 = prepareAndClose("test sql03");
+
+		Assert.assertFalse(statement01.isClosed());
+		Assert.assertTrue(statement02.isClosed());
+		Assert.assertFalse(statement03.isClosed());
+		Assert.assertNotSame(statement02, prepareAndClose("test sql02"));
+
+		// Statement自体の設定を変更した場合は、キャッシュに戻さない
+		PreparedStatement lease = NaocoCoreFacade.prepareStatement("test sql01");
+		lease.setFetchSize(100);
+		lease.close();
+		Assert.assertTrue(statement01.isClosed());
+
+		// 追加済みのバッチは、キャッシュに戻す際にクリアする
+		lease = NaocoCoreFacade.prepareStatement("test sql02");
+		DummyPreparedStatement statement04 = unwrap(lease);
+		lease.addBatch();
+		lease.close();
+		Assert.assertFalse(statement04.isClosed());
+		Assert.assertEquals(0, statement04.getBatchCount());
+		NaocoCoreFacade.commitTransaction();
+	}
+
+	/**
+	 * キャッシュの数を設定しない場合は、ラッパーを使用せずにPreparedStatementを返すことを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test03() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(StatementCacheTest01.class.getName() + "_test02", null);
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		PreparedStatement statement01 = NaocoCoreFacade.prepareStatement("test sql01");
+		Assert.assertTrue(statement01 instanceof DummyPreparedStatement);
+		statement01.close();
+		Assert.assertNotSame(statement01, NaocoCoreFacade.prepareStatement("test sql01"));
+		NaocoCoreFacade.commitTransaction();
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Utilities
+
+	private static DummyPreparedStatement unwrap(PreparedStatement statement) throws SQLException {
+		return statement.unwrap(DummyPreparedStatement.class);
+	}
+
+	private static DummyPreparedStatement prepareAndClose(String sql) throws SQLException {
+		PreparedStatement lease = NaocoCoreFacade.prepareStatement(sql);
+		DummyPreparedStatement statement = unwrap(lease);
+		lease.close();
+		return statement;
+	}
+}
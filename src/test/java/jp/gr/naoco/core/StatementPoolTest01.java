@@ -0,0 +1,122 @@
+package jp.gr.naoco.core;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import jp.gr.naoco.core.transaction.StatementPool;
+import jp.gr.naoco.core.transaction.TransactionManager;
+import jp.gr.naoco.sample.dummy.DummyConnection;
+import jp.gr.naoco.sample.dummy.DummyPooledConnectionFactory;
+import jp.gr.naoco.sample.dummy.DummyPreparedStatement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * StatementPoolについて、物理接続ごとのPreparedStatementのトランザクションを横断した再利用と、統計を確認
+ *
+ * @author naoco0917
+ */
+public class StatementPoolTest01 {
+	private static final String LOOKUP_NAME = "java:comp/env/jdbc/test01";
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Preparations
+
+	@Before
+	public void setup() throws Exception {
+		DummyConnection.clearIdCount();
+		DummyPooledConnectionFactory.clearPhysical();
+		StatementPool.closeAll();
+	}
+
+	@After
+	public void teardown() throws Exception {
+		// 失敗したテストのトランザクションを後続のテストに残さない
+		TransactionManager.rollbackAllTransaction();
+		StatementPool.closeAll();
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Cases
+
+	/**
+	 * 物理接続を保持するConnectionFactoryの場合に、トランザクションの終了後もPreparedStatementを再利用することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test01() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(StatementPoolTest01.class.getName() + "_test01", null);
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		DummyPreparedStatement statement01 = prepareAndClose("test sql01");
+		// クローズしていないPreparedStatementは、トランザクションの終了時にクローズする
+		DummyPreparedStatement statement02 = unwrap(NaocoCoreFacade.prepareStatement("test sql02"));
+		NaocoCoreFacade.commitTransaction();
+		Assert.assertFalse(statement01.isClosed());
+		Assert.assertTrue(statement02.isClosed());
+		Assert.assertEquals(DummyConnection.STATUS.COMMITTED_UNCLOSED,
+				DummyPooledConnectionFactory.getPhysical(LOOKUP_NAME).getStatus());
+
+		// 後のトランザクションで再利用する
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		Assert.assertSame(statement01, prepareAndClose("test sql01"));
+		Assert.assertNotSame(statement02, prepareAndClose("test sql02"));
+		DummyPreparedStatement statement03 = prepareAndClose("test sql03");
+		NaocoCoreFacade.commitTransaction();
+
+		StatementPool pool = StatementPool.get(LOOKUP_NAME);
+		Assert.assertEquals(1, pool.getHitCount());
+		Assert.assertEquals(4, pool.getMissCount());
+		Assert.assertEquals(1, pool.getEvictionCount());
+		Assert.assertEquals(1, pool.getConnectionCount());
+
+		// 終了時にすべてクローズする
+		StatementPool.closeAll();
+		Assert.assertTrue(statement03.isClosed());
+	}
+
+	/**
+	 * 物理接続を保持しないConnectionFactoryの場合は、トランザクションごとのキャッシュとして統計のみ集計することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test02() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(StatementPoolTest01.class.getName() + "_test02", null);
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		DummyPreparedStatement statement01 = prepareAndClose("test sql01");
+		Assert.assertSame(statement01, prepareAndClose("test sql01"));
+		NaocoCoreFacade.commitTransaction();
+		Assert.assertTrue(statement01.isClosed());
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		Assert.assertNotSame(statement01, prepareAndClose("test sql01"));
+		NaocoCoreFacade.commitTransaction();
+
+		StatementPool pool = StatementPool.get(LOOKUP_NAME);
+		Assert.assertEquals(1, pool.getHitCount());
+		Assert.assertEquals(2, pool.getMissCount());
+		Assert.assertEquals(0, pool.getConnectionCount());
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Utilities
+
+	private static DummyPreparedStatement unwrap(PreparedStatement statement) throws SQLException {
+		return statement.unwrap(DummyPreparedStatement.class);
+	}
+
+	private static DummyPreparedStatement prepareAndClose(String sql) throws SQLException {
+		PreparedStatement lease = NaocoCoreFacade.prepareStatement(sql);
+		DummyPreparedStatement statement = unwrap(lease);
+		lease.close();
+		return statement;
+	}
+}
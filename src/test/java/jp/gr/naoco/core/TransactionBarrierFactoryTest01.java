@@ -0,0 +1,227 @@
+package jp.gr.naoco.core;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import jp.gr.naoco.core.annotation.BeforeStartTransaction;
+import jp.gr.naoco.core.annotation.BypassInterceptor;
+import jp.gr.naoco.core.annotation.Interceptee;
+import jp.gr.naoco.core.annotation.Interceptor;
+import jp.gr.naoco.core.annotation.Transaction;
+import jp.gr.naoco.core.annotation.TransactionType;
+import jp.gr.naoco.core.transaction.TransactionBarrierFactory;
+import jp.gr.naoco.sample.dummy.DummyConnection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TransactionBarrierFactoryが生成するバリアについて、メソッドごとの設定のキャッシュを確認
+ *
+ * @author naoco0917
+ */
+public class TransactionBarrierFactoryTest01 {
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Preparations
+
+	@Before
+	public void setup() throws Exception {
+		DummyConnection.clearIdCount();
+		CountInterceptor.count_ = 0;
+		SingletonInterceptor.instances_.clear();
+		InstanceInterceptor.instances_.clear();
+	}
+
+	@After
+	public void teardown() throws Exception {
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Cases
+
+	/**
+	 * 同じメソッドを繰り返し呼び出した場合も、呼出しごとにトランザクションとインターセプターが実行されることを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test01() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(TransactionBarrierFactoryTest01.class.getName() + "_test01", null);
+
+		TestInterface instance = (TestInterface) TransactionBarrierFactory.createBarrier(TestInterface.class,
+				new Test01Impl());
+		for (int i = 0; i < 3; i++) {
+			DummyConnection connection = instance.method();
+			Assert.assertEquals(i + 1, connection.getId());
+			Assert.assertEquals(DummyConnection.STATUS.COMMITTED_CLOSED, connection.getStatus());
+		}
+		Assert.assertEquals(3, CountInterceptor.count_);
+
+		// BypassInterceptorを付与したメソッドは、同じクラスでもインターセプターを実行しない
+		for (int i = 0; i < 3; i++) {
+			instance.bypassMethod();
+		}
+		Assert.assertEquals(3, CountInterceptor.count_);
+	}
+
+	/**
+	 * 設定を読み込み直した場合に、生成済みのバリアでもキャッシュした設定を使用しないことを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test02() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(TransactionBarrierFactoryTest01.class.getName() + "_test01", null);
+
+		TestInterface instance = (TestInterface) TransactionBarrierFactory.createBarrier(TestInterface.class,
+				new Test01Impl());
+		instance.method();
+		Assert.assertEquals(1, CountInterceptor.count_);
+
+		// インターセプターを設定しない設定で読み込み直す
+		NaocoCoreInitializer.initialize(TransactionBarrierFactoryTest01.class.getName() + "_test02", null);
+		instance.method();
+		Assert.assertEquals(1, CountInterceptor.count_);
+	}
+
+	/**
+	 * プリミティブ型の引数と戻り値、および実装クラスが送出した例外が、そのまま呼出し元に渡ることを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test03() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(TransactionBarrierFactoryTest01.class.getName() + "_test02", null);
+
+		TestInterface instance = (TestInterface) TransactionBarrierFactory.createBarrier(TestInterface.class,
+				new Test01Impl());
+		Assert.assertEquals(7L, instance.add(3, 4L));
+
+		try {
+			instance.fail("test03");
+			Assert.fail("exception is not thrown.");
+		} catch (TestException e) {
+			Assert.assertEquals("test03", e.getMessage());
+		}
+		// 例外発生時はロールバックして接続を閉じる
+		Assert.assertEquals(DummyConnection.STATUS.ROLLBACKED_CLOSED, Test01Impl.connection_.getStatus());
+	}
+
+	/**
+	 * シングルトンのインターセプターは呼出し間でインスタンスを共有し、それ以外は呼出しごとに生成することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test04() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(TransactionBarrierFactoryTest01.class.getName() + "_test03", null);
+
+		TestInterface instance = (TestInterface) TransactionBarrierFactory.createBarrier(TestInterface.class,
+				new Test01Impl());
+		for (int i = 0; i < 3; i++) {
+			instance.method();
+		}
+		Assert.assertEquals(1, SingletonInterceptor.instances_.size());
+		Assert.assertEquals(3, InstanceInterceptor.instances_.size());
+
+		// 設定を読み込み直した場合は、シングルトンのインスタンスも生成し直す
+		NaocoCoreInitializer.initialize(TransactionBarrierFactoryTest01.class.getName() + "_test03", null);
+		instance.method();
+		Assert.assertEquals(2, SingletonInterceptor.instances_.size());
+		Assert.assertEquals(4, InstanceInterceptor.instances_.size());
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner Classes
+
+	public static interface TestInterface {
+		public DummyConnection method() throws Exception;
+
+		public void bypassMethod() throws Exception;
+
+		public long add(int a, long b);
+
+		public void fail(String message) throws TestException;
+	}
+
+	@SuppressWarnings("serial")
+	public static class TestException extends Exception {
+		public TestException(String message) {
+			super(message);
+		}
+	}
+
+	// ///////////////////////
+
+	@Interceptee
+	@Transaction(lookupName = "java:comp/env/jdbc/test01", type = TransactionType.NEW)
+	public static class Test01Impl implements TestInterface {
+		private static DummyConnection connection_ = null;
+
+		@Override
+		public DummyConnection method() throws Exception {
+			return (DummyConnection) NaocoCoreFacade.getConnection();
+		}
+
+		@Override
+		@BypassInterceptor
+		public void bypassMethod() throws Exception {
+			// nothing to do
+		}
+
+		@Override
+		public long add(int a, long b) {
+			return a + b;
+		}
+
+		@Override
+		public void fail(String message) throws TestException {
+			connection_ = (DummyConnection) NaocoCoreFacade.getConnection();
+			throw new TestException(message);
+		}
+	}
+
+	// ///////////////////////
+
+	@Interceptor
+	public static class CountInterceptor {
+		private static int count_ = 0;
+
+		@BeforeStartTransaction
+		public void beforeStart() {
+			count_++;
+		}
+	}
+
+	// ///////////////////////
+
+	@Interceptor(singleton = true)
+	public static class SingletonInterceptor {
+		private static Set<Object> instances_ = Collections.synchronizedSet(new HashSet<Object>());
+
+		@BeforeStartTransaction
+		public void beforeStart() {
+			instances_.add(this);
+		}
+	}
+
+	// ///////////////////////
+
+	@Interceptor
+	public static class InstanceInterceptor {
+		private static Set<Object> instances_ = Collections.synchronizedSet(new HashSet<Object>());
+
+		@BeforeStartTransaction
+		public void beforeStart() {
+			instances_.add(this);
+		}
+	}
+}
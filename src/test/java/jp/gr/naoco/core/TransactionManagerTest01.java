@@ -0,0 +1,89 @@
+package jp.gr.naoco.core;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import jp.gr.naoco.core.transaction.TransactionManager;
+import jp.gr.naoco.sample.dummy.DummyConnection;
+import jp.gr.naoco.sample.dummy.DummyPreparedStatement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TransactionManagerについて、遅延接続（db.lazyConnect.N=true）のトランザクションでの、DBコネクションの取得を確認
+ *
+ * @author naoco0917
+ */
+public class TransactionManagerTest01 {
+	private static final String LOOKUP_NAME = "java:comp/env/jdbc/test01";
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Preparations
+
+	@Before
+	public void setup() throws Exception {
+		DummyConnection.clearIdCount();
+	}
+
+	@After
+	public void teardown() throws Exception {
+		// 失敗したテストのトランザクションを後続のテストに残さない
+		TransactionManager.rollbackAllTransaction();
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Cases
+
+	/**
+	 * DBコネクションを使用しないトランザクションでは、DBコネクションを取得しないことを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test01() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(TransactionManagerTest01.class.getName() + "_test01", null);
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		NaocoCoreFacade.reserveRollback();
+		NaocoCoreFacade.commitForce();
+		NaocoCoreFacade.rollbackForce();
+		NaocoCoreFacade.commitTransaction();
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		NaocoCoreFacade.rollbackTransaction();
+
+		// 以降に取得するDBコネクションのIDが初期値のままであること
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		DummyConnection connection = (DummyConnection) NaocoCoreFacade.getConnection();
+		NaocoCoreFacade.commitTransaction();
+		Assert.assertEquals(1, connection.getId());
+		Assert.assertEquals(DummyConnection.STATUS.COMMITTED_CLOSED, connection.getStatus());
+	}
+
+	/**
+	 * 最初のPreparedStatementの生成時にDBコネクションを取得し、引き継いだトランザクションでも同じDBコネクションを使用することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test02() throws Exception {
+		// 初期設定
+		NaocoCoreInitializer.initialize(TransactionManagerTest01.class.getName() + "_test01", null);
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		NaocoCoreFacade.takeoverTransaction(LOOKUP_NAME);
+		PreparedStatement statement = NaocoCoreFacade.prepareStatement("test sql01");
+		Connection connection = NaocoCoreFacade.getConnection();
+		NaocoCoreFacade.commitTransaction();
+		Assert.assertEquals(1, statement.unwrap(DummyPreparedStatement.class).getConnectionId());
+		Assert.assertSame(connection, NaocoCoreFacade.getConnection());
+		Assert.assertEquals(1, ((DummyConnection) connection).getId());
+
+		NaocoCoreFacade.rollbackTransaction();
+		Assert.assertEquals(DummyConnection.STATUS.ROLLBACKED_CLOSED, ((DummyConnection) connection).getStatus());
+	}
+}
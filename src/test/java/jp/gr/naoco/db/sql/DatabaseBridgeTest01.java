@@ -0,0 +1,82 @@
+package jp.gr.naoco.db.sql;
+
+import jp.gr.naoco.core.NaocoCoreFacade;
+import jp.gr.naoco.core.NaocoCoreInitializer;
+import jp.gr.naoco.core.transaction.TransactionManager;
+import jp.gr.naoco.sample.dummy.DummyConnection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * DatabaseBridgeについて、トランザクションごとのDialectの解決と、Dialectの登録を確認
+ */
+public class DatabaseBridgeTest01 {
+	private static final String LOOKUP_NAME = "java:comp/env/jdbc/test01";
+
+	/** DummyConnectionのドライバ名 */
+	private static final String DRIVER_NAME = "Oracle JDBC driver";
+
+	private Dialect original_;
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Preparations
+
+	@Before
+	public void setup() throws Exception {
+		DummyConnection.clearIdCount();
+		NaocoCoreInitializer.initialize(DatabaseBridgeTest01.class.getName() + "_test01", null);
+		original_ = DatabaseBridge.findDialect(DRIVER_NAME);
+	}
+
+	@After
+	public void teardown() throws Exception {
+		// 失敗したテストのトランザクションを後続のテストに残さない
+		TransactionManager.rollbackAllTransaction();
+		DatabaseBridge.registerDialect(DRIVER_NAME, original_);
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Test Cases
+
+	/**
+	 * トランザクションの開始時に、ドライバ名に対応するDialectを解決することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test01() throws Exception {
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		Assert.assertSame(original_, NaocoCoreFacade.getDialect());
+		Assert.assertEquals("/*+ INDEX(A) */ ", DatabaseBridge.getHintComment("+ INDEX(A)"));
+		Assert.assertEquals("", DatabaseBridge.getHintComment(" comment"));
+		NaocoCoreFacade.commitTransaction();
+	}
+
+	/**
+	 * 登録したDialectを、登録後に開始したトランザクションで使用することを確認
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test02() throws Exception {
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		Dialect dialect = new DatabaseBridge.DBElem() {
+			@Override
+			public String getHintComment(String comment) {
+				return "/*" + comment + "*/ ";
+			}
+		};
+		DatabaseBridge.registerDialect(DRIVER_NAME, dialect);
+		// 登録前に開始したトランザクションには反映しない
+		Assert.assertSame(original_, NaocoCoreFacade.getDialect());
+
+		NaocoCoreFacade.startTransaction(LOOKUP_NAME);
+		Assert.assertSame(dialect, NaocoCoreFacade.getDialect());
+		Assert.assertEquals("/* comment*/ ", DatabaseBridge.getHintComment(" comment"));
+		NaocoCoreFacade.commitTransaction();
+		NaocoCoreFacade.commitTransaction();
+	}
+}
@@ -44,6 +44,14 @@ public class DummyConnection implements Connection {
 
 	private boolean isClosed_ = false;
 
+	private boolean readOnly_ = false;
+
+	private int transactionIsolation_ = Connection.TRANSACTION_READ_COMMITTED;
+
+	private String catalog_ = null;
+
+	private String schema_ = null;
+
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Constructor
 
@@ -192,35 +200,32 @@ public class DummyConnection implements Connection {
 
 	@Override
 	public void setReadOnly(boolean readOnly) throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
+		readOnly_ = readOnly;
 	}
 
 	@Override
 	public boolean isReadOnly() throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
-		return false;
+		return readOnly_;
 	}
 
 	@Override
 	public void setCatalog(String catalog) throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
+		catalog_ = catalog;
 	}
 
 	@Override
 	public String getCatalog() throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
-		return null;
+		return catalog_;
 	}
 
 	@Override
 	public void setTransactionIsolation(int level) throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
+		transactionIsolation_ = level;
 	}
 
 	@Override
 	public int getTransactionIsolation() throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
-		return 0;
+		return transactionIsolation_;
 	}
 
 	@Override
@@ -361,8 +366,7 @@ public class DummyConnection implements Connection {
 
 	@Override
 	public boolean isValid(int timeout) throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
-		return false;
+		return !isClosed_;
 	}
 
 	@Override
@@ -402,13 +406,12 @@ public class DummyConnection implements Connection {
 
 	@Override
 	public void setSchema(String schema) throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
+		schema_ = schema;
 	}
 
 	@Override
 	public String getSchema() throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
-		return null;
+		return schema_;
 	}
 
 	@Override
@@ -0,0 +1,63 @@
+package jp.gr.naoco.sample.dummy;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * "jdbc:dummy:[ルックアップ名]"のURLに対して、DummyConnectionを返すJDBCドライバ
+ */
+public class DummyDriver implements Driver {
+	private static final String URL_PREFIX = "jdbc:dummy:";
+
+	static {
+		try {
+			DriverManager.registerDriver(new DummyDriver());
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public Connection connect(String url, Properties info) throws SQLException {
+		if (!acceptsURL(url)) {
+			return null;
+		}
+		return new DummyConnection(url.substring(URL_PREFIX.length()));
+	}
+
+	@Override
+	public boolean acceptsURL(String url) throws SQLException {
+		return (null != url) && url.startsWith(URL_PREFIX);
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+}
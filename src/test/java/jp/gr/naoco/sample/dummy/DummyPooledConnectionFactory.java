@@ -0,0 +1,81 @@
+package jp.gr.naoco.sample.dummy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+import javax.naming.NamingException;
+
+import jp.gr.naoco.core.connection.PooledConnectionFactory;
+
+/**
+ * ルックアップ名ごとに1つのDummyConnectionを物理接続として共有するConnectionFactory
+ * <p>
+ * createで返すコネクションのクローズでは、物理接続をクローズしない。
+ * </p>
+ */
+public class DummyPooledConnectionFactory implements PooledConnectionFactory {
+	private static final HashMap<String, DummyConnection> PHYSICAL_MAP = new HashMap<String, DummyConnection>();
+
+	/** 物理接続を破棄する */
+	public static synchronized void clearPhysical() {
+		PHYSICAL_MAP.clear();
+	}
+
+	/** ルックアップ名に対応する物理接続を取得する */
+	public static synchronized DummyConnection getPhysical(String lookupName) {
+		return PHYSICAL_MAP.get(lookupName);
+	}
+
+	@Override
+	public Connection create(String lookupName) throws SQLException, ClassNotFoundException, NamingException {
+		DummyConnection physical;
+		synchronized (DummyPooledConnectionFactory.class) {
+			physical = PHYSICAL_MAP.get(lookupName);
+			if (null == physical) {
+				physical = new DummyConnection(lookupName);
+				PHYSICAL_MAP.put(lookupName, physical);
+			}
+		}
+		physical.clear();
+		return (Connection) Proxy.newProxyInstance(DummyPooledConnectionFactory.class.getClassLoader(),
+				new Class[] {Connection.class }, new LogicalConnection(physical));
+	}
+
+	@Override
+	public Connection getPhysicalConnection(Connection connection) {
+		return ((LogicalConnection) Proxy.getInvocationHandler(connection)).physical_;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////
+	// Inner classes
+
+	private static class LogicalConnection implements InvocationHandler {
+		private final DummyConnection physical_;
+
+		private boolean isClosed_ = false;
+
+		private LogicalConnection(DummyConnection physical) {
+			physical_ = physical;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if ("close".equals(method.getName())) {
+				isClosed_ = true;
+				return null;
+			} else if ("isClosed".equals(method.getName())) {
+				return isClosed_;
+			}
+			try {
+				return method.invoke(physical_, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
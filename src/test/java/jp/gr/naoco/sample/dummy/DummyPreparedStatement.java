@@ -38,6 +38,8 @@ public class DummyPreparedStatement implements PreparedStatement {
 
 	private String sql_ = null;
 
+	private int batchCount_ = 0;
+
 	// /////////////////////////////////////////////////////////////////////////////////////////////
 	// Constructor
 
@@ -64,11 +66,21 @@ public class DummyPreparedStatement implements PreparedStatement {
 		return sql_;
 	}
 
+	/** このステートメントの生成順の番号を取得する */
+	public int getNum() {
+		return num_;
+	}
+
 	/** このステートメントに関連するDummyConnectionのIDを取得する */
 	public int getConnectionId() {
 		return connectionNum_;
 	}
 
+	/** このステートメントに追加済みのバッチの数を取得する */
+	public int getBatchCount() {
+		return batchCount_;
+	}
+
 	/** DummyPreparedStatementで最後に実行したSQL文を取得する */
 	public static String lastSql() {
 		return lastSql_;
@@ -225,7 +237,7 @@ public class DummyPreparedStatement implements PreparedStatement {
 
 	@Override
 	public void clearBatch() throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
+		batchCount_ = 0;
 	}
 
 	@Override
@@ -296,8 +308,7 @@ public class DummyPreparedStatement implements PreparedStatement {
 
 	@Override
 	public boolean isClosed() throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
-		return false;
+		return isClosed_;
 	}
 
 	@Override
@@ -324,7 +335,9 @@ public class DummyPreparedStatement implements PreparedStatement {
 
 	@Override
 	public <T> T unwrap(Class<T> iface) throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
 		return null;
 	}
 
@@ -454,7 +467,7 @@ public class DummyPreparedStatement implements PreparedStatement {
 
 	@Override
 	public void addBatch() throws SQLException {
-		// TODO 自動生成されたメソッド・スタブ
+		batchCount_++;
 	}
 
 	@Override